@@ -29,6 +29,22 @@ public interface DriverConfig {
     static final int CONNECT_RETRY_INTERVAL_DEFAULT = 60000;
     static final boolean DISABLED_DEFAULT = false;
 
+    /**
+     * Device tasks of the driver run on the thread pool shared by all drivers.
+     */
+    static final String EXECUTOR_SHARED = "shared";
+    /**
+     * Device tasks of the driver run on a thread pool of the driver with a fixed number of threads.
+     */
+    static final String EXECUTOR_BOUNDED = "bounded";
+    /**
+     * Every device task of the driver runs on its own virtual thread. Requires Java 21 or later, otherwise a bounded
+     * pool is used.
+     */
+    static final String EXECUTOR_VIRTUAL = "virtual";
+    static final String EXECUTOR_DEFAULT = EXECUTOR_SHARED;
+    static final int EXECUTOR_POOL_SIZE_DEFAULT = 4;
+
     String getId();
 
     void setId(String id) throws IdCollisionException;
@@ -45,6 +61,24 @@ public interface DriverConfig {
 
     void setDisabled(Boolean disabled);
 
+    /**
+     * Returns the executor that runs the connect, read, write and listen tasks of the devices of this driver.
+     *
+     * @return one of {@link #EXECUTOR_SHARED}, {@link #EXECUTOR_BOUNDED} or {@link #EXECUTOR_VIRTUAL}
+     */
+    String getExecutor();
+
+    void setExecutor(String executor);
+
+    /**
+     * Returns the maximum number of threads of the driver's pool if the executor is {@link #EXECUTOR_BOUNDED}.
+     *
+     * @return the pool size
+     */
+    Integer getExecutorPoolSize();
+
+    void setExecutorPoolSize(Integer poolSize);
+
     DeviceConfig addDevice(String deviceId) throws IdCollisionException;
 
     DeviceConfig getDevice(String deviceId);
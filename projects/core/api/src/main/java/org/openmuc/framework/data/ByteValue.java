@@ -23,17 +23,54 @@ package org.openmuc.framework.data;
 
 public class ByteValue extends NumberValue {
 
+    private final byte value;
+
     public ByteValue(byte value) {
-        super(value);
+        this.value = value;
     }
 
     public ByteValue(String value) {
-        super(Byte.parseByte(value));
+        this(Byte.parseByte(value));
+    }
+
+    @Override
+    public double asDouble() {
+        return value;
+    }
+
+    @Override
+    public float asFloat() {
+        return value;
+    }
+
+    @Override
+    public long asLong() {
+        return value;
+    }
+
+    @Override
+    public int asInt() {
+        return value;
+    }
+
+    @Override
+    public short asShort() {
+        return value;
+    }
+
+    @Override
+    public byte asByte() {
+        return value;
     }
 
     @Override
     public byte[] asByteArray() {
-        return new byte[] { super.asByte() };
+        return new byte[] { value };
+    }
+
+    @Override
+    public String asString() {
+        return Byte.toString(value);
     }
 
     @Override
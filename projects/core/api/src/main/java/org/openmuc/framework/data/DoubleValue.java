@@ -25,21 +25,58 @@ import java.nio.ByteBuffer;
 
 public class DoubleValue extends NumberValue {
 
+    private final double value;
+
     public DoubleValue(double value) {
-        super(value);
+        this.value = value;
     }
 
     public DoubleValue(String value) {
-        super(Double.parseDouble(value));
+        this(Double.parseDouble(value));
+    }
+
+    @Override
+    public double asDouble() {
+        return value;
+    }
+
+    @Override
+    public float asFloat() {
+        return (float) value;
+    }
+
+    @Override
+    public long asLong() {
+        return (long) value;
+    }
+
+    @Override
+    public int asInt() {
+        return (int) value;
+    }
+
+    @Override
+    public short asShort() {
+        return (short) value;
+    }
+
+    @Override
+    public byte asByte() {
+        return (byte) value;
     }
 
     @Override
     public byte[] asByteArray() {
         byte[] bytes = new byte[8];
-        ByteBuffer.wrap(bytes).putDouble(super.asDouble());
+        ByteBuffer.wrap(bytes).putDouble(value);
         return bytes;
     }
 
+    @Override
+    public String asString() {
+        return Double.toString(value);
+    }
+
     @Override
     public ValueType getValueType() {
         return ValueType.DOUBLE;
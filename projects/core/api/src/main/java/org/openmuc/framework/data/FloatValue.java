@@ -25,23 +25,61 @@ import java.nio.ByteBuffer;
 
 public class FloatValue extends NumberValue {
 
+    private final float value;
+
     public FloatValue(float value) {
-        super(value);
+        this.value = value;
     }
 
     public FloatValue(String value) {
-        super(Float.parseFloat(value));
+        this(Float.parseFloat(value));
+    }
+
+    @Override
+    public double asDouble() {
+        return value;
+    }
+
+    @Override
+    public float asFloat() {
+        return value;
+    }
+
+    @Override
+    public long asLong() {
+        return (long) value;
+    }
+
+    @Override
+    public int asInt() {
+        return (int) value;
+    }
+
+    @Override
+    public short asShort() {
+        return (short) value;
+    }
+
+    @Override
+    public byte asByte() {
+        return (byte) value;
     }
 
     @Override
     public byte[] asByteArray() {
         byte[] bytes = new byte[4];
-        ByteBuffer.wrap(bytes).putFloat(super.asFloat());
+        ByteBuffer.wrap(bytes).putFloat(value);
         return bytes;
     }
 
+    @Override
+    public String asString() {
+        return Float.toString(value);
+    }
+
     @Override
     public ValueType getValueType() {
         return ValueType.FLOAT;
     }
+
 }
@@ -25,21 +25,58 @@ import java.nio.ByteBuffer;
 
 public class IntValue extends NumberValue {
 
+    private final int value;
+
     public IntValue(int value) {
-        super(value);
+        this.value = value;
     }
 
     public IntValue(String value) {
-        super(Integer.parseInt(value));
+        this(Integer.parseInt(value));
+    }
+
+    @Override
+    public double asDouble() {
+        return value;
+    }
+
+    @Override
+    public float asFloat() {
+        return value;
+    }
+
+    @Override
+    public long asLong() {
+        return value;
+    }
+
+    @Override
+    public int asInt() {
+        return value;
+    }
+
+    @Override
+    public short asShort() {
+        return (short) value;
+    }
+
+    @Override
+    public byte asByte() {
+        return (byte) value;
     }
 
     @Override
     public byte[] asByteArray() {
         byte[] bytes = new byte[4];
-        ByteBuffer.wrap(bytes).putInt(super.asInt());
+        ByteBuffer.wrap(bytes).putInt(value);
         return bytes;
     }
 
+    @Override
+    public String asString() {
+        return Integer.toString(value);
+    }
+
     @Override
     public ValueType getValueType() {
         return ValueType.INTEGER;
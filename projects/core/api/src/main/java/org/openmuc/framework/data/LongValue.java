@@ -25,21 +25,58 @@ import java.nio.ByteBuffer;
 
 public class LongValue extends NumberValue {
 
+    private final long value;
+
     public LongValue(long value) {
-        super(value);
+        this.value = value;
     }
 
     public LongValue(String value) {
-        super(Long.parseLong(value));
+        this(Long.parseLong(value));
+    }
+
+    @Override
+    public double asDouble() {
+        return value;
+    }
+
+    @Override
+    public float asFloat() {
+        return value;
+    }
+
+    @Override
+    public long asLong() {
+        return value;
+    }
+
+    @Override
+    public int asInt() {
+        return (int) value;
+    }
+
+    @Override
+    public short asShort() {
+        return (short) value;
+    }
+
+    @Override
+    public byte asByte() {
+        return (byte) value;
     }
 
     @Override
     public byte[] asByteArray() {
         byte[] bytes = new byte[8];
-        ByteBuffer.wrap(bytes).putLong(super.asLong());
+        ByteBuffer.wrap(bytes).putLong(value);
         return bytes;
     }
 
+    @Override
+    public String asString() {
+        return Long.toString(value);
+    }
+
     @Override
     public ValueType getValueType() {
         return ValueType.LONG;
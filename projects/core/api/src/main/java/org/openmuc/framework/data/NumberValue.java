@@ -18,48 +18,18 @@
  * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
  *
  */
+
 package org.openmuc.framework.data;
 
+/**
+ * Base class of the numeric values. Every subclass stores its number as a primitive field, so creating a value costs
+ * a single small allocation and reading it never unboxes.
+ */
 abstract class NumberValue implements Value {
-    private final Number value;
-
-    public NumberValue(Number value) {
-        this.value = value;
-    }
-
-    @Override
-    public double asDouble() {
-        return this.value.doubleValue();
-    }
-
-    @Override
-    public float asFloat() {
-        return this.value.floatValue();
-    }
-
-    @Override
-    public long asLong() {
-        return this.value.longValue();
-    }
-
-    @Override
-    public int asInt() {
-        return this.value.intValue();
-    }
-
-    @Override
-    public short asShort() {
-        return this.value.shortValue();
-    }
-
-    @Override
-    public byte asByte() {
-        return this.value.byteValue();
-    }
 
     @Override
     public boolean asBoolean() {
-        return this.value.doubleValue() != 0.0;
+        return asDouble() != 0.0;
     }
 
     @Override
@@ -67,11 +37,6 @@ abstract class NumberValue implements Value {
         return null;
     }
 
-    @Override
-    public String asString() {
-        return this.value.toString();
-    }
-
     @Override
     public String toString() {
         return asString();
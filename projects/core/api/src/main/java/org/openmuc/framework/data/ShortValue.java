@@ -25,21 +25,58 @@ import java.nio.ByteBuffer;
 
 public class ShortValue extends NumberValue {
 
+    private final short value;
+
     public ShortValue(short value) {
-        super(value);
+        this.value = value;
     }
 
     public ShortValue(String value) {
-        super(Short.parseShort(value));
+        this(Short.parseShort(value));
+    }
+
+    @Override
+    public double asDouble() {
+        return value;
+    }
+
+    @Override
+    public float asFloat() {
+        return value;
+    }
+
+    @Override
+    public long asLong() {
+        return value;
+    }
+
+    @Override
+    public int asInt() {
+        return value;
+    }
+
+    @Override
+    public short asShort() {
+        return value;
+    }
+
+    @Override
+    public byte asByte() {
+        return (byte) value;
     }
 
     @Override
     public byte[] asByteArray() {
         byte[] bytes = new byte[2];
-        ByteBuffer.wrap(bytes).putShort(super.asShort());
+        ByteBuffer.wrap(bytes).putShort(value);
         return bytes;
     }
 
+    @Override
+    public String asString() {
+        return Short.toString(value);
+    }
+
     @Override
     public ValueType getValueType() {
         return ValueType.SHORT;
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.dataaccess;
+
+import java.util.List;
+
+import org.openmuc.framework.data.Record;
+
+/**
+ * Record listener that is notified of the new records of all channels it was added to in batches. Applications that
+ * listen to many channels should prefer this interface to {@link RecordListener} because a whole batch is delivered
+ * with a single call.
+ * <p>
+ * A batch contains at most one record per channel. If a channel received several records before the listener was
+ * called, only the latest of them is delivered. A listener is never called concurrently.
+ */
+public interface BatchRecordListener extends RecordListener {
+
+    /**
+     * Called with the records received since the previous call.
+     *
+     * @param records
+     *            the new records together with the channels they belong to
+     */
+    void newRecords(List<ReadRecordContainer> records);
+
+    /**
+     * Not called for batch listeners. Records are delivered by {@link #newRecords(List)} instead.
+     */
+    @Override
+    default void newRecord(Record record) {
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.File;
+import java.util.List;
+
+import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.config.ChannelScanInfo;
+import org.openmuc.framework.config.DeviceConfig;
+import org.openmuc.framework.config.DriverConfig;
+import org.openmuc.framework.config.DriverInfo;
+import org.openmuc.framework.dataaccess.DeviceState;
+import org.openmuc.framework.driver.spi.ChannelRecordContainer;
+import org.openmuc.framework.driver.spi.ChannelValueContainer;
+import org.openmuc.framework.driver.spi.Connection;
+import org.openmuc.framework.driver.spi.DriverDeviceScanListener;
+import org.openmuc.framework.driver.spi.DriverService;
+import org.openmuc.framework.driver.spi.RecordsReceivedListener;
+
+/**
+ * Measures how long the data manager needs to apply a reloaded configuration depending on the number of channels.
+ * Every device is connected to a dummy driver before the reload, so that all channels are put into sampling and
+ * logging collections again.
+ * <p>
+ * Usage: {@code ConfigReloadBenchmark [channelsPerDevice] [channelCount...]}
+ */
+public class ConfigReloadBenchmark {
+
+    private static final String DRIVER_ID = "benchmark";
+
+    public static void main(String[] args) throws Exception {
+        int channelsPerDevice = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int[] channelCounts = { 1000, 5000, 10000, 20000, 40000 };
+        if (args.length > 1) {
+            channelCounts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                channelCounts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        File configFile = File.createTempFile("openmuc-reload-benchmark", ".xml");
+        configFile.delete();
+        configFile.deleteOnExit();
+
+        DataManager dataManager = new DataManager();
+        dataManager.bindDriverService(new DummyDriver());
+        dataManager.activateWithConfig(configFile);
+
+        System.out.println("channels;devices;initial config [ms];reload [ms]");
+        for (int channelCount : channelCounts) {
+            int deviceCount = Math.max(1, channelCount / channelsPerDevice);
+            RootConfigImpl config = createConfig(deviceCount, channelsPerDevice);
+
+            long start = System.nanoTime();
+            dataManager.setConfig(config);
+            long initialMillis = (System.nanoTime() - start) / 1000000;
+
+            waitUntilConnected(dataManager, config);
+
+            start = System.nanoTime();
+            dataManager.setConfig(config);
+            long reloadMillis = (System.nanoTime() - start) / 1000000;
+
+            System.out.println(
+                    deviceCount * channelsPerDevice + ";" + deviceCount + ";" + initialMillis + ";" + reloadMillis);
+
+            dataManager.setConfig(new RootConfigImpl());
+        }
+        System.exit(0);
+    }
+
+    private static RootConfigImpl createConfig(int deviceCount, int channelsPerDevice) throws Exception {
+        RootConfigImpl config = new RootConfigImpl();
+        DriverConfig driverConfig = config.addDriver(DRIVER_ID);
+        for (int i = 0; i < deviceCount; i++) {
+            DeviceConfig deviceConfig = driverConfig.addDevice("device" + i);
+            deviceConfig.setDeviceAddress(String.valueOf(i));
+            for (int j = 0; j < channelsPerDevice; j++) {
+                ChannelConfig channelConfig = deviceConfig.addChannel("device" + i + "_channel" + j);
+                channelConfig.setChannelAddress(String.valueOf(j));
+                // spread channels over a few sampling groups and offsets like a typical gateway configuration
+                channelConfig.setSamplingInterval(60000);
+                channelConfig.setSamplingTimeOffset((j % 4) * 1000);
+                channelConfig.setSamplingGroup("group" + (j % 3));
+                channelConfig.setLoggingInterval(60000);
+            }
+        }
+        return config;
+    }
+
+    private static void waitUntilConnected(DataManager dataManager, RootConfigImpl config)
+            throws InterruptedException {
+        for (DeviceConfig deviceConfig : config.getDriver(DRIVER_ID).getDevices()) {
+            while (dataManager.getDeviceState(deviceConfig.getId()) != DeviceState.CONNECTED) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static class DummyDriver implements DriverService {
+
+        @Override
+        public DriverInfo getInfo() {
+            return new DriverInfo(DRIVER_ID, "Driver used for benchmarking the data manager.", "", "", "", "");
+        }
+
+        @Override
+        public void scanForDevices(String settings, DriverDeviceScanListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void interruptDeviceScan() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Connection connect(String deviceAddress, String settings) {
+            return new Connection() {
+
+                @Override
+                public List<ChannelScanInfo> scanForChannels(String settings) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Object read(List<ChannelRecordContainer> containers, Object containerListHandle,
+                        String samplingGroup) {
+                    return null;
+                }
+
+                @Override
+                public void startListening(List<ChannelRecordContainer> containers,
+                        RecordsReceivedListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Object write(List<ChannelValueContainer> containers, Object containerListHandle) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void disconnect() {
+                }
+            };
+        }
+    }
+
+}
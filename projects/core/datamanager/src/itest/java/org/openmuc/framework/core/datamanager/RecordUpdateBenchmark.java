@@ -0,0 +1,95 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.config.DeviceConfig;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.dataaccess.ChannelState;
+
+/**
+ * Measures the time and the heap allocation of {@link ChannelImpl#setNewRecord(Record)} for the common channel
+ * configurations. Allocation is measured with the per thread allocation counter of the HotSpot JVM.
+ * <p>
+ * Usage: {@code RecordUpdateBenchmark [iterations]}
+ */
+public class RecordUpdateBenchmark {
+
+    private static final int WARM_UP_ITERATIONS = 2000000;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+
+        System.out.println("case;ns/op;bytes/op");
+        run("double -> double", channel(ValueType.DOUBLE, null, null), new DoubleValue(21.5), iterations);
+        run("int -> double", channel(ValueType.DOUBLE, null, null), new IntValue(21), iterations);
+        run("int -> int, scaled", channel(ValueType.INTEGER, 0.1, null), new IntValue(215), iterations);
+        run("int -> double, scaled with offset", channel(ValueType.DOUBLE, 0.1, -40.0), new IntValue(615),
+                iterations);
+    }
+
+    private static void run(String name, ChannelImpl channel, Value value, int iterations) {
+        Record record = new Record(value, System.currentTimeMillis(), Flag.VALID);
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            channel.setNewRecord(record);
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            channel.setNewRecord(record);
+        }
+        long duration = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        System.out.printf("%s;%.1f;%.1f%n", name, (double) duration / iterations, (double) allocated / iterations);
+    }
+
+    private static ChannelImpl channel(ValueType valueType, Double scalingFactor, Double valueOffset)
+            throws Exception {
+        RootConfigImpl rootConfig = new RootConfigImpl();
+        DeviceConfig deviceConfig = rootConfig.addDriver("driver").addDevice("device");
+        ChannelConfig channelConfig = deviceConfig.addChannel("channel");
+        channelConfig.setValueType(valueType);
+        channelConfig.setScalingFactor(scalingFactor);
+        channelConfig.setValueOffset(valueOffset);
+
+        ChannelConfigImpl config = rootConfig.cloneWithDefaults().channelConfigsById.get("channel");
+        return new ChannelImpl(new DataManager(), config, ChannelState.CONNECTED, Flag.NO_VALUE_RECEIVED_YET,
+                System.currentTimeMillis(), new ArrayList<>());
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+}
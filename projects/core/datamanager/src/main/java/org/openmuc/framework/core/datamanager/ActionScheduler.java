@@ -0,0 +1,191 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Timeline of the actions executed by the data manager thread. Actions are kept sorted by their start time so that
+ * inserting a new entry costs O(log n) instead of a linear walk through all pending actions. Scheduled sampling and
+ * logging collections are additionally indexed by their (interval, offset, sampling group, device) key.
+ * <p>
+ * Only accessed by the data manager thread, therefore not thread safe.
+ */
+final class ActionScheduler {
+
+    private final NavigableMap<Long, Action> actions = new TreeMap<>();
+    private final Map<CollectionKey, ChannelCollection> samplingCollections = new HashMap<>();
+    private final Map<CollectionKey, ChannelCollection> loggingCollections = new HashMap<>();
+    private final Map<Device, Action> connectionRetries = new HashMap<>();
+
+    boolean isEmpty() {
+        return actions.isEmpty();
+    }
+
+    int size() {
+        return actions.size();
+    }
+
+    Action getFirst() {
+        return actions.firstEntry().getValue();
+    }
+
+    Action removeFirst() {
+        Action action = actions.pollFirstEntry().getValue();
+        if (action.connectionRetryDevices != null) {
+            for (Device device : action.connectionRetryDevices) {
+                connectionRetries.remove(device, action);
+            }
+        }
+        return action;
+    }
+
+    void addSamplingCollection(ChannelCollection channelCollection, long startTimestamp) {
+        Action fittingAction = getOrCreateAction(startTimestamp);
+        if (fittingAction.samplingCollections == null) {
+            fittingAction.samplingCollections = new LinkedList<>();
+        }
+        fittingAction.samplingCollections.add(channelCollection);
+        channelCollection.action = fittingAction;
+        samplingCollections.put(samplingKey(channelCollection), channelCollection);
+    }
+
+    void addLoggingCollection(ChannelCollection channelCollection, long startTimestamp) {
+        Action fittingAction = getOrCreateAction(startTimestamp);
+        if (fittingAction.loggingCollections == null) {
+            fittingAction.loggingCollections = new LinkedList<>();
+        }
+        fittingAction.loggingCollections.add(channelCollection);
+        channelCollection.action = fittingAction;
+        loggingCollections.put(loggingKey(channelCollection), channelCollection);
+    }
+
+    void addConnectionRetry(Device device, long startTimestamp) {
+        Action fittingAction = getOrCreateAction(startTimestamp);
+        if (fittingAction.connectionRetryDevices == null) {
+            fittingAction.connectionRetryDevices = new LinkedList<>();
+        }
+        fittingAction.connectionRetryDevices.add(device);
+        connectionRetries.put(device, fittingAction);
+    }
+
+    void addSamplingTimeout(SamplingTask samplingTask, long timeout) {
+        Action fittingAction = getOrCreateAction(timeout);
+        if (fittingAction.timeouts == null) {
+            fittingAction.timeouts = new LinkedList<>();
+        }
+        fittingAction.timeouts.add(samplingTask);
+    }
+
+    ChannelCollection getSamplingCollection(int interval, int timeOffset, String samplingGroup, Device device) {
+        return samplingCollections.get(new CollectionKey(interval, timeOffset, samplingGroup, device));
+    }
+
+    ChannelCollection getLoggingCollection(int interval, int timeOffset) {
+        return loggingCollections.get(new CollectionKey(interval, timeOffset, null, null));
+    }
+
+    void removeSamplingCollection(ChannelCollection channelCollection) {
+        channelCollection.action.samplingCollections.remove(channelCollection);
+        samplingCollections.remove(samplingKey(channelCollection), channelCollection);
+    }
+
+    void removeLoggingCollection(ChannelCollection channelCollection) {
+        if (channelCollection.action.loggingCollections != null) {
+            channelCollection.action.loggingCollections.remove(channelCollection);
+        }
+        forgetLoggingCollection(channelCollection);
+    }
+
+    /**
+     * Drops a logging collection from the index without touching its action. Used for collections that are not
+     * rescheduled after their action was executed.
+     */
+    void forgetLoggingCollection(ChannelCollection channelCollection) {
+        loggingCollections.remove(loggingKey(channelCollection), channelCollection);
+    }
+
+    void removeConnectionRetry(Device device) {
+        Action action = connectionRetries.remove(device);
+        if (action != null) {
+            action.connectionRetryDevices.remove(device);
+        }
+    }
+
+    private Action getOrCreateAction(long startTimestamp) {
+        Action action = actions.get(startTimestamp);
+        if (action == null) {
+            action = new Action(startTimestamp);
+            actions.put(startTimestamp, action);
+        }
+        return action;
+    }
+
+    private static CollectionKey samplingKey(ChannelCollection channelCollection) {
+        return new CollectionKey(channelCollection.interval, channelCollection.timeOffset,
+                channelCollection.samplingGroup, channelCollection.device);
+    }
+
+    private static CollectionKey loggingKey(ChannelCollection channelCollection) {
+        return new CollectionKey(channelCollection.interval, channelCollection.timeOffset, null, null);
+    }
+
+    private static final class CollectionKey {
+        private final int interval;
+        private final int timeOffset;
+        private final String samplingGroup;
+        private final Device device;
+
+        CollectionKey(int interval, int timeOffset, String samplingGroup, Device device) {
+            this.interval = interval;
+            this.timeOffset = timeOffset;
+            this.samplingGroup = samplingGroup;
+            this.device = device;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 * interval + timeOffset;
+            result = 31 * result + Objects.hashCode(samplingGroup);
+            return 31 * result + System.identityHashCode(device);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CollectionKey)) {
+                return false;
+            }
+            CollectionKey other = (CollectionKey) obj;
+            return interval == other.interval && timeOffset == other.timeOffset && device == other.device
+                    && Objects.equals(samplingGroup, other.samplingGroup);
+        }
+    }
+
+}
@@ -32,6 +32,7 @@ public final class ChannelCollection {
     String samplingGroup;
     Device device;
     Action action;
+    LoggingController.Route loggingRoute;
 
     public ChannelCollection(Integer interval, Integer timeOffset, String samplingGroup, Device device) {
         this.interval = interval;
@@ -27,27 +27,17 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CountDownLatch;
 import java.util.stream.Collectors;
 
 import org.openmuc.framework.config.ChannelConfig;
-import org.openmuc.framework.data.BooleanValue;
-import org.openmuc.framework.data.ByteArrayValue;
-import org.openmuc.framework.data.ByteValue;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
-import org.openmuc.framework.data.FloatValue;
 import org.openmuc.framework.data.FutureValue;
-import org.openmuc.framework.data.IntValue;
-import org.openmuc.framework.data.LongValue;
 import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.ShortValue;
-import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.TypeConversionException;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
@@ -66,13 +56,19 @@ import org.slf4j.LoggerFactory;
 public final class ChannelImpl implements Channel {
 
     private static final Logger logger = LoggerFactory.getLogger(ChannelImpl.class);
-    private final Set<RecordListener> listeners = new LinkedHashSet<>();
+    private static final RecordNotifier.Subscriber[] NO_LISTENERS = new RecordNotifier.Subscriber[0];
+
+    private final Object listenersLock = new Object();
+    private volatile RecordNotifier.Subscriber[] listeners = NO_LISTENERS;
     private final DataManager dataManager;
     volatile ChannelConfigImpl config;
     ChannelCollection samplingCollection;
     ChannelCollection loggingCollection;
+    int[] loggingTargets;
+    int loggingTargetsGeneration;
     volatile Object handle;
     private volatile Record latestRecord;
+    private volatile ValueConverter valueConverter;
     private Timer timer = null;
     private List<FutureValue> futureValues;
 
@@ -205,16 +201,39 @@ public final class ChannelImpl implements Channel {
 
     @Override
     public void addListener(RecordListener listener) {
-        synchronized (listeners) {
-            listeners.add(listener);
+        synchronized (listenersLock) {
+            if (indexOfListener(listener) >= 0) {
+                return;
+            }
+            RecordNotifier.Subscriber[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+            newListeners[listeners.length] = dataManager.recordNotifier.subscribe(listener);
+            listeners = newListeners;
         }
     }
 
     @Override
     public void removeListener(RecordListener listener) {
-        synchronized (listeners) {
-            listeners.remove(listener);
+        synchronized (listenersLock) {
+            int index = indexOfListener(listener);
+            if (index < 0) {
+                return;
+            }
+            RecordNotifier.Subscriber subscriber = listeners[index];
+            RecordNotifier.Subscriber[] newListeners = new RecordNotifier.Subscriber[listeners.length - 1];
+            System.arraycopy(listeners, 0, newListeners, 0, index);
+            System.arraycopy(listeners, index + 1, newListeners, index, newListeners.length - index);
+            listeners = newListeners;
+            dataManager.recordNotifier.unsubscribe(subscriber, this);
+        }
+    }
+
+    private int indexOfListener(RecordListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i].listener.equals(listener)) {
+                return i;
+            }
         }
+        return -1;
     }
 
     @Override
@@ -292,6 +311,9 @@ public final class ChannelImpl implements Channel {
         if (record.getFlag() == Flag.VALID) {
             convertedRecord = convertValidRecord(record);
         }
+        else if (record.getFlag() == latestRecord.getFlag()) {
+            convertedRecord = latestRecord;
+        }
         else {
             convertedRecord = new Record(latestRecord.getValue(), latestRecord.getTimestamp(), record.getFlag());
         }
@@ -303,56 +325,19 @@ public final class ChannelImpl implements Channel {
     }
 
     private Record convertValidRecord(Record record) {
-        Double scalingFactor = config.getScalingFactor();
-        Double scalingOffset = config.getValueOffset();
-
-        if (scalingFactor != null) {
-            try {
-                record = new Record(new DoubleValue(record.getValue().asDouble() * scalingFactor),
-                        record.getTimestamp(), record.getFlag());
-            } catch (TypeConversionException e) {
-                String msg = "Unable to apply scaling factor to channel " + config.getId()
-                        + " because a TypeConversionError occurred.";
-                logger.error(msg, e);
-            }
-        }
-        if (scalingOffset != null) {
-            try {
-                record = new Record(new DoubleValue(record.getValue().asDouble() + scalingOffset),
-                        record.getTimestamp(), record.getFlag());
-            } catch (TypeConversionException e) {
-                String msg = "Unable to apply scaling offset to channel " + config.getId()
-                        + " because a TypeConversionError occurred.";
-                logger.error(msg, e);
-            }
+        ValueConverter converter = valueConverter;
+        if (converter == null || converter.config != config) {
+            converter = new ValueConverter(config);
+            valueConverter = converter;
         }
 
         try {
-            switch (config.getValueType()) {
-            case BOOLEAN:
-                return new Record(new BooleanValue(record.getValue().asBoolean()), record.getTimestamp(),
-                        record.getFlag());
-            case BYTE:
-                return new Record(new ByteValue(record.getValue().asByte()), record.getTimestamp(), record.getFlag());
-            case SHORT:
-                return new Record(new ShortValue(record.getValue().asShort()), record.getTimestamp(), record.getFlag());
-            case INTEGER:
-                return new Record(new IntValue(record.getValue().asInt()), record.getTimestamp(), record.getFlag());
-            case LONG:
-                return new Record(new LongValue(record.getValue().asLong()), record.getTimestamp(), record.getFlag());
-            case FLOAT:
-                return new Record(new FloatValue(record.getValue().asFloat()), record.getTimestamp(), record.getFlag());
-            case DOUBLE:
-                return new Record(new DoubleValue(record.getValue().asDouble()), record.getTimestamp(),
-                        record.getFlag());
-            case BYTE_ARRAY:
-                return new Record(new ByteArrayValue(record.getValue().asByteArray()), record.getTimestamp(),
-                        record.getFlag());
-            case STRING:
-            default:
-                return new Record(new StringValue(record.getValue().toString()), record.getTimestamp(),
-                        record.getFlag());
+            Value value = record.getValue();
+            Value convertedValue = converter.convert(value);
+            if (convertedValue == value) {
+                return record;
             }
+            return new Record(convertedValue, record.getTimestamp(), record.getFlag());
         } catch (TypeConversionException e) {
             logger.error("Unable to convert value to configured value type because a TypeConversionError occured.", e);
             return new Record(Flag.DRIVER_ERROR_CHANNEL_VALUE_TYPE_CONVERSION_EXCEPTION);
@@ -360,16 +345,10 @@ public final class ChannelImpl implements Channel {
     }
 
     private void notifyListeners() {
-        if (listeners.isEmpty()) {
-            return;
-        }
-
-        synchronized (listeners) {
-            for (RecordListener listener : listeners) {
-                config.deviceParent.device.dataManager.executor.execute(new ListenerNotifier(listener, latestRecord));
-            }
+        Record record = latestRecord;
+        for (RecordNotifier.Subscriber subscriber : listeners) {
+            subscriber.newRecord(this, record);
         }
-
     }
 
     ChannelRecordContainerImpl createChannelRecordContainer() {
@@ -409,7 +388,6 @@ public final class ChannelImpl implements Channel {
             recordContainer.setRecord(record);
             recordContainers.add(recordContainer);
             dataManager.newRecords(recordContainers);
-            dataManager.interrupt();
             return record.getFlag();
         }
 
@@ -433,11 +411,9 @@ public final class ChannelImpl implements Channel {
         WriteTask writeTask = new WriteTask(dataManager, config.deviceParent.device, writeValueContainerList,
                 writeTaskFinishedSignal);
 
-        synchronized (dataManager.newWriteTasks) {
-            dataManager.newWriteTasks.add(writeTask);
-        }
+        dataManager.newWriteTasks.add(writeTask);
 
-        dataManager.interrupt();
+        dataManager.wakeUp();
         try {
             writeTaskFinishedSignal.await();
         } catch (InterruptedException e) {
@@ -502,10 +478,8 @@ public final class ChannelImpl implements Channel {
 
         ReadTask readTask = new ReadTask(dataManager, config.deviceParent.device, readValueContainerList,
                 readTaskFinishedSignal);
-        synchronized (dataManager.newReadTasks) {
-            dataManager.newReadTasks.add(readTask);
-        }
-        dataManager.interrupt();
+        dataManager.newReadTasks.add(readTask);
+        dataManager.wakeUp();
 
         try {
             readTaskFinishedSignal.await();
@@ -51,42 +51,32 @@ public final class ConnectTask extends DeviceTask {
             logger.warn("Unable to connect to device {} because {}.\nWill try again in {} ms.",
                     device.deviceConfig.getId(), e.getMessage(), device.deviceConfig.getConnectRetryInterval());
             logger.debug("Trace", e);
-            synchronized (dataManager.connectionFailures) {
-                dataManager.connectionFailures.add(device);
-            }
-            dataManager.interrupt();
+            dataManager.connectionFailures.add(device);
+            dataManager.wakeUp();
             return;
         } catch (ArgumentSyntaxException e) {
             logger.warn(
                     "Unable to connect to device {} because the address or settings syntax is incorrect: {}.\nWill try again in {} ms.",
                     device.deviceConfig.getId(), e.getMessage(), device.deviceConfig.getConnectRetryInterval());
-            synchronized (dataManager.connectionFailures) {
-                dataManager.connectionFailures.add(device);
-            }
-            dataManager.interrupt();
+            dataManager.connectionFailures.add(device);
+            dataManager.wakeUp();
             return;
         } catch (Exception e) {
             logger.warn("unexpected exception thrown by connect function of driver", e);
-            synchronized (dataManager.connectionFailures) {
-                dataManager.connectionFailures.add(device);
-            }
-            dataManager.interrupt();
+            dataManager.connectionFailures.add(device);
+            dataManager.wakeUp();
             return;
         }
 
         if (device.connection == null) {
             logger.error("Drivers connect() function returned null");
-            synchronized (dataManager.connectionFailures) {
-                dataManager.connectionFailures.add(device);
-            }
-            dataManager.interrupt();
+            dataManager.connectionFailures.add(device);
+            dataManager.wakeUp();
             return;
         }
 
-        synchronized (dataManager.connectedDevices) {
-            dataManager.connectedDevices.add(device);
-        }
-        dataManager.interrupt();
+        dataManager.connectedDevices.add(device);
+        dataManager.wakeUp();
 
     }
 
@@ -31,15 +31,19 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
@@ -99,27 +103,40 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @Component(service = { DataAccessService.class, ConfigService.class }, immediate = true, property = {
-        CommandProcessor.COMMAND_SCOPE + ":String=openmuc", CommandProcessor.COMMAND_FUNCTION + ":String=reload" })
+        CommandProcessor.COMMAND_SCOPE + ":String=openmuc", CommandProcessor.COMMAND_FUNCTION + ":String=reload",
+        CommandProcessor.COMMAND_FUNCTION + ":String=stats" })
 public final class DataManager extends Thread implements DataAccessService, ConfigService, RecordsReceivedListener {
 
     private static final String DEFAULT_CONF_FILE = "conf/channels.xml";
+    private static final String INBOX_CAPACITY_PROPERTY = "org.openmuc.framework.datamanager.inboxCapacity";
+    private static final String INBOX_OVERFLOW_POLICY_PROPERTY = "org.openmuc.framework.datamanager.inboxOverflowPolicy";
+    private static final String LISTENER_THREADS_PROPERTY = "org.openmuc.framework.datamanager.listenerThreads";
+    private static final int DEFAULT_INBOX_CAPACITY = 16384;
 
     private static final Logger logger = LoggerFactory.getLogger(DataManager.class);
-    final LinkedList<Device> connectedDevices = new LinkedList<>();
-    final LinkedList<Device> disconnectedDevices = new LinkedList<>();
-    final LinkedList<Device> connectionFailures = new LinkedList<>();
-    final LinkedList<SamplingTask> samplingTaskFinished = new LinkedList<>();
-    final LinkedList<WriteTask> newWriteTasks = new LinkedList<>();
-    final LinkedList<ReadTask> newReadTasks = new LinkedList<>();
-    final LinkedList<DeviceTask> tasksFinished = new LinkedList<>();
+    final Queue<Device> connectedDevices = new ConcurrentLinkedQueue<>();
+    final Queue<Device> disconnectedDevices = new ConcurrentLinkedQueue<>();
+    final Queue<Device> connectionFailures = new ConcurrentLinkedQueue<>();
+    final Queue<SamplingTask> samplingTaskFinished = new ConcurrentLinkedQueue<>();
+    final Queue<WriteTask> newWriteTasks = new ConcurrentLinkedQueue<>();
+    final Queue<ReadTask> newReadTasks = new ConcurrentLinkedQueue<>();
+    final Queue<DeviceTask> tasksFinished = new ConcurrentLinkedQueue<>();
     private final HashMap<String, DriverService> newDrivers = new LinkedHashMap<>();
     private final HashMap<String, ServerService> serverServices = new HashMap<>();
     private final Map<String, DriverService> activeDrivers = new LinkedHashMap<>();
-    private final LinkedList<Action> actions = new LinkedList<>();
+    private final ActionScheduler actions = new ActionScheduler();
     private final List<ConfigChangeListener> configChangeListeners = new LinkedList<>();
     private final List<DataLoggerService> newDataLoggers = new LinkedList<>();
     private final Deque<DataLoggerService> activeDataLoggers = new LinkedBlockingDeque<>();
-    private final LinkedList<List<ChannelRecordContainer>> receivedRecordContainers = new LinkedList<>();
+    private final LoggingController loggingController = new LoggingController(activeDataLoggers);
+    private final EventInbox<List<ChannelRecordContainer>> receivedRecordContainers = new EventInbox<>(
+            intProperty(INBOX_CAPACITY_PROPERTY, DEFAULT_INBOX_CAPACITY), inboxOverflowPolicy(), this);
+    final RecordNotifier recordNotifier = new RecordNotifier(intProperty(LISTENER_THREADS_PROPERTY,
+            Math.max(2, Runtime.getRuntime().availableProcessors())));
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean(false);
+    private final AtomicLong wakeUpCount = new AtomicLong();
+    private long statsWakeUpCount = 0;
+    private long statsTimestamp = System.currentTimeMillis();
     private final ReentrantLock configLock = new ReentrantLock();
     CountDownLatch dataLoggerRemovedSignal;
     volatile int activeDeviceCountDown;
@@ -199,20 +216,74 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         }
     }
 
+    /**
+     * Prints statistics about the event inbox, the executors, the listener notification and the logging pipelines of
+     * the data manager. Registered as shell command.
+     *
+     * @return the statistics
+     */
+    public String stats() {
+        long now = System.currentTimeMillis();
+        long wakeUps = wakeUpCount.get();
+        double wakeUpsPerSecond;
+        synchronized (wakeUpCount) {
+            long elapsed = Math.max(1, now - statsTimestamp);
+            wakeUpsPerSecond = (wakeUps - statsWakeUpCount) * 1000d / elapsed;
+            statsWakeUpCount = wakeUps;
+            statsTimestamp = now;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("inbox depth: %d/%d%n", receivedRecordContainers.size(),
+                receivedRecordContainers.capacity()));
+        sb.append(String.format("inbox overflow policy: %s%n", receivedRecordContainers.getOverflowPolicy()));
+        sb.append(String.format("inbox dropped events: %d%n", receivedRecordContainers.getDroppedCount()));
+        sb.append(String.format("wake ups: %d (%.1f/s since last call)%n", wakeUps, wakeUpsPerSecond));
+        sb.append(String.format("shared executor: threads: %d, active: %d, completed: %d%n", executor.getPoolSize(),
+                executor.getActiveCount(), executor.getCompletedTaskCount()));
+        for (DriverConfigImpl driverConfig : rootConfig.driverConfigsById.values()) {
+            if (driverConfig.taskExecutor != null) {
+                sb.append(driverConfig.taskExecutor).append(String.format("%n"));
+            }
+        }
+        sb.append(recordNotifier).append(String.format("%n"));
+        sb.append(loggingController.stats());
+        return sb.toString();
+    }
+
     @Deactivate
     private void deactivate() {
         logger.info("Deactivating Data Manager");
 
         stopFlag = true;
-        interrupt();
+        receivedRecordContainers.close();
+        wakeUp();
         try {
             this.join();
             executor.shutdown();
+            recordNotifier.shutdown();
+            loggingController.shutdown();
+            for (DriverConfigImpl driverConfig : rootConfig.driverConfigsById.values()) {
+                if (driverConfig.taskExecutor != null) {
+                    driverConfig.taskExecutor.shutdown();
+                }
+            }
         } catch (InterruptedException e) {
         }
         dataManagerActivated = false;
     }
 
+    /**
+     * Wakes up the data manager thread so that it handles newly queued events. Calls are coalesced until the thread
+     * has woken up.
+     */
+    void wakeUp() {
+        if (wakeUpPending.compareAndSet(false, true)) {
+            wakeUpCount.incrementAndGet();
+            LockSupport.unpark(this);
+        }
+    }
+
     @Override
     public void run() {
 
@@ -221,20 +292,14 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
         while (!stopFlag) {
 
-            if (interrupted()) {
+            if (wakeUpPending.getAndSet(false)) {
                 handleInterruptEvent();
                 continue;
             }
 
             if (actions.isEmpty()) {
-                try {
-                    while (true) {
-                        Thread.sleep(Long.MAX_VALUE);
-                    }
-                } catch (InterruptedException e) {
-                    handleInterruptEvent();
-                    continue;
-                }
+                LockSupport.park(this);
+                continue;
             }
 
             Action currentAction = actions.getFirst();
@@ -250,12 +315,9 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
             long sleepTime = currentAction.startTime - currentTime;
             if (sleepTime > 0) {
-                try {
-                    Thread.sleep(sleepTime);
-                } catch (InterruptedException e) {
-                    handleInterruptEvent();
-                    continue;
-                }
+                // returns early on wake up, the loop then handles the events before checking the action again
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(sleepTime));
+                continue;
             }
             actions.removeFirst();
 
@@ -263,12 +325,15 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 triggerTimeouts(currentAction.timeouts);
             }
 
-            LoggingController loggingController = new LoggingController(activeDataLoggers);
-
             if (loggingController.channelsHaveToBeLogged(currentAction)) {
                 for (Optional<ChannelCollection> collection : loggingController.triggerLogging(currentAction)) {
                     handleStillFilledChannels(collection, currentAction);
                 }
+                for (ChannelCollection loggingCollection : currentAction.loggingCollections) {
+                    if (loggingCollection.channels.isEmpty()) {
+                        actions.forgetLoggingCollection(loggingCollection);
+                    }
+                }
             }
 
             if (currentAction.connectionRetryDevices != null && !currentAction.connectionRetryDevices.isEmpty()) {
@@ -349,134 +414,19 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     }
 
     private void addSamplingCollectionToActions(ChannelCollection channelCollection, long startTimestamp) {
-
-        Action fittingAction = null;
-
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == startTimestamp) {
-                fittingAction = currentAction;
-                if (fittingAction.samplingCollections == null) {
-                    fittingAction.samplingCollections = new LinkedList<>();
-                }
-                break;
-            }
-            else if (currentAction.startTime > startTimestamp) {
-                fittingAction = new Action(startTimestamp);
-                fittingAction.samplingCollections = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
-                break;
-            }
-        }
-
-        if (fittingAction == null) {
-            fittingAction = new Action(startTimestamp);
-            fittingAction.samplingCollections = new LinkedList<>();
-            actions.add(fittingAction);
-        }
-
-        fittingAction.samplingCollections.add(channelCollection);
-        channelCollection.action = fittingAction;
-
+        actions.addSamplingCollection(channelCollection, startTimestamp);
     }
 
     private void addLoggingCollectionToActions(ChannelCollection channelCollection, long startTimestamp) {
-
-        Action fittingAction = null;
-
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == startTimestamp) {
-                fittingAction = currentAction;
-                if (fittingAction.loggingCollections == null) {
-                    fittingAction.loggingCollections = new LinkedList<>();
-                }
-                break;
-            }
-            else if (currentAction.startTime > startTimestamp) {
-                fittingAction = new Action(startTimestamp);
-                fittingAction.loggingCollections = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
-                break;
-            }
-        }
-
-        if (fittingAction == null) {
-            fittingAction = new Action(startTimestamp);
-            fittingAction.loggingCollections = new LinkedList<>();
-            actions.add(fittingAction);
-        }
-
-        fittingAction.loggingCollections.add(channelCollection);
-        channelCollection.action = fittingAction;
+        actions.addLoggingCollection(channelCollection, startTimestamp);
     }
 
     void addReconnectDeviceToActions(Device device, long startTimestamp) {
-        Action fittingAction = null;
-
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == startTimestamp) {
-                fittingAction = currentAction;
-                if (fittingAction.connectionRetryDevices == null) {
-                    fittingAction.connectionRetryDevices = new LinkedList<>();
-                }
-                break;
-            }
-
-            if (currentAction.startTime > startTimestamp) {
-                fittingAction = new Action(startTimestamp);
-                fittingAction.connectionRetryDevices = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
-                break;
-            }
-        }
-
-        if (fittingAction == null) {
-            fittingAction = new Action(startTimestamp);
-            fittingAction.connectionRetryDevices = new LinkedList<>();
-            actions.add(fittingAction);
-        }
-
-        fittingAction.connectionRetryDevices.add(device);
+        actions.addConnectionRetry(device, startTimestamp);
     }
 
     private void addSamplingWorkerTimeoutToActions(SamplingTask readWorker, long timeout) {
-
-        Action fittingAction = null;
-
-        ListIterator<Action> actionIterator = actions.listIterator();
-        while (actionIterator.hasNext()) {
-            Action currentAction = actionIterator.next();
-            if (currentAction.startTime == timeout) {
-                fittingAction = currentAction;
-                if (fittingAction.timeouts == null) {
-                    fittingAction.timeouts = new LinkedList<>();
-                }
-                break;
-            }
-            else if (currentAction.startTime > timeout) {
-                fittingAction = new Action(timeout);
-                fittingAction.timeouts = new LinkedList<>();
-                actionIterator.previous();
-                actionIterator.add(fittingAction);
-                break;
-            }
-        }
-
-        if (fittingAction == null) {
-            fittingAction = new Action(timeout);
-            fittingAction.timeouts = new LinkedList<>();
-            actions.add(fittingAction);
-        }
-
-        fittingAction.timeouts.add(readWorker);
+        actions.addSamplingTimeout(readWorker, timeout);
     }
 
     private void handleInterruptEvent() {
@@ -495,39 +445,31 @@ public final class DataManager extends Thread implements DataAccessService, Conf
             newConfigSignal.countDown();
         }
 
-        synchronized (receivedRecordContainers) {
-            List<ChannelRecordContainer> recordContainers;
-            LoggingController loggingController = new LoggingController(activeDataLoggers);
-            List<ChannelRecordContainerImpl> channelRecordContainerList = new ArrayList<>();
-            while ((recordContainers = receivedRecordContainers.poll()) != null) {
-                recordContainers.stream()
-                        .map(recContainer -> (ChannelRecordContainerImpl) recContainer)
-                        .filter(containerImpl -> containerImpl.getChannel().getChannelState() == ChannelState.LISTENING
-                                || containerImpl.getChannel().getDriverName().equals("virtual"))
-                        .forEach(containerImpl -> {
-                            containerImpl.getChannel().setNewRecord(containerImpl.getRecord());
-                            if (containerImpl.getChannel().isLoggingEvent()) {
-                                channelRecordContainerList.add(containerImpl);
-                            }
-                        });
-            }
-            loggingController.deliverLogsToEventBasedLogServices(channelRecordContainerList);
+        List<ChannelRecordContainer> recordContainers;
+        List<ChannelRecordContainerImpl> channelRecordContainerList = new ArrayList<>();
+        while ((recordContainers = receivedRecordContainers.poll()) != null) {
+            recordContainers.stream()
+                    .map(recContainer -> (ChannelRecordContainerImpl) recContainer)
+                    .filter(containerImpl -> containerImpl.getChannel().getChannelState() == ChannelState.LISTENING
+                            || containerImpl.getChannel().getDriverName().equals("virtual"))
+                    .forEach(containerImpl -> {
+                        containerImpl.getChannel().setNewRecord(containerImpl.getRecord());
+                        if (containerImpl.getChannel().isLoggingEvent()) {
+                            channelRecordContainerList.add(containerImpl);
+                        }
+                    });
         }
+        loggingController.deliverLogsToEventBasedLogServices(channelRecordContainerList);
 
-        synchronized (samplingTaskFinished) {
-            SamplingTask samplingTask;
-            while ((samplingTask = samplingTaskFinished.poll()) != null) {
-                samplingTask.storeValues();
-                samplingTask.device.taskFinished();
-            }
+        SamplingTask samplingTask;
+        while ((samplingTask = samplingTaskFinished.poll()) != null) {
+            samplingTask.storeValues();
+            samplingTask.device.taskFinished();
         }
 
-        synchronized (tasksFinished) {
-            DeviceTask deviceTask;
-            while ((deviceTask = tasksFinished.poll()) != null) {
-                deviceTask.device.taskFinished();
-
-            }
+        DeviceTask deviceTask;
+        while ((deviceTask = tasksFinished.poll()) != null) {
+            deviceTask.device.taskFinished();
         }
 
         synchronized (newDrivers) {
@@ -609,43 +551,31 @@ public final class DataManager extends Thread implements DataAccessService, Conf
             if (!activeDataLoggers.remove(dataLoggerToBeRemoved)) {
                 newDataLoggers.remove(dataLoggerToBeRemoved);
             }
+            loggingController.removeDataLogger(dataLoggerToBeRemoved);
             dataLoggerToBeRemoved = null;
             dataLoggerRemovedSignal.countDown();
         }
 
-        synchronized (connectionFailures) {
-            if (currentTime == 0) {
-                currentTime = System.currentTimeMillis();
-            }
-            Device connectionFailureDevice;
-            while ((connectionFailureDevice = connectionFailures.poll()) != null) {
-                connectionFailureDevice.connectFailureSignal(currentTime);
-            }
+        if (currentTime == 0) {
+            currentTime = System.currentTimeMillis();
         }
-
-        synchronized (connectedDevices) {
-            if (currentTime == 0) {
-                currentTime = System.currentTimeMillis();
-            }
-            Device connectedDevice;
-            while ((connectedDevice = connectedDevices.poll()) != null) {
-                connectedDevice.connectedSignal(currentTime);
-            }
+        Device connectionFailureDevice;
+        while ((connectionFailureDevice = connectionFailures.poll()) != null) {
+            connectionFailureDevice.connectFailureSignal(currentTime);
         }
 
-        synchronized (newWriteTasks) {
-            addTasksAndClear(newWriteTasks);
+        Device connectedDevice;
+        while ((connectedDevice = connectedDevices.poll()) != null) {
+            connectedDevice.connectedSignal(currentTime);
         }
 
-        synchronized (newReadTasks) {
-            addTasksAndClear(newReadTasks);
-        }
+        addTasksAndClear(newWriteTasks);
 
-        synchronized (disconnectedDevices) {
-            Device connectedDevice;
-            while ((connectedDevice = disconnectedDevices.poll()) != null) {
-                connectedDevice.disconnectedSignal();
-            }
+        addTasksAndClear(newReadTasks);
+
+        Device disconnectedDevice;
+        while ((disconnectedDevice = disconnectedDevices.poll()) != null) {
+            disconnectedDevice.disconnectedSignal();
         }
 
     }
@@ -663,10 +593,22 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
         List<LogChannel> logChannels = new LinkedList<>();
 
+        List<DriverExecutor> obsoleteExecutors = new LinkedList<>();
+
         for (DriverConfigImpl oldDriverConfig : rootConfig.driverConfigsById.values()) {
             DriverConfigImpl newDriverConfig = newRootConfig.driverConfigsById.get(oldDriverConfig.id);
             if (newDriverConfig != null) {
                 newDriverConfig.activeDriver = oldDriverConfig.activeDriver;
+                if (oldDriverConfig.taskExecutor != null && oldDriverConfig.taskExecutor.matches(newDriverConfig)) {
+                    newDriverConfig.taskExecutor = oldDriverConfig.taskExecutor;
+                }
+                else {
+                    newDriverConfig.taskExecutor = DriverExecutor.create(newDriverConfig, executor);
+                }
+            }
+            if (oldDriverConfig.taskExecutor != null
+                    && (newDriverConfig == null || newDriverConfig.taskExecutor != oldDriverConfig.taskExecutor)) {
+                obsoleteExecutors.add(oldDriverConfig.taskExecutor);
             }
             for (DeviceConfigImpl oldDeviceConfig : oldDriverConfig.deviceConfigsById.values()) {
                 DeviceConfigImpl newDeviceConfig = null;
@@ -688,6 +630,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
             DriverConfigImpl oldDriverConfig = rootConfig.driverConfigsById.get(newDriverConfig.id);
             if (oldDriverConfig == null) {
                 newDriverConfig.activeDriver = activeDrivers.get(newDriverConfig.id);
+                newDriverConfig.taskExecutor = DriverExecutor.create(newDriverConfig, executor);
             }
             for (DeviceConfigImpl newDeviceConfig : newDriverConfig.deviceConfigsById.values()) {
 
@@ -721,7 +664,13 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
         }
 
+        // tasks that are still queued are executed before the threads terminate
+        for (DriverExecutor obsoleteExecutor : obsoleteExecutors) {
+            obsoleteExecutor.shutdown();
+        }
+
         updateLogChannelsInDataLoggers(logChannels);
+        loggingController.invalidate();
 
         newRootConfig.logChannels = logChannels;
 
@@ -754,7 +703,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
     private void setLoggerSpecific(DataLoggerService dataLogger, List<LogChannel> logChannels) {
         List<LogChannel> specificLogChannels = filterLogChannelsForSpecificLogger(dataLogger.getId(), logChannels);
-        dataLogger.setChannelsToLog(specificLogChannels);
+        loggingController.setChannelsToLog(dataLogger, specificLogChannels);
     }
 
     private void setLoggerSpecificAndWithoutSettings(DataLoggerService dataLogger, List<LogChannel> logChannels) {
@@ -765,7 +714,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 .collect(Collectors.toList());
 
         specificLogChannels.addAll(logChannelsWithoutLoggingSettings);
-        dataLogger.setChannelsToLog(logChannelsWithoutLoggingSettings);
+        loggingController.setChannelsToLog(dataLogger, logChannelsWithoutLoggingSettings);
     }
 
     private List<LogChannel> filterLogChannelsForSpecificLogger(String loggerId, List<LogChannel> logChannels) {
@@ -787,20 +736,8 @@ public final class DataManager extends Thread implements DataAccessService, Conf
 
     void addToSamplingCollections(ChannelImpl channel, Long time) {
 
-        ChannelCollection fittingSamplingCollection = null;
-        for (Action action : actions) {
-            if (action.samplingCollections != null) {
-                for (ChannelCollection samplingCollection : action.samplingCollections) {
-                    if (samplingCollection.interval == channel.getSamplingInterval()
-                            && samplingCollection.timeOffset == channel.getSamplingTimeOffset()
-                            && samplingCollection.samplingGroup.equals(channel.config.getSamplingGroup())
-                            && samplingCollection.device == channel.config.deviceParent.device) {
-                        fittingSamplingCollection = samplingCollection;
-                        break;
-                    }
-                }
-            }
-        }
+        ChannelCollection fittingSamplingCollection = actions.getSamplingCollection(channel.getSamplingInterval(),
+                channel.getSamplingTimeOffset(), channel.config.getSamplingGroup(), channel.config.deviceParent.device);
 
         if (fittingSamplingCollection == null) {
             fittingSamplingCollection = new ChannelCollection(channel.getSamplingInterval(),
@@ -823,18 +760,8 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     }
 
     void addToLoggingCollections(ChannelImpl channel, Long time) {
-        ChannelCollection fittingLoggingCollection = null;
-        for (Action action : actions) {
-            if (action.loggingCollections != null) {
-                for (ChannelCollection loggingCollection : action.loggingCollections) {
-                    if (loggingCollection.interval == channel.getLoggingInterval()
-                            && loggingCollection.timeOffset == channel.getLoggingTimeOffset()) {
-                        fittingLoggingCollection = loggingCollection;
-                        break;
-                    }
-                }
-            }
-        }
+        ChannelCollection fittingLoggingCollection = actions.getLoggingCollection(channel.getLoggingInterval(),
+                channel.getLoggingTimeOffset());
         if (fittingLoggingCollection == null) {
             fittingLoggingCollection = new ChannelCollection(channel.getLoggingInterval(),
                     channel.getLoggingTimeOffset(), null, null);
@@ -852,13 +779,15 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         }
 
         fittingLoggingCollection.channels.add(channel);
+        fittingLoggingCollection.loggingRoute = null;
         channel.loggingCollection = fittingLoggingCollection;
     }
 
     void removeFromLoggingCollections(ChannelImpl channel) {
         channel.loggingCollection.channels.remove(channel);
+        channel.loggingCollection.loggingRoute = null;
         if (channel.loggingCollection.channels.isEmpty()) {
-            channel.loggingCollection.action.loggingCollections.remove(channel.loggingCollection);
+            actions.removeLoggingCollection(channel.loggingCollection);
         }
         channel.loggingCollection = null;
     }
@@ -866,18 +795,14 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     void removeFromSamplingCollections(ChannelImpl channel) {
         channel.samplingCollection.channels.remove(channel);
         if (channel.samplingCollection.channels.isEmpty()) {
-            channel.samplingCollection.action.samplingCollections.remove(channel.samplingCollection);
+            actions.removeSamplingCollection(channel.samplingCollection);
         }
 
         channel.samplingCollection = null;
     }
 
     void removeFromConnectionRetry(Device device) {
-        for (Action action : actions) {
-            if (action.connectionRetryDevices != null && action.connectionRetryDevices.remove(device)) {
-                break;
-            }
-        }
+        actions.removeConnectionRetry(device);
     }
 
     @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
@@ -891,7 +816,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
                 return;
             }
             newDrivers.put(driverId, driver);
-            interrupt();
+            wakeUp();
         }
     }
 
@@ -964,7 +889,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         if (dataManagerActivated) {
             driverToBeRemovedId = driverId;
             driverRemovedSignal = new CountDownLatch(1);
-            interrupt();
+            wakeUp();
             try {
                 driverRemovedSignal.await();
             } catch (InterruptedException e) {
@@ -982,7 +907,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
     void bindDataLoggerService(DataLoggerService dataLogger) {
         synchronized (newDataLoggers) {
             newDataLoggers.add(dataLogger);
-            interrupt();
+            wakeUp();
         }
     }
 
@@ -995,7 +920,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         if (dataManagerActivated) {
             dataLoggerRemovedSignal = new CountDownLatch(1);
             dataLoggerToBeRemoved = dataLogger;
-            interrupt();
+            wakeUp();
             try {
                 dataLoggerRemovedSignal.await();
             } catch (InterruptedException e) {
@@ -1053,11 +978,11 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         for (ChannelRecordContainer container : recordContainers) {
             recordContainersCopy.add(container.copy());
         }
-        synchronized (receivedRecordContainers) {
-            receivedRecordContainers.add(recordContainersCopy);
+        if (!receivedRecordContainers.put(recordContainersCopy)) {
+            logger.debug("Event inbox of the data manager is full. Dropped received records.");
         }
 
-        interrupt();
+        wakeUp();
 
     }
 
@@ -1149,7 +1074,7 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         synchronized (this) {
             newConfigSignal = new CountDownLatch(1);
             newRootConfigWithoutDefaults = newConfigCopy;
-            interrupt();
+            wakeUp();
         }
         while (true) {
             try {
@@ -1293,14 +1218,12 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         }
         CountDownLatch writeTasksFinishedSignal = new CountDownLatch(containersByDevice.size());
 
-        synchronized (newWriteTasks) {
-            for (Entry<Device, List<WriteValueContainerImpl>> writeValueContainers : containersByDevice.entrySet()) {
-                WriteTask writeTask = new WriteTask(this, writeValueContainers.getKey(),
-                        writeValueContainers.getValue(), writeTasksFinishedSignal);
-                newWriteTasks.add(writeTask);
-            }
+        for (Entry<Device, List<WriteValueContainerImpl>> writeValueContainers : containersByDevice.entrySet()) {
+            WriteTask writeTask = new WriteTask(this, writeValueContainers.getKey(), writeValueContainers.getValue(),
+                    writeTasksFinishedSignal);
+            newWriteTasks.add(writeTask);
         }
-        interrupt();
+        wakeUp();
 
         try {
             writeTasksFinishedSignal.await();
@@ -1330,15 +1253,12 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         }
         CountDownLatch readTasksFinishedSignal = new CountDownLatch(containersByDevice.size());
 
-        synchronized (newReadTasks) {
-            for (Entry<Device, List<ChannelRecordContainerImpl>> channelRecordContainers : containersByDevice
-                    .entrySet()) {
-                ReadTask readTask = new ReadTask(this, channelRecordContainers.getKey(),
-                        channelRecordContainers.getValue(), readTasksFinishedSignal);
-                newReadTasks.add(readTask);
-            }
+        for (Entry<Device, List<ChannelRecordContainerImpl>> channelRecordContainers : containersByDevice.entrySet()) {
+            ReadTask readTask = new ReadTask(this, channelRecordContainers.getKey(), channelRecordContainers.getValue(),
+                    readTasksFinishedSignal);
+            newReadTasks.add(readTask);
         }
-        interrupt();
+        wakeUp();
 
         try {
             readTasksFinishedSignal.await();
@@ -1390,6 +1310,36 @@ public final class DataManager extends Thread implements DataAccessService, Conf
         return deviceConfig.device.getState();
     }
 
+    static int intProperty(String propertyName, int defaultValue) {
+        String value = System.getProperty(propertyName);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int intValue = Integer.parseInt(value.trim());
+            if (intValue > 0) {
+                return intValue;
+            }
+        } catch (NumberFormatException e) {
+        }
+        logger.warn("Invalid value for {}: {}. Using default {}.", propertyName, value, defaultValue);
+        return defaultValue;
+    }
+
+    private static EventInbox.OverflowPolicy inboxOverflowPolicy() {
+        String policy = System.getProperty(INBOX_OVERFLOW_POLICY_PROPERTY);
+        if (policy == null) {
+            return EventInbox.OverflowPolicy.BLOCK;
+        }
+        try {
+            return EventInbox.OverflowPolicy.valueOf(policy.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid value for {}: {}. Using default {}.", INBOX_OVERFLOW_POLICY_PROPERTY, policy,
+                    EventInbox.OverflowPolicy.BLOCK);
+            return EventInbox.OverflowPolicy.BLOCK;
+        }
+    }
+
     class BlockingScanListener implements DriverDeviceScanListener {
         List<DeviceScanInfo> scanInfos = new ArrayList<>();
 
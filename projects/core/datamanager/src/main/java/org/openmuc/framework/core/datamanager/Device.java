@@ -25,6 +25,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
 
 import org.openmuc.framework.config.ChannelConfig;
 import org.openmuc.framework.data.Flag;
@@ -543,10 +544,18 @@ public final class Device {
                 dataManager);
         taskList.add(connectTask);
         if (containsOneTask()) {
-            dataManager.executor.execute(connectTask);
+            taskExecutor().execute(connectTask);
         }
     }
 
+    private Executor taskExecutor() {
+        DriverExecutor driverExecutor = deviceConfig.driverParent.taskExecutor;
+        if (driverExecutor != null) {
+            return driverExecutor;
+        }
+        return dataManager.executor;
+    }
+
     private boolean containsOneTask() {
         return taskList.size() == 1;
     }
@@ -556,7 +565,7 @@ public final class Device {
                 dataManager);
         taskList.add(disconnectTask);
         if (containsOneTask()) {
-            dataManager.executor.execute(disconnectTask);
+            taskExecutor().execute(disconnectTask);
         }
     }
 
@@ -578,7 +587,7 @@ public final class Device {
             if (containsOneTask()) {
                 samplingTask.running = true;
                 state = DeviceState.READING;
-                dataManager.executor.execute(samplingTask);
+                taskExecutor().execute(samplingTask);
             }
             return true;
         }
@@ -594,7 +603,7 @@ public final class Device {
             taskList.add(deviceTask);
             if (containsOneTask()) {
                 state = deviceTask.getType().getResultingState();
-                dataManager.executor.execute(deviceTask);
+                taskExecutor().execute(deviceTask);
             }
         }
         else {
@@ -620,7 +629,7 @@ public final class Device {
                 ((SamplingTask) firstTask).startedLate = true;
             }
             state = firstTask.getType().getResultingState();
-            dataManager.executor.execute(firstTask);
+            taskExecutor().execute(firstTask);
         }
         else {
             state = DeviceState.CONNECTED;
@@ -636,7 +645,7 @@ public final class Device {
             taskList.add(startListenTask);
             if (containsOneTask()) {
                 state = DeviceState.STARTING_TO_LISTEN;
-                dataManager.executor.execute(startListenTask);
+                taskExecutor().execute(startListenTask);
             }
         }
     }
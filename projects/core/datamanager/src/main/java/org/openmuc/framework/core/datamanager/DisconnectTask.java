@@ -36,10 +36,8 @@ public final class DisconnectTask extends DeviceTask {
 
         device.connection.disconnect();
 
-        synchronized (dataManager.disconnectedDevices) {
-            dataManager.disconnectedDevices.add(device);
-        }
-        dataManager.interrupt();
+        dataManager.disconnectedDevices.add(device);
+        dataManager.wakeUp();
 
     }
 
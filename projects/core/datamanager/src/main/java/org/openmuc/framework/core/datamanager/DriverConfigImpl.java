@@ -42,12 +42,15 @@ public final class DriverConfigImpl implements DriverConfig {
     Integer samplingTimeout = null;
     Integer connectRetryInterval = null;
     Boolean disabled = null;
+    String executor = null;
+    Integer executorPoolSize = null;
 
     final HashMap<String, DeviceConfigImpl> deviceConfigsById = new LinkedHashMap<>();
 
     RootConfigImpl rootConfigParent;
 
     DriverService activeDriver = null;
+    DriverExecutor taskExecutor = null;
 
     DriverConfigImpl(String id, RootConfigImpl rootConfigParent) {
         this.id = id;
@@ -110,6 +113,34 @@ public final class DriverConfigImpl implements DriverConfig {
         this.disabled = disabled;
     }
 
+    @Override
+    public String getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public void setExecutor(String executor) {
+        if (executor != null && !executor.equals(EXECUTOR_SHARED) && !executor.equals(EXECUTOR_BOUNDED)
+                && !executor.equals(EXECUTOR_VIRTUAL)) {
+            throw new IllegalArgumentException("Unknown executor: " + executor + ". Valid values are "
+                    + EXECUTOR_SHARED + ", " + EXECUTOR_BOUNDED + " and " + EXECUTOR_VIRTUAL);
+        }
+        this.executor = executor;
+    }
+
+    @Override
+    public Integer getExecutorPoolSize() {
+        return executorPoolSize;
+    }
+
+    @Override
+    public void setExecutorPoolSize(Integer poolSize) {
+        if (poolSize != null && poolSize < 1) {
+            throw new IllegalArgumentException("The executor pool size has to be at least 1");
+        }
+        executorPoolSize = poolSize;
+    }
+
     @Override
     public DeviceConfig addDevice(String deviceId) throws IdCollisionException {
 
@@ -198,6 +229,14 @@ public final class DriverConfigImpl implements DriverConfig {
                     String disabledString = childNode.getTextContent();
                     config.disabled = Boolean.parseBoolean(disabledString);
                     break;
+
+                case "executor":
+                    config.setExecutor(childNode.getTextContent().trim().toLowerCase());
+                    break;
+
+                case "executorPoolSize":
+                    config.setExecutorPoolSize(Integer.parseInt(childNode.getTextContent().trim()));
+                    break;
                 default:
                     throw new ParseException("found unknown tag:" + childName);
                 }
@@ -232,6 +271,18 @@ public final class DriverConfigImpl implements DriverConfig {
             parentElement.appendChild(childElement);
         }
 
+        if (executor != null) {
+            childElement = document.createElement("executor");
+            childElement.setTextContent(executor);
+            parentElement.appendChild(childElement);
+        }
+
+        if (executorPoolSize != null) {
+            childElement = document.createElement("executorPoolSize");
+            childElement.setTextContent(executorPoolSize.toString());
+            parentElement.appendChild(childElement);
+        }
+
         for (DeviceConfigImpl deviceConfig : deviceConfigsById.values()) {
             parentElement.appendChild(deviceConfig.getDomElement(document));
         }
@@ -245,6 +296,8 @@ public final class DriverConfigImpl implements DriverConfig {
         configClone.samplingTimeout = samplingTimeout;
         configClone.connectRetryInterval = connectRetryInterval;
         configClone.disabled = disabled;
+        configClone.executor = executor;
+        configClone.executorPoolSize = executorPoolSize;
 
         for (DeviceConfigImpl deviceConfig : deviceConfigsById.values()) {
             configClone.deviceConfigsById.put(deviceConfig.getId(), deviceConfig.clone(configClone));
@@ -276,6 +329,20 @@ public final class DriverConfigImpl implements DriverConfig {
             configClone.disabled = disabled;
         }
 
+        if (executor == null) {
+            configClone.executor = EXECUTOR_DEFAULT;
+        }
+        else {
+            configClone.executor = executor;
+        }
+
+        if (executorPoolSize == null) {
+            configClone.executorPoolSize = EXECUTOR_POOL_SIZE_DEFAULT;
+        }
+        else {
+            configClone.executorPoolSize = executorPoolSize;
+        }
+
         for (DeviceConfigImpl deviceConfig : deviceConfigsById.values()) {
             configClone.deviceConfigsById.put(deviceConfig.getId(), deviceConfig.cloneWithDefaults(configClone));
         }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmuc.framework.config.DriverConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor for the device tasks of a single driver. A slow bus or an unreachable broker can then only block the
+ * threads of its own driver.
+ * <p>
+ * Every device runs at most one task at a time, so the queue of a bounded pool never holds more tasks than the driver
+ * has devices. Tasks rejected because the executor has been shut down during a configuration change are handed over
+ * to the shared pool of the data manager so that the state of the device stays consistent.
+ */
+final class DriverExecutor implements Executor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriverExecutor.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final String driverId;
+    private final String type;
+    private final int poolSize;
+    private final ExecutorService delegate;
+    private final Executor fallback;
+
+    private final AtomicInteger runningCount = new AtomicInteger();
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private DriverExecutor(String driverId, String type, int poolSize, ExecutorService delegate, Executor fallback) {
+        this.driverId = driverId;
+        this.type = type;
+        this.poolSize = poolSize;
+        this.delegate = delegate;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Creates the executor configured for the given driver.
+     *
+     * @param driverConfig
+     *            driver configuration including defaults
+     * @param fallback
+     *            executor used for rejected tasks
+     * @return the new executor or null if the driver uses the shared pool
+     */
+    static DriverExecutor create(DriverConfigImpl driverConfig, Executor fallback) {
+        String type = driverConfig.getExecutor();
+        int poolSize = driverConfig.getExecutorPoolSize();
+
+        if (DriverConfig.EXECUTOR_VIRTUAL.equals(type)) {
+            ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+            if (virtualExecutor != null) {
+                logger.info("Using virtual threads for the devices of driver {}.", driverConfig.id);
+                return new DriverExecutor(driverConfig.id, type, poolSize, virtualExecutor, fallback);
+            }
+            logger.warn("Virtual threads are not supported by this Java runtime. Using a bounded pool of {} threads "
+                    + "for the devices of driver {}.", poolSize, driverConfig.id);
+        }
+        else if (!DriverConfig.EXECUTOR_BOUNDED.equals(type)) {
+            return null;
+        }
+
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new NamedThreadFactory("OpenMUC Data Manager Pool - " + driverConfig.id + " - thread-"));
+        threadPool.allowCoreThreadTimeOut(true);
+        return new DriverExecutor(driverConfig.id, type, poolSize, threadPool, fallback);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factoryMethod.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the executor still fits to the (possibly changed) configuration of its driver.
+     */
+    boolean matches(DriverConfigImpl driverConfig) {
+        return type.equals(driverConfig.getExecutor()) && poolSize == driverConfig.getExecutorPoolSize();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        try {
+            delegate.execute(() -> {
+                runningCount.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    runningCount.decrementAndGet();
+                    executedCount.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            logger.debug("Task of driver {} was rejected, executing it in the shared pool.", driverId);
+            fallback.execute(task);
+        }
+    }
+
+    void shutdown() {
+        delegate.shutdown();
+    }
+
+    int getQueueSize() {
+        if (delegate instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) delegate).getQueue().size();
+        }
+        return 0;
+    }
+
+    int getRunningCount() {
+        return runningCount.get();
+    }
+
+    long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s executor of driver %s: running: %d, queued: %d, executed: %d, rejected: %d", type,
+                driverId, getRunningCount(), getQueueSize(), getExecutedCount(), getRejectedCount());
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free ring buffer used to hand events from driver and worker threads over to the data manager thread.
+ * Any number of threads may offer events concurrently. Each slot carries a sequence number which tells producers and
+ * consumers whether the slot is free or filled, so no locks are needed on either side.
+ * <p>
+ * What happens if the inbox is full is defined by the {@link OverflowPolicy}.
+ *
+ * @param <E>
+ *            the type of the events
+ */
+final class EventInbox<E> {
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    enum OverflowPolicy {
+        /**
+         * The producer waits until the consumer has made room. If the consumer itself offers an event to a full inbox
+         * the oldest event is dropped instead to prevent a dead lock. A waiting producer drops its event once the
+         * inbox has been closed or the producer has been interrupted.
+         */
+        BLOCK,
+        /**
+         * The oldest event in the inbox is dropped in favour of the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * The new event is dropped.
+         */
+        DROP_NEWEST
+    }
+
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final DataManager consumer;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param capacity
+     *            minimum number of events the inbox can hold. It is rounded up to the next power of two, at least
+     *            two.
+     * @param overflowPolicy
+     *            the behaviour if the inbox is full
+     * @param consumer
+     *            the data manager that consumes the events. It is woken up if a producer has to wait.
+     */
+    EventInbox(int capacity, OverflowPolicy overflowPolicy, DataManager consumer) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1 but was " + capacity);
+        }
+        // the sequence numbers can not tell a full from an empty slot with a single slot
+        int size = Math.max(2, Integer.highestOneBit(capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Adds an event according to the overflow policy.
+     *
+     * @param event
+     *            the event to add
+     * @return false if the event or an older one has been dropped
+     */
+    boolean put(E event) {
+        if (offer(event)) {
+            return true;
+        }
+
+        if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+
+        if (overflowPolicy == OverflowPolicy.BLOCK && Thread.currentThread() != consumer) {
+            do {
+                if (closed || Thread.currentThread().isInterrupted()) {
+                    droppedCount.incrementAndGet();
+                    return false;
+                }
+                consumer.wakeUp();
+                LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+            } while (!offer(event));
+            return true;
+        }
+
+        do {
+            if (poll() != null) {
+                droppedCount.incrementAndGet();
+            }
+        } while (!offer(event));
+        return false;
+    }
+
+    /**
+     * Closes the inbox when the consumer stops. Producers waiting for room drop their events instead of waiting
+     * forever.
+     */
+    void close() {
+        closed = true;
+    }
+
+    /**
+     * Adds an event if there is room.
+     *
+     * @param event
+     *            the event to add
+     * @return true if the event was added, false if the inbox is full
+     */
+    boolean offer(E event) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer.set(index, event);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0) {
+                return false;
+            }
+            else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest event.
+     *
+     * @return the oldest event or null if the inbox is empty
+     */
+    E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E event = buffer.get(index);
+                    buffer.set(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return event;
+                }
+                position = head.get();
+            }
+            else if (difference < 0) {
+                return null;
+            }
+            else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return the approximate number of events in the inbox
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+}
@@ -24,29 +24,61 @@ package org.openmuc.framework.core.datamanager;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
-import org.openmuc.framework.data.Record;
-import org.openmuc.framework.dataaccess.Channel;
 import org.openmuc.framework.dataaccess.ChannelState;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Hands the latest records of the logged channels to the data loggers.
+ * <p>
+ * The logging settings of the channels are resolved once into routing tables: every channel knows the indexes of the
+ * data loggers it is logged by and every logging collection knows its channels grouped by data logger. The tables
+ * are rebuilt only after the configuration or the set of active data loggers has changed, so a logging tick just
+ * copies the latest records.
+ * <p>
+ * Unless disabled, every data logger is called by a {@link LoggingPipeline} of its own so that slow data loggers do
+ * not delay the data manager thread.
+ * <p>
+ * Only accessed by the data manager thread.
+ */
 public class LoggingController {
 
     private static final Logger logger = LoggerFactory.getLogger(LoggingController.class);
+    private static final DataLoggerService[] NO_DATA_LOGGERS = new DataLoggerService[0];
+    private static final int[] NO_TARGETS = new int[0];
+    private static final long PIPELINE_CLOSE_TIMEOUT_SECONDS = 5;
+
     private final Deque<DataLoggerService> activeDataLoggers;
-    private Map<String, List<LoggingRecord>> logContainerMap;
+    private final boolean asynchronous;
+    private final Map<DataLoggerService, LoggingPipeline> pipelines = new ConcurrentHashMap<>();
+    private DataLoggerService[] dataLoggers = NO_DATA_LOGGERS;
+    private LoggingPipeline[] dataLoggerPipelines = new LoggingPipeline[0];
+    private int generation;
 
     public LoggingController(Deque<DataLoggerService> activeDataLoggers) {
+        this(activeDataLoggers, LoggingPipeline.isEnabled());
+    }
+
+    LoggingController(Deque<DataLoggerService> activeDataLoggers, boolean asynchronous) {
         this.activeDataLoggers = activeDataLoggers;
+        this.asynchronous = asynchronous;
+    }
+
+    /**
+     * Discards all routing tables. Has to be called whenever the channel configuration has changed.
+     */
+    void invalidate() {
+        generation++;
     }
 
     public boolean channelsHaveToBeLogged(Action currentAction) {
@@ -54,89 +86,237 @@ public class LoggingController {
     }
 
     public List<Optional<ChannelCollection>> triggerLogging(Action currentAction) {
-        initLoggingRecordMap();
-        List<Optional<ChannelCollection>> filledChannels = new ArrayList<>();
+        refreshDataLoggers();
 
+        int[] recordCounts = new int[dataLoggers.length];
         for (ChannelCollection loggingCollection : currentAction.loggingCollections) {
-            List<ChannelImpl> toRemove = new LinkedList<>();
-
-            for (ChannelImpl channel : loggingCollection.channels) {
-                if (channel.getChannelState() == ChannelState.DELETED) {
-                    toRemove.add(channel);
-                }
-                else if (!channel.config.isDisabled()) {
-                    fillLoggingRecordMapWithChannel(channel);
-                }
+            Route route = routeOf(loggingCollection);
+            for (int i = 0; i < recordCounts.length; i++) {
+                recordCounts[i] += route.channelsByLogger[i].length;
             }
+        }
+
+        List<List<LoggingRecord>> loggingRecords = new ArrayList<>(dataLoggers.length);
+        for (int recordCount : recordCounts) {
+            loggingRecords.add(new ArrayList<>(recordCount));
+        }
 
-            for (ChannelImpl channel : toRemove) {
-                loggingCollection.channels.remove(channel);
+        List<Optional<ChannelCollection>> filledChannels = new ArrayList<>();
+        for (ChannelCollection loggingCollection : currentAction.loggingCollections) {
+            ChannelImpl[][] channelsByLogger = loggingCollection.loggingRoute.channelsByLogger;
+            for (int i = 0; i < channelsByLogger.length; i++) {
+                List<LoggingRecord> records = loggingRecords.get(i);
+                for (ChannelImpl channel : channelsByLogger[i]) {
+                    records.add(new LoggingRecord(channel.getId(), channel.getLatestRecord()));
+                }
             }
 
             if (loggingCollection.channels != null && !loggingCollection.channels.isEmpty()) {
                 filledChannels.add(Optional.of(loggingCollection));
             }
         }
-        deliverLogsToLogServices(currentAction.startTime);
+
+        for (int i = 0; i < dataLoggers.length; i++) {
+            if (dataLoggerPipelines[i] != null) {
+                dataLoggerPipelines[i].log(loggingRecords.get(i), currentAction.startTime);
+            }
+            else {
+                dataLoggers[i].log(loggingRecords.get(i), currentAction.startTime);
+            }
+        }
 
         return filledChannels;
     }
 
     public void deliverLogsToEventBasedLogServices(List<ChannelRecordContainerImpl> channelRecordContainerList) {
-        initLoggingRecordMap();
-        channelRecordContainerList.stream()
-                .forEach(channelRecord -> fillLoggingRecordMapWithChannel(channelRecord.getChannel()));
+        refreshDataLoggers();
+        if (channelRecordContainerList.isEmpty()) {
+            return;
+        }
 
-        for (DataLoggerService dataLogger : activeDataLoggers) {
-            List<LoggingRecord> logContainers = logContainerMap.get(dataLogger.getId());
+        List<List<LoggingRecord>> loggingRecords = new ArrayList<>(dataLoggers.length);
+        for (int i = 0; i < dataLoggers.length; i++) {
+            loggingRecords.add(new ArrayList<>());
+        }
 
-            if (!logContainers.isEmpty()) {
-                dataLogger.logEvent(logContainers, System.currentTimeMillis());
+        for (ChannelRecordContainerImpl channelRecord : channelRecordContainerList) {
+            ChannelImpl channel = channelRecord.getChannel();
+            for (int target : targetsOf(channel)) {
+                loggingRecords.get(target).add(new LoggingRecord(channel.getId(), channel.getLatestRecord()));
+            }
+        }
+
+        for (int i = 0; i < dataLoggers.length; i++) {
+            List<LoggingRecord> logContainers = loggingRecords.get(i);
+            if (logContainers.isEmpty()) {
+                continue;
+            }
+            if (dataLoggerPipelines[i] != null) {
+                dataLoggerPipelines[i].logEvent(logContainers, System.currentTimeMillis());
+            }
+            else {
+                dataLoggers[i].logEvent(logContainers, System.currentTimeMillis());
             }
         }
     }
 
-    private void initLoggingRecordMap() {
-        logContainerMap = new HashMap<>();
-        for (DataLoggerService dataLogger : activeDataLoggers) {
-            logContainerMap.put(dataLogger.getId(), new ArrayList<>());
+    /**
+     * Takes over changes of the active data loggers. The data logger indexes of the routing tables refer to the
+     * order of the data loggers, so all tables are rebuilt if a data logger has been added or removed.
+     */
+    private void refreshDataLoggers() {
+        boolean changed = activeDataLoggers.size() != dataLoggers.length;
+        if (!changed) {
+            int i = 0;
+            for (DataLoggerService dataLogger : activeDataLoggers) {
+                if (i == dataLoggers.length || dataLoggers[i++] != dataLogger) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        if (changed) {
+            dataLoggers = activeDataLoggers.toArray(NO_DATA_LOGGERS);
+            generation++;
+            updatePipelines();
         }
     }
 
-    private void fillLoggingRecordMapWithChannel(ChannelImpl channel) {
-        String logSettings = channel.getLoggingSettings();
+    private void updatePipelines() {
+        dataLoggerPipelines = new LoggingPipeline[dataLoggers.length];
+        if (!asynchronous) {
+            return;
+        }
 
-        if (logSettings != null && !logSettings.isEmpty()) {
-            extendMapForDefinedLoggerFromSettings(channel, logSettings);
+        for (int i = 0; i < dataLoggers.length; i++) {
+            LoggingPipeline pipeline = pipelines.get(dataLoggers[i]);
+            if (pipeline == null) {
+                pipeline = LoggingPipeline.create(dataLoggers[i]);
+                pipelines.put(dataLoggers[i], pipeline);
+            }
+            dataLoggerPipelines[i] = pipeline;
+        }
+
+        List<DataLoggerService> activeList = Arrays.asList(dataLoggers);
+        for (LoggingPipeline pipeline : pipelines.values()) {
+            if (!activeList.contains(pipeline.getDataLogger())) {
+                pipelines.remove(pipeline.getDataLogger());
+                pipeline.close();
+            }
+        }
+    }
+
+    /**
+     * Passes the channels to log to the data logger. If the data logger has a pipeline the call is queued behind the
+     * pending records.
+     */
+    void setChannelsToLog(DataLoggerService dataLogger, List<LogChannel> channels) {
+        LoggingPipeline pipeline = pipelines.get(dataLogger);
+        if (pipeline != null) {
+            pipeline.setChannelsToLog(channels);
         }
         else {
-            addRecordToAllLoggerWhichNotRequiresSettings(channel);
+            dataLogger.setChannelsToLog(channels);
         }
     }
 
-    private void addRecordToAllLoggerWhichNotRequiresSettings(Channel channel) {
-        Record latestRecord = channel.getLatestRecord();
-        logContainerMap.forEach((k, v) -> {
-            if (loggerWithIdNotRequiresSettings(k)) {
-                v.add(new LoggingRecord(channel.getId(), latestRecord));
-            }
-        });
+    /**
+     * Delivers the pending records of a data logger that is being removed and stops its pipeline.
+     */
+    void removeDataLogger(DataLoggerService dataLogger) {
+        LoggingPipeline pipeline = pipelines.remove(dataLogger);
+        if (pipeline != null) {
+            pipeline.closeAndWait(PIPELINE_CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
     }
 
-    private boolean loggerWithIdNotRequiresSettings(String loggerId) {
-        return activeDataLoggers.stream()
-                .filter((DataLoggerService::logSettingsRequired))
-                .map(logger -> logger.getId())
-                .noneMatch(filteredId -> filteredId.equals(loggerId));
+    /**
+     * Delivers all pending records and stops the pipelines.
+     */
+    void shutdown() {
+        for (LoggingPipeline pipeline : pipelines.values()) {
+            pipeline.close();
+        }
+        for (LoggingPipeline pipeline : pipelines.values()) {
+            pipeline.closeAndWait(PIPELINE_CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        pipelines.clear();
     }
 
-    private void extendMapForDefinedLoggerFromSettings(ChannelImpl channel, String logSettings) {
-        List<String> definedLoggerInChannel = parseDefinedLogger(logSettings);
+    String stats() {
+        StringBuilder sb = new StringBuilder();
+        for (LoggingPipeline pipeline : pipelines.values()) {
+            sb.append(pipeline.stats()).append(String.format("%n"));
+        }
+        return sb.toString();
+    }
 
-        for (String definedLogger : definedLoggerInChannel) {
-            if (logContainerMap.get(definedLogger) != null) {
-                Record latestRecord = channel.getLatestRecord();
-                logContainerMap.get(definedLogger).add(new LoggingRecord(channel.getId(), latestRecord));
+    private Route routeOf(ChannelCollection loggingCollection) {
+        Route route = loggingCollection.loggingRoute;
+        if (route == null || route.generation != generation || route.containsDeletedChannel()) {
+            route = buildRoute(loggingCollection);
+            loggingCollection.loggingRoute = route;
+        }
+        return route;
+    }
+
+    private Route buildRoute(ChannelCollection loggingCollection) {
+        List<List<ChannelImpl>> channelsByLogger = new ArrayList<>(dataLoggers.length);
+        for (int i = 0; i < dataLoggers.length; i++) {
+            channelsByLogger.add(new ArrayList<>());
+        }
+        List<ChannelImpl> routedChannels = new ArrayList<>();
+
+        Iterator<ChannelImpl> iterator = loggingCollection.channels.iterator();
+        while (iterator.hasNext()) {
+            ChannelImpl channel = iterator.next();
+            if (channel.getChannelState() == ChannelState.DELETED) {
+                iterator.remove();
+            }
+            else if (!channel.config.isDisabled()) {
+                routedChannels.add(channel);
+                for (int target : targetsOf(channel)) {
+                    channelsByLogger.get(target).add(channel);
+                }
+            }
+        }
+
+        ChannelImpl[][] channelsByLoggerArray = new ChannelImpl[dataLoggers.length][];
+        for (int i = 0; i < dataLoggers.length; i++) {
+            channelsByLoggerArray[i] = channelsByLogger.get(i).toArray(new ChannelImpl[0]);
+        }
+        return new Route(generation, routedChannels.toArray(new ChannelImpl[0]), channelsByLoggerArray);
+    }
+
+    /**
+     * Returns the indexes of the data loggers the channel is logged by.
+     */
+    private int[] targetsOf(ChannelImpl channel) {
+        if (channel.loggingTargetsGeneration == generation && channel.loggingTargets != null) {
+            return channel.loggingTargets;
+        }
+
+        int[] targets;
+        String logSettings = channel.getLoggingSettings();
+        if (logSettings != null && !logSettings.isEmpty()) {
+            targets = targetsFromSettings(channel, logSettings);
+        }
+        else {
+            targets = targetsWithoutSettings();
+        }
+
+        channel.loggingTargets = targets;
+        channel.loggingTargetsGeneration = generation;
+        return targets;
+    }
+
+    private int[] targetsFromSettings(ChannelImpl channel, String logSettings) {
+        List<Integer> targets = new ArrayList<>();
+        for (String loggerSegment : logSettings.split(";")) {
+            String definedLogger = loggerSegment.split(":")[0];
+            int index = indexOfDataLogger(definedLogger);
+            if (index >= 0) {
+                targets.add(index);
             }
             else {
                 logger.warn("DataLoggerService with Id {} not found for channel {}", definedLogger,
@@ -144,21 +324,60 @@ public class LoggingController {
                 logger.warn("Correct configuration in channel.xml?");
             }
         }
+        return toArray(targets);
     }
 
-    private List<String> parseDefinedLogger(String logSettings) {
-        String[] loggerSegments = logSettings.split(";");
-        List<String> definedLogger = Arrays.stream(loggerSegments)
-                .map(seg -> seg.split(":")[0])
-                .collect(Collectors.toList());
+    private int[] targetsWithoutSettings() {
+        List<Integer> targets = new ArrayList<>();
+        for (int i = 0; i < dataLoggers.length; i++) {
+            if (!dataLoggers[i].logSettingsRequired()) {
+                targets.add(i);
+            }
+        }
+        return toArray(targets);
+    }
 
-        return definedLogger;
+    private int indexOfDataLogger(String id) {
+        for (int i = 0; i < dataLoggers.length; i++) {
+            if (dataLoggers[i].getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
-    private void deliverLogsToLogServices(long startTime) {
-        for (DataLoggerService dataLogger : activeDataLoggers) {
-            List<LoggingRecord> logContainers = logContainerMap.get(dataLogger.getId());
-            dataLogger.log(logContainers, startTime);
+    private static int[] toArray(List<Integer> list) {
+        if (list.isEmpty()) {
+            return NO_TARGETS;
+        }
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Channels of a logging collection grouped by the data loggers they are logged by.
+     */
+    static final class Route {
+        private final int generation;
+        private final ChannelImpl[] channels;
+        private final ChannelImpl[][] channelsByLogger;
+
+        private Route(int generation, ChannelImpl[] channels, ChannelImpl[][] channelsByLogger) {
+            this.generation = generation;
+            this.channels = channels;
+            this.channelsByLogger = channelsByLogger;
+        }
+
+        private boolean containsDeletedChannel() {
+            for (ChannelImpl channel : channels) {
+                if (channel.getChannelState() == ChannelState.DELETED) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 }
@@ -0,0 +1,809 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decouples a data logger from the data manager thread. The records to log are put into a bounded queue and handed
+ * to the data logger by a worker thread of its own, so a slow disk or database only delays the data logger itself.
+ * <p>
+ * What happens if the queue is full is defined by the {@link OverflowPolicy}. Spilled batches are written to disk by a
+ * spill writer thread, so neither the data manager thread nor the worker waits for the spill file. They are read back
+ * in order once the worker has caught up.
+ */
+final class LoggingPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoggingPipeline.class);
+
+    private static final String PROPERTY_PREFIX = "org.openmuc.framework.datamanager.logging.";
+    private static final String ASYNC_PROPERTY = PROPERTY_PREFIX + "async";
+    private static final String QUEUE_CAPACITY_PROPERTY = PROPERTY_PREFIX + "queueCapacity";
+    private static final String OVERFLOW_POLICY_PROPERTY = PROPERTY_PREFIX + "overflowPolicy";
+    private static final String SPILL_DIRECTORY_PROPERTY = PROPERTY_PREFIX + "spillDirectory";
+    private static final int DEFAULT_QUEUE_CAPACITY = 100;
+    private static final String DEFAULT_SPILL_DIRECTORY = "data/logging-spill";
+
+    enum OverflowPolicy {
+        /**
+         * The data manager waits until the worker has taken a batch from the queue.
+         */
+        BLOCK,
+        /**
+         * The oldest batch in the queue is dropped in favour of the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * New batches are written to a file until the worker has caught up. If the disk can not keep up either, new
+         * batches are dropped.
+         */
+        SPILL
+    }
+
+    private final DataLoggerService dataLogger;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final File spillDirectory;
+    private final Thread worker;
+    private final Thread spillWriter;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition spillPending = lock.newCondition();
+
+    // guarded by lock
+    private final Deque<Batch> queue = new ArrayDeque<>();
+    // batches that are newer than the spill file and wait for the spill writer
+    private final Deque<Batch> spillQueue = new ArrayDeque<>();
+    private SpillFile spillFile;
+    // batches written to the spill file that have not been read yet
+    private int spilledInFile;
+    private boolean spillWriting;
+    private boolean spillFailed;
+    private boolean closed;
+    private long droppedRecords;
+    private long spilledBatches;
+    private long loggedBatches;
+    private long latencySumNanos;
+    private long latencyCount;
+    private long maxLatencyNanos;
+
+    /**
+     * @param dataLogger
+     *            the data logger the records are handed to
+     * @param capacity
+     *            number of batches the queue can hold
+     * @param overflowPolicy
+     *            the behaviour if the queue is full
+     * @param spillDirectory
+     *            directory of the spill file, only used with {@link OverflowPolicy#SPILL}
+     */
+    LoggingPipeline(DataLoggerService dataLogger, int capacity, OverflowPolicy overflowPolicy, File spillDirectory) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1 but was " + capacity);
+        }
+        this.dataLogger = dataLogger;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.spillDirectory = spillDirectory;
+        this.worker = new Thread(this::work, "OpenMUC Data Manager Logging - " + dataLogger.getId());
+        this.worker.setDaemon(true);
+        this.worker.start();
+
+        if (overflowPolicy == OverflowPolicy.SPILL) {
+            this.spillWriter = new Thread(this::writeSpilledBatches,
+                    "OpenMUC Data Manager Logging Spill - " + dataLogger.getId());
+            this.spillWriter.setDaemon(true);
+            this.spillWriter.start();
+        }
+        else {
+            this.spillWriter = null;
+        }
+    }
+
+    /**
+     * Creates the pipeline of the given data logger as configured by the system properties. The overflow policy can
+     * be set per data logger by appending the ID of the data logger to the property name.
+     */
+    static LoggingPipeline create(DataLoggerService dataLogger) {
+        int capacity = DataManager.intProperty(QUEUE_CAPACITY_PROPERTY, DEFAULT_QUEUE_CAPACITY);
+        File spillDirectory = new File(System.getProperty(SPILL_DIRECTORY_PROPERTY, DEFAULT_SPILL_DIRECTORY));
+        return new LoggingPipeline(dataLogger, capacity, overflowPolicy(dataLogger.getId()), spillDirectory);
+    }
+
+    /**
+     * @return false if the data loggers shall be called directly by the data manager thread
+     */
+    static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(ASYNC_PROPERTY, "true").trim());
+    }
+
+    private static OverflowPolicy overflowPolicy(String dataLoggerId) {
+        String propertyName = OVERFLOW_POLICY_PROPERTY + "." + dataLoggerId;
+        String policy = System.getProperty(propertyName);
+        if (policy == null) {
+            propertyName = OVERFLOW_POLICY_PROPERTY;
+            policy = System.getProperty(propertyName);
+        }
+        if (policy == null) {
+            return OverflowPolicy.BLOCK;
+        }
+        try {
+            return OverflowPolicy.valueOf(policy.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid value for {}: {}. Using default {}.", propertyName, policy, OverflowPolicy.BLOCK);
+            return OverflowPolicy.BLOCK;
+        }
+    }
+
+    DataLoggerService getDataLogger() {
+        return dataLogger;
+    }
+
+    void log(List<LoggingRecord> records, long timestamp) {
+        enqueue(new Batch(false, timestamp, records, null));
+    }
+
+    void logEvent(List<LoggingRecord> records, long timestamp) {
+        enqueue(new Batch(true, timestamp, records, null));
+    }
+
+    /**
+     * Passes a new set of channels to the data logger. The call is queued like a log batch so that the data logger is
+     * never called concurrently. It is not subject to the capacity of the queue.
+     */
+    void setChannelsToLog(List<LogChannel> channels) {
+        lock.lock();
+        try {
+            if (!closed) {
+                Batch batch = new Batch(false, 0, null, channels);
+                if (isSpilling()) {
+                    // the channels must not overtake the batches spilled before
+                    spillQueue.addLast(batch);
+                    spillPending.signal();
+                }
+                else {
+                    queue.addLast(batch);
+                }
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isSpilling() {
+        return spilledInFile > 0 || spillWriting || !spillQueue.isEmpty();
+    }
+
+    private void enqueue(Batch batch) {
+        lock.lock();
+        try {
+            if (closed) {
+                droppedRecords += batch.records.size();
+                return;
+            }
+
+            if (isSpilling()) {
+                spill(batch);
+                return;
+            }
+
+            while (queue.size() >= capacity) {
+                switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    if (!dropOldest()) {
+                        // only channel updates are queued, they must not be dropped
+                        queue.addLast(batch);
+                        notEmpty.signal();
+                        return;
+                    }
+                    break;
+                case SPILL:
+                    spill(batch);
+                    return;
+                case BLOCK:
+                default:
+                    notFull.awaitUninterruptibly();
+                    if (closed) {
+                        droppedRecords += batch.records.size();
+                        return;
+                    }
+                }
+            }
+            queue.addLast(batch);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean dropOldest() {
+        for (Batch batch : queue) {
+            if (batch.records != null) {
+                queue.remove(batch);
+                droppedRecords += batch.records.size();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands the batch over to the spill writer. The data manager thread never waits for the disk. If the spill writer
+     * can not keep up either, the batch is dropped.
+     */
+    private void spill(Batch batch) {
+        if (spillQueue.size() >= capacity) {
+            droppedRecords += batch.records.size();
+            return;
+        }
+        spillQueue.addLast(batch);
+        spillPending.signal();
+        notEmpty.signal();
+    }
+
+    private void writeSpilledBatches() {
+        while (true) {
+            Batch batch;
+            SpillFile currentFile;
+            lock.lock();
+            try {
+                while (!closed && (spillQueue.isEmpty() || spillFailed)) {
+                    spillPending.awaitUninterruptibly();
+                }
+                if (closed) {
+                    // the worker delivers the batches left in the spill queue directly
+                    return;
+                }
+                batch = spillQueue.pollFirst();
+                currentFile = spillFile;
+                spillWriting = true;
+            } finally {
+                lock.unlock();
+            }
+
+            SpillFile file = currentFile;
+            boolean written = false;
+            try {
+                if (file == null) {
+                    file = new SpillFile(spillDirectory, dataLogger.getId());
+                    logger.warn("Data logger {} can not keep up. Spilling records to {}.", dataLogger.getId(),
+                            file.file);
+                }
+                file.write(batch);
+                written = true;
+            } catch (IOException e) {
+                logger.error("Unable to spill records of data logger {}.", dataLogger.getId(), e);
+            }
+
+            lock.lock();
+            try {
+                spillWriting = false;
+                if (currentFile == null && file != null) {
+                    spillFile = file;
+                }
+                if (written && file == spillFile) {
+                    spilledInFile++;
+                    spilledBatches++;
+                }
+                else {
+                    if (file != null && file != spillFile) {
+                        // the worker has given up the file while the batch was written
+                        file.delete();
+                    }
+                    if (!written) {
+                        // stop spilling until the worker has caught up
+                        spillFailed = true;
+                    }
+                    if (batch.records == null) {
+                        // channel updates must not be lost, the worker takes them from the spill queue
+                        spillQueue.addFirst(batch);
+                    }
+                    else {
+                        droppedRecords += batch.records.size();
+                    }
+                }
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Batch batch;
+            SpillFile file = null;
+            lock.lock();
+            try {
+                batch = nextBatch();
+                if (batch == null) {
+                    return;
+                }
+                if (batch == SPILLED) {
+                    file = spillFile;
+                }
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+
+            if (file != null) {
+                batch = readSpilledBatch(file);
+                if (batch == null) {
+                    continue;
+                }
+            }
+            deliver(batch);
+        }
+    }
+
+    /**
+     * Waits for the next batch. Batches in the queue are older than the spilled ones, so the spill file is read only
+     * after the queue has run empty. Batches the spill writer has not taken yet are the newest ones.
+     *
+     * @return the next batch, {@link #SPILLED} if the next batch has to be read from the spill file, or null if the
+     *         pipeline has been closed and everything has been delivered
+     */
+    private Batch nextBatch() {
+        while (true) {
+            Batch batch = queue.pollFirst();
+            if (batch != null) {
+                return batch;
+            }
+            if (spilledInFile > 0) {
+                return SPILLED;
+            }
+            if (!spillWriting) {
+                batch = spillQueue.pollFirst();
+                if (batch != null) {
+                    return batch;
+                }
+                if (spillFile != null) {
+                    spillFile.delete();
+                    spillFile = null;
+                    logger.info("Data logger {} has caught up. Spill file removed.", dataLogger.getId());
+                }
+                spillFailed = false;
+                if (closed) {
+                    return null;
+                }
+            }
+            notEmpty.awaitUninterruptibly();
+        }
+    }
+
+    /**
+     * Reads the next spilled batch. The spill writer appends to the file at the same time, so the file is read
+     * outside of the lock.
+     */
+    private Batch readSpilledBatch(SpillFile file) {
+        Batch batch;
+        try {
+            batch = file.read();
+        } catch (IOException e) {
+            lock.lock();
+            try {
+                logger.error("Unable to read spilled records of data logger {}. Dropping {} batches.",
+                        dataLogger.getId(), spilledInFile, e);
+                spilledInFile = 0;
+                spillFile = null;
+                if (!spillWriting) {
+                    file.delete();
+                }
+            } finally {
+                lock.unlock();
+            }
+            return null;
+        }
+
+        lock.lock();
+        try {
+            spilledInFile--;
+        } finally {
+            lock.unlock();
+        }
+        return batch;
+    }
+
+    private void deliver(Batch batch) {
+        try {
+            if (batch.channels != null) {
+                dataLogger.setChannelsToLog(batch.channels);
+                return;
+            }
+            if (batch.event) {
+                dataLogger.logEvent(batch.records, batch.timestamp);
+            }
+            else {
+                dataLogger.log(batch.records, batch.timestamp);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Data logger {} threw an exception.", dataLogger.getId(), e);
+        }
+
+        long latency = System.nanoTime() - batch.createdNanos;
+        lock.lock();
+        try {
+            loggedBatches++;
+            latencySumNanos += latency;
+            latencyCount++;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting new batches. The batches already queued or spilled are still delivered.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+            spillPending.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the pipeline and waits until all batches have been delivered.
+     *
+     * @return true if the worker has finished within the timeout
+     */
+    boolean closeAndWait(long timeout, TimeUnit unit) {
+        close();
+        try {
+            worker.join(unit.toMillis(timeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            logger.warn("Data logger {} did not finish logging within {} {}.", dataLogger.getId(), timeout, unit);
+            return false;
+        }
+        return true;
+    }
+
+    int getBacklog() {
+        lock.lock();
+        try {
+            return queue.size() + spilledInFile + (spillWriting ? 1 : 0) + spillQueue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of batches waiting to be written to the spill file
+     */
+    int getSpillPending() {
+        lock.lock();
+        try {
+            return spillQueue.size() + (spillWriting ? 1 : 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getDroppedRecords() {
+        lock.lock();
+        try {
+            return droppedRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the statistics of the pipeline and resets the latency values.
+     */
+    String stats() {
+        lock.lock();
+        try {
+            double averageLatency = latencyCount == 0 ? 0 : latencySumNanos / latencyCount / 1e6;
+            String stats = String.format(
+                    "data logger %s: policy: %s, queued: %d/%d, spilled: %d (total %d), spill pending: %d, logged: %d, "
+                            + "dropped records: %d, latency avg/max: %.1f/%.1f ms",
+                    dataLogger.getId(), overflowPolicy, queue.size(), capacity, spilledInFile, spilledBatches,
+                    spillQueue.size() + (spillWriting ? 1 : 0), loggedBatches, droppedRecords,
+                    averageLatency, maxLatencyNanos / 1e6);
+            latencySumNanos = 0;
+            latencyCount = 0;
+            maxLatencyNanos = 0;
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returned by {@link #nextBatch()} if the next batch has to be read from the spill file.
+     */
+    private static final Batch SPILLED = new Batch(false, 0, null, null);
+
+    private static final class Batch {
+        private final boolean event;
+        private final long timestamp;
+        private final List<LoggingRecord> records;
+        private final List<LogChannel> channels;
+        private final long createdNanos;
+
+        Batch(boolean event, long timestamp, List<LoggingRecord> records, List<LogChannel> channels) {
+            this(event, timestamp, records, channels, System.nanoTime());
+        }
+
+        Batch(boolean event, long timestamp, List<LoggingRecord> records, List<LogChannel> channels,
+                long createdNanos) {
+            this.event = event;
+            this.timestamp = timestamp;
+            this.records = records;
+            this.channels = channels;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    /**
+     * File the batches are written to while the queue is full. It is written sequentially by the spill writer and read
+     * sequentially by the worker at the same time, and deleted once all batches have been read back. Channel updates
+     * are only marked in the file, the channels themselves are kept in memory. Every batch is serialized completely
+     * before it is appended, so a batch that can not be written does not leave a partial batch in the file.
+     */
+    private static final class SpillFile {
+
+        private static final byte NO_VALUE = -1;
+
+        private static final byte LOG = 0;
+        private static final byte EVENT = 1;
+        private static final byte CHANNELS = 2;
+
+        private final File file;
+        private final OutputStream out;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+        private final Queue<List<LogChannel>> channels = new ConcurrentLinkedQueue<>();
+        private DataInputStream in;
+
+        SpillFile(File directory, String dataLoggerId) throws IOException {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create directory " + directory);
+            }
+            file = File.createTempFile(dataLoggerId.replaceAll("[^A-Za-z0-9_-]", "_") + "-", ".spill", directory);
+            file.deleteOnExit();
+            out = new FileOutputStream(file);
+        }
+
+        void write(Batch batch) throws IOException {
+            buffer.reset();
+            if (batch.channels != null) {
+                bufferOut.writeByte(CHANNELS);
+                bufferOut.writeLong(batch.createdNanos);
+            }
+            else {
+                bufferOut.writeByte(batch.event ? EVENT : LOG);
+                bufferOut.writeLong(batch.timestamp);
+                bufferOut.writeLong(batch.createdNanos);
+                bufferOut.writeInt(batch.records.size());
+                for (LoggingRecord loggingRecord : batch.records) {
+                    writeString(loggingRecord.getChannelId());
+                    writeRecord(loggingRecord.getRecord());
+                }
+            }
+            buffer.writeTo(out);
+            out.flush();
+            if (batch.channels != null) {
+                channels.add(batch.channels);
+            }
+        }
+
+        /**
+         * Reads the next batch. Must only be called for batches that have been written completely.
+         */
+        Batch read() throws IOException {
+            if (in == null) {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            }
+            byte type = in.readByte();
+            if (type == CHANNELS) {
+                long createdNanos = in.readLong();
+                return new Batch(false, 0, null, channels.remove(), createdNanos);
+            }
+            boolean event = type == EVENT;
+            long timestamp = in.readLong();
+            long createdNanos = in.readLong();
+            int size = in.readInt();
+            List<LoggingRecord> records = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String channelId = readString();
+                records.add(new LoggingRecord(channelId, readRecord()));
+            }
+            return new Batch(event, timestamp, records, null, createdNanos);
+        }
+
+        void delete() {
+            try {
+                out.close();
+                if (in != null) {
+                    in.close();
+                }
+            } catch (IOException e) {
+                logger.debug("Unable to close spill file {}.", file, e);
+            }
+            if (!file.delete()) {
+                logger.warn("Unable to delete spill file {}.", file);
+            }
+        }
+
+        private void writeRecord(Record record) throws IOException {
+            bufferOut.writeByte(record.getFlag().getCode());
+            Long timestamp = record.getTimestamp();
+            bufferOut.writeBoolean(timestamp != null);
+            if (timestamp != null) {
+                bufferOut.writeLong(timestamp);
+            }
+
+            Value value = record.getValue();
+            if (value == null) {
+                bufferOut.writeByte(NO_VALUE);
+                return;
+            }
+            ValueType valueType = value.getValueType();
+            bufferOut.writeByte(valueType.ordinal());
+            switch (valueType) {
+            case BOOLEAN:
+                bufferOut.writeBoolean(value.asBoolean());
+                break;
+            case BYTE:
+                bufferOut.writeByte(value.asByte());
+                break;
+            case SHORT:
+                bufferOut.writeShort(value.asShort());
+                break;
+            case INTEGER:
+                bufferOut.writeInt(value.asInt());
+                break;
+            case LONG:
+                bufferOut.writeLong(value.asLong());
+                break;
+            case FLOAT:
+                bufferOut.writeFloat(value.asFloat());
+                break;
+            case DOUBLE:
+                bufferOut.writeDouble(value.asDouble());
+                break;
+            case BYTE_ARRAY:
+                writeBytes(value.asByteArray());
+                break;
+            case STRING:
+            default:
+                writeString(value.asString());
+            }
+        }
+
+        /**
+         * Writes the string as length prefixed UTF-8 bytes, {@link DataOutputStream#writeUTF} is limited to 65535
+         * bytes.
+         */
+        private void writeString(String string) throws IOException {
+            writeBytes(string.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            bufferOut.writeInt(bytes.length);
+            bufferOut.write(bytes);
+        }
+
+        private String readString() throws IOException {
+            return new String(readBytes(), StandardCharsets.UTF_8);
+        }
+
+        private byte[] readBytes() throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        private Record readRecord() throws IOException {
+            Flag flag = Flag.newFlag(in.readByte());
+            Long timestamp = in.readBoolean() ? in.readLong() : null;
+
+            byte valueType = in.readByte();
+            if (valueType == NO_VALUE) {
+                return new Record(null, timestamp, flag);
+            }
+            Value value;
+            switch (ValueType.values()[valueType]) {
+            case BOOLEAN:
+                value = new BooleanValue(in.readBoolean());
+                break;
+            case BYTE:
+                value = new ByteValue(in.readByte());
+                break;
+            case SHORT:
+                value = new ShortValue(in.readShort());
+                break;
+            case INTEGER:
+                value = new IntValue(in.readInt());
+                break;
+            case LONG:
+                value = new LongValue(in.readLong());
+                break;
+            case FLOAT:
+                value = new FloatValue(in.readFloat());
+                break;
+            case DOUBLE:
+                value = new DoubleValue(in.readDouble());
+                break;
+            case BYTE_ARRAY:
+                value = new ByteArrayValue(readBytes());
+                break;
+            case STRING:
+            default:
+                value = new StringValue(readString());
+            }
+            return new Record(value, timestamp, flag);
+        }
+    }
+
+}
@@ -66,10 +66,8 @@ public class ReadTask extends DeviceTask implements ConnectedTask {
                 driverChannel.setRecord(new Record(Flag.ACCESS_METHOD_NOT_SUPPORTED));
             }
             readTaskFinishedSignal.countDown();
-            synchronized (dataManager.disconnectedDevices) {
-                dataManager.disconnectedDevices.add(device);
-            }
-            dataManager.interrupt();
+            dataManager.disconnectedDevices.add(device);
+            dataManager.wakeUp();
             return;
         } catch (Exception e) {
             logger.warn("unexpected exception thrown by read funtion of driver ", e);
@@ -113,10 +111,8 @@ public class ReadTask extends DeviceTask implements ConnectedTask {
 
         readTaskFinishedSignal.countDown();
 
-        synchronized (dataManager.tasksFinished) {
-            dataManager.tasksFinished.add(this);
-        }
-        dataManager.interrupt();
+        dataManager.tasksFinished.add(this);
+        dataManager.wakeUp();
     }
 
     protected void taskAborted() {
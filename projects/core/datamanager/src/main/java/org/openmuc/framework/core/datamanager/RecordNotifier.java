@@ -0,0 +1,227 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.BatchRecordListener;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.dataaccess.ReadRecordContainer;
+import org.openmuc.framework.dataaccess.RecordListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers new records to the record listeners of the channels. Every listener gets one {@link Subscriber} that is
+ * shared by all channels the listener was added to. New records are collected by the subscriber until a thread of
+ * the delivery pool is available. If a channel receives several records in the meantime only the latest one is
+ * delivered.
+ * <p>
+ * A subscriber is queued at most once in the delivery pool, so the pool queue never grows beyond the number of
+ * listeners no matter how many records are received.
+ */
+final class RecordNotifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordNotifier.class);
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<RecordListener, Subscriber> subscribers = new HashMap<>();
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    RecordNotifier(int threadCount) {
+        executor = new ThreadPoolExecutor(threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new NamedThreadFactory("OpenMUC Data Manager Listener Pool - thread-"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the subscriber of the given listener. Has to be balanced by a call to {@link #unsubscribe}.
+     */
+    Subscriber subscribe(RecordListener listener) {
+        synchronized (subscribers) {
+            Subscriber subscriber = subscribers.get(listener);
+            if (subscriber == null) {
+                subscriber = new Subscriber(listener);
+                subscribers.put(listener, subscriber);
+            }
+            subscriber.subscriptionCount++;
+            return subscriber;
+        }
+    }
+
+    /**
+     * Removes the subscription of the given channel. Records of the channel that have not been delivered yet are
+     * discarded.
+     */
+    void unsubscribe(Subscriber subscriber, ChannelImpl channel) {
+        synchronized (subscribers) {
+            if (--subscriber.subscriptionCount == 0) {
+                subscribers.remove(subscriber.listener);
+            }
+        }
+        synchronized (subscriber) {
+            subscriber.pending.remove(channel);
+        }
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    int getListenerCount() {
+        synchronized (subscribers) {
+            return subscribers.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("record listeners: %d, threads: %d, queued: %d, delivered: %d, coalesced: %d",
+                getListenerCount(), executor.getPoolSize(), executor.getQueue().size(), deliveredCount.get(),
+                coalescedCount.get());
+    }
+
+    /**
+     * Pending records of a single listener.
+     */
+    final class Subscriber implements Runnable {
+
+        final RecordListener listener;
+
+        // guarded by subscribers
+        private int subscriptionCount;
+
+        // guarded by this
+        private Map<ChannelImpl, Record> pending = new LinkedHashMap<>();
+        private boolean scheduled;
+
+        // only accessed by the delivering thread
+        private Map<ChannelImpl, Record> delivering = new LinkedHashMap<>();
+
+        private Subscriber(RecordListener listener) {
+            this.listener = listener;
+        }
+
+        void newRecord(ChannelImpl channel, Record record) {
+            synchronized (this) {
+                if (pending.put(channel, record) != null) {
+                    coalescedCount.incrementAndGet();
+                }
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Record listener notification rejected because the data manager is shutting down.");
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                Map<ChannelImpl, Record> records = pending;
+                pending = delivering;
+                delivering = records;
+            }
+
+            deliver(delivering);
+            deliveredCount.addAndGet(delivering.size());
+            delivering.clear();
+
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            // give the other listeners a chance before delivering the next batch
+            schedule();
+        }
+
+        private void deliver(Map<ChannelImpl, Record> records) {
+            if (listener instanceof BatchRecordListener) {
+                List<ReadRecordContainer> batch = new ArrayList<>(records.size());
+                for (Entry<ChannelImpl, Record> entry : records.entrySet()) {
+                    batch.add(new ChannelRecord(entry.getKey(), entry.getValue()));
+                }
+                try {
+                    ((BatchRecordListener) listener).newRecords(batch);
+                } catch (RuntimeException e) {
+                    logger.warn("Record listener {} threw an exception.", listener, e);
+                }
+            }
+            else {
+                for (Record record : records.values()) {
+                    try {
+                        listener.newRecord(record);
+                    } catch (RuntimeException e) {
+                        logger.warn("Record listener {} threw an exception.", listener, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class ChannelRecord implements ReadRecordContainer {
+
+        private final Channel channel;
+        private final Record record;
+
+        ChannelRecord(Channel channel, Record record) {
+            this.channel = channel;
+            this.record = record;
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public Channel getChannel() {
+            return channel;
+        }
+    }
+
+}
@@ -95,10 +95,8 @@ public final class SamplingTask extends DeviceTask {
             logger.warn("Connection to device {} lost because {}. Trying to reconnect...", device.deviceConfig.getId(),
                     e.getMessage());
 
-            synchronized (dataManager.disconnectedDevices) {
-                dataManager.disconnectedDevices.add(device);
-            }
-            dataManager.interrupt();
+            dataManager.disconnectedDevices.add(device);
+            dataManager.wakeUp();
             return;
         } catch (Exception e) {
             logger.warn("unexpected exception thrown by read funtion of driver ", e);
@@ -109,10 +107,8 @@ public final class SamplingTask extends DeviceTask {
             channelRecordContainer.getChannel().handle = channelRecordContainer.getChannelHandle();
         }
 
-        synchronized (dataManager.samplingTaskFinished) {
-            dataManager.samplingTaskFinished.add(this);
-        }
-        dataManager.interrupt();
+        dataManager.samplingTaskFinished.add(this);
+        dataManager.wakeUp();
     }
 
     // called by main thread
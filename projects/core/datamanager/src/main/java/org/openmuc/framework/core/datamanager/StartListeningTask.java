@@ -65,10 +65,8 @@ public final class StartListeningTask extends DeviceTask implements ConnectedTas
             // TODO set flag?
         }
 
-        synchronized (dataManager.tasksFinished) {
-            dataManager.tasksFinished.add(this);
-        }
-        dataManager.interrupt();
+        dataManager.tasksFinished.add(this);
+        dataManager.wakeUp();
     }
 
     @Override
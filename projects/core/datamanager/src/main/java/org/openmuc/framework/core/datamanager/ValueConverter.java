@@ -0,0 +1,153 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import java.util.function.DoubleFunction;
+import java.util.function.UnaryOperator;
+
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.ByteValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.FloatValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.TypeConversionException;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts the values delivered by a driver to the value type of a channel, applying the scaling factor and value
+ * offset on the way. The conversion functions are chosen once per channel configuration, so a new record costs
+ * exactly one new value object. Values that already have the configured type and need no scaling are passed through
+ * unchanged.
+ */
+final class ValueConverter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ValueConverter.class);
+
+    final ChannelConfigImpl config;
+
+    private final Double scalingFactor;
+    private final Double valueOffset;
+    private final UnaryOperator<Value> converter;
+    private final DoubleFunction<Value> scaledConverter;
+
+    ValueConverter(ChannelConfigImpl config) {
+        this.config = config;
+        this.scalingFactor = config.getScalingFactor();
+        this.valueOffset = config.getValueOffset();
+        this.converter = converterFor(config.getValueType());
+        this.scaledConverter = scaledConverterFor(config.getValueType());
+    }
+
+    /**
+     * Converts the given value to the value type of the channel.
+     *
+     * @param value
+     *            the value read from the driver
+     * @return the converted value. It is the given value itself if no conversion is needed.
+     * @throws TypeConversionException
+     *             if the value can not be converted to the value type of the channel
+     */
+    Value convert(Value value) {
+        if (scalingFactor == null && valueOffset == null) {
+            return converter.apply(value);
+        }
+
+        double scaledValue;
+        try {
+            scaledValue = value.asDouble();
+        } catch (TypeConversionException e) {
+            if (scalingFactor != null) {
+                logger.error("Unable to apply scaling factor to channel " + config.getId()
+                        + " because a TypeConversionError occurred.", e);
+            }
+            if (valueOffset != null) {
+                logger.error("Unable to apply scaling offset to channel " + config.getId()
+                        + " because a TypeConversionError occurred.", e);
+            }
+            return converter.apply(value);
+        }
+
+        if (scalingFactor != null) {
+            scaledValue *= scalingFactor;
+        }
+        if (valueOffset != null) {
+            scaledValue += valueOffset;
+        }
+        return scaledConverter.apply(scaledValue);
+    }
+
+    private static UnaryOperator<Value> converterFor(ValueType valueType) {
+        switch (valueType) {
+        case BOOLEAN:
+            return value -> value.getClass() == BooleanValue.class ? value : new BooleanValue(value.asBoolean());
+        case BYTE:
+            return value -> value.getClass() == ByteValue.class ? value : new ByteValue(value.asByte());
+        case SHORT:
+            return value -> value.getClass() == ShortValue.class ? value : new ShortValue(value.asShort());
+        case INTEGER:
+            return value -> value.getClass() == IntValue.class ? value : new IntValue(value.asInt());
+        case LONG:
+            return value -> value.getClass() == LongValue.class ? value : new LongValue(value.asLong());
+        case FLOAT:
+            return value -> value.getClass() == FloatValue.class ? value : new FloatValue(value.asFloat());
+        case DOUBLE:
+            return value -> value.getClass() == DoubleValue.class ? value : new DoubleValue(value.asDouble());
+        case BYTE_ARRAY:
+            return value -> new ByteArrayValue(value.asByteArray());
+        case STRING:
+        default:
+            return value -> value.getClass() == StringValue.class ? value : new StringValue(value.toString());
+        }
+    }
+
+    private static DoubleFunction<Value> scaledConverterFor(ValueType valueType) {
+        switch (valueType) {
+        case BOOLEAN:
+            return value -> new BooleanValue(value != 0.0);
+        case BYTE:
+            return value -> new ByteValue((byte) value);
+        case SHORT:
+            return value -> new ShortValue((short) value);
+        case INTEGER:
+            return value -> new IntValue((int) value);
+        case LONG:
+            return value -> new LongValue((long) value);
+        case FLOAT:
+            return value -> new FloatValue((float) value);
+        case DOUBLE:
+            return DoubleValue::new;
+        case BYTE_ARRAY:
+            return value -> new ByteArrayValue(new DoubleValue(value).asByteArray());
+        case STRING:
+        default:
+            return value -> new StringValue(Double.toString(value));
+        }
+    }
+
+}
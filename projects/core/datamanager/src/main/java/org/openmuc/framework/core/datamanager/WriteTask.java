@@ -63,10 +63,8 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
                 valueContainer.setFlag(Flag.CONNECTION_EXCEPTION);
             }
             writeTaskFinishedSignal.countDown();
-            synchronized (dataManager.disconnectedDevices) {
-                dataManager.disconnectedDevices.add(device);
-            }
-            dataManager.interrupt();
+            dataManager.disconnectedDevices.add(device);
+            dataManager.wakeUp();
             return;
         } catch (Exception e) {
             logger.warn("unexpected exception thrown by write funtion of driver ", e);
@@ -76,10 +74,8 @@ public final class WriteTask extends DeviceTask implements ConnectedTask {
         }
 
         writeTaskFinishedSignal.countDown();
-        synchronized (dataManager.tasksFinished) {
-            dataManager.tasksFinished.add(this);
-        }
-        dataManager.interrupt();
+        dataManager.tasksFinished.add(this);
+        dataManager.wakeUp();
 
     }
 
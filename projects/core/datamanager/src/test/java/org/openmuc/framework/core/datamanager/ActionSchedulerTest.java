@@ -0,0 +1,105 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class ActionSchedulerTest {
+
+    @Test
+    public void actionsAreOrderedByStartTime() {
+        ActionScheduler scheduler = new ActionScheduler();
+        scheduler.addLoggingCollection(new ChannelCollection(1000, 0, null, null), 3000);
+        scheduler.addLoggingCollection(new ChannelCollection(2000, 0, null, null), 1000);
+        scheduler.addLoggingCollection(new ChannelCollection(5000, 0, null, null), 2000);
+
+        assertEquals(3, scheduler.size());
+        assertEquals(1000, scheduler.removeFirst().startTime);
+        assertEquals(2000, scheduler.removeFirst().startTime);
+        assertEquals(3000, scheduler.getFirst().startTime);
+    }
+
+    @Test
+    public void entriesWithSameStartTimeShareOneAction() {
+        ActionScheduler scheduler = new ActionScheduler();
+        ChannelCollection loggingCollection = new ChannelCollection(1000, 0, null, null);
+        ChannelCollection samplingCollection = new ChannelCollection(1000, 0, "group", null);
+        scheduler.addLoggingCollection(loggingCollection, 1000);
+        scheduler.addSamplingCollection(samplingCollection, 1000);
+
+        assertEquals(1, scheduler.size());
+        assertSame(loggingCollection.action, samplingCollection.action);
+        assertTrue(loggingCollection.action.loggingCollections.contains(loggingCollection));
+        assertTrue(samplingCollection.action.samplingCollections.contains(samplingCollection));
+    }
+
+    @Test
+    public void collectionsAreFoundByKey() {
+        ActionScheduler scheduler = new ActionScheduler();
+        ChannelCollection samplingCollection = new ChannelCollection(1000, 100, "group", null);
+        ChannelCollection loggingCollection = new ChannelCollection(1000, 100, null, null);
+        scheduler.addSamplingCollection(samplingCollection, 1100);
+        scheduler.addLoggingCollection(loggingCollection, 1100);
+
+        assertSame(samplingCollection, scheduler.getSamplingCollection(1000, 100, "group", null));
+        assertNull(scheduler.getSamplingCollection(1000, 100, "otherGroup", null));
+        assertNull(scheduler.getSamplingCollection(1000, 0, "group", null));
+        assertSame(loggingCollection, scheduler.getLoggingCollection(1000, 100));
+        assertNull(scheduler.getLoggingCollection(2000, 100));
+    }
+
+    @Test
+    public void rescheduledCollectionStaysIndexed() {
+        ActionScheduler scheduler = new ActionScheduler();
+        ChannelCollection samplingCollection = new ChannelCollection(1000, 0, "", null);
+        scheduler.addSamplingCollection(samplingCollection, 1000);
+
+        scheduler.removeFirst();
+        scheduler.addSamplingCollection(samplingCollection, 2000);
+
+        assertSame(samplingCollection, scheduler.getSamplingCollection(1000, 0, "", null));
+        assertEquals(2000, samplingCollection.action.startTime);
+    }
+
+    @Test
+    public void removedCollectionsAreNotFoundAnymore() {
+        ActionScheduler scheduler = new ActionScheduler();
+        ChannelCollection samplingCollection = new ChannelCollection(1000, 0, "", null);
+        ChannelCollection loggingCollection = new ChannelCollection(1000, 0, null, null);
+        scheduler.addSamplingCollection(samplingCollection, 1000);
+        scheduler.addLoggingCollection(loggingCollection, 1000);
+
+        scheduler.removeSamplingCollection(samplingCollection);
+        scheduler.removeLoggingCollection(loggingCollection);
+
+        assertNull(scheduler.getSamplingCollection(1000, 0, "", null));
+        assertNull(scheduler.getLoggingCollection(1000, 0));
+        assertTrue(samplingCollection.action.samplingCollections.isEmpty());
+        assertTrue(loggingCollection.action.loggingCollections.isEmpty());
+    }
+
+}
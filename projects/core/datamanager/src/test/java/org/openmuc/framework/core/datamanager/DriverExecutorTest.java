@@ -0,0 +1,121 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.config.DriverConfig;
+
+public class DriverExecutorTest {
+
+    private static DriverConfigImpl driverConfig(String executor, Integer poolSize) throws Exception {
+        RootConfigImpl rootConfig = new RootConfigImpl();
+        DriverConfigImpl driverConfig = rootConfig.addDriver("driver");
+        driverConfig.setExecutor(executor);
+        driverConfig.setExecutorPoolSize(poolSize);
+        return rootConfig.cloneWithDefaults().driverConfigsById.get("driver");
+    }
+
+    @Test
+    public void sharedExecutorIsDefault() throws Exception {
+        DriverConfigImpl config = driverConfig(null, null);
+
+        assertEquals(DriverConfig.EXECUTOR_SHARED, config.getExecutor());
+        assertNull(DriverExecutor.create(config, Runnable::run));
+    }
+
+    @Test
+    public void invalidSettingsAreRejected() throws Exception {
+        DriverConfigImpl config = new RootConfigImpl().addDriver("driver");
+
+        assertThrows(IllegalArgumentException.class, () -> config.setExecutor("cached"));
+        assertThrows(IllegalArgumentException.class, () -> config.setExecutorPoolSize(0));
+    }
+
+    @Test
+    public void boundedExecutorLimitsConcurrentTasks() throws Exception {
+        DriverExecutor executor = DriverExecutor.create(driverConfig(DriverConfig.EXECUTOR_BOUNDED, 2),
+                Runnable::run);
+        assertNotNull(executor);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finished.countDown();
+            });
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getRunningCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, executor.getRunningCount());
+        assertEquals(3, executor.getQueueSize());
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void rejectedTasksRunOnFallback() throws Exception {
+        List<Runnable> fallbackTasks = new ArrayList<>();
+        DriverExecutor executor = DriverExecutor.create(driverConfig(DriverConfig.EXECUTOR_BOUNDED, 1),
+                fallbackTasks::add);
+        executor.shutdown();
+
+        executor.execute(() -> {
+        });
+
+        assertEquals(1, fallbackTasks.size());
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    @Test
+    public void executorIsReusedIfConfigIsUnchanged() throws Exception {
+        DriverExecutor executor = DriverExecutor.create(driverConfig(DriverConfig.EXECUTOR_BOUNDED, 3),
+                Runnable::run);
+
+        assertTrue(executor.matches(driverConfig(DriverConfig.EXECUTOR_BOUNDED, 3)));
+        assertFalse(executor.matches(driverConfig(DriverConfig.EXECUTOR_BOUNDED, 4)));
+        assertFalse(executor.matches(driverConfig(DriverConfig.EXECUTOR_SHARED, 3)));
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+public class EventInboxTest {
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(8, new EventInbox<Integer>(5, EventInbox.OverflowPolicy.BLOCK, new DataManager()).capacity());
+        assertEquals(8, new EventInbox<Integer>(8, EventInbox.OverflowPolicy.BLOCK, new DataManager()).capacity());
+        assertEquals(2, new EventInbox<Integer>(1, EventInbox.OverflowPolicy.BLOCK, new DataManager()).capacity());
+    }
+
+    @Test
+    public void eventsArePolledInOrder() {
+        EventInbox<Integer> inbox = new EventInbox<>(4, EventInbox.OverflowPolicy.BLOCK, new DataManager());
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(inbox.offer(i));
+            }
+            assertFalse(inbox.offer(4));
+            assertEquals(4, inbox.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(i), inbox.poll());
+            }
+            assertNull(inbox.poll());
+        }
+    }
+
+    @Test
+    public void dropNewestKeepsOldEvents() {
+        EventInbox<Integer> inbox = new EventInbox<>(2, EventInbox.OverflowPolicy.DROP_NEWEST, new DataManager());
+        assertTrue(inbox.put(1));
+        assertTrue(inbox.put(2));
+        assertFalse(inbox.put(3));
+
+        assertEquals(1, inbox.getDroppedCount());
+        assertEquals(Integer.valueOf(1), inbox.poll());
+        assertEquals(Integer.valueOf(2), inbox.poll());
+    }
+
+    @Test
+    public void dropOldestKeepsNewEvents() {
+        EventInbox<Integer> inbox = new EventInbox<>(2, EventInbox.OverflowPolicy.DROP_OLDEST, new DataManager());
+        assertTrue(inbox.put(1));
+        assertTrue(inbox.put(2));
+        assertFalse(inbox.put(3));
+
+        assertEquals(1, inbox.getDroppedCount());
+        assertEquals(Integer.valueOf(2), inbox.poll());
+        assertEquals(Integer.valueOf(3), inbox.poll());
+    }
+
+    @Test
+    public void blockedProducerDropsEventWhenInboxIsClosed() throws InterruptedException {
+        EventInbox<Integer> inbox = new EventInbox<>(2, EventInbox.OverflowPolicy.BLOCK, new DataManager());
+        assertTrue(inbox.put(1));
+        assertTrue(inbox.put(2));
+
+        AtomicBoolean result = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> result.set(inbox.put(3)));
+        producer.start();
+        Thread.sleep(50);
+        assertTrue(producer.isAlive());
+
+        inbox.close();
+        producer.join(5000);
+
+        assertFalse(producer.isAlive());
+        assertFalse(result.get());
+        assertEquals(1, inbox.getDroppedCount());
+        assertEquals(Integer.valueOf(1), inbox.poll());
+        assertEquals(Integer.valueOf(2), inbox.poll());
+        assertNull(inbox.poll());
+    }
+
+    @Test
+    public void concurrentProducersDoNotLoseEvents() throws InterruptedException {
+        final int producerCount = 4;
+        final int eventsPerProducer = 100000;
+        final EventInbox<Integer> inbox = new EventInbox<>(64, EventInbox.OverflowPolicy.BLOCK, new DataManager());
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < producerCount; p++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    inbox.put(i);
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+
+        long sum = 0;
+        int received = 0;
+        while (received < producerCount * eventsPerProducer) {
+            Integer event = inbox.poll();
+            if (event == null) {
+                Thread.yield();
+                continue;
+            }
+            sum += event;
+            received++;
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        long expectedSum = (long) producerCount * eventsPerProducer * (eventsPerProducer - 1) / 2;
+        assertEquals(expectedSum, sum);
+        assertEquals(0, inbox.getDroppedCount());
+        assertNull(inbox.poll());
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.config.ChannelConfig;
+import org.openmuc.framework.config.DeviceConfig;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.ChannelState;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class LoggingControllerTest {
+
+    private final Deque<DataLoggerService> activeDataLoggers = new LinkedList<>();
+    private final LoggingController loggingController = new LoggingController(activeDataLoggers, false);
+
+    private static List<ChannelImpl> channels(String... loggingSettings) throws Exception {
+        RootConfigImpl rootConfig = new RootConfigImpl();
+        DeviceConfig deviceConfig = rootConfig.addDriver("driver").addDevice("device");
+        for (int i = 0; i < loggingSettings.length; i++) {
+            ChannelConfig channelConfig = deviceConfig.addChannel("channel" + i);
+            channelConfig.setLoggingSettings(loggingSettings[i]);
+        }
+
+        RootConfigImpl configWithDefaults = rootConfig.cloneWithDefaults();
+        DataManager dataManager = new DataManager();
+        List<ChannelImpl> channels = new ArrayList<>();
+        for (int i = 0; i < loggingSettings.length; i++) {
+            ChannelConfigImpl config = configWithDefaults.channelConfigsById.get("channel" + i);
+            ChannelImpl channel = new ChannelImpl(dataManager, config, ChannelState.CONNECTED,
+                    Flag.NO_VALUE_RECEIVED_YET, System.currentTimeMillis(), new ArrayList<>());
+            config.channel = channel;
+            channels.add(channel);
+        }
+        return channels;
+    }
+
+    private static Action loggingAction(List<ChannelImpl> channels) {
+        ChannelCollection loggingCollection = new ChannelCollection(1000, 0, null, null);
+        loggingCollection.channels.addAll(channels);
+        Action action = new Action(1000);
+        action.loggingCollections = new LinkedList<>();
+        action.loggingCollections.add(loggingCollection);
+        return action;
+    }
+
+    @Test
+    public void recordsAreRoutedByLoggingSettings() throws Exception {
+        TestDataLogger loggerA = new TestDataLogger("a", true);
+        TestDataLogger loggerB = new TestDataLogger("b", false);
+        activeDataLoggers.add(loggerA);
+        activeDataLoggers.add(loggerB);
+        Action action = loggingAction(channels("a:interval=1", null, "a;b"));
+
+        loggingController.triggerLogging(action);
+
+        assertEquals("[channel0, channel2]", loggerA.loggedIds.toString());
+        assertEquals("[channel1, channel2]", loggerB.loggedIds.toString());
+    }
+
+    @Test
+    public void routesFollowDataLoggerChanges() throws Exception {
+        TestDataLogger loggerA = new TestDataLogger("a", false);
+        activeDataLoggers.add(loggerA);
+        Action action = loggingAction(channels((String) null));
+
+        loggingController.triggerLogging(action);
+        assertEquals("[channel0]", loggerA.loggedIds.toString());
+
+        TestDataLogger loggerB = new TestDataLogger("b", false);
+        activeDataLoggers.addFirst(loggerB);
+        loggingController.triggerLogging(action);
+
+        assertEquals("[channel0]", loggerB.loggedIds.toString());
+        assertEquals("[channel0]", loggerA.loggedIds.toString());
+    }
+
+    @Test
+    public void deletedChannelsAreRemovedFromCollection() throws Exception {
+        TestDataLogger loggerA = new TestDataLogger("a", false);
+        activeDataLoggers.add(loggerA);
+        List<ChannelImpl> channels = channels(null, null);
+        Action action = loggingAction(channels);
+
+        loggingController.triggerLogging(action);
+        assertEquals(2, loggerA.loggedIds.size());
+
+        channels.get(0).config.state = ChannelState.DELETED;
+        loggingController.triggerLogging(action);
+
+        assertEquals("[channel1]", loggerA.loggedIds.toString());
+        assertEquals(1, action.loggingCollections.get(0).channels.size());
+    }
+
+    @Test
+    public void eventsAreRoutedByLoggingSettings() throws Exception {
+        TestDataLogger loggerA = new TestDataLogger("a", true);
+        TestDataLogger loggerB = new TestDataLogger("b", false);
+        activeDataLoggers.add(loggerA);
+        activeDataLoggers.add(loggerB);
+        List<ChannelImpl> channels = channels("b", null);
+
+        List<ChannelRecordContainerImpl> containers = new ArrayList<>();
+        for (ChannelImpl channel : channels) {
+            containers.add(new ChannelRecordContainerImpl(channel));
+        }
+        loggingController.deliverLogsToEventBasedLogServices(containers);
+
+        assertTrue(loggerA.loggedIds.isEmpty());
+        assertEquals("[channel0, channel1]", loggerB.loggedIds.toString());
+    }
+
+    private static class TestDataLogger implements DataLoggerService {
+
+        private final String id;
+        private final boolean logSettingsRequired;
+        List<String> loggedIds = new ArrayList<>();
+
+        TestDataLogger(String id, boolean logSettingsRequired) {
+            this.id = id;
+            this.logSettingsRequired = logSettingsRequired;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public void setChannelsToLog(List<LogChannel> channels) {
+        }
+
+        @Override
+        public void log(List<LoggingRecord> containers, long timestamp) {
+            loggedIds = containers.stream().map(LoggingRecord::getChannelId).collect(Collectors.toList());
+        }
+
+        @Override
+        public void logEvent(List<LoggingRecord> containers, long timestamp) {
+            log(containers, timestamp);
+        }
+
+        @Override
+        public boolean logSettingsRequired() {
+            return logSettingsRequired;
+        }
+
+        @Override
+        public List<Record> getRecords(String channelId, long startTime, long endTime) {
+            return null;
+        }
+
+        @Override
+        public Record getLatestLogRecord(String channelId) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.ByteArrayValue;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.datalogger.spi.DataLoggerService;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+public class LoggingPipelineTest {
+
+    private static List<LoggingRecord> batch(long timestamp) {
+        return Collections.singletonList(
+                new LoggingRecord("channel", new Record(new DoubleValue(timestamp), timestamp, Flag.VALID)));
+    }
+
+    @Test
+    public void dropOldestKeepsLatestBatches() throws Exception {
+        BlockingDataLogger dataLogger = new BlockingDataLogger();
+        LoggingPipeline pipeline = new LoggingPipeline(dataLogger, 2, LoggingPipeline.OverflowPolicy.DROP_OLDEST,
+                null);
+
+        pipeline.log(batch(0), 0);
+        assertTrue(dataLogger.started.await(5, TimeUnit.SECONDS));
+        for (long timestamp = 1; timestamp <= 5; timestamp++) {
+            pipeline.log(batch(timestamp), timestamp);
+        }
+        assertEquals(2, pipeline.getBacklog());
+        assertEquals(3, pipeline.getDroppedRecords());
+
+        dataLogger.release.countDown();
+        assertTrue(pipeline.closeAndWait(5, TimeUnit.SECONDS));
+        assertEquals("[0, 4, 5]", dataLogger.timestamps.toString());
+    }
+
+    @Test
+    public void spilledBatchesAreDeliveredInOrder() throws Exception {
+        File spillDirectory = Files.createTempDirectory("openmuc-spill").toFile();
+        BlockingDataLogger dataLogger = new BlockingDataLogger();
+        LoggingPipeline pipeline = new LoggingPipeline(dataLogger, 2, LoggingPipeline.OverflowPolicy.SPILL,
+                spillDirectory);
+
+        pipeline.log(batch(0), 0);
+        assertTrue(dataLogger.started.await(5, TimeUnit.SECONDS));
+        for (long timestamp = 1; timestamp <= 6; timestamp++) {
+            pipeline.log(batch(timestamp), timestamp);
+            awaitSpilled(pipeline);
+        }
+        List<LoggingRecord> event = new ArrayList<>();
+        event.add(new LoggingRecord("text", new Record(new StringValue("abc"), 7L, Flag.VALID)));
+        event.add(new LoggingRecord("bytes", new Record(new ByteArrayValue(new byte[] { 1, 2 }), 7L, Flag.VALID)));
+        event.add(new LoggingRecord("error", new Record(Flag.DRIVER_ERROR_TIMEOUT)));
+        pipeline.logEvent(event, 7);
+        awaitSpilled(pipeline);
+        assertEquals(7, pipeline.getBacklog());
+        assertEquals(1, spillDirectory.list().length);
+
+        dataLogger.release.countDown();
+        assertTrue(pipeline.closeAndWait(5, TimeUnit.SECONDS));
+
+        assertEquals("[0, 1, 2, 3, 4, 5, 6, 7]", dataLogger.timestamps.toString());
+        assertEquals(6.0, dataLogger.records.get(6).get(0).getRecord().getValue().asDouble());
+        List<LoggingRecord> spilledEvent = dataLogger.records.get(7);
+        assertEquals("abc", spilledEvent.get(0).getRecord().getValue().asString());
+        assertArrayEquals(new byte[] { 1, 2 }, spilledEvent.get(1).getRecord().getValue().asByteArray());
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, spilledEvent.get(2).getRecord().getFlag());
+        assertEquals(0, spillDirectory.list().length);
+        spillDirectory.delete();
+    }
+
+    @Test
+    public void spilledStringsAreNotLimitedTo64KiB() throws Exception {
+        File spillDirectory = Files.createTempDirectory("openmuc-spill").toFile();
+        BlockingDataLogger dataLogger = new BlockingDataLogger();
+        LoggingPipeline pipeline = new LoggingPipeline(dataLogger, 2, LoggingPipeline.OverflowPolicy.SPILL,
+                spillDirectory);
+
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 40000) {
+            builder.append("\u00e4\u20ac");
+        }
+        String text = builder.toString();
+
+        pipeline.log(batch(0), 0);
+        assertTrue(dataLogger.started.await(5, TimeUnit.SECONDS));
+        for (long timestamp = 1; timestamp <= 3; timestamp++) {
+            pipeline.log(batch(timestamp), timestamp);
+            awaitSpilled(pipeline);
+        }
+        List<LoggingRecord> records = new ArrayList<>();
+        records.add(new LoggingRecord("text", new Record(new StringValue(text), 4L, Flag.VALID)));
+        pipeline.log(records, 4);
+        awaitSpilled(pipeline);
+        pipeline.log(batch(5), 5);
+        awaitSpilled(pipeline);
+
+        dataLogger.release.countDown();
+        assertTrue(pipeline.closeAndWait(5, TimeUnit.SECONDS));
+
+        assertEquals("[0, 1, 2, 3, 4, 5]", dataLogger.timestamps.toString());
+        assertEquals(text, dataLogger.records.get(4).get(0).getRecord().getValue().asString());
+        assertEquals(0, pipeline.getDroppedRecords());
+        assertEquals(0, spillDirectory.list().length);
+        spillDirectory.delete();
+    }
+
+    @Test
+    public void channelUpdatesDoNotOvertakeSpilledBatches() throws Exception {
+        File spillDirectory = Files.createTempDirectory("openmuc-spill").toFile();
+        BlockingDataLogger dataLogger = new BlockingDataLogger();
+        LoggingPipeline pipeline = new LoggingPipeline(dataLogger, 2, LoggingPipeline.OverflowPolicy.SPILL,
+                spillDirectory);
+
+        pipeline.log(batch(0), 0);
+        assertTrue(dataLogger.started.await(5, TimeUnit.SECONDS));
+        for (long timestamp = 1; timestamp <= 4; timestamp++) {
+            pipeline.log(batch(timestamp), timestamp);
+            awaitSpilled(pipeline);
+        }
+        pipeline.setChannelsToLog(Collections.emptyList());
+        awaitSpilled(pipeline);
+        pipeline.log(batch(5), 5);
+        awaitSpilled(pipeline);
+        assertEquals(6, pipeline.getBacklog());
+
+        dataLogger.release.countDown();
+        assertTrue(pipeline.closeAndWait(5, TimeUnit.SECONDS));
+
+        assertEquals("[0, 1, 2, 3, 4, channels, 5]", dataLogger.calls.toString());
+        assertEquals(0, pipeline.getDroppedRecords());
+        assertEquals(0, spillDirectory.list().length);
+        spillDirectory.delete();
+    }
+
+    @Test
+    public void channelUpdatesAreKeptIfSpillFileCanNotBeCreated() throws Exception {
+        File notADirectory = File.createTempFile("openmuc-spill", ".tmp");
+        BlockingDataLogger dataLogger = new BlockingDataLogger();
+        LoggingPipeline pipeline = new LoggingPipeline(dataLogger, 2, LoggingPipeline.OverflowPolicy.SPILL,
+                notADirectory);
+
+        pipeline.log(batch(0), 0);
+        assertTrue(dataLogger.started.await(5, TimeUnit.SECONDS));
+        for (long timestamp = 1; timestamp <= 3; timestamp++) {
+            pipeline.log(batch(timestamp), timestamp);
+        }
+        awaitSpilled(pipeline);
+        pipeline.setChannelsToLog(Collections.emptyList());
+        pipeline.log(batch(4), 4);
+
+        dataLogger.release.countDown();
+        assertTrue(pipeline.closeAndWait(5, TimeUnit.SECONDS));
+
+        // batch 3 is dropped because it can not be spilled, the spill writer then waits until the worker caught up
+        assertEquals("[0, 1, 2, channels, 4]", dataLogger.calls.toString());
+        assertEquals(1, pipeline.getDroppedRecords());
+        notADirectory.delete();
+    }
+
+    /**
+     * Waits until the spill writer has written all batches handed over to it.
+     */
+    private static void awaitSpilled(LoggingPipeline pipeline) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getSpillPending() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, pipeline.getSpillPending());
+    }
+
+    private static class BlockingDataLogger implements DataLoggerService {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Long> timestamps = Collections.synchronizedList(new ArrayList<>());
+        final List<List<LoggingRecord>> records = Collections.synchronizedList(new ArrayList<>());
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String getId() {
+            return "blocking";
+        }
+
+        @Override
+        public void setChannelsToLog(List<LogChannel> channels) {
+            calls.add("channels");
+        }
+
+        @Override
+        public void log(List<LoggingRecord> containers, long timestamp) {
+            timestamps.add(timestamp);
+            records.add(containers);
+            calls.add(String.valueOf(timestamp));
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void logEvent(List<LoggingRecord> containers, long timestamp) {
+            log(containers, timestamp);
+        }
+
+        @Override
+        public boolean logSettingsRequired() {
+            return false;
+        }
+
+        @Override
+        public List<Record> getRecords(String channelId, long startTime, long endTime) {
+            return null;
+        }
+
+        @Override
+        public Record getLatestLogRecord(String channelId) {
+            return null;
+        }
+    }
+
+}
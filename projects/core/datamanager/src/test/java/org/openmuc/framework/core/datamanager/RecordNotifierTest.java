@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.BatchRecordListener;
+import org.openmuc.framework.dataaccess.ChannelState;
+import org.openmuc.framework.dataaccess.ReadRecordContainer;
+import org.openmuc.framework.dataaccess.RecordListener;
+
+public class RecordNotifierTest {
+
+    private final RecordNotifier notifier = new RecordNotifier(1);
+
+    @AfterEach
+    public void shutdown() {
+        notifier.shutdown();
+    }
+
+    private static ChannelImpl channel(String id) throws Exception {
+        RootConfigImpl rootConfig = new RootConfigImpl();
+        rootConfig.addDriver("driver").addDevice("device").addChannel(id);
+        ChannelConfigImpl config = rootConfig.cloneWithDefaults().channelConfigsById.get(id);
+        return new ChannelImpl(new DataManager(), config, ChannelState.CONNECTED, Flag.NO_VALUE_RECEIVED_YET,
+                System.currentTimeMillis(), new ArrayList<>());
+    }
+
+    private static Record record(double value) {
+        return new Record(new DoubleValue(value), System.currentTimeMillis());
+    }
+
+    @Test
+    public void recordsAreCoalescedWhileListenerIsBusy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<Record> received = new LinkedBlockingQueue<>();
+        RecordListener listener = record -> {
+            received.add(record);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        ChannelImpl channel = channel("channel");
+        RecordNotifier.Subscriber subscriber = notifier.subscribe(listener);
+
+        Record first = record(1);
+        subscriber.newRecord(channel, first);
+        assertSame(first, received.poll(5, TimeUnit.SECONDS));
+
+        subscriber.newRecord(channel, record(2));
+        Record last = record(3);
+        subscriber.newRecord(channel, last);
+        release.countDown();
+
+        assertSame(last, received.poll(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void batchListenerReceivesRecordsOfAllChannels() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingQueue<List<ReadRecordContainer>> batches = new LinkedBlockingQueue<>();
+        BatchRecordListener listener = records -> {
+            batches.add(records);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        ChannelImpl channel1 = channel("channel1");
+        ChannelImpl channel2 = channel("channel2");
+        RecordNotifier.Subscriber subscriber = notifier.subscribe(listener);
+        assertSame(subscriber, notifier.subscribe(listener));
+        assertEquals(1, notifier.getListenerCount());
+
+        subscriber.newRecord(channel1, record(0));
+        assertEquals(1, batches.poll(5, TimeUnit.SECONDS).size());
+
+        Record record1 = record(1);
+        Record record2 = record(2);
+        subscriber.newRecord(channel1, record1);
+        subscriber.newRecord(channel2, record2);
+        release.countDown();
+
+        List<ReadRecordContainer> batch = batches.poll(5, TimeUnit.SECONDS);
+        assertEquals(2, batch.size());
+        assertSame(channel1, batch.get(0).getChannel());
+        assertSame(record1, batch.get(0).getRecord());
+        assertSame(channel2, batch.get(1).getChannel());
+        assertSame(record2, batch.get(1).getRecord());
+    }
+
+    @Test
+    public void subscriberIsRemovedWithLastSubscription() throws Exception {
+        RecordListener listener = record -> {
+        };
+        ChannelImpl channel1 = channel("channel1");
+        ChannelImpl channel2 = channel("channel2");
+        RecordNotifier.Subscriber subscriber = notifier.subscribe(listener);
+        notifier.subscribe(listener);
+
+        notifier.unsubscribe(subscriber, channel1);
+        assertEquals(1, notifier.getListenerCount());
+        notifier.unsubscribe(subscriber, channel2);
+        assertEquals(0, notifier.getListenerCount());
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.core.datamanager;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.IntValue;
+import org.openmuc.framework.data.LongValue;
+import org.openmuc.framework.data.ShortValue;
+import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.TypeConversionException;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+
+public class ValueConverterTest {
+
+    private static ValueConverter converter(ValueType valueType, Double scalingFactor, Double valueOffset) {
+        ChannelConfigImpl config = new ChannelConfigImpl("channel", null);
+        config.setValueType(valueType);
+        config.setScalingFactor(scalingFactor);
+        config.setValueOffset(valueOffset);
+        return new ValueConverter(config);
+    }
+
+    @Test
+    public void valueOfConfiguredTypeIsPassedThrough() {
+        Value value = new DoubleValue(1.5);
+
+        assertSame(value, converter(ValueType.DOUBLE, null, null).convert(value));
+    }
+
+    @Test
+    public void valueIsConvertedToConfiguredType() {
+        Value converted = converter(ValueType.SHORT, null, null).convert(new LongValue(70000));
+
+        assertEquals(ShortValue.class, converted.getClass());
+        assertEquals((short) 70000, converted.asShort());
+    }
+
+    @Test
+    public void scalingFactorAndOffsetAreApplied() {
+        Value converted = converter(ValueType.INTEGER, 0.5, 10.0).convert(new IntValue(7));
+
+        assertEquals(IntValue.class, converted.getClass());
+        assertEquals(13, converted.asInt());
+
+        converted = converter(ValueType.STRING, 2.0, null).convert(new IntValue(3));
+        assertEquals("6.0", converted.asString());
+
+        converted = converter(ValueType.BYTE_ARRAY, null, 1.0).convert(new IntValue(1));
+        assertArrayEquals(new DoubleValue(2.0).asByteArray(), converted.asByteArray());
+    }
+
+    @Test
+    public void scalingIsSkippedForNonNumericValues() {
+        Value converted = converter(ValueType.STRING, 2.0, 1.0).convert(new StringValue("abc"));
+
+        assertEquals("abc", converted.asString());
+        assertThrows(TypeConversionException.class,
+                () -> converter(ValueType.DOUBLE, 2.0, null).convert(new StringValue("abc")));
+    }
+
+}
@@ -23,6 +23,7 @@ package org.openmuc.framework.datalogger.spi;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.Record;
 
@@ -35,7 +36,9 @@ public interface DataLoggerService {
     /**
      * Called by data manager to tell the logger that it should log the given records
      * <p>
-     * NOTE: Implementation of this method should be non blocking to avoid blocking in the data manager.
+     * NOTE: Implementation of this method should be non blocking to avoid blocking in the data manager. Unless
+     * disabled with <code>org.openmuc.framework.datamanager.logging.async=false</code>, the data manager calls the
+     * logging methods from a thread dedicated to the data logger, so a slow call only delays the data logger itself.
      *
      * @param containers
      *            containers to log
@@ -65,6 +68,33 @@ public interface DataLoggerService {
      */
     List<Record> getRecords(String channelId, long startTime, long endTime) throws IOException;
 
+    /**
+     * Passes all logged data records with timestamps from <code>startTime</code> to <code>endTime</code> for the
+     * channel with the given <code>channelId</code> to the given consumer, one by one in ascending order of time. Data
+     * loggers that support it read the records incrementally, so long time ranges can be processed without holding all
+     * records in memory.
+     * <p>
+     * The default implementation passes the records returned by {@link #getRecords(String, long, long)}.
+     *
+     * @param channelId
+     *            the channel ID.
+     * @param startTime
+     *            the starting time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param endTime
+     *            the ending time in milliseconds since midnight, January 1, 1970 UTC. inclusive
+     * @param consumer
+     *            called for every record. Runtime exceptions thrown by it abort the read and are passed on to the
+     *            caller.
+     * @throws IOException
+     *             if any kind of error occurs accessing the logged data.
+     */
+    default void getRecords(String channelId, long startTime, long endTime, Consumer<Record> consumer)
+            throws IOException {
+        for (Record record : getRecords(channelId, startTime, endTime)) {
+            consumer.accept(record);
+        }
+    }
+
     /**
      * Returns the Record with the highest timestamp available in all logged data for the channel with the given
      * <code>channelId</code>. If there are multiple Records with the same timestamp, results may not be consistent.
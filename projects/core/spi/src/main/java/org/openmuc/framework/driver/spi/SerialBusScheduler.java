@@ -0,0 +1,270 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.driver.spi;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openmuc.framework.dataaccess.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Grants the devices sharing one physical bus (e.g. an RS-485 line) exclusive access to it, one transaction at a time.
+ * <p>
+ * Waiting transactions are served in the order of their deadlines, so a device with a short sampling timeout is not
+ * starved by slow devices queued before it. A transaction whose deadline has passed while it was waiting is dropped
+ * without touching the bus, because the data manager has already flagged its channels. Between two transactions the
+ * bus is kept quiet for the inter-frame gap. Instead of every driver sleeping after its last frame, the gap is only
+ * waited for if another transaction is ready to start.
+ * <p>
+ * Usage:
+ * 
+ * <pre>
+ * if (!scheduler.acquire(SerialBusScheduler.deadlineOf(containers))) {
+ *     // deadline passed, flag the channels
+ * }
+ * try {
+ *     // exchange frames with the device
+ * } finally {
+ *     scheduler.release();
+ * }
+ * </pre>
+ */
+public final class SerialBusScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(SerialBusScheduler.class);
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final Map<String, SerialBusScheduler> schedulers = new HashMap<>();
+
+    private final String portName;
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+
+    private long interFrameGapNanos = 0;
+    private long sequence = 0;
+    private boolean busy = false;
+    private long lastReleaseNanos;
+    private long acquireNanos;
+
+    private long reportStartNanos;
+    private long busyNanos = 0;
+    private int transactionCount = 0;
+    private int expiredCount = 0;
+    private long maxWaitNanos = 0;
+    private double utilization = 0;
+
+    private SerialBusScheduler(String portName) {
+        this.portName = portName;
+        lastReleaseNanos = System.nanoTime();
+        reportStartNanos = lastReleaseNanos;
+    }
+
+    /**
+     * Returns the scheduler of the given port. All drivers and devices using the same port name share one scheduler.
+     *
+     * @param portName
+     *            name of the physical port, e.g. /dev/ttyUSB0
+     * @return the scheduler of the port
+     */
+    public static SerialBusScheduler forPort(String portName) {
+        synchronized (schedulers) {
+            return schedulers.computeIfAbsent(portName, SerialBusScheduler::new);
+        }
+    }
+
+    /**
+     * Calculates the deadline of a read from the sampling timeout, or the sampling interval if there is no timeout, of
+     * the channels to read.
+     *
+     * @param containers
+     *            the channels to read
+     * @return the deadline in milliseconds since epoch or {@link Long#MAX_VALUE} if the channels have none
+     */
+    public static long deadlineOf(List<? extends ChannelRecordContainer> containers) {
+        long period = Long.MAX_VALUE;
+        for (ChannelRecordContainer container : containers) {
+            Channel channel = container.getChannel();
+            if (channel == null) {
+                continue;
+            }
+            int channelPeriod = channel.getSamplingTimeout() > 0 ? channel.getSamplingTimeout()
+                    : channel.getSamplingInterval();
+            if (channelPeriod > 0) {
+                period = Math.min(period, channelPeriod);
+            }
+        }
+        if (period == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return System.currentTimeMillis() + period;
+    }
+
+    /**
+     * Raises the time the bus is kept quiet between two transactions to at least the given gap.
+     *
+     * @param gap
+     *            the minimum gap
+     * @param unit
+     *            the unit of the gap
+     */
+    public synchronized void requireInterFrameGap(long gap, TimeUnit unit) {
+        interFrameGapNanos = Math.max(interFrameGapNanos, unit.toNanos(gap));
+    }
+
+    /**
+     * Waits until the bus is free, no transaction with an earlier deadline is waiting and the inter-frame gap has
+     * elapsed. Must be followed by {@link #release()} if it returns true.
+     *
+     * @param deadline
+     *            deadline of the transaction in milliseconds since epoch, {@link Long#MAX_VALUE} for none
+     * @return true if the bus has been acquired, false if the deadline passed while waiting
+     * @throws InterruptedException
+     *             if the thread was interrupted while waiting
+     */
+    public synchronized boolean acquire(long deadline) throws InterruptedException {
+        long startNanos = System.nanoTime();
+        Waiter waiter = new Waiter(deadline, sequence++);
+        waiters.add(waiter);
+
+        try {
+            while (true) {
+                long remainingMillis = deadline - System.currentTimeMillis();
+                if (remainingMillis <= 0) {
+                    waiters.remove(waiter);
+                    expiredCount++;
+                    notifyAll();
+                    return false;
+                }
+
+                long waitNanos;
+                if (busy || waiters.peek() != waiter) {
+                    waitNanos = TimeUnit.MILLISECONDS.toNanos(remainingMillis);
+                }
+                else {
+                    waitNanos = lastReleaseNanos + interFrameGapNanos - System.nanoTime();
+                    if (waitNanos <= 0) {
+                        break;
+                    }
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+            }
+        } catch (InterruptedException e) {
+            waiters.remove(waiter);
+            notifyAll();
+            throw e;
+        }
+
+        waiters.poll();
+        busy = true;
+        acquireNanos = System.nanoTime();
+        maxWaitNanos = Math.max(maxWaitNanos, acquireNanos - startNanos);
+        return true;
+    }
+
+    /**
+     * Releases the bus after a transaction.
+     */
+    public synchronized void release() {
+        if (!busy) {
+            throw new IllegalStateException("Bus " + portName + " has not been acquired");
+        }
+        busy = false;
+        lastReleaseNanos = System.nanoTime();
+        busyNanos += lastReleaseNanos - acquireNanos;
+        transactionCount++;
+        notifyAll();
+
+        long reportNanos = lastReleaseNanos - reportStartNanos;
+        if (reportNanos >= REPORT_INTERVAL_NANOS) {
+            utilization = (double) busyNanos / reportNanos;
+            logger.debug("{}", this);
+            reportStartNanos = lastReleaseNanos;
+            busyNanos = 0;
+            transactionCount = 0;
+            expiredCount = 0;
+            maxWaitNanos = 0;
+        }
+    }
+
+    /**
+     * Returns the share of time the bus was busy during the last report interval of one minute.
+     *
+     * @return the utilization between 0 and 1
+     */
+    public synchronized double getUtilization() {
+        return utilization;
+    }
+
+    /**
+     * Returns the number of transactions dropped because their deadline passed while waiting, since the start of the
+     * current report interval of one minute.
+     *
+     * @return the number of expired transactions
+     */
+    public synchronized int getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * Returns the number of transactions waiting for the bus.
+     *
+     * @return the number of waiting transactions
+     */
+    public synchronized int getWaitingCount() {
+        return waiters.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(
+                "Bus %s: utilization %.1f %%, transactions %d, expired %d, max wait %d ms, waiting %d, gap %d ms",
+                portName, utilization * 100, transactionCount, expiredCount,
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos), waiters.size(),
+                TimeUnit.NANOSECONDS.toMillis(interFrameGapNanos));
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+
+        private final long deadline;
+        private final long sequence;
+
+        private Waiter(long deadline, long sequence) {
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Waiter other) {
+            int result = Long.compare(deadline, other.deadline);
+            if (result == 0) {
+                result = Long.compare(sequence, other.sequence);
+            }
+            return result;
+        }
+    }
+
+}
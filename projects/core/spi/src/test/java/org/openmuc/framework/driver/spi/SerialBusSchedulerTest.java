@@ -0,0 +1,233 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.driver.spi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class SerialBusSchedulerTest {
+
+    private static final AtomicInteger ports = new AtomicInteger();
+
+    /*
+     * Schedulers are shared per port name, so every test uses a port of its own.
+     */
+    private static SerialBusScheduler newScheduler() {
+        return SerialBusScheduler.forPort("/dev/test" + ports.incrementAndGet());
+    }
+
+    private static void awaitWaiting(SerialBusScheduler scheduler, int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (scheduler.getWaitingCount() < count) {
+            assertTrue(System.currentTimeMillis() < end, "waiting transactions: " + scheduler.getWaitingCount());
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void schedulerIsSharedPerPort() {
+        SerialBusScheduler scheduler = SerialBusScheduler.forPort("/dev/shared");
+        assertSame(scheduler, SerialBusScheduler.forPort("/dev/shared"));
+        assertNotSame(scheduler, SerialBusScheduler.forPort("/dev/other"));
+    }
+
+    @Test
+    public void waitersAreServedInDeadlineOrder() throws InterruptedException {
+        SerialBusScheduler scheduler = newScheduler();
+        assertTrue(scheduler.acquire(Long.MAX_VALUE));
+
+        long now = System.currentTimeMillis();
+        long[] deadlines = { now + 20_000, now + 10_000, Long.MAX_VALUE, now + 30_000 };
+        List<Long> served = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (long deadline : deadlines) {
+            Thread thread = new Thread(() -> {
+                try {
+                    if (scheduler.acquire(deadline)) {
+                        served.add(deadline);
+                        scheduler.release();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+            // queued one after another, so the order of the deadlines differs from the order of arrival
+            awaitWaiting(scheduler, threads.size());
+        }
+
+        scheduler.release();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        assertEquals(4, served.size());
+        assertEquals(Long.valueOf(now + 10_000), served.get(0));
+        assertEquals(Long.valueOf(now + 20_000), served.get(1));
+        assertEquals(Long.valueOf(now + 30_000), served.get(2));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), served.get(3));
+    }
+
+    @Test
+    public void transactionExpiresWhileWaiting() throws InterruptedException {
+        SerialBusScheduler scheduler = newScheduler();
+        assertTrue(scheduler.acquire(Long.MAX_VALUE));
+
+        AtomicBoolean acquired = new AtomicBoolean(true);
+        Thread thread = new Thread(() -> {
+            try {
+                acquired.set(scheduler.acquire(System.currentTimeMillis() + 100));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        thread.join(5000);
+
+        assertFalse(acquired.get());
+        assertEquals(1, scheduler.getExpiredCount());
+        assertEquals(0, scheduler.getWaitingCount());
+
+        // a deadline that has already passed does not get the bus either, even if it is free
+        scheduler.release();
+        assertFalse(scheduler.acquire(System.currentTimeMillis() - 1));
+        assertEquals(2, scheduler.getExpiredCount());
+
+        assertTrue(scheduler.acquire(Long.MAX_VALUE));
+        scheduler.release();
+    }
+
+    @Test
+    public void expiredHeadDoesNotBlockLaterDeadlines() throws InterruptedException {
+        SerialBusScheduler scheduler = newScheduler();
+        assertTrue(scheduler.acquire(Long.MAX_VALUE));
+
+        AtomicBoolean first = new AtomicBoolean(true);
+        AtomicBoolean second = new AtomicBoolean(false);
+        Thread expiring = new Thread(() -> {
+            try {
+                first.set(scheduler.acquire(System.currentTimeMillis() + 100));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread waiting = new Thread(() -> {
+            try {
+                if (scheduler.acquire(System.currentTimeMillis() + 10_000)) {
+                    second.set(true);
+                    scheduler.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        expiring.start();
+        waiting.start();
+        awaitWaiting(scheduler, 2);
+        expiring.join(5000);
+
+        scheduler.release();
+        waiting.join(5000);
+
+        assertFalse(first.get());
+        assertTrue(second.get());
+    }
+
+    @Test
+    public void interFrameGapIsKeptBetweenTransactions() throws InterruptedException {
+        SerialBusScheduler scheduler = newScheduler();
+        scheduler.requireInterFrameGap(100, TimeUnit.MILLISECONDS);
+        // a smaller gap required by another device does not shorten it
+        scheduler.requireInterFrameGap(10, TimeUnit.MILLISECONDS);
+
+        assertTrue(scheduler.acquire(Long.MAX_VALUE));
+        long releaseStart = System.nanoTime();
+        scheduler.release();
+        // the gap is not waited for on release
+        assertTrue(System.nanoTime() - releaseStart < TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertTrue(scheduler.acquire(Long.MAX_VALUE));
+        assertTrue(System.nanoTime() - releaseStart >= TimeUnit.MILLISECONDS.toNanos(100));
+        scheduler.release();
+
+        // a gap that has already passed is not waited for again
+        Thread.sleep(150);
+        long acquireStart = System.nanoTime();
+        assertTrue(scheduler.acquire(Long.MAX_VALUE));
+        assertTrue(System.nanoTime() - acquireStart < TimeUnit.MILLISECONDS.toNanos(100));
+        scheduler.release();
+    }
+
+    @Test
+    public void interruptedWaiterLeavesTheQueue() throws InterruptedException {
+        SerialBusScheduler scheduler = newScheduler();
+        assertTrue(scheduler.acquire(Long.MAX_VALUE));
+
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        // the earliest deadline, so it would be served first
+        Thread thread = new Thread(() -> {
+            try {
+                scheduler.acquire(System.currentTimeMillis() + 10_000);
+            } catch (InterruptedException e) {
+                thrown.set(e);
+            }
+        });
+        thread.start();
+        awaitWaiting(scheduler, 1);
+        thread.interrupt();
+        thread.join(5000);
+
+        assertTrue(thrown.get() instanceof InterruptedException);
+        assertEquals(0, scheduler.getWaitingCount());
+        assertEquals(0, scheduler.getExpiredCount());
+
+        scheduler.release();
+        assertTrue(scheduler.acquire(System.currentTimeMillis() + 10_000));
+        scheduler.release();
+    }
+
+    @Test
+    public void releaseWithoutAcquireFails() throws InterruptedException {
+        SerialBusScheduler scheduler = newScheduler();
+        assertThrows(IllegalStateException.class, scheduler::release);
+
+        assertTrue(scheduler.acquire(Long.MAX_VALUE));
+        scheduler.release();
+        assertThrows(IllegalStateException.class, scheduler::release);
+    }
+
+}
@@ -21,10 +21,14 @@
 
 package org.openmuc.framework.datalogger.amqp;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.management.openmbean.InvalidKeyException;
 
@@ -33,6 +37,7 @@ import org.openmuc.framework.datalogger.spi.DataLoggerService;
 import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
 import org.openmuc.framework.lib.amqp.AmqpConnection;
+import org.openmuc.framework.lib.amqp.AmqpMessageTuple;
 import org.openmuc.framework.lib.amqp.AmqpSettings;
 import org.openmuc.framework.lib.amqp.AmqpWriter;
 import org.openmuc.framework.lib.osgi.config.DictionaryPreprocessor;
@@ -109,36 +114,59 @@ public class AmqpLogger implements DataLoggerService, ManagedService {
     }
 
     private void iterateContainersToLog(List<LoggingRecord> containers) {
+        Map<String, List<LoggingRecord>> recordsPerQueue = new LinkedHashMap<>();
         for (LoggingRecord loggingRecord : containers) {
             String channelId = loggingRecord.getChannelId();
             if (channelsToLog.containsKey(channelId)) {
-                executeLog(loggingRecord);
+                recordsPerQueue.computeIfAbsent(getQueueName(channelId), queue -> new ArrayList<>())
+                        .add(loggingRecord);
             }
         }
-    }
 
-    private void executeLog(LoggingRecord loggingRecord) {
-        String channelId = loggingRecord.getChannelId();
-        byte[] message;
+        // all messages of one log call are published as one batch on one channel
+        List<AmqpMessageTuple> messages = new ArrayList<>(containers.size());
+        boolean multiple = propertyHandler.getBoolean(Settings.MULTIPLE);
+        for (Map.Entry<String, List<LoggingRecord>> entry : recordsPerQueue.entrySet()) {
+            if (multiple) {
+                addMessage(messages, entry.getKey(), serialize(entry.getValue()));
+                continue;
+            }
+            for (LoggingRecord loggingRecord : entry.getValue()) {
+                addMessage(messages, entry.getKey(), serialize(loggingRecord));
+            }
+        }
+        writer.write(messages);
+    }
 
-        if (parsers.containsKey(propertyHandler.getString(Settings.PARSER))) {
-            message = parseMessage(loggingRecord);
+    private static void addMessage(List<AmqpMessageTuple> messages, String queue, byte[] message) {
+        if (message != null) {
+            messages.add(new AmqpMessageTuple(queue, message));
         }
-        else {
+    }
+
+    private byte[] serialize(LoggingRecord loggingRecord) {
+        ParserService parser = parsers.get(propertyHandler.getString(Settings.PARSER));
+        if (parser == null) {
             Gson gson = new Gson();
-            message = gson.toJson(loggingRecord.getRecord()).getBytes();
+            return gson.toJson(loggingRecord.getRecord()).getBytes();
         }
-
-        if (message == null) {
-            return;
+        try {
+            return parser.serialize(loggingRecord);
+        } catch (SerializationException e) {
+            logger.error(e.getMessage());
+            return null;
         }
-
-        writer.write(getQueueName(channelId), message);
     }
 
-    private byte[] parseMessage(LoggingRecord loggingRecord) {
+    private byte[] serialize(List<LoggingRecord> loggingRecords) {
+        ParserService parser = parsers.get(propertyHandler.getString(Settings.PARSER));
+        if (parser == null) {
+            Gson gson = new Gson();
+            List<Record> records = loggingRecords.stream().map(LoggingRecord::getRecord).collect(Collectors.toList());
+            return gson.toJson(records).getBytes();
+        }
         try {
-            return parsers.get(propertyHandler.getString(Settings.PARSER)).serialize(loggingRecord);
+            return parser.serialize(loggingRecords);
         } catch (SerializationException e) {
             logger.error(e.getMessage());
             return null;
@@ -268,7 +296,10 @@ public class AmqpLogger implements DataLoggerService, ManagedService {
                 propertyHandler.getInt(Settings.MAX_FILE_COUNT),
                 propertyHandler.getInt(Settings.MAX_FILE_SIZE),
                 propertyHandler.getInt(Settings.MAX_BUFFER_SIZE),
-                propertyHandler.getInt(Settings.CONNECTION_ALIVE_INTERVAL));
+                propertyHandler.getInt(Settings.CONNECTION_ALIVE_INTERVAL),
+                propertyHandler.getBoolean(Settings.PUBLISHER_CONFIRMS),
+                propertyHandler.getInt(Settings.CONFIRM_TIMEOUT),
+                propertyHandler.getInt(Settings.CHANNEL_POOL_SIZE));
         // @formatter:on
         return amqpSettings;
     }
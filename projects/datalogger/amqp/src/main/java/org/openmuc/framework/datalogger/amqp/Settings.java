@@ -40,6 +40,10 @@ public class Settings extends GenericSettings {
     public static final String MAX_FILE_SIZE = "maxFileSize";
     public static final String MAX_BUFFER_SIZE = "maxBufferSize";
     public static final String CONNECTION_ALIVE_INTERVAL = "connectionAliveInterval";
+    public static final String MULTIPLE = "multiple";
+    public static final String PUBLISHER_CONFIRMS = "publisherConfirms";
+    public static final String CONFIRM_TIMEOUT = "confirmTimeout";
+    public static final String CHANNEL_POOL_SIZE = "channelPoolSize";
 
     public Settings() {
         super();
@@ -63,6 +67,14 @@ public class Settings extends GenericSettings {
                 new ServiceProperty(MAX_FILE_COUNT, "maximum number of files per buffer", "2", true));
         properties.put(CONNECTION_ALIVE_INTERVAL, new ServiceProperty(CONNECTION_ALIVE_INTERVAL,
                 "interval in seconds to detect broken connections (heartbeat)", "60", true));
+        properties.put(MULTIPLE, new ServiceProperty(MULTIPLE,
+                "if true compose log records of the same queue to one amqp message", "false", true));
+        properties.put(PUBLISHER_CONFIRMS, new ServiceProperty(PUBLISHER_CONFIRMS,
+                "if true wait until the broker confirmed the published messages", "false", true));
+        properties.put(CONFIRM_TIMEOUT, new ServiceProperty(CONFIRM_TIMEOUT,
+                "time in ms to wait for the confirmation of published messages", "5000", true));
+        properties.put(CHANNEL_POOL_SIZE, new ServiceProperty(CHANNEL_POOL_SIZE,
+                "maximum number of idle channels kept open for publishing", "4", true));
 
     }
 
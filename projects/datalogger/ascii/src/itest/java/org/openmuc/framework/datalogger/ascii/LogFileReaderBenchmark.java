@@ -0,0 +1,115 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.ascii.LogFileWriterBenchmark.BenchmarkLogChannel;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+/**
+ * Measures the time of {@link LogFileReader#getValues(long, long)} for history queries of different length. The log
+ * files of the given number of days are written first, with one line per second.
+ * <p>
+ * Usage: {@code LogFileReaderBenchmark [days] [channels]}, the number of repetitions per query can be set with the
+ * system property {@code repetitions}.
+ */
+public class LogFileReaderBenchmark {
+
+    private static final int LOGGING_INTERVAL = 1000;
+    private static final int REPETITIONS = Integer.getInteger("repetitions", 20);
+
+    public static void main(String[] args) throws Exception {
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int channels = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        File directory = Files.createTempDirectory("openmuc-ascii").toFile();
+        try {
+            Map<String, LogChannel> logChannels = new HashMap<>();
+            LogIntervalContainerGroup group = new LogIntervalContainerGroup();
+            for (int channel = 0; channel < channels; channel++) {
+                String channelId = "channel_" + channel;
+                logChannels.put(channelId, new BenchmarkLogChannel(channelId, LOGGING_INTERVAL, 0));
+                group.add(new LoggingRecord(channelId,
+                        new Record(new DoubleValue(channel * 1.5), System.currentTimeMillis(), Flag.VALID)));
+            }
+
+            Calendar calendar = new GregorianCalendar(Locale.getDefault());
+            calendar.add(Calendar.DAY_OF_YEAR, -days);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            long start = calendar.getTimeInMillis();
+            long end = start + days * 86400000L;
+
+            LogFilePool filePool = new LogFilePool(1, Long.MAX_VALUE);
+            LogFileWriter writer = new LogFileWriter(directory.getPath() + "/", false, filePool);
+            for (long timestamp = start; timestamp < end; timestamp += LOGGING_INTERVAL) {
+                calendar.setTimeInMillis(timestamp);
+                writer.log(group, LOGGING_INTERVAL, 0, calendar, logChannels);
+            }
+            filePool.closeAll();
+
+            LogFileReader reader = new LogFileReader(directory.getPath() + "/", logChannels.get("channel_0"));
+            System.out.println("query;records;ms/query");
+            long middle = start + days * 86400000L / 2;
+            run("1 minute", reader, middle, middle + 60000);
+            run("1 hour", reader, middle, middle + 3600000);
+            run("1 hour across midnight", reader, start + 86400000L - 1800000, start + 86400000L + 1800000);
+            run(days + " days", reader, start, end);
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private static void run(String query, LogFileReader reader, long startTime, long endTime) {
+        int records = 0;
+        for (int i = 0; i < REPETITIONS; i++) {
+            records = reader.getValues(startTime, endTime).get("channel_0").size();
+        }
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) {
+            List<Record> result = reader.getValues(startTime, endTime).get("channel_0");
+            records = result.size();
+        }
+        double millis = (System.nanoTime() - startNanos) / 1e6 / REPETITIONS;
+        System.out.printf("%s;%d;%.2f%n", query, records, millis);
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+
+/**
+ * Measures the number of lines per second written by the {@link LogFileWriter} with and without a {@link LogFilePool}.
+ * Every logging call writes one line to each of the given number of interval groups, like {@link AsciiLogger#log}.
+ * <p>
+ * Usage: {@code LogFileWriterBenchmark [groups] [channels per group] [logging calls]}
+ */
+public class LogFileWriterBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int groups = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int channelsPerGroup = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int calls = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+
+        Map<String, LogChannel> logChannels = new HashMap<>();
+        List<LogIntervalContainerGroup> containerGroups = new ArrayList<>();
+        for (int group = 0; group < groups; group++) {
+            LogIntervalContainerGroup containerGroup = new LogIntervalContainerGroup();
+            for (int channel = 0; channel < channelsPerGroup; channel++) {
+                String channelId = "channel_" + group + "_" + channel;
+                logChannels.put(channelId, new BenchmarkLogChannel(channelId, 1000, group));
+                containerGroup.add(new LoggingRecord(channelId,
+                        new Record(new DoubleValue(channel * 1.5), System.currentTimeMillis(), Flag.VALID)));
+            }
+            containerGroups.add(containerGroup);
+        }
+
+        System.out.println("mode;lines;lines/s");
+        run("open and close per call", null, logChannels, containerGroups, calls);
+        run("pool, flush every call", new LogFilePool(groups, 0), logChannels, containerGroups, calls);
+        run("pool, flush every 1000 ms", new LogFilePool(groups, 1000), logChannels, containerGroups, calls);
+    }
+
+    private static void run(String mode, LogFilePool filePool, Map<String, LogChannel> logChannels,
+            List<LogIntervalContainerGroup> containerGroups, int calls) throws Exception {
+        File directory = Files.createTempDirectory("openmuc-ascii").toFile();
+        try {
+            LogFileWriter writer = new LogFileWriter(directory.getPath() + "/", false, filePool);
+            Calendar calendar = new GregorianCalendar(Locale.getDefault());
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            long start = calendar.getTimeInMillis();
+
+            long startTime = System.nanoTime();
+            for (int call = 0; call < calls; call++) {
+                calendar.setTimeInMillis(start + call * 1000L);
+                for (int group = 0; group < containerGroups.size(); group++) {
+                    writer.log(containerGroups.get(group), 1000, group, calendar, logChannels);
+                }
+                if (filePool != null) {
+                    filePool.flush(System.currentTimeMillis());
+                }
+            }
+            if (filePool != null) {
+                filePool.closeAll();
+            }
+            long elapsedNanos = System.nanoTime() - startTime;
+
+            long lines = (long) calls * containerGroups.size();
+            System.out.printf("%s;%d;%.0f%n", mode, lines, lines * 1e9 / elapsedNanos);
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    static class BenchmarkLogChannel implements LogChannel {
+
+        private final String id;
+        private final int loggingInterval;
+        private final int loggingTimeOffset;
+
+        BenchmarkLogChannel(String id, int loggingInterval, int loggingTimeOffset) {
+            this.id = id;
+            this.loggingInterval = loggingInterval;
+            this.loggingTimeOffset = loggingTimeOffset;
+        }
+
+        @Override
+        public String getLoggingSettings() {
+            return null;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getDescription() {
+            return "";
+        }
+
+        @Override
+        public String getChannelAddress() {
+            return "";
+        }
+
+        @Override
+        public String getUnit() {
+            return "";
+        }
+
+        @Override
+        public ValueType getValueType() {
+            return ValueType.DOUBLE;
+        }
+
+        @Override
+        public Integer getValueTypeLength() {
+            return 0;
+        }
+
+        @Override
+        public Double getScalingFactor() {
+            return null;
+        }
+
+        @Override
+        public Double getValueOffset() {
+            return null;
+        }
+
+        @Override
+        public Boolean isListening() {
+            return false;
+        }
+
+        @Override
+        public Integer getSamplingInterval() {
+            return loggingInterval;
+        }
+
+        @Override
+        public Integer getSamplingTimeOffset() {
+            return 0;
+        }
+
+        @Override
+        public String getSamplingGroup() {
+            return "";
+        }
+
+        @Override
+        public Integer getLoggingInterval() {
+            return loggingInterval;
+        }
+
+        @Override
+        public Integer getLoggingTimeOffset() {
+            return loggingTimeOffset;
+        }
+
+        @Override
+        public Boolean isDisabled() {
+            return false;
+        }
+
+        @Override
+        public Boolean isLoggingEvent() {
+            return false;
+        }
+    }
+
+}
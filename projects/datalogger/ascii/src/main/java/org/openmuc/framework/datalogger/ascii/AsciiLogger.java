@@ -53,9 +53,15 @@ public class AsciiLogger implements DataLoggerService {
     private static final Logger logger = LoggerFactory.getLogger(AsciiLogger.class);
     private static final String DIRECTORY = System
             .getProperty(AsciiLogger.class.getPackage().getName().toLowerCase() + ".directory");
+    private static final String MAX_OPEN_FILES_PROPERTY = AsciiLogger.class.getPackage().getName().toLowerCase()
+            + ".maxOpenFiles";
+    private static final String FLUSH_INTERVAL_PROPERTY = AsciiLogger.class.getPackage().getName().toLowerCase()
+            + ".flushInterval";
+    private static final int MAX_OPEN_FILES_DEFAULT = 32;
     private static HashMap<String, Long> lastLoggedLineList = new HashMap<>();
     private final String loggerDirectory;
     private final HashMap<String, LogChannel> logChannelList = new HashMap<>();
+    private final LogFilePool filePool;
     private boolean isFillUpFiles = true;
     private static final long MS_PER_DAY = 86400000;
 
@@ -68,12 +74,27 @@ public class AsciiLogger implements DataLoggerService {
             loggerDirectory = DIRECTORY.trim();
         }
         createDirectory(loggerDirectory);
+        filePool = createFilePool();
     }
 
     public AsciiLogger(String loggerDirectory) {
 
         this.loggerDirectory = loggerDirectory;
         createDirectory(loggerDirectory);
+        filePool = createFilePool();
+    }
+
+    private static LogFilePool createFilePool() {
+
+        int maxOpenFiles = Integer.getInteger(MAX_OPEN_FILES_PROPERTY, MAX_OPEN_FILES_DEFAULT);
+        if (maxOpenFiles < 1) {
+            logger.warn("Property: {} must be at least 1. Using default value: {}", MAX_OPEN_FILES_PROPERTY,
+                    MAX_OPEN_FILES_DEFAULT);
+            maxOpenFiles = MAX_OPEN_FILES_DEFAULT;
+        }
+        long flushInterval = Long.getLong(FLUSH_INTERVAL_PROPERTY, 0L);
+        logger.debug("Keeping up to {} files open, flush interval is {} ms", maxOpenFiles, flushInterval);
+        return new LogFilePool(maxOpenFiles, flushInterval);
     }
 
     public static Long getLastLoggedLineTimeStamp(int loggingInterval, int loggingOffset) {
@@ -211,6 +232,7 @@ public class AsciiLogger implements DataLoggerService {
     protected void deactivate(ComponentContext context) {
 
         logger.info("Deactivating Ascii Logger");
+        filePool.closeAll();
     }
 
     private void createDirectory(String loggerDirectory) {
@@ -236,6 +258,8 @@ public class AsciiLogger implements DataLoggerService {
 
         Calendar calendar = new GregorianCalendar(Locale.getDefault());
         logChannelList.clear();
+        // files might be filled up or renamed below
+        filePool.closeAll();
 
         logger.trace("channels to log:");
         for (LogChannel logChannel : logChannels) {
@@ -321,13 +345,14 @@ public class AsciiLogger implements DataLoggerService {
 
             logTimeArray = it.next().getKey();
             LogIntervalContainerGroup group = logIntervalGroups.get(logTimeArray);
-            LogFileWriter fileOutHandler = new LogFileWriter(loggerDirectory, isFillUpFiles);
+            LogFileWriter fileOutHandler = new LogFileWriter(loggerDirectory, isFillUpFiles, filePool);
 
             calendar.setTimeInMillis(timestamp);
 
             fileOutHandler.log(group, logTimeArray.get(0), logTimeArray.get(1), calendar, logChannelList);
             setLastLoggedLineTimeStamp(logTimeArray.get(0), logTimeArray.get(1), calendar.getTimeInMillis());
         }
+        filePool.flush(System.currentTimeMillis());
     }
 
     @Override
@@ -337,6 +362,7 @@ public class AsciiLogger implements DataLoggerService {
         LogFileReader reader = null;
 
         if (logChannel != null) {
+            filePool.flushAll();
             reader = new LogFileReader(loggerDirectory, logChannel);
             return reader.getValues(startTime, endTime).get(channelId);
         } // TODO: hier einfuegen, dass nach Logdateien gesucht werden soll, die vorhanden
@@ -365,6 +391,7 @@ public class AsciiLogger implements DataLoggerService {
         if (logChannel == null) {
             throw new IOException("ChannelID (" + channelId + ") not available. It's not a logging Channel.");
         }
+        filePool.flushAll();
         reader = new LogFileReader(loggerDirectory, logChannel);
         // attempt to find a record within the last day
         long endTime = System.currentTimeMillis();
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the log files of the logging interval groups open between two logging calls. There is at most one open file
+ * per group: as soon as a group writes to the file of a new day the file of the day before is flushed and closed. If
+ * more than {@code maxOpenFiles} groups are logging, the least recently used file is closed.
+ * <p>
+ * Lines are collected in a buffer per file and written to the file channel if the buffer is full or on
+ * {@link #flush(long)}, which only writes the buffers if the flush interval has elapsed since the last flush.
+ */
+public class LogFilePool {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogFilePool.class);
+
+    private static final int BUFFER_SIZE = 16384;
+
+    private final int maxOpenFiles;
+    private final long flushInterval;
+    private final Map<String, LogFile> openFiles = new LinkedHashMap<>(16, 0.75f, true);
+    private long lastFlush;
+
+    /**
+     * @param maxOpenFiles
+     *            maximum number of files kept open
+     * @param flushInterval
+     *            minimum time in ms between two flushes. With 0 all buffers are written on every flush call.
+     */
+    public LogFilePool(int maxOpenFiles, long flushInterval) {
+        if (maxOpenFiles < 1) {
+            throw new IllegalArgumentException("At least one open file is required but was " + maxOpenFiles);
+        }
+        this.maxOpenFiles = maxOpenFiles;
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Returns the open log file of a group. The file is opened for appending if the group has no open file yet or if
+     * its open file is a different one, e.g. the file of the day before.
+     *
+     * @param groupKey
+     *            logging interval and logging time offset of the group
+     * @param file
+     *            the file to write to
+     * @return the open log file
+     * @throws IOException
+     *             if the file can not be opened
+     */
+    public synchronized LogFile get(String groupKey, File file) throws IOException {
+        LogFile logFile = openFiles.get(groupKey);
+        if (logFile != null) {
+            if (logFile.file.equals(file)) {
+                return logFile;
+            }
+            openFiles.remove(groupKey);
+            close(logFile);
+        }
+
+        if (openFiles.size() >= maxOpenFiles) {
+            Iterator<LogFile> eldest = openFiles.values().iterator();
+            close(eldest.next());
+            eldest.remove();
+        }
+
+        logFile = LogFile.open(file);
+        openFiles.put(groupKey, logFile);
+        return logFile;
+    }
+
+    /**
+     * Closes the open file of a group without flushing it, e.g. after a write error.
+     *
+     * @param groupKey
+     *            logging interval and logging time offset of the group
+     */
+    public synchronized void discard(String groupKey) {
+        LogFile logFile = openFiles.remove(groupKey);
+        if (logFile != null) {
+            logFile.buffer.clear();
+            close(logFile);
+        }
+    }
+
+    /**
+     * Writes the buffered lines of all open files if the flush interval has elapsed.
+     *
+     * @param currentTime
+     *            the current time in ms
+     */
+    public synchronized void flush(long currentTime) {
+        if (currentTime - lastFlush >= flushInterval) {
+            flushAll();
+            lastFlush = currentTime;
+        }
+    }
+
+    /**
+     * Writes the buffered lines of all open files, e.g. before the files are read.
+     */
+    public synchronized void flushAll() {
+        for (LogFile logFile : openFiles.values()) {
+            try {
+                logFile.flush();
+            } catch (IOException e) {
+                logger.error("Could not write to file " + logFile.file.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes all open files, e.g. before files are renamed.
+     */
+    public synchronized void closeAll() {
+        for (LogFile logFile : openFiles.values()) {
+            close(logFile);
+        }
+        openFiles.clear();
+    }
+
+    public synchronized int getOpenFileCount() {
+        return openFiles.size();
+    }
+
+    private static void close(LogFile logFile) {
+        try {
+            logFile.close();
+        } catch (IOException e) {
+            logger.error("Could not close file " + logFile.file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * A log file opened for appending. Characters are written as US-ASCII, others are replaced by '?'.
+     */
+    public static final class LogFile {
+
+        private final File file;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long size;
+
+        private LogFile(File file, FileChannel channel) throws IOException {
+            this.file = file;
+            this.channel = channel;
+            this.size = channel.size();
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        /**
+         * Opens a file for appending. The file is created if it does not exist.
+         *
+         * @param file
+         *            the file to open
+         * @return the open file
+         * @throws IOException
+         *             if the file can not be opened
+         */
+        public static LogFile open(File file) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            try {
+                return new LogFile(file, channel);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return true if nothing has been written to the file yet, so it still needs a header
+         */
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public void write(CharSequence chars) throws IOException {
+            for (int i = 0; i < chars.length(); i++) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                char c = chars.charAt(i);
+                buffer.put(c < 0x80 ? (byte) c : (byte) '?');
+            }
+            size += chars.length();
+        }
+
+        public void flush() throws IOException {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+}
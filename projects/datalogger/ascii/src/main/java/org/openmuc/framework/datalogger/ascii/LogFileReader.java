@@ -20,10 +20,13 @@
  */
 package org.openmuc.framework.datalogger.ascii;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.text.SimpleDateFormat;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -41,10 +44,20 @@ import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Reads the records of a channel from the log files. The lines of a file are sorted by time, so the first line of a
+ * requested time span is found by a binary search over the file. Only the column of the channel and the time stamp
+ * column of the following lines are parsed.
+ */
 public class LogFileReader {
 
     private static final Logger logger = LoggerFactory.getLogger(LogFileReader.class);
 
+    private static final byte SEPARATOR_START = (byte) Const.SEPARATOR.charAt(0);
+    private static final byte SEPARATOR_END = (byte) Const.SEPARATOR.charAt(1);
+    private static final byte LINE_END = (byte) Const.LINESEPARATOR;
+    private static final byte COMMENT = (byte) Const.COMMENT_SIGN.charAt(0);
+
     private final String[] ids;
     private final String path;
     private final int loggingInterval;
@@ -52,7 +65,6 @@ public class LogFileReader {
     private int unixTimestampColumn;
     private long startTimestamp;
     private long endTimestamp;
-    private long firstTimestampFromFile;
 
     /**
      * LogFileReader Constructor
@@ -68,7 +80,6 @@ public class LogFileReader {
         ids = new String[] { logChannel.getId(), Const.TIMESTAMP_STRING };
         this.loggingInterval = logChannel.getLoggingInterval();
         this.logTimeOffset = logChannel.getLoggingTimeOffset();
-        firstTimestampFromFile = -1;
     }
 
     /**
@@ -176,7 +187,7 @@ public class LogFileReader {
     }
 
     /**
-     * Reads the file line by line
+     * Reads the lines of the requested time span from a file
      *
      * @param filepath
      *            file path
@@ -187,163 +198,77 @@ public class LogFileReader {
     private Map<String, List<Record>> processFile(Map<String, List<Record>> recordsMap, String filepath,
             Boolean nextFile) {
 
-        String line = null;
-        long currentPosition = 0;
-        long rowSize;
-        long firstTimestamp = 0;
-        String firstValueLine = null;
-        long currentTimestamp = 0;
+        try (LogFileBuffer file = LogFileBuffer.open(new File(filepath))) {
+            if (file == null) {
+                return null;
+            }
 
-        RandomAccessFile raf = LoggerUtils.getRandomAccessFile(new File(filepath), "r");
-        if (raf == null) {
-            return null;
-        }
-        try {
             Map<String, Integer> channelsColumnsMap = null;
+            long lineStart = 0;
+            long lineEnd = 0;
             while (channelsColumnsMap == null) {
-                line = raf.readLine();
-                channelsColumnsMap = LoggerUtils.getColumnNumbersByNames(line, ids);
+                lineEnd = file.lineEnd(lineStart);
+                if (lineEnd < 0) {
+                    return null; // no header
+                }
+                channelsColumnsMap = LoggerUtils.getColumnNumbersByNames(file.string(lineStart, lineEnd), ids);
+                lineStart = lineEnd + 1;
             }
             unixTimestampColumn = channelsColumnsMap.get(Const.TIMESTAMP_STRING);
-            firstValueLine = raf.readLine();
-
-            rowSize = firstValueLine.length() + 1l; // +1 because of "\n"
-
-            // rewind the position to the start of the firstValue line
-            currentPosition = raf.getFilePointer() - rowSize;
 
-            firstTimestamp = (long) (Double.valueOf((firstValueLine.split(Const.SEPARATOR))[unixTimestampColumn])
-                    * 1000);
-
-            if (nextFile || startTimestamp < firstTimestamp) {
-                startTimestamp = firstTimestamp;
+            if (nextFile) {
+                // the time span started in a file before
+                lineStart = file.findLine(lineStart, Long.MIN_VALUE, unixTimestampColumn);
+            }
+            else {
+                lineStart = file.findLine(lineStart, startTimestamp, unixTimestampColumn);
             }
 
-            if (startTimestamp >= firstTimestamp) {
-                long filepos = getFilePosition(loggingInterval, startTimestamp, firstTimestamp, currentPosition,
-                        rowSize);
-                raf.seek(filepos);
-
-                currentTimestamp = startTimestamp;
-
-                while ((line = raf.readLine()) != null && currentTimestamp <= endTimestamp) {
-
-                    processLine(line, channelsColumnsMap, recordsMap);
-                    currentTimestamp += loggingInterval;
+            while ((lineEnd = file.lineEnd(lineStart)) >= 0) {
+                if (file.byteAt(lineStart) != COMMENT) {
+                    long timestampMS;
+                    try {
+                        timestampMS = file.timestamp(lineStart, lineEnd, unixTimestampColumn);
+                    } catch (NumberFormatException e) {
+                        logger.warn("It's not a timestamp.\n", e.getMessage());
+                        lineStart = lineEnd + 1;
+                        continue;
+                    }
+                    if (timestampMS > endTimestamp) {
+                        break;
+                    }
+                    readRecordsFromLine(file, lineStart, lineEnd, timestampMS, channelsColumnsMap, recordsMap);
                 }
-                raf.close();
-            }
-            else {
-                recordsMap = null; // because the column of the channel was not identified
+                lineStart = lineEnd + 1;
             }
-        } catch (IOException e) {
+        } catch (IOException | NumberFormatException e) {
             logger.error(e.getMessage());
             recordsMap = null;
         }
         return recordsMap;
     }
 
-    /**
-     * Process the line: ignore comments, read records
-     *
-     * @param line
-     *            the line to process
-     * @param recordsMap
-     *            list of records
-     */
-    private void processLine(String line, Map<String, Integer> channelsColumnsMap,
-            Map<String, List<Record>> recordsMap) {
-
-        if (!line.startsWith(Const.COMMENT_SIGN)) {
-            readRecordsFromLine(line, channelsColumnsMap, recordsMap);
-        }
-    }
-
     /**
      * read the records from a line.
-     *
-     * @param line
-     *            to read
-     * @return Records read from line
      */
-    private void readRecordsFromLine(String line, Map<String, Integer> channelsColumnsMap,
-            Map<String, List<Record>> recordsMap) {
-
-        String columnValue[] = line.split(Const.SEPARATOR);
-
-        try {
-            Double timestampS = Double.parseDouble(columnValue[unixTimestampColumn]);
-
-            long timestampMS = ((Double) (timestampS * (1000))).longValue();
-
-            if (isTimestampPartOfRequestedInterval(timestampMS)) {
-                for (Entry<String, Integer> entry : channelsColumnsMap.entrySet()) {
-                    Record record = convertLogfileEntryToRecord(columnValue[entry.getValue()].trim(), timestampMS);
-                    List<Record> list = recordsMap.get(entry.getKey());
-                    if (list == null) {
-                        recordsMap.put(entry.getKey(), new ArrayList<Record>());
-                        list = recordsMap.get(entry.getKey());
-                    }
-                    list.add(record);
-                }
+    private void readRecordsFromLine(LogFileBuffer file, long lineStart, long lineEnd, long timestampMS,
+            Map<String, Integer> channelsColumnsMap, Map<String, List<Record>> recordsMap) throws IOException {
+
+        for (Entry<String, Integer> entry : channelsColumnsMap.entrySet()) {
+            long columnStart = file.columnStart(lineStart, lineEnd, entry.getValue());
+            if (columnStart < 0) {
+                logger.error("Column " + entry.getValue() + " of channel " + entry.getKey() + " is missing.");
+                continue;
             }
-            else {
-                if (logger.isTraceEnabled()) {
-                    SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss.SSS");
-                    logger.trace("timestampMS: " + sdf.format(timestampMS) + " " + timestampMS);
-                }
+            String strValue = file.string(columnStart, file.columnEnd(columnStart, lineEnd)).trim();
+            Record record = convertLogfileEntryToRecord(strValue, timestampMS);
+            List<Record> list = recordsMap.get(entry.getKey());
+            if (list == null) {
+                recordsMap.put(entry.getKey(), new ArrayList<Record>());
+                list = recordsMap.get(entry.getKey());
             }
-        } catch (NumberFormatException e) {
-            logger.warn("It's not a timestamp.\n", e.getMessage());
-        } catch (ArrayIndexOutOfBoundsException e) {
-            logger.error("Array Index Out Of Bounds Exception. ", e);
-        }
-    }
-
-    /**
-     * Checks if the time stamp read from file is part of the requested logging interval
-     *
-     * @param lineTimestamp
-     *            time stamp to check if it is part of the time span
-     * @return true if it is a part of the requested interval, if not false.
-     */
-    private boolean isTimestampPartOfRequestedInterval(long lineTimestamp) {
-        boolean result = false;
-
-        // TODO tidy up, move to better place, is asked each line!
-        if (firstTimestampFromFile == -1) {
-            firstTimestampFromFile = lineTimestamp;
-        }
-
-        if (lineTimestamp >= startTimestamp && lineTimestamp <= endTimestamp) {
-            result = true;
-        }
-        return result;
-    }
-
-    /**
-     * Get the position of the startTimestamp, without Header.
-     *
-     * @param loggingInterval
-     *            logging interval
-     * @param startTimestamp
-     *            start time stamp
-     * @return the position of the start timestamp as long.
-     */
-    private long getFilePosition(int loggingInterval, long startTimestamp, long firstTimestampOfFile,
-            long firstValuePos, long rowSize) {
-
-        long timeOffsetMs = startTimestamp - firstTimestampOfFile;
-        long numberOfLinesToSkip = timeOffsetMs / loggingInterval;
-
-        // if offset isn't a multiple of loggingInterval add an additional line
-        if (timeOffsetMs % loggingInterval != 0) {
-            ++numberOfLinesToSkip;
+            list.add(record);
         }
-
-        long pos = numberOfLinesToSkip * rowSize + firstValuePos;
-
-        return pos;
     }
 
     // TODO support ints, booleans, ...
@@ -433,4 +358,162 @@ public class LogFileReader {
         }
         return true;
     }
+
+    /**
+     * Buffered random access to a log file. Blocks of the file are read with positional reads, so the file is not
+     * locked against renaming while it is read. A trailing line without line separator is still being written and is
+     * ignored.
+     */
+    private static final class LogFileBuffer implements Closeable {
+
+        private static final int BLOCK_SIZE = 8192;
+
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        private long blockStart = -1;
+        private int blockLength;
+
+        private LogFileBuffer(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        /**
+         * @return the buffer or null if the file does not exist
+         */
+        static LogFileBuffer open(File file) throws IOException {
+            try {
+                return new LogFileBuffer(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+            } catch (NoSuchFileException e) {
+                logger.warn("Requested logfile: '{}' not found.", file.getAbsolutePath());
+                return null;
+            }
+        }
+
+        byte byteAt(long position) throws IOException {
+            if (position < blockStart || position >= blockStart + blockLength) {
+                block.clear();
+                blockStart = position;
+                blockLength = 0;
+                while (block.hasRemaining()) {
+                    int read = channel.read(block, blockStart + blockLength);
+                    if (read < 0) {
+                        break;
+                    }
+                    blockLength += read;
+                }
+                if (blockLength == 0) {
+                    throw new IOException("Unexpected end of file at position " + position);
+                }
+            }
+            return block.get((int) (position - blockStart));
+        }
+
+        /**
+         * @return the position of the line separator of the line starting at the given position or -1 if the line is
+         *         not complete
+         */
+        long lineEnd(long lineStart) throws IOException {
+            for (long position = lineStart; position < size; position++) {
+                if (byteAt(position) == LINE_END) {
+                    return position;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Finds the first line starting at or after the data start that has a time stamp not less than the given one.
+         * Lines are sorted by time, so a binary search over the byte positions of the file is used.
+         *
+         * @return the start of the line or the end of the complete lines if there is no such line
+         */
+        long findLine(long dataStart, long timestamp, int timestampColumn) throws IOException {
+            long low = dataStart;
+            long high = size;
+            while (low < high) {
+                long middle = (low + high) >>> 1;
+                long lineStart = nextDataLine(dataStart, middle);
+                long lineEnd = lineStart < 0 ? -1 : lineEnd(lineStart);
+                if (lineEnd < 0 || timestamp(lineStart, lineEnd, timestampColumn) >= timestamp) {
+                    high = middle;
+                }
+                else {
+                    low = lineEnd + 1;
+                }
+            }
+            long lineStart = nextDataLine(dataStart, low);
+            return lineStart < 0 ? size : lineStart;
+        }
+
+        /**
+         * @return the start of the first line with data which starts at or after the position or -1 if there is none
+         */
+        private long nextDataLine(long dataStart, long position) throws IOException {
+            long lineStart = position;
+            if (lineStart > dataStart) {
+                while (lineStart < size && byteAt(lineStart - 1) != LINE_END) {
+                    lineStart++;
+                }
+            }
+            while (lineStart < size && byteAt(lineStart) == COMMENT) {
+                long lineEnd = lineEnd(lineStart);
+                if (lineEnd < 0) {
+                    return -1;
+                }
+                lineStart = lineEnd + 1;
+            }
+            return lineStart < size ? lineStart : -1;
+        }
+
+        long timestamp(long lineStart, long lineEnd, int timestampColumn) throws IOException {
+            long columnStart = columnStart(lineStart, lineEnd, timestampColumn);
+            if (columnStart < 0) {
+                throw new NumberFormatException("Line without time stamp at position " + lineStart);
+            }
+            double timestampS = Double.parseDouble(string(columnStart, columnEnd(columnStart, lineEnd)).trim());
+            return (long) (timestampS * 1000);
+        }
+
+        /**
+         * @return the start of the column in the line or -1 if the line has less columns
+         */
+        long columnStart(long lineStart, long lineEnd, int column) throws IOException {
+            long position = lineStart;
+            for (int i = 0; i < column; i++) {
+                position = columnEnd(position, lineEnd);
+                if (position >= lineEnd) {
+                    return -1;
+                }
+                position += Const.SEPARATOR.length();
+            }
+            return position;
+        }
+
+        /**
+         * @return the position of the separator after the column or the line end
+         */
+        long columnEnd(long columnStart, long lineEnd) throws IOException {
+            for (long position = columnStart; position < lineEnd - 1; position++) {
+                if (byteAt(position) == SEPARATOR_START && byteAt(position + 1) == SEPARATOR_END) {
+                    return position;
+                }
+            }
+            return lineEnd;
+        }
+
+        String string(long start, long end) throws IOException {
+            char[] chars = new char[(int) (end - start)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) (byteAt(start + i) & 0xff);
+            }
+            return new String(chars);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
 }
@@ -21,10 +21,7 @@
 package org.openmuc.framework.datalogger.ascii;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.List;
@@ -35,6 +32,7 @@ import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.ascii.LogFilePool.LogFile;
 import org.openmuc.framework.datalogger.ascii.exceptions.WrongCharacterException;
 import org.openmuc.framework.datalogger.ascii.exceptions.WrongScalingException;
 import org.openmuc.framework.datalogger.ascii.utils.Const;
@@ -52,12 +50,28 @@ public class LogFileWriter {
     private final StringBuilder sbValue = new StringBuilder();
     private final String directoryPath;
     private final boolean isFillUpFiles;
+    private final LogFilePool filePool;
     private File actualFile;
 
     public LogFileWriter(String directoryPath, boolean isFillUpFiles) {
 
+        this(directoryPath, isFillUpFiles, null);
+    }
+
+    /**
+     * @param directoryPath
+     *            directory of the log files
+     * @param isFillUpFiles
+     *            fill up missing lines with error flag 32
+     * @param filePool
+     *            pool that keeps the log files open between two logging calls. If null every call opens and closes
+     *            the file.
+     */
+    public LogFileWriter(String directoryPath, boolean isFillUpFiles, LogFilePool filePool) {
+
         this.isFillUpFiles = isFillUpFiles;
         this.directoryPath = directoryPath;
+        this.filePool = filePool;
     }
 
     /**
@@ -77,7 +91,8 @@ public class LogFileWriter {
     public void log(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset, Calendar calendar,
             Map<String, LogChannel> logChannelList) {
 
-        PrintStream out = getStream(group, loggingInterval, logTimeOffset, calendar, logChannelList);
+        String groupKey = loggingInterval + Const.TIME_SEPERATOR_STRING + logTimeOffset;
+        LogFile out = getLogFile(groupKey, group, loggingInterval, logTimeOffset, calendar, logChannelList);
 
         if (out == null) {
             return;
@@ -87,19 +102,39 @@ public class LogFileWriter {
 
         // TODO match column with container id, so that they don't get mixed up
 
-        if (isFillUpFiles) {
-            fillUpFile(loggingInterval, logTimeOffset, calendar, logChannelList, logRecordContainer, out);
-        }
+        try {
+            if (isFillUpFiles) {
+                fillUpFile(loggingInterval, logTimeOffset, calendar, logChannelList, logRecordContainer, out);
+            }
+
+            String logLine = getLoggingLine(logRecordContainer, logChannelList, calendar, false);
 
-        String logLine = getLoggingLine(logRecordContainer, logChannelList, calendar, false);
+            out.write(logLine); // same newline char on all systems
+            if (filePool == null) {
+                out.close();
+            }
+        } catch (IOException e) {
+            logger.error("Could not write to file " + actualFile.getAbsolutePath(), e);
+            release(groupKey, out);
+        }
+    }
 
-        out.print(logLine); // print because of println makes different newline char on different systems
-        out.flush();
-        out.close();
+    private void release(String groupKey, LogFile out) {
+        if (filePool != null) {
+            filePool.discard(groupKey);
+        }
+        else if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.error("Could not close file " + actualFile.getAbsolutePath(), e);
+            }
+        }
     }
 
     private void fillUpFile(int loggingInterval, int logTimeOffset, Calendar calendar,
-            Map<String, LogChannel> logChannelList, List<LoggingRecord> loggingRecords, PrintStream out) {
+            Map<String, LogChannel> logChannelList, List<LoggingRecord> loggingRecords, LogFile out)
+            throws IOException {
 
         Long lastLoglineTimestamp = AsciiLogger.getLastLoggedLineTimeStamp(loggingInterval, logTimeOffset);
 
@@ -118,7 +153,7 @@ public class LogFileWriter {
 
                     for (int i = 1; i < numOfErrorLines; ++i) {
                         errCalendar.setTimeInMillis(lastLoglineTimestamp + ((long) loggingInterval * i));
-                        out.print(getLoggingLine(loggingRecords, logChannelList, errCalendar, true));
+                        out.write(getLoggingLine(loggingRecords, logChannelList, errCalendar, true));
                     }
                 }
             }
@@ -291,39 +326,43 @@ public class LogFileWriter {
     }
 
     /**
-     * Returns the PrintStream for logging.
+     * Returns the open log file. A new file starts with the header.
      *
+     * @param groupKey
      * @param group
      * @param loggingInterval
      * @param date
      * @param logChannelList
-     * @return the PrintStream for logging.
+     * @return the open log file or null if it can not be opened.
      */
-    private PrintStream getStream(LogIntervalContainerGroup group, int loggingInterval, int logTimeOffset,
-            Calendar calendar, Map<String, LogChannel> logChannelList) {
+    private LogFile getLogFile(String groupKey, LogIntervalContainerGroup group, int loggingInterval,
+            int logTimeOffset, Calendar calendar, Map<String, LogChannel> logChannelList) {
 
         String filename = LoggerUtils.buildFilename(loggingInterval, logTimeOffset, calendar);
 
         File file = new File(directoryPath + filename);
         actualFile = file;
-        PrintStream out = null;
+        LogFile out = null;
 
         try {
-            if (file.exists()) {
-                out = new PrintStream(new FileOutputStream(file, true), false, Const.CHAR_SET.toString());
+            if (filePool != null) {
+                out = filePool.get(groupKey, file);
             }
             else {
-                out = new PrintStream(new FileOutputStream(file, true), false, Const.CHAR_SET.toString());
+                out = LogFile.open(file);
+            }
+
+            if (out.isEmpty()) {
                 String headerString = LogFileHeader.getIESDataFormatHeaderString(group, file.getName(), loggingInterval,
                         logChannelList);
 
-                out.print(headerString);
-                out.flush();
+                out.write(headerString);
+                out.flush(); // the header is read back for channels which are not configured anymore
             }
-        } catch (UnsupportedEncodingException e) {
-            logger.error("", e);
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             logger.error("", e);
+            release(groupKey, out);
+            out = null;
         }
         return out;
     }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.ascii.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.datalogger.ascii.LogFilePool;
+import org.openmuc.framework.datalogger.ascii.LogFilePool.LogFile;
+import org.openmuc.framework.datalogger.ascii.utils.Const;
+
+public class LogFilePoolTest {
+
+    private File day1;
+    private File day2;
+
+    @BeforeEach
+    public void setup() {
+        TestUtils.createTestFolder();
+        day1 = new File(TestUtils.TESTFOLDERPATH + "20880808_1000" + Const.EXTENSION);
+        day2 = new File(TestUtils.TESTFOLDERPATH + "20880809_1000" + Const.EXTENSION);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TestUtils.deleteTestFolder();
+    }
+
+    private static String content(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), Const.CHAR_SET);
+    }
+
+    @Test
+    public void linesAreWrittenOnFlushInterval() throws IOException {
+        LogFilePool pool = new LogFilePool(4, 1000);
+
+        LogFile logFile = pool.get("1000", day1);
+        logFile.write("first\n");
+        assertSame(logFile, pool.get("1000", day1));
+        assertEquals("", content(day1));
+
+        pool.flush(500);
+        assertEquals("", content(day1));
+
+        pool.flush(1000);
+        assertEquals("first\n", content(day1));
+
+        pool.closeAll();
+    }
+
+    @Test
+    public void fileOfDayBeforeIsClosedOnRollover() throws IOException {
+        LogFilePool pool = new LogFilePool(4, Long.MAX_VALUE);
+
+        pool.get("1000", day1).write("day 1\n");
+        pool.get("1000", day2).write("day 2\n");
+
+        assertEquals(1, pool.getOpenFileCount());
+        assertEquals("day 1\n", content(day1));
+
+        pool.closeAll();
+        assertEquals("day 2\n", content(day2));
+    }
+
+    @Test
+    public void leastRecentlyUsedFileIsClosed() throws IOException {
+        LogFilePool pool = new LogFilePool(2, Long.MAX_VALUE);
+        File[] files = new File[3];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(TestUtils.TESTFOLDERPATH + "20880808_" + i + Const.EXTENSION);
+        }
+
+        pool.get("0", files[0]).write("0\n");
+        pool.get("1", files[1]).write("1\n");
+        pool.get("0", files[0]).write("0\n");
+        pool.get("2", files[2]).write("2\n");
+
+        assertEquals(2, pool.getOpenFileCount());
+        assertEquals("1\n", content(files[1]));
+        assertEquals("", content(files[0]));
+
+        pool.closeAll();
+        assertEquals("0\n0\n", content(files[0]));
+        assertEquals("2\n", content(files[2]));
+    }
+
+}
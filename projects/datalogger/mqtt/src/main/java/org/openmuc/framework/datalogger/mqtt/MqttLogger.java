@@ -223,7 +223,10 @@ public class MqttLogger implements DataLoggerService, ManagedService {
                 propertyHandler.getString(MqttLoggerSettings.FIRST_WILL_PAYLOAD).getBytes(),
                 propertyHandler.getInt(MqttLoggerSettings.RECOVERY_CHUNK_SIZE),
                 propertyHandler.getInt(MqttLoggerSettings.RECOVERY_DELAY),
-                propertyHandler.getBoolean(MqttLoggerSettings.WEB_SOCKET));
+                propertyHandler.getBoolean(MqttLoggerSettings.WEB_SOCKET),
+                propertyHandler.getInt(MqttLoggerSettings.MAX_IN_FLIGHT),
+                propertyHandler.getInt(MqttLoggerSettings.QOS),
+                propertyHandler.getInt(MqttLoggerSettings.REPLAY_RATIO));
         // @formatter:on
 
         logger.info("MqttSettings for MqttConnection \n", settings.toString());
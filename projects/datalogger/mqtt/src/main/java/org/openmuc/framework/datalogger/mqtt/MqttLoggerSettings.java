@@ -47,6 +47,9 @@ public class MqttLoggerSettings extends GenericSettings {
     public static final String RECOVERY_CHUNK_SIZE = "recoveryChunkSize";
     public static final String RECOVERY_DELAY = "recoveryDelay";
     public static final String WEB_SOCKET = "webSocket";
+    public static final String MAX_IN_FLIGHT = "maxInFlight";
+    public static final String QOS = "qos";
+    public static final String REPLAY_RATIO = "replayRatio";
 
     public MqttLoggerSettings() {
         super();
@@ -79,6 +82,14 @@ public class MqttLoggerSettings extends GenericSettings {
                 "number of messages which will be recovered simultaneously, 0 = disabled", "0", false));
         properties.put(RECOVERY_DELAY, new ServiceProperty(RECOVERY_DELAY,
                 "delay between recovery chunk sending in ms, 0 = disabled", "0", false));
+        properties.put(REPLAY_RATIO, new ServiceProperty(REPLAY_RATIO,
+                "buffered messages sent per live message during recovery, 0 = live messages first", "1", false));
+
+        // properties for publishing
+        properties.put(MAX_IN_FLIGHT, new ServiceProperty(MAX_IN_FLIGHT,
+                "maximum number of messages sent but not yet acknowledged", "100", false));
+        properties.put(QOS, new ServiceProperty(QOS,
+                "quality of service: 0 = at most once, 1 = at least once (acknowledged by broker)", "0", false));
 
         // properties for LAST WILL / FIRST WILL
         properties.put(LAST_WILL_TOPIC,
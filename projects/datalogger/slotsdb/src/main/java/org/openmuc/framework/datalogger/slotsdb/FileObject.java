@@ -28,7 +28,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
@@ -37,11 +42,33 @@ import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 
+/**
+ * A single slots file. The file starts with a 16 byte header (start timestamp and storage period) followed by one slot
+ * of 9 bytes (double value and flag) per storage period.
+ * <p>
+ * In the default stream mode values are appended through buffered streams. In mapped mode (see
+ * {@link SlotsDb#STORAGE_MODE}) the file is preallocated with empty slots up to the end of the day and accessed through
+ * a {@link MappedByteBuffer}, so writing and reading are plain memory accesses at the position of the slot. Slots are
+ * empty if they contain NaN and the flag {@link Flag#NO_VALUE_RECEIVED_YET}. A file that has been extended with empty
+ * slots is marked by an empty file next to it with the extension {@link #PREALLOCATED_EXTENSION}. Only for such files
+ * empty slots at the end of the file are not counted as stored values.
+ */
 public final class FileObject {
 
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 9;
+    private static final byte EMPTY_SLOT_FLAG = Flag.NO_VALUE_RECEIVED_YET.getCode();
+    private static final int SCAN_SLOTS = 1024;
+
+    /**
+     * Extension of the marker file of a preallocated slots file, appended to the name of the slots file.
+     */
+    static final String PREALLOCATED_EXTENSION = ".preallocated";
+
     private long startTimeStamp; // byte 0-7 in file (cached)
     private long storagePeriod; // byte 8-15 in file (cached)
     private final File dataFile;
+    private final File preallocatedMarker;
     private DataOutputStream dos;
     private BufferedOutputStream bos;
     private FileOutputStream fos;
@@ -49,16 +76,27 @@ public final class FileObject {
     private FileInputStream fis;
     private boolean canWrite;
     private boolean canRead;
+    private final boolean mapped;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean dirty;
     /*
-     * File length will be cached to avoid system calls an improve I/O Performance
+     * File length will be cached to avoid system calls an improve I/O Performance. It is the position after the last
+     * stored slot, so it is less than the real file length for preallocated files.
      */
     private long length = 0;
 
     public FileObject(String filename) throws IOException {
+        this(filename, SlotsDb.isMappedStorage());
+    }
+
+    public FileObject(String filename, boolean mapped) throws IOException {
         canWrite = false;
         canRead = false;
+        this.mapped = mapped;
         dataFile = new File(filename);
-        length = dataFile.length();
+        preallocatedMarker = new File(filename + PREALLOCATED_EXTENSION);
+        length = initialLength();
         if (dataFile.exists() && length >= 16) {
             /*
              * File already exists -> get file Header (startTime and step-frequency) TODO: compare to starttime and
@@ -93,10 +131,16 @@ public final class FileObject {
     }
 
     public FileObject(File file) throws IOException {
+        this(file, SlotsDb.isMappedStorage());
+    }
+
+    public FileObject(File file, boolean mapped) throws IOException {
         canWrite = false;
         canRead = false;
+        this.mapped = mapped;
         dataFile = file;
-        length = dataFile.length();
+        preallocatedMarker = new File(file.getPath() + PREALLOCATED_EXTENSION);
+        length = initialLength();
         if (dataFile.exists() && length >= 16) {
             /*
              * File already exists -> get file Header (startTime and step-frequency)
@@ -123,6 +167,58 @@ public final class FileObject {
         }
     }
 
+    /*
+     * Only a preallocated file may end with empty slots. The last slot of any other file is a stored value, even if it
+     * holds NaN.
+     */
+    private long initialLength() throws IOException {
+        if (preallocatedMarker.exists()) {
+            return storedLength(dataFile);
+        }
+        return dataFile.length();
+    }
+
+    /**
+     * Returns the position after the last stored slot. Empty slots at the end of a preallocated file are skipped.
+     */
+    private static long storedLength(File file) throws IOException {
+        long fileLength = file.length();
+        long slots = (fileLength - HEADER_SIZE) / SLOT_SIZE;
+        if (slots <= 0) {
+            return fileLength;
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer slotBuffer = ByteBuffer.allocate(SCAN_SLOTS * SLOT_SIZE);
+            long slot = slots;
+            boolean lastSlot = true;
+            while (slot > 0) {
+                int count = (int) Math.min(SCAN_SLOTS, slot);
+                slotBuffer.clear();
+                slotBuffer.limit(count * SLOT_SIZE);
+                long position = HEADER_SIZE + (slot - count) * SLOT_SIZE;
+                while (slotBuffer.hasRemaining()) {
+                    if (fileChannel.read(slotBuffer, position + slotBuffer.position()) < 0) {
+                        return fileLength;
+                    }
+                }
+                for (int i = count - 1; i >= 0; i--) {
+                    if (!isEmptySlot(slotBuffer, i * SLOT_SIZE)) {
+                        // a file that is not preallocated keeps its real length
+                        return lastSlot ? fileLength : HEADER_SIZE + (slot - count + i + 1) * SLOT_SIZE;
+                    }
+                    lastSlot = false;
+                }
+                slot -= count;
+            }
+        }
+        return HEADER_SIZE;
+    }
+
+    private static boolean isEmptySlot(ByteBuffer slotBuffer, int position) {
+        return Double.isNaN(slotBuffer.getDouble(position)) && slotBuffer.get(position + 8) == EMPTY_SLOT_FLAG;
+    }
+
     private void enableOutput() throws IOException {
         /*
          * Close Input Streams, for enabling output.
@@ -136,6 +232,19 @@ public final class FileObject {
             fis = null;
         }
 
+        /*
+         * A preallocated file written in mapped mode before is cut to its stored slots, because the streams
+         * append to the end of the file.
+         */
+        if (fos == null && preallocatedMarker.exists()) {
+            if (dataFile.length() > length) {
+                try (RandomAccessFile file = new RandomAccessFile(dataFile, "rw")) {
+                    file.setLength(length);
+                }
+            }
+            preallocatedMarker.delete();
+        }
+
         /*
          * enabling output
          */
@@ -177,6 +286,50 @@ public final class FileObject {
         canRead = true;
     }
 
+    /**
+     * Maps the whole file into memory.
+     */
+    private void enableMapping() throws IOException {
+        if (buffer == null) {
+            channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(MapMode.READ_WRITE, 0, channel.size());
+        }
+    }
+
+    /**
+     * Grows a mapped file so that it can hold the given number of bytes. The new slots are marked as empty.
+     */
+    private void ensureCapacity(long requiredLength) throws IOException {
+        enableMapping();
+        long capacity = buffer.capacity();
+        if (requiredLength <= capacity) {
+            return;
+        }
+        long newCapacity = Math.max(requiredLength, capacity + (capacity - HEADER_SIZE) / 2);
+        newCapacity = newCapacity - (newCapacity - HEADER_SIZE) % SLOT_SIZE;
+        markPreallocated();
+        buffer.force();
+        buffer = channel.map(MapMode.READ_WRITE, 0, newCapacity);
+        fillEmptySlots(capacity, newCapacity);
+    }
+
+    private void fillEmptySlots(long from, long to) {
+        for (int position = (int) from; position + SLOT_SIZE <= to; position += SLOT_SIZE) {
+            buffer.putDouble(position, Double.NaN);
+            buffer.put(position + 8, EMPTY_SLOT_FLAG);
+        }
+        dirty = true;
+    }
+
+    /*
+     * The marker is created before the file is extended, so that empty slots are never taken for stored values.
+     */
+    private void markPreallocated() throws IOException {
+        if (!preallocatedMarker.exists()) {
+            preallocatedMarker.createNewFile();
+        }
+    }
+
     /**
      * Return the Timestamp of the first stored Value in this File.
      * 
@@ -206,6 +359,27 @@ public final class FileObject {
      *             if an I/O error occurs.
      */
     public void createFileAndHeader(long startTimeStamp, long stepIntervall) throws IOException {
+        createFileAndHeader(startTimeStamp, stepIntervall, startTimeStamp);
+    }
+
+    /**
+     * creates the file, if it doesn't exist. In mapped mode the file is preallocated with empty slots up to the given
+     * timestamp.
+     * 
+     * @param startTimeStamp
+     *            for file header
+     * @param stepIntervall
+     *            for file header
+     * @param lastTimeStamp
+     *            last timestamp the file is expected to hold values for, usually the end of the day
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void createFileAndHeader(long startTimeStamp, long stepIntervall, long lastTimeStamp) throws IOException {
+        if (mapped) {
+            createMappedFileAndHeader(startTimeStamp, stepIntervall, lastTimeStamp);
+            return;
+        }
         if (!dataFile.exists() || length < 16) {
             dataFile.getParentFile().mkdirs();
             if (dataFile.exists() && length < 16) {
@@ -213,6 +387,7 @@ public final class FileObject {
             }
             // bytes)
             dataFile.createNewFile();
+            preallocatedMarker.delete(); // left over from a corrupted file
             this.startTimeStamp = startTimeStamp;
             storagePeriod = stepIntervall;
 
@@ -231,8 +406,41 @@ public final class FileObject {
         }
     }
 
+    private void createMappedFileAndHeader(long startTimeStamp, long stepIntervall, long lastTimeStamp)
+            throws IOException {
+        if (dataFile.exists() && length >= HEADER_SIZE) {
+            return;
+        }
+        dataFile.getParentFile().mkdirs();
+        if (dataFile.exists()) {
+            dataFile.delete(); // file corrupted (header shorter that 16 bytes)
+        }
+        this.startTimeStamp = startTimeStamp;
+        storagePeriod = stepIntervall;
+
+        long slots = stepIntervall > 0 ? Math.max(0, lastTimeStamp - startTimeStamp) / stepIntervall + 1 : 1;
+        long fileLength = HEADER_SIZE + slots * SLOT_SIZE;
+        if (fileLength > Integer.MAX_VALUE) {
+            fileLength = HEADER_SIZE + ((Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE) * SLOT_SIZE;
+        }
+        markPreallocated();
+        try (RandomAccessFile file = new RandomAccessFile(dataFile, "rw")) {
+            file.setLength(fileLength);
+        }
+
+        enableMapping();
+        buffer.putLong(0, startTimeStamp);
+        buffer.putLong(8, stepIntervall);
+        fillEmptySlots(HEADER_SIZE, fileLength);
+        length = HEADER_SIZE;
+    }
+
     public void append(double value, long timestamp, byte flag) throws IOException {
         long writePosition = getBytePosition(timestamp);
+        if (mapped) {
+            appendMapped(value, writePosition, flag);
+            return;
+        }
         if (writePosition == length) {
             /*
              * value for this timeslot has not been saved yet "AND" some value has been stored in last timeslot
@@ -283,6 +491,23 @@ public final class FileObject {
          */
     }
 
+    /*
+     * Slots between the last stored slot and the write position are already empty, so no gap has to be filled.
+     */
+    private void appendMapped(double value, long writePosition, byte flag) throws IOException {
+        if (writePosition < length) {
+            /*
+             * value has already been stored for this timeslot
+             */
+            return;
+        }
+        ensureCapacity(writePosition + SLOT_SIZE);
+        buffer.putDouble((int) writePosition, value);
+        buffer.put((int) writePosition + 8, flag);
+        length = writePosition + SLOT_SIZE;
+        dirty = true;
+    }
+
     public long getTimestampForLatestValue() {
         return startTimeStamp + (((length - 16) / 9) - 1) * storagePeriod;
     }
@@ -336,6 +561,15 @@ public final class FileObject {
         timestamp = getClosestTimestamp(timestamp); // round to: startTimestamp
         // + n*stepIntervall
         if (timestamp >= startTimeStamp && timestamp <= getTimestampForLatestValue()) {
+            if (mapped) {
+                enableMapping();
+                int position = (int) getBytePosition(timestamp);
+                double value = buffer.getDouble(position);
+                if (!Double.isNaN(value)) {
+                    return new Record(new DoubleValue(value), timestamp, Flag.newFlag(buffer.get(position + 8)));
+                }
+                return null;
+            }
             if (!canRead) {
                 enableInput();
             }
@@ -376,20 +610,27 @@ public final class FileObject {
                 end = getTimestampForLatestValue();
             }
 
-            if (!canRead) {
-                enableInput();
-            }
-
             long timestampcounter = start;
             long startPos = getBytePosition(start);
             long endPos = getBytePosition(end);
 
-            fis.getChannel().position(startPos);
+            ByteBuffer bb;
+            if (mapped) {
+                enableMapping();
+                bb = buffer.duplicate();
+                bb.position((int) startPos);
+            }
+            else {
+                if (!canRead) {
+                    enableInput();
+                }
+                fis.getChannel().position(startPos);
 
-            byte[] b = new byte[(int) (endPos - startPos) + 9];
-            dis.read(b, 0, b.length);
-            ByteBuffer bb = ByteBuffer.wrap(b);
-            bb.rewind();
+                byte[] b = new byte[(int) (endPos - startPos) + 9];
+                dis.read(b, 0, b.length);
+                bb = ByteBuffer.wrap(b);
+                bb.rewind();
+            }
 
             for (int i = 0; i <= (endPos - startPos) / 9; i++) {
                 double d = bb.getDouble();
@@ -422,6 +663,14 @@ public final class FileObject {
     public void close() throws IOException {
         canRead = false;
         canWrite = false;
+        if (buffer != null) {
+            flush();
+            buffer = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
         if (dos != null) {
             dos.flush();
             dos.close();
@@ -451,5 +700,23 @@ public final class FileObject {
         if (dos != null) {
             dos.flush();
         }
+        if (buffer != null && dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    /**
+     * Hands buffered values over to the operating system so that other FileObjects of the same file can read them.
+     * Unlike {@link #flush()} a mapped file is not forced to the storage device, because its values are visible to
+     * readers as soon as they are written.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void flushStream() throws IOException {
+        if (dos != null) {
+            dos.flush();
+        }
     }
 }
@@ -89,6 +89,9 @@ public final class FileObjectList {
         files = new Vector<>(1);
         if (folder.isDirectory()) {
             for (File file : folder.listFiles()) {
+                if (file.getName().endsWith(FileObject.PREALLOCATED_EXTENSION)) {
+                    continue; // marker of a preallocated file, see FileObject
+                }
                 if (file.length() >= 16) { // otherwise is corrupted or empty
                                            // file.
                     String[] split = file.getName().split("\\.");
@@ -316,4 +319,16 @@ public final class FileObjectList {
             f.flush();
         }
     }
+
+    /**
+     * Makes the buffered values of all FileObjects visible to readers of the same files.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void flushStreams() throws IOException {
+        for (FileObject f : files) {
+            f.flushStream();
+        }
+    }
 }
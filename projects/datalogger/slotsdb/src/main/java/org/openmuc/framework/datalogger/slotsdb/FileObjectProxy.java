@@ -32,28 +32,44 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Gives access to the files of a SlotsDB folder. Values of different labels are stored in different folders, so every
+ * label has its own read/write lock: appends to different labels run in parallel and a long history query only holds
+ * the read lock of the queried label. Jobs that touch all labels (flushing, deleting old days, closing files on a size
+ * limit) take the locks of the labels one after another.
+ * <p>
+ * The latest record of every label is kept in memory. It is loaded from the file tails on startup and updated on every
+ * append, so {@link #readLatest(String)} does not touch the file system.
+ */
 public final class FileObjectProxy {
 
     private static final Logger logger = LoggerFactory.getLogger(FileObjectProxy.class);
 
     private final File rootNode;
-    private HashMap<String, FileObjectList> openFilesHM;
-    private final HashMap<String, String> encodedLabels;
+    private final Map<String, LabelFolder> labelFolders;
+    private final AtomicInteger openFolderCount;
+    private final Map<String, String> encodedLabels;
     private final SimpleDateFormat sdf;
     private final Date date;
     private final Timer timer;
     private List<File> days;
+    private String latestDay;
     private long size;
 
     /*
@@ -64,9 +80,7 @@ public final class FileObjectProxy {
     private int limit_size;
     private int max_open_files;
 
-    private String strCurrentDay;
-    private long currentDayFirstTS;
-    private long currentDayLastTS;
+    private volatile Day currentDay;
 
     /**
      * Creates an instance of a FileObjectProxy<br>
@@ -87,10 +101,12 @@ public final class FileObjectProxy {
 
         rootNode = new File(rootNodePath);
         rootNode.mkdirs();
-        openFilesHM = new HashMap<>();
-        encodedLabels = new HashMap<>();
+        labelFolders = new ConcurrentHashMap<>();
+        openFolderCount = new AtomicInteger();
+        encodedLabels = new ConcurrentHashMap<>();
 
         loadDays();
+        loadLatestRecords();
 
         if (SlotsDb.FLUSH_PERIOD != null) {
             flush_period = Integer.parseInt(SlotsDb.FLUSH_PERIOD);
@@ -135,7 +151,7 @@ public final class FileObjectProxy {
     /*
      * loads a sorted list of all days in SLOTSDB. Necessary for search- and delete jobs.
      */
-    private void loadDays() {
+    private synchronized void loadDays() {
         days = new Vector<>();
         for (File f : rootNode.listFiles()) {
             if (f.isDirectory()) {
@@ -145,6 +161,65 @@ public final class FileObjectProxy {
         days = sortFolders(days);
     }
 
+    /*
+     * Reads the latest record of every label from the tail of its newest file. Days are scanned from the newest to the
+     * oldest, so only the files of labels that have not been found in a newer day are opened.
+     */
+    private void loadLatestRecords() {
+        for (int i = days.size() - 1; i >= 0; i--) {
+            File[] labelDirectories = days.get(i).listFiles();
+            if (labelDirectories == null) {
+                continue;
+            }
+            for (File labelDirectory : labelDirectories) {
+                if (!labelDirectory.isDirectory()) {
+                    continue;
+                }
+                LabelFolder labelFolder = getLabelFolder(labelDirectory.getName());
+                if (labelFolder.latestTimestamp != Long.MIN_VALUE) {
+                    continue;
+                }
+                try {
+                    loadLatestRecord(labelFolder, new FileObjectList(labelDirectory.getPath()));
+                } catch (IOException e) {
+                    logger.warn("Unable to read latest value from: " + labelDirectory.getPath() + " " + e.getMessage());
+                }
+            }
+        }
+        logger.debug("Loaded latest values of " + labelFolders.size() + " labels.");
+    }
+
+    private void loadLatestRecord(LabelFolder labelFolder, FileObjectList fileObjects) throws IOException {
+        try {
+            for (FileObject file : fileObjects.getAllFileObjects()) {
+                long timestamp = file.getTimestampForLatestValue();
+                if (timestamp >= file.getStartTimeStamp() && timestamp > labelFolder.latestTimestamp) {
+                    labelFolder.latestTimestamp = timestamp;
+                    labelFolder.latestRecord = file.read(timestamp); // null if the latest slot has no value
+                }
+            }
+        } finally {
+            fileObjects.closeAllFiles();
+        }
+    }
+
+    /*
+     * Drops the latest records that were stored in a deleted day folder.
+     */
+    private void forgetLatestRecordsUntil(long timestamp) {
+        for (LabelFolder labelFolder : labelFolders.values()) {
+            labelFolder.lock.writeLock().lock();
+            try {
+                if (labelFolder.latestTimestamp != Long.MIN_VALUE && labelFolder.latestTimestamp <= timestamp) {
+                    labelFolder.latestTimestamp = Long.MIN_VALUE;
+                    labelFolder.latestRecord = null;
+                }
+            } finally {
+                labelFolder.lock.writeLock().unlock();
+            }
+        }
+    }
+
     private List<File> sortFolders(List<File> days) {
         Collections.sort(days, new Comparator<File>() {
 
@@ -152,7 +227,7 @@ public final class FileObjectProxy {
             public int compare(File f1, File f2) {
                 int i = 0;
                 try {
-                    i = Long.valueOf(sdf.parse(f1.getName()).getTime()).compareTo(sdf.parse(f2.getName()).getTime());
+                    i = Long.valueOf(parseDay(f1.getName())).compareTo(parseDay(f2.getName()));
                 } catch (ParseException e) {
                     logger.error("Error during sorting Files: Folder doesn't match yyyymmdd Format?");
                 }
@@ -191,7 +266,9 @@ public final class FileObjectProxy {
         @Override
         public void run() {
             try {
-                deleteFoldersOlderThen(limit_days);
+                synchronized (FileObjectProxy.this) {
+                    deleteFoldersOlderThen(limit_days);
+                }
             } catch (IOException e) {
                 logger.error("Deleting old Data failed in IOException: " + e.getMessage());
             }
@@ -204,13 +281,14 @@ public final class FileObjectProxy {
             try {
                 while (iterator.hasNext()) {
                     File curElement = iterator.next();
-                    if (sdf.parse(curElement.getName()).getTime() + 86400000 < limit
+                    if (parseDay(curElement.getName()) + 86400000 < limit
                             .getTimeInMillis()) { /*
                                                    * compare folder 's oldest value to limit
                                                    */
                         logger.info("Folder: " + curElement.getName() + " is older then " + limit_days
                                 + " Days. Will be deleted.");
-                        deleteRecursiveFolder(curElement);
+                        deleteDayFolder(curElement);
+                        forgetLatestRecordsUntil(getFolderTimestamp(curElement.getName()) + 86399999);
                     }
                     else {
                         /* oldest existing Folder is not to be deleted yet */
@@ -233,11 +311,13 @@ public final class FileObjectProxy {
         @Override
         public void run() {
             try {
-                while ((getDiskUsage(rootNode) / 1000000 > limit_size)
-                        && (days.size() >= 2)) { /*
-                                                  * avoid deleting current folder
-                                                  */
-                    deleteOldestFolder();
+                synchronized (FileObjectProxy.this) {
+                    while ((getDiskUsage(rootNode) / 1000000 > limit_size)
+                            && (days.size() >= 2)) { /*
+                                                      * avoid deleting current folder
+                                                      */
+                        deleteOldestFolder();
+                    }
                 }
             } catch (IOException e) {
                 logger.error("Deleting old Data failed in IOException: " + e.getMessage());
@@ -248,13 +328,41 @@ public final class FileObjectProxy {
             if (days.size() >= 2) {
                 logger.info("Exceeded Maximum Database Size: " + limit_size + " MB. Current size: " + (size / 1000000)
                         + " MB. Deleting: " + days.get(0).getCanonicalPath());
-                deleteRecursiveFolder(days.get(0));
+                deleteDayFolder(days.get(0));
+                forgetLatestRecordsUntil(getFolderTimestamp(days.get(0).getName()) + 86399999);
                 days.remove(0);
-                clearOpenFilesHashMap();
+                closeAllFolders();
             }
         }
     }
 
+    /*
+     * The folder of every label is deleted while holding the write lock of the label, so readers and writers of the
+     * label never see a partly deleted folder. Labels are locked one after another like in the other jobs.
+     */
+    private synchronized void deleteDayFolder(File dayFolder) throws IOException {
+        File[] labelDirectories = dayFolder.listFiles();
+        if (labelDirectories != null) {
+            for (File labelDirectory : labelDirectories) {
+                if (!labelDirectory.isDirectory()) {
+                    labelDirectory.delete();
+                    continue;
+                }
+                LabelFolder labelFolder = getLabelFolder(labelDirectory.getName());
+                labelFolder.lock.writeLock().lock();
+                try {
+                    if (dayFolder.getName().equals(labelFolder.strDate)) {
+                        labelFolder.close();
+                    }
+                    deleteRecursiveFolder(labelDirectory);
+                } finally {
+                    labelFolder.lock.writeLock().unlock();
+                }
+            }
+        }
+        deleteRecursiveFolder(dayFolder);
+    }
+
     private synchronized void deleteRecursiveFolder(File folder) {
         if (folder.exists()) {
             for (File f : folder.listFiles()) {
@@ -306,24 +414,51 @@ public final class FileObjectProxy {
      * @throws IOException
      *             if an I/O error occurs.
      */
-    public synchronized void appendValue(String id, double value, long timestamp, byte state, long storingPeriod)
+    public void appendValue(String id, double value, long timestamp, byte state, long storingPeriod)
             throws IOException {
-        FileObject toStoreIn = null;
-
         id = encodeLabel(id);
+        Day day = getDay(timestamp);
+
+        LabelFolder labelFolder = getLabelFolder(id);
+        boolean newDay;
+        labelFolder.lock.writeLock().lock();
+        try {
+            newDay = appendValue(labelFolder, day, value, timestamp, state, storingPeriod);
+        } finally {
+            labelFolder.lock.writeLock().unlock();
+        }
+        /*
+         * The jobs lock this proxy before they lock labels, so this must not happen while the label is locked.
+         */
+        if (newDay) {
+            newDayStarted(day.strDate);
+        }
+    }
 
-        String strDate = getStrDate(timestamp);
+    /*
+     * Returns true if the label has been switched over from the day before.
+     */
+    private boolean appendValue(LabelFolder labelFolder, Day day, double value, long timestamp, byte state,
+            long storingPeriod) throws IOException {
+        FileObject toStoreIn = null;
+        boolean newDay = false;
+
+        String id = labelFolder.label;
+        String strDate = day.strDate;
 
         /*
          * If there is no FileObjectList for this folder, a new one will be created. (This will be the first value
-         * stored for this day) Eventually existing FileObjectLists from the day before will be flushed and closed. Also
-         * the Hashtable size will be monitored, to not have too many opened Filestreams.
+         * stored for this day) Eventually an existing FileObjectList from the day before will be flushed and closed.
+         * Also the number of open folders will be monitored, to not have too many opened Filestreams.
          */
-        if (!openFilesHM.containsKey(id + strDate)) {
-            deleteEntryFromLastDay(timestamp, id);
-            controlHashtableSize();
+        if (labelFolder.files == null || !strDate.equals(labelFolder.strDate)) {
+            if (labelFolder.files != null) {
+                labelFolder.close();
+                newDay = true;
+            }
+            controlOpenFolderCount(labelFolder);
             FileObjectList first = new FileObjectList(rootNode.getPath() + "/" + strDate + "/" + id);
-            openFilesHM.put(id + strDate, first);
+            labelFolder.open(strDate, first);
 
             /*
              * If FileObjectList for this label does not contain any FileObjects yet, a new one will be created. Data
@@ -332,18 +467,19 @@ public final class FileObjectProxy {
             if (first.size() == 0) {
                 toStoreIn = new FileObject(
                         rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp + SlotsDb.FILE_EXTENSION);
-                toStoreIn.createFileAndHeader(timestamp, storingPeriod);
+                toStoreIn.createFileAndHeader(timestamp, storingPeriod, day.lastTimestamp);
                 toStoreIn.append(value, timestamp, state);
+                updateLatestRecord(labelFolder, toStoreIn, value, state);
                 toStoreIn.close(); /* close() also calls flush(). */
-                openFilesHM.get(id + strDate).reLoadFolder();
-                return;
+                first.reLoadFolder();
+                return newDay;
             }
         }
 
         /*
          * There is a FileObjectList for this day.
          */
-        FileObjectList listToStoreIn = openFilesHM.get(id + strDate);
+        FileObjectList listToStoreIn = labelFolder.files;
         if (listToStoreIn.size() > 0) {
             toStoreIn = listToStoreIn.getCurrentFileObject();
 
@@ -351,7 +487,7 @@ public final class FileObjectProxy {
              * If StartTimeStamp is newer then the Timestamp of the value to store, this value can't be stored.
              */
             if (toStoreIn.getStartTimeStamp() > timestamp) {
-                return;
+                return newDay;
             }
         }
         if (toStoreIn == null) {
@@ -362,14 +498,12 @@ public final class FileObjectProxy {
          * The storing Period may have changed. In this case, a new FileObject must be created.
          */
         if (toStoreIn.getStoringPeriod() == storingPeriod || toStoreIn.getStoringPeriod() == 0) {
-            toStoreIn = openFilesHM.get(id + strDate).getCurrentFileObject();
+            toStoreIn = listToStoreIn.getCurrentFileObject();
             toStoreIn.append(value, timestamp, state);
+            updateLatestRecord(labelFolder, toStoreIn, value, state);
             if (flush_period == 0) {
                 toStoreIn.flush();
             }
-            else {
-                return;
-            }
         }
         else {
             /*
@@ -378,14 +512,29 @@ public final class FileObjectProxy {
             if (toStoreIn.getTimestampForLatestValue() < timestamp) {
                 toStoreIn = new FileObject(
                         rootNode.getPath() + "/" + strDate + "/" + id + "/" + timestamp + SlotsDb.FILE_EXTENSION);
-                toStoreIn.createFileAndHeader(timestamp, storingPeriod);
+                toStoreIn.createFileAndHeader(timestamp, storingPeriod, day.lastTimestamp);
                 toStoreIn.append(value, timestamp, state);
+                updateLatestRecord(labelFolder, toStoreIn, value, state);
                 if (flush_period == 0) {
                     toStoreIn.flush();
                 }
-                openFilesHM.get(id + strDate).reLoadFolder();
+                listToStoreIn.reLoadFolder();
             }
         }
+        return newDay;
+    }
+
+    /*
+     * The value has been stored in the latest slot if the file grew beyond the latest known timestamp. Values for slots
+     * that already existed are not stored by FileObject.append, so they don't change the latest record either.
+     */
+    private static void updateLatestRecord(LabelFolder labelFolder, FileObject storedIn, double value, byte state) {
+        long timestamp = storedIn.getTimestampForLatestValue();
+        if (timestamp > labelFolder.latestTimestamp) {
+            labelFolder.latestTimestamp = timestamp;
+            labelFolder.latestRecord = Double.isNaN(value) ? null
+                    : new Record(new DoubleValue(value), timestamp, Flag.newFlag(state));
+        }
     }
 
     private String encodeLabel(String label) throws IOException {
@@ -398,27 +547,58 @@ public final class FileObjectProxy {
         return encodedLabel;
     }
 
-    public synchronized Record read(String label, long timestamp) throws IOException {
+    private LabelFolder getLabelFolder(String encodedLabel) {
+        LabelFolder labelFolder = labelFolders.get(encodedLabel);
+        if (labelFolder == null) {
+            labelFolder = labelFolders.computeIfAbsent(encodedLabel, LabelFolder::new);
+        }
+        return labelFolder;
+    }
+
+    /**
+     * Makes the values buffered by the writer of the label visible on disk and acquires the read lock of the label.
+     * Readers always use FileObjects of their own, so concurrent readers of the same label do not interfere.
+     */
+    private LabelFolder lockForReading(String encodedLabel) throws IOException {
+        LabelFolder labelFolder = getLabelFolder(encodedLabel);
+        labelFolder.lock.writeLock().lock();
+        try {
+            if (labelFolder.files != null) {
+                labelFolder.files.flushStreams();
+            }
+            labelFolder.lock.readLock().lock();
+        } finally {
+            labelFolder.lock.writeLock().unlock();
+        }
+        return labelFolder;
+    }
+
+    public Record read(String label, long timestamp) throws IOException {
         // label = URLEncoder.encode(label,Charset.defaultCharset().toString());
         // //encodes label to supported String for Filenames.
         label = encodeLabel(label);
 
-        String strDate = getStrDate(timestamp);
+        String strDate = getDay(timestamp).strDate;
 
-        if (!openFilesHM.containsKey(label + strDate)) {
-            controlHashtableSize();
+        LabelFolder labelFolder = lockForReading(label);
+        try {
             FileObjectList fol = new FileObjectList(rootNode.getPath() + "/" + strDate + "/" + label);
-            openFilesHM.put(label + strDate, fol);
-        }
-        FileObject toReadFrom = openFilesHM.get(label + strDate).getFileObjectForTimestamp(timestamp);
-        if (toReadFrom != null) {
-            return toReadFrom.read(timestamp); // null if no value for timestamp
-                                               // is available
+            try {
+                FileObject toReadFrom = fol.getFileObjectForTimestamp(timestamp);
+                if (toReadFrom != null) {
+                    return toReadFrom.read(timestamp); // null if no value for timestamp
+                                                       // is available
+                }
+                return null;
+            } finally {
+                fol.closeAllFiles();
+            }
+        } finally {
+            labelFolder.lock.readLock().unlock();
         }
-        return null;
     }
 
-    public synchronized List<Record> read(String label, long start, long end) throws IOException {
+    public List<Record> read(String label, long start, long end) throws IOException {
         if (logger.isTraceEnabled()) {
             logger.trace("Called: read(" + label + ", " + start + ", " + end + ")");
         }
@@ -445,8 +625,17 @@ public final class FileObjectProxy {
         // //encodes label to supported String for Filenames.
         label = encodeLabel(label);
 
-        String strStartDate = getStrDate(start);
-        String strEndDate = getStrDate(end);
+        LabelFolder labelFolder = lockForReading(label);
+        try {
+            return read(label, start, end, toReturn);
+        } finally {
+            labelFolder.lock.readLock().unlock();
+        }
+    }
+
+    private List<Record> read(String label, long start, long end, List<Record> toReturn) throws IOException {
+        String strStartDate = getDay(start).strDate;
+        String strEndDate = getDay(end).strDate;
 
         List<FileObject> toRead = new Vector<>();
 
@@ -537,6 +726,7 @@ public final class FileObjectProxy {
             }
             else if (toRead.size() == 1) { // single FileObject
                 toReturn.addAll(toRead.get(0).read(start, end));
+                toRead.get(0).close();
                 toReturn.removeAll(Collections.singleton(null));
             }
         }
@@ -544,56 +734,15 @@ public final class FileObjectProxy {
         return toReturn;
     }
 
-    public synchronized Record readLatest(String label) throws IOException {
+    public Record readLatest(String label) throws IOException {
         if (logger.isTraceEnabled()) {
             logger.trace("Called: readLatest(" + label + ")");
         }
-        label = encodeLabel(label);
-
-        /*
-         * Checks for the folder with the latest day
-         */
-        long latestDay = 0;
-        File latestFolder = null;
-        for (File folder : rootNode.listFiles()) {
-            if (folder.isDirectory()) {
-                if (getFolderTimestamp(folder.getName()) > latestDay) {
-                    latestFolder = folder;
-                    latestDay = getFolderTimestamp(folder.getName());
-                }
-            }
-        }
-        if (latestFolder == null) {
+        LabelFolder labelFolder = labelFolders.get(encodeLabel(label));
+        if (labelFolder == null) {
             return null;
         }
-
-        /*
-         * Get list of all fileObjects
-         */
-        String strSubfolder;
-        FileObjectList fileObjects = null;
-        if (Arrays.asList(latestFolder.list()).contains(label)) {
-            strSubfolder = rootNode.getPath() + "/" + latestFolder.getName() + "/" + label;
-            fileObjects = new FileObjectList(strSubfolder);
-            logger.trace(strSubfolder + " contains " + SlotsDb.FILE_EXTENSION + " files to read from.");
-        }
-
-        /*
-         * For each file get the latest Record and compare those
-         */
-        List<FileObject> toRead = new Vector<>();
-        toRead = fileObjects.getAllFileObjects();
-        long latestTimestamp = 0;
-        Record latestRecord = null;
-        for (FileObject file : toRead) {
-            long timestamp = file.getTimestampForLatestValue();
-            if (timestamp > latestTimestamp) {
-                latestTimestamp = timestamp;
-                latestRecord = file.read(timestamp); // function calculates closest available timestamp to given
-                                                     // timestamp. This should always be equal though
-            }
-        }
-        return latestRecord;
+        return labelFolder.latestRecord;
     }
 
     /**
@@ -604,12 +753,20 @@ public final class FileObjectProxy {
      * @return timestamp in ms
      */
     private long getFolderTimestamp(String name) {
-        try {
-            sdf.parse(name);
-        } catch (ParseException e) {
-            logger.error("Unable to parse Timestamp from: " + name + " folder. " + e.getMessage());
+        synchronized (sdf) {
+            try {
+                sdf.parse(name);
+            } catch (ParseException e) {
+                logger.error("Unable to parse Timestamp from: " + name + " folder. " + e.getMessage());
+            }
+            return sdf.getCalendar().getTimeInMillis();
+        }
+    }
+
+    private long parseDay(String name) throws ParseException {
+        synchronized (sdf) {
+            return sdf.parse(name).getTime();
         }
-        return sdf.getCalendar().getTimeInMillis();
     }
 
     /**
@@ -626,93 +783,92 @@ public final class FileObjectProxy {
      * @return boolean true if yes else false
      */
     private boolean isFolderBetweenStartAndEnd(String name, long start, long end) {
-        try {
-            sdf.parse(name);
-        } catch (ParseException e) {
-            logger.error("Unable to parse Timestamp from: " + name + " folder. " + e.getMessage());
-        }
-        if (start <= sdf.getCalendar().getTimeInMillis() + 86399999 && sdf.getCalendar().getTimeInMillis() <= end) { // if
-                                                                                                                     // start
-                                                                                                                     // <=
-                                                                                                                     // folder.lastTSofDay
-                                                                                                                     // &&
-                                                                                                                     // folder.firstTSofDay
-                                                                                                                     // <=
-                                                                                                                     // end
+        long folderTimestamp = getFolderTimestamp(name);
+        // if start <= folder.lastTSofDay && folder.firstTSofDay <= end
+        if (start <= folderTimestamp + 86399999 && folderTimestamp <= end) {
             return true;
         }
         return false;
     }
 
     /*
-     * strCurrentDay holds the current Day in yyyyMMdd format, because SimpleDateFormat uses a lot cpu-time.
-     * currentDayFirstTS and ... currentDayLastTS mark the first and last timestamp of this day. If a TS exceeds this
-     * range, strCurrentDay, currentDayFirstTS, currentDayLastTS will be updated.
+     * currentDay holds the current Day in yyyyMMdd format, because SimpleDateFormat uses a lot cpu-time. Its first and
+     * last timestamp mark the range of this day. If a TS exceeds this range, currentDay will be replaced. Day objects
+     * are immutable, so the cache can be read without locking.
      */
-    private String getStrDate(long timestamp) throws IOException {
-        if (strCurrentDay != null) {
-            if (timestamp >= currentDayFirstTS && timestamp <= currentDayLastTS) {
-                return strCurrentDay;
-            }
+    private Day getDay(long timestamp) {
+        Day day = currentDay;
+        if (day != null && timestamp >= day.firstTimestamp && timestamp <= day.lastTimestamp) {
+            return day;
         }
         /*
          * timestamp for other day or not initialized yet.
          */
-        date.setTime(timestamp);
-        strCurrentDay = sdf.format(date);
-        try {
-            currentDayFirstTS = sdf.parse(strCurrentDay).getTime();
-        } catch (ParseException e) {
-            logger.error("Unable to parse Timestamp from: " + currentDayFirstTS + " String.");
+        synchronized (sdf) {
+            date.setTime(timestamp);
+            String strDate = sdf.format(date);
+            long firstTimestamp = 0;
+            try {
+                firstTimestamp = sdf.parse(strDate).getTime();
+            } catch (ParseException e) {
+                logger.error("Unable to parse Timestamp from: " + strDate + " String.");
+            }
+            day = new Day(strDate, firstTimestamp);
         }
-        currentDayLastTS = currentDayFirstTS + 86399999;
-        return strCurrentDay;
+        currentDay = day;
+        return day;
     }
 
-    private void deleteEntryFromLastDay(long timestamp, String label) throws IOException {
-        String strDate = getStrDate(timestamp - 86400000);
-        if (openFilesHM.containsKey(label + strDate)) {
-            /*
-             * Value for new day has been registered! Close and flush all connections! Empty Hashtable!
-             */
-            clearOpenFilesHashMap();
-            logger.info(
-                    "Started logging to a new Day. <" + strDate + "> Folder has been closed and flushed completely.");
-            /* reload days */
-            loadDays();
+    private synchronized void newDayStarted(String strDate) {
+        if (strDate.equals(latestDay)) {
+            return;
         }
+        latestDay = strDate;
+        logger.info("Started logging to a new Day. <" + strDate + "> Folders of the day before are closed.");
+        /* reload days */
+        loadDays();
     }
 
-    private void clearOpenFilesHashMap() throws IOException {
-        Iterator<FileObjectList> itr = openFilesHM.values().iterator();
-        while (itr.hasNext()) { // kick out everything
-            itr.next().closeAllFiles();
+    private void closeAllFolders() throws IOException {
+        for (LabelFolder labelFolder : labelFolders.values()) { // kick out everything
+            labelFolder.lock.writeLock().lock();
+            try {
+                labelFolder.close();
+            } finally {
+                labelFolder.lock.writeLock().unlock();
+            }
         }
-        openFilesHM = new HashMap<>();
     }
 
-    private void controlHashtableSize() throws IOException {
+    private void controlOpenFolderCount(LabelFolder current) throws IOException {
         /*
-         * hm.size() doesn't really represent the number of open files, because it contains FileObjectLists, which may
-         * contain 1 ore more FileObjects. In most cases, there is only 1 File in a List. There will be a second File if
-         * storage Intervall is reconfigured. Continuous reconfiguring of measurement points may lead to a
-         * "Too many open files" Exception. In this case SlotsDb.MAX_OPEN_FOLDERS should be decreased...
+         * The number of open folders doesn't really represent the number of open files, because a folder is a
+         * FileObjectList, which may contain 1 ore more FileObjects. In most cases, there is only 1 File in a List.
+         * There will be a second File if storage Intervall is reconfigured. Continuous reconfiguring of measurement
+         * points may lead to a "Too many open files" Exception. In this case SlotsDb.MAX_OPEN_FOLDERS should be
+         * decreased...
          */
-        if (openFilesHM.size() > max_open_files) {
+        if (openFolderCount.get() > max_open_files) {
             logger.debug("More then " + max_open_files
                     + " DataStreams are opened. Flushing and closing some to not exceed OS-Limit.");
-            Iterator<FileObjectList> itr = openFilesHM.values().iterator();
-            for (int i = 0; i < (max_open_files / 5); i++) { // randomly kick
-                                                             // out some of
-                                                             // the
-                                                             // FileObjectLists.
-                                                             // -> the needed
-                                                             // ones will be
-                                                             // reinitialized,
-                                                             // no problem
-                                                             // here.
-                itr.next().closeAllFiles();
-                itr.remove();
+            int toClose = max_open_files / 5;
+            Iterator<LabelFolder> itr = labelFolders.values().iterator();
+            while (toClose > 0 && itr.hasNext()) {
+                /*
+                 * randomly kick out some of the FileObjectLists. -> the needed ones will be reinitialized, no problem
+                 * here. Folders that are in use by another thread are skipped.
+                 */
+                LabelFolder labelFolder = itr.next();
+                if (labelFolder == current || labelFolder.files == null || !labelFolder.lock.writeLock().tryLock()) {
+                    continue;
+                }
+                try {
+                    if (labelFolder.close()) {
+                        toClose--;
+                    }
+                } finally {
+                    labelFolder.lock.writeLock().unlock();
+                }
             }
         }
     }
@@ -723,13 +879,73 @@ public final class FileObjectProxy {
      * @throws IOException
      *             if an I/O error occurs.
      */
-    public synchronized void flush() throws IOException {
+    public void flush() throws IOException {
+        int flushed = 0;
+        for (LabelFolder labelFolder : labelFolders.values()) {
+            labelFolder.lock.writeLock().lock();
+            try {
+                if (labelFolder.files != null) {
+                    labelFolder.files.flush();
+                    flushed++;
+                }
+            } finally {
+                labelFolder.lock.writeLock().unlock();
+            }
+        }
 
-        Iterator<FileObjectList> itr = openFilesHM.values().iterator();
-        while (itr.hasNext()) {
-            itr.next().flush();
+        logger.info("Data from " + flushed + " Folders flushed to disk.");
+    }
+
+    /**
+     * The folder of a label for the day that is currently written to, together with the lock that guards all files of
+     * the label. Entries are never removed, so every thread uses the same lock for a label.
+     */
+    private final class LabelFolder {
+
+        private final String label;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        /* guarded by the write lock */
+        private String strDate;
+        private FileObjectList files;
+        private long latestTimestamp = Long.MIN_VALUE;
+
+        /* written under the write lock, read without locking */
+        private volatile Record latestRecord;
+
+        LabelFolder(String label) {
+            this.label = label;
+        }
+
+        void open(String strDate, FileObjectList files) {
+            this.strDate = strDate;
+            this.files = files;
+            openFolderCount.incrementAndGet();
         }
 
-        logger.info("Data from " + openFilesHM.size() + " Folders flushed to disk.");
+        boolean close() throws IOException {
+            if (files == null) {
+                return false;
+            }
+            FileObjectList toClose = files;
+            files = null;
+            strDate = null;
+            openFolderCount.decrementAndGet();
+            toClose.closeAllFiles();
+            return true;
+        }
+    }
+
+    private static final class Day {
+
+        private final String strDate;
+        private final long firstTimestamp;
+        private final long lastTimestamp;
+
+        Day(String strDate, long firstTimestamp) {
+            this.strDate = strDate;
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = firstTimestamp + 86399999;
+        }
     }
 }
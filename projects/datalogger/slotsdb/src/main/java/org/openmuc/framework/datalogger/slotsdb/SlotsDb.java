@@ -73,6 +73,14 @@ public final class SlotsDb implements DataLoggerService {
      */
     public static final String FLUSH_PERIOD = System
             .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".flushperiod");
+    /*
+     * configures how the slot files are accessed. "stream" (default) appends values through buffered streams. "mapped"
+     * preallocates the file of a day and accesses it through a memory mapped buffer. Mapped files use virtual address
+     * space of up to 9 bytes per slot of a day for every open file.
+     */
+    public static final String STORAGE_MODE = System
+            .getProperty(SlotsDb.class.getPackage().getName().toLowerCase() + ".storage_mode");
+    public static final String STORAGE_MODE_MAPPED = "mapped";
     /*
      * configures how long data will at least be stored in the SLOTSDB.
      */
@@ -96,9 +104,17 @@ public final class SlotsDb implements DataLoggerService {
      */
     public static final int DATA_EXPIRATION_CHECK_INTERVAL = 5000;
     private static final Logger logger = LoggerFactory.getLogger(SlotsDb.class);
+    private static final boolean MAPPED_STORAGE = STORAGE_MODE_MAPPED.equalsIgnoreCase(STORAGE_MODE);
     private final HashMap<String, Integer> loggingIntervalsById = new HashMap<>();
     private FileObjectProxy fileObjectProxy;
 
+    /**
+     * @return true if the slot files are preallocated and memory mapped
+     */
+    public static boolean isMappedStorage() {
+        return MAPPED_STORAGE;
+    }
+
     @Activate
     protected void activate(ComponentContext context) {
         String rootFolder = SlotsDb.DB_ROOT_FOLDER;
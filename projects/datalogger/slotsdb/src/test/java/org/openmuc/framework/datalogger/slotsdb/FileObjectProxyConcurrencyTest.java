@@ -0,0 +1,228 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+public class FileObjectProxyConcurrencyTest {
+
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+    private static final int LABELS_PER_WRITER = 4;
+    private static final int VALUES = 500;
+    private static final long PERIOD = 1000;
+
+    private File rootNode;
+    private FileObjectProxy proxy;
+    private long start;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        rootNode = Files.createTempDirectory("openmuc-slotsdb").toFile();
+        proxy = new FileObjectProxy(rootNode.getPath());
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        start = calendar.getTimeInMillis();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        proxy.flush();
+        deleteRecursive(rootNode);
+    }
+
+    private static void deleteRecursive(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static String label(int writer, int label) {
+        return "channel/" + writer + "/" + label;
+    }
+
+    @Test
+    public void concurrentAppendsAndReads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        CountDownLatch startSignal = new CountDownLatch(1);
+        CountDownLatch writersDone = new CountDownLatch(WRITERS);
+        AtomicBoolean reading = new AtomicBoolean(true);
+
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            executor.execute(() -> {
+                try {
+                    startSignal.await();
+                    for (int i = 0; i < VALUES; i++) {
+                        for (int l = 0; l < LABELS_PER_WRITER; l++) {
+                            proxy.appendValue(label(writer, l), i, start + i * PERIOD, Flag.VALID.getCode(), PERIOD);
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    writersDone.countDown();
+                }
+            });
+        }
+
+        for (int r = 0; r < READERS; r++) {
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    startSignal.await();
+                    while (reading.get()) {
+                        String label = label(random.nextInt(WRITERS), random.nextInt(LABELS_PER_WRITER));
+                        assertConsistent(proxy.read(label, start, start + VALUES * PERIOD));
+                        Record latest = proxy.readLatest(label);
+                        if (latest != null) {
+                            assertEquals((latest.getTimestamp() - start) / PERIOD, latest.getValue().asDouble(), 0);
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+
+        startSignal.countDown();
+        assertTrue(writersDone.await(60, TimeUnit.SECONDS));
+        reading.set(false);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        if (!errors.isEmpty()) {
+            throw new AssertionError(errors.size() + " threads failed", errors.peek());
+        }
+
+        for (int w = 0; w < WRITERS; w++) {
+            for (int l = 0; l < LABELS_PER_WRITER; l++) {
+                List<Record> records = proxy.read(label(w, l), start, start + VALUES * PERIOD);
+                assertEquals(VALUES, records.size());
+                assertConsistent(records);
+                assertEquals(start + (VALUES - 1) * PERIOD, proxy.readLatest(label(w, l)).getTimestamp().longValue());
+            }
+        }
+    }
+
+    @Test
+    public void readsDuringDeletionOfOldDays() throws Exception {
+        long oldDay = start - 3 * 86400000L;
+        for (int w = 0; w < WRITERS; w++) {
+            for (int i = 0; i < VALUES; i++) {
+                for (int l = 0; l < LABELS_PER_WRITER; l++) {
+                    proxy.appendValue(label(w, l), i, oldDay + i * PERIOD, Flag.VALID.getCode(), PERIOD);
+                }
+            }
+        }
+        proxy.appendValue(label(0, 0), 0, start, Flag.VALID.getCode(), PERIOD);
+        proxy.flush();
+
+        // the delete job only knows the days that existed on startup
+        FileObjectProxy restarted = new FileObjectProxy(rootNode.getPath());
+
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        CountDownLatch readersStarted = new CountDownLatch(READERS);
+        AtomicBoolean reading = new AtomicBoolean(true);
+
+        for (int r = 0; r < READERS; r++) {
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    do {
+                        String label = label(random.nextInt(WRITERS), random.nextInt(LABELS_PER_WRITER));
+                        List<Record> records = restarted.read(label, oldDay, oldDay + VALUES * PERIOD);
+                        // a day is deleted for a label at once
+                        assertTrue(records.isEmpty() || records.size() == VALUES, records.size() + " records");
+                        assertConsistent(records, oldDay);
+                        readersStarted.countDown();
+                    } while (reading.get());
+                } catch (Throwable e) {
+                    errors.add(e);
+                    readersStarted.countDown();
+                }
+            });
+        }
+
+        assertTrue(readersStarted.await(60, TimeUnit.SECONDS));
+        restarted.new DeleteJob().run();
+        reading.set(false);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        if (!errors.isEmpty()) {
+            throw new AssertionError(errors.size() + " threads failed", errors.peek());
+        }
+
+        assertTrue(restarted.read(label(1, 0), oldDay, oldDay + VALUES * PERIOD).isEmpty());
+        assertEquals(start, restarted.readLatest(label(0, 0)).getTimestamp().longValue());
+        restarted.flush();
+    }
+
+    private void assertConsistent(List<Record> records) {
+        assertConsistent(records, start);
+    }
+
+    /*
+     * Values are written in order without gaps, so a reader must always see a prefix of them.
+     */
+    private static void assertConsistent(List<Record> records, long start) {
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            assertEquals(start + i * PERIOD, record.getTimestamp().longValue());
+            assertEquals(i, record.getValue().asDouble(), 0);
+            assertEquals(Flag.VALID, record.getFlag());
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Calendar;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+public class FileObjectProxyTest {
+
+    private static final long PERIOD = 1000;
+
+    private File rootNode;
+    private long today;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        rootNode = Files.createTempDirectory("openmuc-slotsdb").toFile();
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        today = calendar.getTimeInMillis();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        deleteRecursive(rootNode);
+    }
+
+    private static void deleteRecursive(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void latestRecordIsUpdatedOnAppend() throws IOException {
+        FileObjectProxy proxy = new FileObjectProxy(rootNode.getPath());
+        assertNull(proxy.readLatest("channel"));
+
+        proxy.appendValue("channel", 1, today, Flag.VALID.getCode(), PERIOD);
+        proxy.appendValue("channel", 2, today + PERIOD, Flag.VALID.getCode(), PERIOD);
+        // an older value doesn't replace the latest one
+        proxy.appendValue("channel", 3, today, Flag.VALID.getCode(), PERIOD);
+
+        Record latest = proxy.readLatest("channel");
+        assertEquals(today + PERIOD, latest.getTimestamp().longValue());
+        assertEquals(2, latest.getValue().asDouble(), 0);
+        assertNull(proxy.readLatest("other"));
+    }
+
+    @Test
+    public void latestRecordsAreLoadedOnStartup() throws IOException {
+        FileObjectProxy proxy = new FileObjectProxy(rootNode.getPath());
+        long yesterday = today - 86400000L;
+        proxy.appendValue("channel/a", 1, yesterday, Flag.VALID.getCode(), PERIOD);
+        proxy.appendValue("channel/a", 2, yesterday + PERIOD, Flag.VALID.getCode(), PERIOD);
+        proxy.appendValue("channel/b", 3, yesterday, Flag.VALID.getCode(), PERIOD);
+        proxy.appendValue("channel/b", 4, today, Flag.DRIVER_ERROR_TIMEOUT.getCode(), PERIOD);
+        proxy.appendValue("channel/c", 5, today, Flag.VALID.getCode(), PERIOD);
+        proxy.appendValue("channel/c", Double.NaN, today + PERIOD, Flag.VALID.getCode(), PERIOD);
+        proxy.flush();
+
+        FileObjectProxy restarted = new FileObjectProxy(rootNode.getPath());
+
+        Record latest = restarted.readLatest("channel/a");
+        assertEquals(yesterday + PERIOD, latest.getTimestamp().longValue());
+        assertEquals(2, latest.getValue().asDouble(), 0);
+
+        latest = restarted.readLatest("channel/b");
+        assertEquals(today, latest.getTimestamp().longValue());
+        assertEquals(4, latest.getValue().asDouble(), 0);
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, latest.getFlag());
+
+        // the latest slot has no value
+        assertNull(restarted.readLatest("channel/c"));
+        assertNull(proxy.readLatest("channel/c"));
+    }
+
+}
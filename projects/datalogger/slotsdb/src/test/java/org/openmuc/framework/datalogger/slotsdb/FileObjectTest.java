@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.slotsdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+
+public class FileObjectTest {
+
+    private static final long START = 1_600_000_000_000L;
+    private static final long PERIOD = 1000;
+    private static final long END = START + 99 * PERIOD;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 9;
+
+    private File folder;
+    private File file;
+    private File marker;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("openmuc-slotsdb").toFile();
+        file = new File(folder, START + SlotsDb.FILE_EXTENSION);
+        marker = new File(file.getPath() + FileObject.PREALLOCATED_EXTENSION);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        for (File child : folder.listFiles()) {
+            child.delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void mappedFileCanBeReopened() throws IOException {
+        FileObject fileObject = new FileObject(file, true);
+        fileObject.createFileAndHeader(START, PERIOD, END);
+        fileObject.append(1, START, Flag.VALID.getCode());
+        fileObject.append(2, START + 2 * PERIOD, Flag.VALID.getCode());
+        fileObject.close();
+
+        assertTrue(marker.exists());
+        assertEquals(HEADER_SIZE + 100 * SLOT_SIZE, file.length());
+
+        FileObject reopened = new FileObject(file, true);
+        assertEquals(START + 2 * PERIOD, reopened.getTimestampForLatestValue());
+        reopened.append(3, START + 3 * PERIOD, Flag.VALID.getCode());
+        assertValues(reopened.readFully(), 1, 2, 3);
+        reopened.close();
+    }
+
+    @Test
+    public void mappedFileCanBeAppendedInStreamMode() throws IOException {
+        FileObject fileObject = new FileObject(file, true);
+        fileObject.createFileAndHeader(START, PERIOD, END);
+        fileObject.append(1, START, Flag.VALID.getCode());
+        fileObject.append(2, START + PERIOD, Flag.VALID.getCode());
+        fileObject.close();
+
+        FileObject streamed = new FileObject(file, false);
+        assertEquals(START + PERIOD, streamed.getTimestampForLatestValue());
+        streamed.append(3, START + 2 * PERIOD, Flag.VALID.getCode());
+        streamed.append(4, START + 4 * PERIOD, Flag.VALID.getCode());
+        streamed.close();
+
+        assertFalse(marker.exists());
+        assertEquals(HEADER_SIZE + 5 * SLOT_SIZE, file.length());
+
+        FileObject reopened = new FileObject(file, false);
+        assertEquals(START + 4 * PERIOD, reopened.getTimestampForLatestValue());
+        assertValues(reopened.readFully(), 1, 2, 3, 4);
+        reopened.close();
+    }
+
+    @Test
+    public void streamFileCanBeAppendedInMappedMode() throws IOException {
+        FileObject fileObject = new FileObject(file, false);
+        fileObject.createFileAndHeader(START, PERIOD);
+        fileObject.append(1, START, Flag.VALID.getCode());
+        fileObject.close();
+
+        FileObject mapped = new FileObject(file, true);
+        mapped.append(2, START + PERIOD, Flag.VALID.getCode());
+        mapped.close();
+
+        // the file has been extended by the mapping
+        assertTrue(marker.exists());
+
+        FileObject streamed = new FileObject(file, false);
+        assertEquals(START + PERIOD, streamed.getTimestampForLatestValue());
+        streamed.append(3, START + 2 * PERIOD, Flag.VALID.getCode());
+        assertValues(streamed.readFully(), 1, 2, 3);
+        streamed.close();
+    }
+
+    @Test
+    public void trailingEmptyRecordOfStreamFileIsKept() throws IOException {
+        FileObject fileObject = new FileObject(file, false);
+        fileObject.createFileAndHeader(START, PERIOD);
+        fileObject.append(1, START, Flag.VALID.getCode());
+        fileObject.append(Double.NaN, START + PERIOD, Flag.NO_VALUE_RECEIVED_YET.getCode());
+        fileObject.close();
+
+        FileObject reopened = new FileObject(file, false);
+        assertEquals(START + PERIOD, reopened.getTimestampForLatestValue());
+        assertNull(reopened.read(START + PERIOD));
+        reopened.append(2, START + 2 * PERIOD, Flag.VALID.getCode());
+        reopened.close();
+
+        assertEquals(HEADER_SIZE + 3 * SLOT_SIZE, file.length());
+        FileObject read = new FileObject(file, false);
+        assertEquals(START + 2 * PERIOD, read.getTimestampForLatestValue());
+        assertValues(read.readFully(), 1, 2);
+        read.close();
+    }
+
+    private static void assertValues(List<Record> records, double... values) {
+        assertEquals(values.length, records.size());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], records.get(i).getValue().asDouble(), 0);
+        }
+    }
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import static org.openmuc.framework.datalogger.sql.utils.TabelNames.CHANNELS_TABLE;
+import static org.openmuc.framework.datalogger.sql.utils.TabelNames.RECORDS_TABLE;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.h2.tools.Server;
+import org.openmuc.framework.data.DoubleValue;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.postgresql.ds.PGSimpleDataSource;
+
+/**
+ * Measures the number of records per second written by the {@link SqlWriter} in each write mode and table layout.
+ * <p>
+ * Every logging call writes one record of each channel, like {@link SqlLoggerService#log}: one row per channel table
+ * in the per channel layout and all rows into a single table in the narrow layout. By default the
+ * database is an H2 in-memory database accessed through a local H2 TCP server, as started by
+ * {@link DbConnector#startH2Server()}, so that every statement costs a round trip. H2 has no COPY command, so only the
+ * statement and batch modes are measured there. If the URL of a PostgreSQL database is given, all three modes are
+ * measured against it.
+ * <p>
+ * Usage: {@code SqlWriterBenchmark [channels] [logging calls] [PostgreSQL url user password]}
+ */
+public class SqlWriterBenchmark {
+
+    private static final String H2_URL = "jdbc:h2:tcp://localhost:9123/mem:openmuc;DB_CLOSE_DELAY=-1;MODE=MYSQL";
+    private static final int WARM_UP_CALLS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int channels = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int calls = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        List<LoggingRecord> records = new ArrayList<>();
+        for (int channel = 0; channel < channels; channel++) {
+            records.add(new LoggingRecord("channel_" + channel,
+                    new Record(new DoubleValue(channel * 1.5), System.currentTimeMillis(), Flag.VALID)));
+        }
+
+        if (args.length > 2) {
+            PGSimpleDataSource dataSource = new PGSimpleDataSource();
+            dataSource.setURL(args[2]);
+            dataSource.setUser(args.length > 3 ? args[3] : "openmuc");
+            dataSource.setPassword(args.length > 4 ? args[4] : "openmuc");
+            runAll(args[2], dataSource, records, calls, SqlWriter.WriteMode.values());
+            return;
+        }
+
+        Server server = Server.createTcpServer("-tcpPort", "9123", "-ifNotExists").start();
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(H2_URL);
+        dataSource.setUser("openmuc");
+        dataSource.setPassword("openmuc");
+        try {
+            runAll(H2_URL, dataSource, records, calls, SqlWriter.WriteMode.STATEMENT, SqlWriter.WriteMode.BATCH);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void runAll(String url, DataSource dataSource, List<LoggingRecord> records, int calls,
+            SqlWriter.WriteMode... writeModes) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            createTables(connection, records);
+
+            System.out.println("layout;mode;records;records/s");
+            for (SqlWriter.WriteMode writeMode : writeModes) {
+                run(writeMode, false, url, dataSource, records, calls);
+            }
+            dropTables(connection, records);
+
+            createNarrowTables(connection, url, records);
+            for (SqlWriter.WriteMode writeMode : writeModes) {
+                // not supported by the narrow layout
+                if (writeMode != SqlWriter.WriteMode.STATEMENT) {
+                    execute(connection, "DELETE FROM " + RECORDS_TABLE);
+                    run(writeMode, true, url, dataSource, records, calls);
+                }
+            }
+            execute(connection, "DROP TABLE " + RECORDS_TABLE);
+            execute(connection, "DROP TABLE " + CHANNELS_TABLE);
+        }
+    }
+
+    private static void createTables(Connection connection, List<LoggingRecord> records) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (LoggingRecord record : records) {
+                statement.execute("CREATE TABLE IF NOT EXISTS " + record.getChannelId()
+                        + " (time TIMESTAMP NOT NULL, flag SMALLINT NOT NULL, \"VALUE\" DOUBLE PRECISION)");
+            }
+        }
+    }
+
+    private static void dropTables(Connection connection, List<LoggingRecord> records) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (LoggingRecord record : records) {
+                statement.execute("DROP TABLE " + record.getChannelId());
+            }
+        }
+    }
+
+    /*
+     * Like NarrowTableSetup, with all channels already registered in the dictionary table.
+     */
+    private static void createNarrowTables(Connection connection, String url, List<LoggingRecord> records)
+            throws SQLException {
+        boolean postgresql = url.contains("postgresql");
+        execute(connection, "CREATE TABLE " + CHANNELS_TABLE
+                + " (id INTEGER NOT NULL PRIMARY KEY, channelid VARCHAR(255) NOT NULL UNIQUE)");
+        execute(connection, "CREATE TABLE " + RECORDS_TABLE + " (channel INTEGER NOT NULL, time "
+                + (postgresql ? "TIMESTAMPTZ" : "TIMESTAMP") + " NOT NULL, flag SMALLINT NOT NULL, "
+                + "value_double DOUBLE PRECISION, value_text " + (postgresql ? "TEXT" : "VARCHAR")
+                + ", PRIMARY KEY (channel,time))");
+        try (PreparedStatement statement = connection
+                .prepareStatement("INSERT INTO " + CHANNELS_TABLE + " (id,channelid) VALUES (?,?)")) {
+            for (int i = 0; i < records.size(); i++) {
+                statement.setInt(1, i + 1);
+                statement.setString(2, records.get(i).getChannelId());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static void run(SqlWriter.WriteMode writeMode, boolean narrow, String url, DataSource dataSource,
+            List<LoggingRecord> records, int calls) {
+        DbAccess dbAccess = DbAccess.getTestInstance(new BenchmarkDbConnector(url, dataSource));
+        if (narrow) {
+            ChannelDictionary dictionary = new ChannelDictionary(dbAccess);
+            dictionary.register(Collections.emptyList());
+            dbAccess.setChannelDictionary(dictionary);
+        }
+        SqlWriter writer = new SqlWriter(dbAccess, writeMode);
+        long start = System.currentTimeMillis();
+
+        for (int call = 0; call < WARM_UP_CALLS; call++) {
+            writer.writeRecordContainerToDb(records, start + call * 1000L);
+        }
+        start += WARM_UP_CALLS * 1000L;
+
+        long startTime = System.nanoTime();
+        for (int call = 0; call < calls; call++) {
+            writer.writeRecordContainerToDb(records, start + call * 1000L);
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+        dbAccess.closeConnection();
+
+        long written = (long) calls * records.size();
+        System.out.printf("%s;%s;%d;%.0f%n", narrow ? "narrow" : "per_channel", writeMode, written,
+                written * 1e9 / elapsedNanos);
+    }
+
+    static class BenchmarkDbConnector extends DbConnector {
+
+        private final String url;
+        private final ConnectionPool writePool;
+        private final ConnectionPool readPool;
+
+        BenchmarkDbConnector(String url, DataSource dataSource) {
+            this.url = url;
+            this.writePool = new ConnectionPool("benchmark", dataSource, 1, 10_000, 0, 0);
+            this.readPool = new ConnectionPool("benchmark-read", dataSource, 1, 10_000, 0, 0);
+        }
+
+        @Override
+        protected String getUrlFromProperties() {
+            return url;
+        }
+
+        @Override
+        protected void initConnector() {
+        }
+
+        @Override
+        protected void getConnectionToDb() {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public Connection getWriteConnection() throws SQLException {
+            return writePool.getConnection();
+        }
+
+        @Override
+        public Connection getReadConnection() throws SQLException {
+            return readPool.getConnection();
+        }
+
+        @Override
+        public void closeConnection() {
+            writePool.close();
+            readPool.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import static org.openmuc.framework.datalogger.sql.utils.TabelNames.CHANNELS_TABLE;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps channel IDs to the integer ids used in the narrow records table. The mapping is stored in the table
+ * openmuc_channels and ids are never reused, so records of removed channels keep their meaning.
+ */
+public class ChannelDictionary {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelDictionary.class);
+
+    private final DbAccess dbAccess;
+    private volatile Map<String, Integer> ids = Collections.emptyMap();
+
+    public ChannelDictionary(DbAccess dbAccess) {
+        this.dbAccess = dbAccess;
+    }
+
+    /**
+     * Loads the existing ids and assigns new ids to the channels that are not in the dictionary yet. A channel whose
+     * id can not be stored gets no id and is registered again on the next call.
+     *
+     * @param channels
+     *            the channels to log
+     */
+    public synchronized void register(List<LogChannel> channels) {
+        Map<String, Integer> newIds = new HashMap<>();
+        int maxId = 0;
+        try (ResultSet resultSet = dbAccess
+                .executeQuery(new StringBuilder("SELECT id,channelid FROM " + CHANNELS_TABLE + ";"))) {
+            while (resultSet.next()) {
+                int id = resultSet.getInt(1);
+                newIds.put(resultSet.getString(2), id);
+                maxId = Math.max(maxId, id);
+            }
+        } catch (SQLException e) {
+            logger.error("Unable to read the channel dictionary: {}", e.getMessage());
+            return;
+        }
+
+        for (LogChannel channel : channels) {
+            String channelId = channel.getId();
+            if (!newIds.containsKey(channelId)) {
+                int id = ++maxId;
+                StringBuilder insert = new StringBuilder("INSERT INTO " + CHANNELS_TABLE + " (id,channelid) VALUES (")
+                        .append(id)
+                        .append(",'")
+                        .append(channelId.replace("'", "''"))
+                        .append("');");
+                if (dbAccess.tryExecuteSQL(insert)) {
+                    newIds.put(channelId, id);
+                }
+                else {
+                    // records under an id without dictionary entry could not be read back
+                    logger.error("Unable to add channel {} to {}, its records are not logged.", channelId,
+                            CHANNELS_TABLE);
+                }
+            }
+        }
+        ids = newIds;
+    }
+
+    /**
+     * @param channelId
+     *            the channel ID
+     * @return the id of the channel or null if the channel is not registered
+     */
+    public Integer getId(String channelId) {
+        return ids.get(channelId);
+    }
+
+}
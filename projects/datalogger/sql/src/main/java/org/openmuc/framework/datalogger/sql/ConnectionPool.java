@@ -0,0 +1,317 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Small pool of JDBC connections. Connections are created on demand up to the maximum size of the pool and returned
+ * to it when the borrowed connection is closed.
+ * <p>
+ * Every statement created on a borrowed connection gets the configured query timeout. Connections that are borrowed
+ * longer than the leak detection threshold are logged together with the stack trace of the code that borrowed them.
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static final long VALIDATION_INTERVAL_MILLIS = 30_000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final String name;
+    private final DataSource dataSource;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final int statementTimeoutSeconds;
+    private final long leakDetectionMillis;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowedConnections = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * @param name
+     *            name of the pool used in log messages
+     * @param dataSource
+     *            the data source that creates the physical connections
+     * @param maxSize
+     *            maximum number of connections
+     * @param borrowTimeoutMillis
+     *            time to wait for a free connection
+     * @param statementTimeoutSeconds
+     *            query timeout of the statements, 0 for no timeout
+     * @param leakDetectionMillis
+     *            time after which a borrowed connection is reported as possible leak, 0 to disable leak detection
+     */
+    public ConnectionPool(String name, DataSource dataSource, int maxSize, long borrowTimeoutMillis,
+            int statementTimeoutSeconds, long leakDetectionMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1 but was " + maxSize);
+        }
+        this.name = name;
+        this.dataSource = dataSource;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.statementTimeoutSeconds = statementTimeoutSeconds;
+        this.leakDetectionMillis = leakDetectionMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrows a connection from the pool. It has to be closed to return it to the pool.
+     *
+     * @return the borrowed connection
+     * @throws SQLException
+     *             if no connection became available in time or a new connection could not be created
+     */
+    public Connection getConnection() throws SQLException {
+        checkForLeaks();
+        if (closed) {
+            throw new SQLException("Connection pool " + name + " is closed");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException(String.format("No connection of pool %s became available within %d ms, %d of %d "
+                        + "connections are in use", name, borrowTimeoutMillis, borrowedConnections.size(), maxSize));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection of pool " + name, e);
+        }
+
+        try {
+            PooledConnection pooledConnection = takeIdleConnection();
+            if (pooledConnection == null) {
+                pooledConnection = new PooledConnection(dataSource.getConnection());
+            }
+            return pooledConnection.borrow();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeIdleConnection() {
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            if (pooledConnection.isUsable()) {
+                return pooledConnection;
+            }
+            pooledConnection.closePhysical();
+        }
+        return null;
+    }
+
+    private void release(PooledConnection pooledConnection) {
+        borrowedConnections.remove(pooledConnection);
+        if (pooledConnection.leakReported) {
+            logger.info("Connection of pool {} reported as possible leak has been returned after {} ms", name,
+                    pooledConnection.borrowedMillis());
+        }
+        if (closed || !pooledConnection.reset()) {
+            pooledConnection.closePhysical();
+        }
+        else {
+            idleConnections.offerFirst(pooledConnection);
+        }
+        permits.release();
+    }
+
+    /**
+     * Logs the connections that are borrowed longer than the leak detection threshold. Each connection is reported
+     * once per borrow.
+     */
+    public void checkForLeaks() {
+        if (leakDetectionMillis <= 0) {
+            return;
+        }
+        for (PooledConnection pooledConnection : borrowedConnections) {
+            if (!pooledConnection.leakReported && pooledConnection.borrowedMillis() > leakDetectionMillis) {
+                pooledConnection.leakReported = true;
+                logger.warn("Connection of pool {} has been borrowed for {} ms, possible connection leak", name,
+                        pooledConnection.borrowedMillis(), pooledConnection.borrowedBy);
+            }
+        }
+    }
+
+    /**
+     * Closes the idle connections. Borrowed connections are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            pooledConnection.closePhysical();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getActiveCount() {
+        return borrowedConnections.size();
+    }
+
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    private class PooledConnection {
+
+        private final Connection physical;
+        private long lastUsed = System.currentTimeMillis();
+        private long borrowedAt;
+        private Exception borrowedBy;
+        private boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection borrow() {
+            borrowedAt = System.currentTimeMillis();
+            borrowedBy = leakDetectionMillis > 0 ? new Exception("Connection borrowed here") : null;
+            leakReported = false;
+            borrowedConnections.add(this);
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new Handle(this));
+        }
+
+        long borrowedMillis() {
+            return System.currentTimeMillis() - borrowedAt;
+        }
+
+        boolean isUsable() {
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (System.currentTimeMillis() - lastUsed > VALIDATION_INTERVAL_MILLIS) {
+                    return physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Rolls back an open transaction so that the connection can be borrowed again.
+         *
+         * @return false if the connection is broken
+         */
+        boolean reset() {
+            lastUsed = System.currentTimeMillis();
+            try {
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                logger.debug("Discarding connection of pool {}: {}", name, e.getMessage());
+                return false;
+            }
+        }
+
+        void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * The connection handed out to the user of the pool. Closing it returns the physical connection to the pool.
+     */
+    private class Handle implements InvocationHandler {
+
+        private final PooledConnection pooledConnection;
+        private volatile boolean returned;
+
+        Handle(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+            case "close":
+                synchronized (this) {
+                    if (!returned) {
+                        returned = true;
+                        release(pooledConnection);
+                    }
+                }
+                return null;
+            case "isClosed":
+                return returned || pooledConnection.physical.isClosed();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Connection of pool " + name + ": " + pooledConnection.physical;
+            default:
+                break;
+            }
+
+            if (returned) {
+                throw new SQLException("Connection has already been returned to pool " + name);
+            }
+            Object result;
+            try {
+                result = method.invoke(pooledConnection.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement && statementTimeoutSeconds > 0) {
+                ((Statement) result).setQueryTimeout(statementTimeoutSeconds);
+            }
+            return result;
+        }
+    }
+
+}
@@ -21,15 +21,30 @@
 
 package org.openmuc.framework.datalogger.sql;
 
+import static org.openmuc.framework.datalogger.sql.utils.SqlValues.MYSQL;
 import static org.openmuc.framework.datalogger.sql.utils.SqlValues.POSTGRESQL;
 import static org.openmuc.framework.datalogger.sql.utils.SqlValues.VALUE;
+import static org.openmuc.framework.datalogger.sql.utils.TabelNames.CHANNELS_TABLE;
+import static org.openmuc.framework.datalogger.sql.utils.TabelNames.RECORDS_TABLE;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.BooleanValue;
 import org.openmuc.framework.data.ByteArrayValue;
@@ -37,10 +52,14 @@ import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.StringValue;
+import org.openmuc.framework.data.Value;
 import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LoggingRecord;
 import org.openmuc.framework.datalogger.sql.utils.PropertyHandlerProvider;
 import org.openmuc.framework.datalogger.sql.utils.Settings;
+import org.openmuc.framework.datalogger.sql.utils.SqlValues;
 import org.openmuc.framework.lib.osgi.config.PropertyHandler;
+import org.postgresql.PGConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +68,9 @@ public class DbAccess {
     private final Logger logger = LoggerFactory.getLogger(DbAccess.class);
     private final String url;
     private final DbConnector dbConnector;
+    private final Map<String, PreparedStatement> insertStatements = new HashMap<>();
+    private Connection insertStatementsConnection;
+    private volatile ChannelDictionary channelDictionary;
 
     public DbAccess() {
         dbConnector = new DbConnector();
@@ -60,7 +82,8 @@ public class DbAccess {
     }
 
     private DbAccess(DbConnector connector) { // for testing
-        url = "";
+        String connectorUrl = connector.getUrlFromProperties();
+        url = connectorUrl != null ? connectorUrl : "";
         this.dbConnector = connector;
     }
 
@@ -85,25 +108,421 @@ public class DbAccess {
         }
     }
 
-    private void synchronizeStatement(String sql) {
-        try (Statement statement = dbConnector.createStatementWithConnection()) {
+    /**
+     * Executes the statement like {@link #executeSQL(StringBuilder)}, but tells the caller whether it succeeded.
+     *
+     * @param sb
+     *            StringBuilder to convert
+     * @return true if the statement has been executed, false if it failed
+     */
+    public boolean tryExecuteSQL(StringBuilder sb) {
+        String sql = sb.toString();
+        Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
+        if (!dbConnector.isConnected()) {
+            dbConnector.getConnectionToDb();
+        }
+        synchronized (dbConnector) {
+            return synchronizeStatement(sql);
+        }
+    }
+
+    private boolean synchronizeStatement(String sql) {
+        try (Connection connection = dbConnector.getWriteConnection();
+                Statement statement = connection.createStatement()) {
             statement.execute(sql);
+            return true;
         } catch (SQLException e) {
             logger.error(MessageFormat.format("Error executing SQL: \n{0}", sql), e.getMessage());
             logger.error(MessageFormat.format("SQLState:     {0}", e.getSQLState()));
             logger.error(MessageFormat.format("VendorError:  {0}", e.getErrorCode()));
+            return false;
         }
     }
 
+    /**
+     * Inserts the records using one cached prepared statement per channel table. The statements are executed as JDBC
+     * batches inside a single transaction, so writing a whole logging interval costs one round trip per table instead
+     * of one per record. If the transaction fails, every table is retried on its own so that a broken table does not
+     * discard the records of the others. In the narrow layout, see {@link #setChannelDictionary(ChannelDictionary)},
+     * all records are inserted into a single table. There a record of a channel and time that is already stored is
+     * skipped, or replaced on H2, instead of failing the insert of all channels.
+     *
+     * @param containers
+     *            the records to insert
+     * @param timestamp
+     *            the timestamp stored for all records or null to store the timestamp of each record
+     */
+    public void executeInsertBatch(List<LoggingRecord> containers, Timestamp timestamp) {
+        ChannelDictionary dictionary = channelDictionary;
+        Map<String, List<LoggingRecord>> recordsByTable = groupByTable(containers, dictionary);
+        if (recordsByTable.isEmpty()) {
+            return;
+        }
+        Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
+        if (!dbConnector.isConnected()) {
+            dbConnector.getConnectionToDb();
+        }
+        synchronized (dbConnector) {
+            try (Connection connection = dbConnector.getWriteConnection()) {
+                executeInsertBatch(connection, recordsByTable, timestamp, dictionary);
+            } catch (SQLException e) {
+                logSqlException("Error executing batch insert", e);
+            }
+        }
+    }
+
+    private void executeInsertBatch(Connection connection, Map<String, List<LoggingRecord>> recordsByTable,
+            Timestamp timestamp, ChannelDictionary dictionary) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            for (Map.Entry<String, List<LoggingRecord>> table : recordsByTable.entrySet()) {
+                executeInsertBatch(connection, table.getKey(), table.getValue(), timestamp, dictionary);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            logger.warn("Batch insert failed, inserting each table on its own: {}", e.getMessage());
+            connection.setAutoCommit(true);
+            for (Map.Entry<String, List<LoggingRecord>> table : recordsByTable.entrySet()) {
+                tryInsertBatch(connection, table.getKey(), table.getValue(), timestamp, dictionary);
+            }
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private void tryInsertBatch(Connection connection, String table, List<LoggingRecord> containers,
+            Timestamp timestamp, ChannelDictionary dictionary) {
+        try {
+            executeInsertBatch(connection, table, containers, timestamp, dictionary);
+        } catch (SQLException e) {
+            logSqlException(MessageFormat.format("Error inserting records into {0}", table), e);
+        }
+    }
+
+    private void executeInsertBatch(Connection connection, String table, List<LoggingRecord> containers,
+            Timestamp timestamp, ChannelDictionary dictionary) throws SQLException {
+        PreparedStatement statement;
+        if (dictionary != null) {
+            statement = getInsertStatement(connection, table, narrowInsertSql(table));
+        }
+        else {
+            statement = getInsertStatement(connection, table,
+                    "INSERT INTO " + table + " (time,flag,\"VALUE\") VALUES (?,?,?)");
+        }
+        try {
+            for (LoggingRecord container : containers) {
+                Record record = container.getRecord();
+                Timestamp recordTimestamp = timestamp != null ? timestamp : new Timestamp(record.getTimestamp());
+                if (dictionary != null) {
+                    statement.setInt(1, dictionary.getId(container.getChannelId()));
+                    statement.setTimestamp(2, recordTimestamp);
+                    statement.setShort(3, (short) record.getFlag().getCode());
+                    setNarrowValue(statement, 4, record.getValue());
+                }
+                else {
+                    statement.setTimestamp(1, recordTimestamp);
+                    statement.setShort(2, (short) record.getFlag().getCode());
+                    setValue(statement, 3, record.getValue());
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (SQLException e) {
+            insertStatements.remove(table);
+            statement.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Builds the insert of the narrow records table. A duplicate of the primary key (channel,time) must not roll back
+     * the records of all other channels of the logging interval, so it is ignored where the database supports it and
+     * merged into the existing row on H2.
+     */
+    private String narrowInsertSql(String table) {
+        String columns = " (channel,time,flag,value_double,value_text) ";
+        if (url.contains(POSTGRESQL)) {
+            return "INSERT INTO " + table + columns + "VALUES (?,?,?,?,?) ON CONFLICT (channel,time) DO NOTHING";
+        }
+        else if (url.contains(MYSQL)) {
+            return "INSERT IGNORE INTO " + table + columns + "VALUES (?,?,?,?,?)";
+        }
+        return "MERGE INTO " + table + columns + "KEY (channel,time) VALUES (?,?,?,?,?)";
+    }
+
+    private PreparedStatement getInsertStatement(Connection connection, String table, String sql)
+            throws SQLException {
+        Connection physicalConnection = connection.unwrap(Connection.class);
+        if (physicalConnection != insertStatementsConnection) {
+            clearInsertStatements();
+            insertStatementsConnection = physicalConnection;
+        }
+        PreparedStatement statement = insertStatements.get(table);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            insertStatements.put(table, statement);
+        }
+        return statement;
+    }
+
+    private static void setValue(PreparedStatement statement, int index, Value value) throws SQLException {
+        switch (value.getClass().getSimpleName()) {
+        case "BooleanValue":
+            statement.setBoolean(index, value.asBoolean());
+            break;
+        case "ByteValue":
+            statement.setShort(index, value.asByte());
+            break;
+        case "ByteArrayValue":
+            statement.setBytes(index, value.asByteArray());
+            break;
+        case "FloatValue":
+            statement.setFloat(index, value.asFloat());
+            break;
+        case "IntValue":
+            statement.setInt(index, value.asInt());
+            break;
+        case "LongValue":
+            statement.setLong(index, value.asLong());
+            break;
+        case "ShortValue":
+            statement.setShort(index, value.asShort());
+            break;
+        case "StringValue":
+            statement.setString(index, value.asString());
+            break;
+        default:
+            statement.setDouble(index, value.asDouble());
+            break;
+        }
+    }
+
+    /**
+     * Sets the value and the text value of the narrow records table starting at the given index. Strings and byte
+     * arrays, encoded as hex, are stored as text, all other values as double.
+     */
+    private static void setNarrowValue(PreparedStatement statement, int index, Value value) throws SQLException {
+        switch (value.getClass().getSimpleName()) {
+        case "StringValue":
+            statement.setNull(index, Types.DOUBLE);
+            statement.setString(index + 1, value.asString());
+            break;
+        case "ByteArrayValue":
+            StringBuilder sb = new StringBuilder();
+            SqlValues.appendHex(value.asByteArray(), sb);
+            statement.setNull(index, Types.DOUBLE);
+            statement.setString(index + 1, sb.toString());
+            break;
+        case "BooleanValue":
+            statement.setDouble(index, value.asBoolean() ? 1 : 0);
+            statement.setNull(index + 1, Types.VARCHAR);
+            break;
+        default:
+            statement.setDouble(index, value.asDouble());
+            statement.setNull(index + 1, Types.VARCHAR);
+            break;
+        }
+    }
+
+    /**
+     * Inserts the records with the PostgreSQL COPY command, one COPY per channel table inside a single transaction.
+     * Falls back to {@link #executeInsertBatch(List, Timestamp)} if the database is not PostgreSQL.
+     *
+     * @param containers
+     *            the records to insert
+     * @param timestamp
+     *            the timestamp stored for all records or null to store the timestamp of each record
+     */
+    public void executeCopy(List<LoggingRecord> containers, Timestamp timestamp) {
+        if (!url.contains(POSTGRESQL)) {
+            executeInsertBatch(containers, timestamp);
+            return;
+        }
+        ChannelDictionary dictionary = channelDictionary;
+        Map<String, List<LoggingRecord>> recordsByTable = groupByTable(containers, dictionary);
+        if (recordsByTable.isEmpty()) {
+            return;
+        }
+        String columns = dictionary != null ? "channel,time,flag,value_double,value_text" : "time,flag,\"VALUE\"";
+        Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
+        if (!dbConnector.isConnected()) {
+            dbConnector.getConnectionToDb();
+        }
+        synchronized (dbConnector) {
+            try (Connection connection = dbConnector.getWriteConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                    for (Map.Entry<String, List<LoggingRecord>> table : recordsByTable.entrySet()) {
+                        String sql = "COPY " + table.getKey() + " (" + columns + ") FROM STDIN WITH (FORMAT csv)";
+                        String csv = toCsv(table.getValue(), timestamp, dictionary);
+                        pgConnection.getCopyAPI().copyIn(sql, new StringReader(csv));
+                    }
+                    connection.commit();
+                } catch (SQLException | IOException e) {
+                    connection.rollback();
+                    logger.warn("COPY failed, inserting the records in batches: {}", e.getMessage());
+                    executeInsertBatch(connection, recordsByTable, timestamp, dictionary);
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                logSqlException("Error executing COPY", e);
+            }
+        }
+    }
+
+    private static String toCsv(List<LoggingRecord> containers, Timestamp timestamp, ChannelDictionary dictionary) {
+        StringBuilder sb = new StringBuilder(containers.size() * 48);
+        for (LoggingRecord container : containers) {
+            Record record = container.getRecord();
+            if (dictionary != null) {
+                sb.append(dictionary.getId(container.getChannelId())).append(',');
+            }
+            sb.append(timestamp != null ? timestamp : new Timestamp(record.getTimestamp()))
+                    .append(',')
+                    .append(record.getFlag().getCode())
+                    .append(',');
+            Value value = record.getValue();
+            switch (value.getClass().getSimpleName()) {
+            case "ByteArrayValue":
+                if (dictionary != null) {
+                    sb.append(',');
+                }
+                else {
+                    sb.append("\\x");
+                }
+                SqlValues.appendHex(value.asByteArray(), sb);
+                break;
+            case "StringValue":
+                if (dictionary != null) {
+                    sb.append(',');
+                }
+                sb.append('"').append(value.asString().replace("\"", "\"\"")).append('"');
+                break;
+            case "BooleanValue":
+                if (dictionary != null) {
+                    sb.append(value.asBoolean() ? '1' : '0').append(',');
+                }
+                else {
+                    SqlValues.appendValue(value, sb);
+                }
+                break;
+            default:
+                SqlValues.appendValue(value, sb);
+                if (dictionary != null) {
+                    sb.append(',');
+                }
+                break;
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private Map<String, List<LoggingRecord>> groupByTable(List<LoggingRecord> containers,
+            ChannelDictionary dictionary) {
+        Map<String, List<LoggingRecord>> recordsByTable = new LinkedHashMap<>();
+        for (LoggingRecord container : containers) {
+            Record record = container.getRecord();
+            if (record.getValue() == null || record.getTimestamp() == null) {
+                continue;
+            }
+            if (dictionary == null) {
+                recordsByTable.computeIfAbsent(container.getChannelId(), table -> new ArrayList<>()).add(container);
+            }
+            else if (dictionary.getId(container.getChannelId()) != null) {
+                recordsByTable.computeIfAbsent(RECORDS_TABLE, table -> new ArrayList<>()).add(container);
+            }
+            else {
+                logger.warn("Channel {} is not registered in {}, discarding its record", container.getChannelId(),
+                        CHANNELS_TABLE);
+            }
+        }
+        return recordsByTable;
+    }
+
+    /**
+     * Switches to the narrow layout where the records of all channels are stored in a single table. The channels are
+     * identified by their id in the given dictionary.
+     *
+     * @param channelDictionary
+     *            the dictionary of the channel ids or null to store the records in one table per channel
+     */
+    public void setChannelDictionary(ChannelDictionary channelDictionary) {
+        this.channelDictionary = channelDictionary;
+        clearInsertStatements();
+    }
+
+    /**
+     * @return the dictionary of the narrow layout or null if every channel has its own table
+     */
+    public ChannelDictionary getChannelDictionary() {
+        return channelDictionary;
+    }
+
+    /**
+     * Closes the cached insert statements. Has to be called when tables are created or altered.
+     */
+    public void clearInsertStatements() {
+        synchronized (dbConnector) {
+            for (PreparedStatement statement : insertStatements.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // ignore
+                }
+            }
+            insertStatements.clear();
+        }
+    }
+
+    private void logSqlException(String message, SQLException e) {
+        logger.error(MessageFormat.format("{0}: {1}", message, e.getMessage()));
+        logger.error(MessageFormat.format("SQLState:     {0}", e.getSQLState()));
+        logger.error(MessageFormat.format("VendorError:  {0}", e.getErrorCode()));
+    }
+
+    /**
+     * Executes the query on a connection of the read pool. Closing the returned result set also closes its statement
+     * and returns the connection to the pool.
+     */
     public ResultSet executeQuery(StringBuilder sb) throws SQLException {
-        Statement statement = dbConnector.createStatementWithConnection();
-        return statement.executeQuery(sb.toString());
+        Connection connection = dbConnector.getReadConnection();
+        Statement statement = null;
+        try {
+            statement = connection.createStatement();
+            return closingWithStatement(statement.executeQuery(sb.toString()), statement, connection);
+        } catch (SQLException | RuntimeException e) {
+            if (statement != null) {
+                statement.close();
+            }
+            connection.close();
+            throw e;
+        }
+    }
+
+    private static ResultSet closingWithStatement(ResultSet resultSet, Statement statement, Connection connection) {
+        return (ResultSet) Proxy.newProxyInstance(DbAccess.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        try (Connection c = connection; Statement s = statement; ResultSet r = resultSet) {
+                            return null;
+                        }
+                    }
+                    try {
+                        return method.invoke(resultSet, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
     }
 
     public boolean timeScaleIsActive() {
         StringBuilder sbExtensions = new StringBuilder("SELECT * FROM pg_extension;");
 
-        try (ResultSet resultSet = dbConnector.createStatementWithConnection().executeQuery(sbExtensions.toString())) {
+        try (ResultSet resultSet = executeQuery(sbExtensions)) {
             while (resultSet.next()) {
                 return resultSet.getString("extname").contains("timescale");
             }
@@ -137,9 +556,10 @@ public class DbAccess {
                 if (!dbConnector.isConnected()) {
                     dbConnector.getConnectionToDb();
                 }
-                ResultSet rsLength = executeQuery(sbVarcharLength);
-                rsLength.next();
-                columnsLength.add(rsLength.getInt(1));
+                try (ResultSet rsLength = executeQuery(sbVarcharLength)) {
+                    rsLength.next();
+                    columnsLength.add(rsLength.getInt(1));
+                }
             } catch (SQLException e) {
                 logger.debug(e.getMessage());
                 columnsLength.add(0);
@@ -149,6 +569,7 @@ public class DbAccess {
     }
 
     public void closeConnection() {
+        clearInsertStatements();
         dbConnector.closeConnection();
     }
 
@@ -164,26 +585,7 @@ public class DbAccess {
         }
         try (ResultSet resultSet = executeQuery(sb)) {
             while (resultSet.next()) {
-                if (valuetype == ValueType.STRING) {
-                    Record rc = new Record(new StringValue(resultSet.getString(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
-                }
-                else if (valuetype == ValueType.BYTE_ARRAY) {
-                    Record rc = new Record(new ByteArrayValue(resultSet.getBytes(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
-                }
-                else if (valuetype == ValueType.BOOLEAN) {
-                    Record rc = new Record(new BooleanValue(resultSet.getBoolean(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
-                }
-                else {
-                    Record rc = new Record(new DoubleValue(resultSet.getDouble(VALUE)),
-                            resultSet.getTimestamp("time").getTime(), Flag.VALID);
-                    records.add(rc);
-                }
+                records.add(toRecord(resultSet, valuetype));
             }
         } catch (SQLException e) {
             String sql = sb.toString();
@@ -192,4 +594,60 @@ public class DbAccess {
 
         return records;
     }
+
+    /**
+     * Retrieves data from database and passes it to the consumer record by record. The rows are fetched from the
+     * database in chunks of the given fetch size, PostgreSQL and MySQL use a server side cursor for it, so the memory
+     * needed does not depend on the number of rows.
+     *
+     * @param sb
+     *            the query
+     * @param valuetype
+     *            value type of the records
+     * @param fetchSize
+     *            number of rows fetched at once
+     * @param consumer
+     *            called for every record
+     * @throws SQLException
+     *             if the query fails
+     */
+    public void queryRecords(StringBuilder sb, ValueType valuetype, int fetchSize, Consumer<Record> consumer)
+            throws SQLException {
+        if (!dbConnector.isConnected()) {
+            dbConnector.getConnectionToDb();
+        }
+        try (Connection connection = dbConnector.getReadConnection()) {
+            if (url.contains(POSTGRESQL)) {
+                // PostgreSQL only uses a cursor inside a transaction, it is rolled back when the connection is returned
+                connection.setAutoCommit(false);
+            }
+            try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY)) {
+                // the MySQL driver only streams rows with this special value
+                statement.setFetchSize(url.contains(MYSQL) ? Integer.MIN_VALUE : fetchSize);
+                try (ResultSet resultSet = statement.executeQuery(sb.toString())) {
+                    while (resultSet.next()) {
+                        consumer.accept(toRecord(resultSet, valuetype));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Record toRecord(ResultSet resultSet, ValueType valuetype) throws SQLException {
+        Value value;
+        if (valuetype == ValueType.STRING) {
+            value = new StringValue(resultSet.getString(VALUE));
+        }
+        else if (valuetype == ValueType.BYTE_ARRAY) {
+            value = new ByteArrayValue(resultSet.getBytes(VALUE));
+        }
+        else if (valuetype == ValueType.BOOLEAN) {
+            value = new BooleanValue(resultSet.getBoolean(VALUE));
+        }
+        else {
+            value = new DoubleValue(resultSet.getDouble(VALUE));
+        }
+        return new Record(value, resultSet.getTimestamp("time").getTime(), Flag.VALID);
+    }
 }
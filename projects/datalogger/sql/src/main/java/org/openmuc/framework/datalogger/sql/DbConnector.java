@@ -58,7 +58,8 @@ public class DbConnector {
     private final Logger logger = LoggerFactory.getLogger(DbConnector.class);
     private final PrintWriter out = new PrintWriter(System.out, true);
     private final String url;
-    private Connection connection;
+    private ConnectionPool writePool;
+    private ConnectionPool readPool;
     private DataSource dataSource;
     private DataSourceFactory dataSourceFactory;
     private boolean timescaleActive;
@@ -83,15 +84,7 @@ public class DbConnector {
     }
 
     public boolean isConnected() {
-        try {
-            if (connection == null || connection.isClosed()) {
-                return false;
-            }
-        } catch (SQLException e) {
-            logger.error(e.getMessage());
-            return false;
-        }
-        return true;
+        return writePool != null && !writePool.isClosed();
     }
 
     /**
@@ -114,20 +107,48 @@ public class DbConnector {
         server.stop();
     }
 
-    public Statement createStatementWithConnection() throws SQLException {
-        return connection.createStatement();
+    /**
+     * Borrows a connection of the write pool. The pool holds a single connection because all writes are serialized,
+     * so the same physical connection is returned as long as it stays usable. It has to be closed after use to return
+     * it to the pool.
+     *
+     * @return connection used for inserts and DDL statements
+     * @throws SQLException
+     *             if not connected or no connection became available in time
+     */
+    public Connection getWriteConnection() throws SQLException {
+        if (writePool == null) {
+            throw new SQLException("Not connected to the database");
+        }
+        return writePool.getConnection();
+    }
+
+    /**
+     * Borrows a connection of the read pool, so that queries do not have to wait for the logging writes. It has to be
+     * closed after use to return it to the pool.
+     *
+     * @return connection used for queries
+     * @throws SQLException
+     *             if not connected or no connection became available in time
+     */
+    public Connection getReadConnection() throws SQLException {
+        if (readPool == null) {
+            throw new SQLException("Not connected to the database");
+        }
+        return readPool.getConnection();
     }
 
     /**
      * Sets the proper dataSourceFactory, depending on the URL, using {@link #setDataSourceFactory()} and creates a
-     * dataSource with it, creates a connection to the database and in case PostgreSQL is used it checks if timescale is
-     * installed with {@link #checkIfTimescaleInstalled()} or needs to be updated with {@link #updateTimescale()}. If a
-     * H2 database is corrupted it renames it so a new one is created using {@link #renameCorruptedDb()}.
+     * dataSource with it, creates the read and write connection pools and in case PostgreSQL is used it checks if
+     * timescale is installed with {@link #checkIfTimescaleInstalled(Connection)} or needs to be updated with
+     * {@link #updateTimescale()}. If a H2 database is corrupted it renames it so a new one is created using
+     * {@link #renameCorruptedDb()}.
      */
     protected void getConnectionToDb() {
         try {
             logger.info("sql driver");
-            if (connection == null || connection.isClosed()) {
+            if (!isConnected()) {
                 logger.debug("CONNECTING");
                 Properties properties = setSqlProperties();
                 logger.info(MessageFormat.format("URL is: {0}", url));
@@ -139,9 +160,11 @@ public class DbConnector {
                 if (logger.isTraceEnabled()) {
                     dataSource.setLogWriter(out);
                 }
-                connection = dataSource.getConnection();
-                if (url.contains(POSTGRES)) {
-                    checkIfTimescaleInstalled();
+                createPools();
+                try (Connection connection = writePool.getConnection()) {
+                    if (url.contains(POSTGRES)) {
+                        checkIfTimescaleInstalled(connection);
+                    }
                 }
                 if (url.contains(POSTGRES) && timescaleActive) {
                     updateTimescale();
@@ -149,6 +172,7 @@ public class DbConnector {
                 logger.debug("CONNECTED");
             }
         } catch (SQLException e) {
+            closePools();
             if (e.getMessage().contains("The write format 1 is smaller than the supported format 2")) {
                 logger.error("Database is incompatible with H2 Database Engine version 2.0.206. "
                         + "To continue using it, it has to be migrated to the newer version. "
@@ -171,6 +195,28 @@ public class DbConnector {
         }
     }
 
+    private void createPools() {
+        PropertyHandler propertyHandler = PropertyHandlerProvider.getInstance().getPropertyHandler();
+        long borrowTimeoutMillis = propertyHandler.getInt(Settings.POOL_TIMEOUT) * 1000L;
+        int statementTimeout = propertyHandler.getInt(Settings.STATEMENT_TIMEOUT);
+        long leakDetectionMillis = propertyHandler.getInt(Settings.LEAK_DETECTION_THRESHOLD) * 1000L;
+        int readPoolSize = propertyHandler.getInt(Settings.READ_POOL_SIZE);
+
+        writePool = new ConnectionPool("write", dataSource, 1, borrowTimeoutMillis, statementTimeout,
+                leakDetectionMillis);
+        readPool = new ConnectionPool("read", dataSource, readPoolSize, borrowTimeoutMillis, statementTimeout,
+                leakDetectionMillis);
+    }
+
+    private void closePools() {
+        if (writePool != null) {
+            writePool.close();
+        }
+        if (readPool != null) {
+            readPool.close();
+        }
+    }
+
     private synchronized DataSource getDataSource(DataSourceFactory dataSourceFactory, Properties properties)
             throws SQLException {
         if (dataSource == null) {
@@ -248,10 +294,11 @@ public class DbConnector {
     /**
      * Sets timescaleActive to true if timescale is installed
      */
-    private void checkIfTimescaleInstalled() {
+    private void checkIfTimescaleInstalled(Connection connection) {
         StringBuilder sbExtensions = new StringBuilder("SELECT * FROM pg_extension;");
 
-        try (ResultSet resultSet = connection.createStatement().executeQuery(sbExtensions.toString());) {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(sbExtensions.toString())) {
             while (resultSet.next()) {
                 if (resultSet.getString("extname").contains("timescale")) {
                     timescaleActive = true;
@@ -331,14 +378,10 @@ public class DbConnector {
     }
 
     public void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-                if (url.contains("h2") && url.contains("tcp")) {
-                    stopH2Server();
-                }
-            } catch (SQLException e) {
-                // ignore
+        if (writePool != null) {
+            closePools();
+            if (url.contains("h2") && url.contains("tcp")) {
+                stopH2Server();
             }
         }
     }
@@ -77,9 +77,9 @@ public class MetaBuilder {
         }
 
         if (url.contains(POSTGRESQL) && dbAccess.timeScaleIsActive()) {
-            try {
-                dbAccess.executeQuery(
-                        new StringBuilder("SELECT create_hypertable('openmuc_meta', 'time', if_not_exists => TRUE);"));
+            try (ResultSet resultSet = dbAccess.executeQuery(
+                    new StringBuilder("SELECT create_hypertable('openmuc_meta', 'time', if_not_exists => TRUE);"))) {
+                // the result is not needed
             } catch (SQLException e) {
                 logger.error(e.getMessage());
             }
@@ -317,28 +317,29 @@ public class MetaBuilder {
     }
 
     private boolean metaEntriesChanged() throws SQLException {
-        ResultSet existingEntries = getExistingEntries();
-        ResultSetMetaData metaOfExistingEntries = existingEntries.getMetaData();
-        int colCount = metaOfExistingEntries.getColumnCount();
-        boolean noEntriesExists = true;
-        if (colCount <= 0) {
-            return true;
-        }
-
-        while (existingEntries.next()) {
-            noEntriesExists = false;
-            StringBuilder entry = new StringBuilder();
-
-            for (int index = 1; index <= colCount; index++) {
-                entry.append(existingEntries.getString(index));
-                entry.append(",");
-            }
-            if (entry != null && !resultComparison.toString().contains(entry)) {
+        try (ResultSet existingEntries = getExistingEntries()) {
+            ResultSetMetaData metaOfExistingEntries = existingEntries.getMetaData();
+            int colCount = metaOfExistingEntries.getColumnCount();
+            boolean noEntriesExists = true;
+            if (colCount <= 0) {
                 return true;
             }
-        }
 
-        return noEntriesExists;
+            while (existingEntries.next()) {
+                noEntriesExists = false;
+                StringBuilder entry = new StringBuilder();
+
+                for (int index = 1; index <= colCount; index++) {
+                    entry.append(existingEntries.getString(index));
+                    entry.append(",");
+                }
+                if (entry != null && !resultComparison.toString().contains(entry)) {
+                    return true;
+                }
+            }
+
+            return noEntriesExists;
+        }
     }
 
     /**
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import static org.openmuc.framework.datalogger.sql.utils.SqlValues.MYSQL;
+import static org.openmuc.framework.datalogger.sql.utils.SqlValues.POSTGRES;
+import static org.openmuc.framework.datalogger.sql.utils.SqlValues.POSTGRESQL;
+import static org.openmuc.framework.datalogger.sql.utils.TabelNames.CHANNELS_TABLE;
+import static org.openmuc.framework.datalogger.sql.utils.TabelNames.RECORDS_TABLE;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.sql.utils.PropertyHandlerProvider;
+import org.openmuc.framework.datalogger.sql.utils.Settings;
+import org.openmuc.framework.lib.osgi.config.PropertyHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the tables of the narrow layout: the channel dictionary openmuc_channels and the single table
+ * openmuc_records holding the records of all channels. With TimescaleDB the records table becomes a hypertable.
+ * <p>
+ * Also migrates the records of the per channel tables created by {@link TableSetup} into the narrow layout.
+ */
+public class NarrowTableSetup {
+
+    private final Logger logger = LoggerFactory.getLogger(NarrowTableSetup.class);
+    private final DbAccess dbAccess;
+    private final String url;
+
+    public NarrowTableSetup(DbAccess dbAccess) {
+        this.dbAccess = dbAccess;
+        PropertyHandler propertyHandler = PropertyHandlerProvider.getInstance().getPropertyHandler();
+        url = propertyHandler.getString(Settings.URL);
+    }
+
+    public void createTables() {
+        dbAccess.executeSQL(new StringBuilder("CREATE TABLE IF NOT EXISTS " + CHANNELS_TABLE
+                + " (id INTEGER NOT NULL PRIMARY KEY, channelid VARCHAR(255) NOT NULL UNIQUE);"));
+
+        StringBuilder sb = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(RECORDS_TABLE)
+                .append(" (channel INTEGER NOT NULL,");
+        if (url.contains(POSTGRES)) {
+            sb.append("time TIMESTAMPTZ NOT NULL,");
+        }
+        else {
+            sb.append("time TIMESTAMP NOT NULL,");
+        }
+        sb.append("flag SMALLINT NOT NULL,");
+        if (url.contains(POSTGRESQL)) {
+            sb.append("value_double DOUBLE PRECISION,value_text TEXT,");
+        }
+        else if (url.contains(MYSQL)) {
+            sb.append("value_double DOUBLE,value_text TEXT,");
+        }
+        else {
+            sb.append("value_double DOUBLE,value_text VARCHAR,");
+        }
+        sb.append("PRIMARY KEY (channel,time));");
+        dbAccess.executeSQL(sb);
+
+        if (url.contains(POSTGRESQL) && dbAccess.timeScaleIsActive()) {
+            try (ResultSet resultSet = dbAccess.executeQuery(new StringBuilder(
+                    "SELECT create_hypertable('" + RECORDS_TABLE + "', 'time', if_not_exists => TRUE);"))) {
+                // the result is not needed
+            } catch (SQLException e) {
+                logger.error(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Copies the records of the per channel tables into the records table. Channels whose table does not exist or
+     * that already have records in the records table are skipped, so the migration can be repeated after a failure.
+     * It has to run before the first records are logged in the narrow layout. The per channel tables are kept and have
+     * to be dropped manually.
+     *
+     * @param channels
+     *            the channels to migrate
+     * @param dictionary
+     *            dictionary with the ids of the channels
+     */
+    public void migrateChannelTables(List<LogChannel> channels, ChannelDictionary dictionary) {
+        for (LogChannel channel : channels) {
+            String channelId = channel.getId();
+            Integer id = dictionary.getId(channelId);
+            if (id == null || !tableExists(channelId) || hasRecords(id)) {
+                continue;
+            }
+            logger.info("Migrating records of channel {} into {}", channelId, RECORDS_TABLE);
+            dbAccess.executeSQL(new StringBuilder("INSERT INTO ").append(RECORDS_TABLE)
+                    .append(" (channel,time,flag,value_double,value_text) SELECT ")
+                    .append(id)
+                    .append(",time,flag,")
+                    .append(valueColumns(channel))
+                    .append(" FROM ")
+                    .append(channelId)
+                    .append(';'));
+        }
+    }
+
+    private String valueColumns(LogChannel channel) {
+        switch (channel.getValueType()) {
+        case STRING:
+            return "NULL,\"VALUE\"";
+        case BYTE_ARRAY:
+            if (url.contains(POSTGRESQL)) {
+                return "NULL,UPPER(ENCODE(\"VALUE\",'hex'))";
+            }
+            else if (url.contains(MYSQL)) {
+                return "NULL,HEX(\"VALUE\")";
+            }
+            return "NULL,RAWTOHEX(\"VALUE\")";
+        case BOOLEAN:
+            return "CASE WHEN \"VALUE\" THEN 1 ELSE 0 END,NULL";
+        default:
+            return "\"VALUE\",NULL";
+        }
+    }
+
+    private boolean tableExists(String table) {
+        StringBuilder sb = new StringBuilder(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE LOWER(table_name) = '")
+                        .append(table.toLowerCase())
+                        .append("';");
+        try (ResultSet resultSet = dbAccess.executeQuery(sb)) {
+            return resultSet.next() && resultSet.getInt(1) > 0;
+        } catch (SQLException e) {
+            logger.warn("Unable to check if table {} exists: {}", table, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean hasRecords(int id) {
+        StringBuilder sb = new StringBuilder("SELECT COUNT(*) FROM (SELECT channel FROM ").append(RECORDS_TABLE)
+                .append(" WHERE channel = ")
+                .append(id)
+                .append(" LIMIT 1) AS migrated;");
+        try (ResultSet resultSet = dbAccess.executeQuery(sb)) {
+            return resultSet.next() && resultSet.getInt(1) > 0;
+        } catch (SQLException e) {
+            logger.warn("Unable to check if channel {} has been migrated: {}", id, e.getMessage());
+            return true;
+        }
+    }
+
+}
@@ -22,9 +22,11 @@
 package org.openmuc.framework.datalogger.sql;
 
 import java.io.IOException;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.datalogger.spi.DataLoggerService;
@@ -64,19 +66,57 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
 
     private void connect() {
         dbAccess = new DbAccess();
-        writer = new SqlWriter(dbAccess);
+        if (isNarrowSchema()) {
+            dbAccess.setChannelDictionary(new ChannelDictionary(dbAccess));
+        }
+        writer = new SqlWriter(dbAccess, getWriteMode());
         reader = new SqlReader(dbAccess);
         writeMetaToDb();
         writer.writeEventBasedContainerToDb(eventBuffer);
         eventBuffer.clear();
     }
 
+    private SqlWriter.WriteMode getWriteMode() {
+        String writeMode = propertyHandler.getString(Settings.WRITE_MODE);
+        SqlWriter.WriteMode mode;
+        try {
+            mode = SqlWriter.WriteMode.valueOf(writeMode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown write mode {}, using batch", writeMode);
+            return SqlWriter.WriteMode.BATCH;
+        }
+        if (mode == SqlWriter.WriteMode.STATEMENT && isNarrowSchema()) {
+            logger.warn("Write mode statement is not supported by the narrow schema, using batch");
+            return SqlWriter.WriteMode.BATCH;
+        }
+        return mode;
+    }
+
+    private boolean isNarrowSchema() {
+        return "narrow".equalsIgnoreCase(propertyHandler.getString(Settings.SCHEMA).trim());
+    }
+
     private void writeMetaToDb() {
         MetaBuilder metaBuilder = new MetaBuilder(channels, dbAccess);
         metaBuilder.writeMetaTable();
 
-        TableSetup tableSetup = new TableSetup(channels, dbAccess);
-        tableSetup.createOpenmucTables();
+        createTables();
+    }
+
+    private void createTables() {
+        ChannelDictionary dictionary = dbAccess.getChannelDictionary();
+        if (dictionary == null) {
+            TableSetup tableSetup = new TableSetup(channels, dbAccess);
+            tableSetup.createOpenmucTables();
+            return;
+        }
+
+        NarrowTableSetup tableSetup = new NarrowTableSetup(dbAccess);
+        tableSetup.createTables();
+        dictionary.register(channels);
+        if (propertyHandler.getBoolean(Settings.MIGRATE_TABLES)) {
+            tableSetup.migrateChannelTables(channels, dictionary);
+        }
     }
 
     /**
@@ -103,8 +143,8 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
     public void setChannelsToLog(List<LogChannel> channels) {
         this.channels = channels;
         if (dbAccess != null) {
-            TableSetup tableSetup = new TableSetup(channels, dbAccess);
-            tableSetup.createOpenmucTables();
+            createTables();
+            dbAccess.clearInsertStatements();
         }
     }
 
@@ -149,6 +189,26 @@ public class SqlLoggerService implements DataLoggerService, ManagedService {
         return records;
     }
 
+    /**
+     * Streams the queried data to the consumer. The records are fetched from the database in chunks of
+     * {@link Settings#FETCH_SIZE} rows.
+     */
+    @Override
+    public void getRecords(String channelId, long startTime, long endTime, Consumer<Record> consumer)
+            throws IOException {
+        for (LogChannel temp : this.channels) {
+            if (temp.getId().equals(channelId)) {
+                try {
+                    reader.streamRecordsFromDb(channelId, temp.getValueType(), startTime, endTime,
+                            propertyHandler.getInt(Settings.FETCH_SIZE), consumer);
+                } catch (SQLException e) {
+                    throw new IOException("Unable to read records of channel " + channelId, e);
+                }
+                break;
+            }
+        }
+    }
+
     /**
      * Returns the Record with the highest timestamp available in all logged data for the channel with the given
      * <code>channelId</code>. If there are multiple Records with the same timestamp, results will not be consistent.
@@ -22,12 +22,18 @@
 package org.openmuc.framework.datalogger.sql;
 
 import static org.openmuc.framework.datalogger.sql.utils.SqlValues.AND;
+import static org.openmuc.framework.datalogger.sql.utils.TabelNames.RECORDS_TABLE;
 
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+import org.openmuc.framework.data.ByteArrayValue;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.sql.utils.SqlValues;
 
 public class SqlReader {
 
@@ -41,11 +47,71 @@ public class SqlReader {
         Timestamp startTimestamp = new Timestamp(startTime);
         Timestamp endTimestamp = new Timestamp(endTime);
         StringBuilder sbTable = new StringBuilder();
+        ChannelDictionary dictionary = dbAccess.getChannelDictionary();
+        if (dictionary != null) {
+            Integer id = dictionary.getId(channelId);
+            if (id == null) {
+                return new ArrayList<>();
+            }
+            selectFromRecordsTable(id, valuetype, sbTable);
+            sbTable.append(" AND time BETWEEN '").append(startTimestamp).append(AND).append(endTimestamp).append("';");
+            return queryNarrowRecords(sbTable, valuetype);
+        }
         selectFromTable(channelId, startTimestamp, endTimestamp, sbTable);
         return dbAccess.queryRecords(sbTable, valuetype);
 
     }
 
+    /**
+     * Passes the records of the given time frame to the consumer in ascending order of time. The records are read
+     * from the database in chunks of <code>fetchSize</code> rows instead of being collected in a list first.
+     *
+     * @param channelId
+     *            ID of the channel
+     * @param valuetype
+     *            {@link ValueType}
+     * @param startTime
+     *            start of the time frame in milliseconds, inclusive
+     * @param endTime
+     *            end of the time frame in milliseconds, inclusive
+     * @param fetchSize
+     *            number of rows fetched from the database at once
+     * @param consumer
+     *            called for every record
+     * @throws SQLException
+     *             if the query fails
+     */
+    public void streamRecordsFromDb(String channelId, ValueType valuetype, long startTime, long endTime, int fetchSize,
+            Consumer<Record> consumer) throws SQLException {
+        Timestamp startTimestamp = new Timestamp(startTime);
+        Timestamp endTimestamp = new Timestamp(endTime);
+        StringBuilder sb = new StringBuilder();
+        ChannelDictionary dictionary = dbAccess.getChannelDictionary();
+        if (dictionary == null) {
+            sb.append("SELECT time,\"VALUE\" FROM ").append(channelId).append(" WHERE");
+        }
+        else {
+            Integer id = dictionary.getId(channelId);
+            if (id == null) {
+                return;
+            }
+            selectFromRecordsTable(id, valuetype, sb);
+            sb.append(" AND");
+        }
+        sb.append(" time BETWEEN '")
+                .append(startTimestamp)
+                .append(AND)
+                .append(endTimestamp)
+                .append("' ORDER BY time;");
+
+        if (dictionary != null && valuetype == ValueType.BYTE_ARRAY) {
+            dbAccess.queryRecords(sb, ValueType.STRING, fetchSize, record -> consumer.accept(decodeHex(record)));
+        }
+        else {
+            dbAccess.queryRecords(sb, valuetype, fetchSize, consumer);
+        }
+    }
+
     /**
      * Get the latest Record by retrieving records in descending order - ordered by time - and limiting to 1 result
      * 
@@ -57,14 +123,68 @@ public class SqlReader {
      */
     public Record readLatestRecordFromDb(String channelId, ValueType valuetype) {
         StringBuilder sb = new StringBuilder();
-        sb.append("SELECT time,\"VALUE\" FROM ").append(channelId).append(" ORDER BY time DESC LIMIT 1;");
-        List<Record> records = dbAccess.queryRecords(sb, valuetype);
+        List<Record> records;
+        ChannelDictionary dictionary = dbAccess.getChannelDictionary();
+        if (dictionary != null) {
+            Integer id = dictionary.getId(channelId);
+            if (id == null) {
+                return null;
+            }
+            selectFromRecordsTable(id, valuetype, sb);
+            sb.append(" ORDER BY time DESC LIMIT 1;");
+            records = queryNarrowRecords(sb, valuetype);
+        }
+        else {
+            sb.append("SELECT time,\"VALUE\" FROM ").append(channelId).append(" ORDER BY time DESC LIMIT 1;");
+            records = dbAccess.queryRecords(sb, valuetype);
+        }
         if (records.size() == 1) {
             return records.get(0);
         }
         return null;
     }
 
+    /**
+     * Builds the select query for the records table of the narrow layout up to the WHERE condition on the channel. The
+     * value column matching the value type is selected as "VALUE", so the result can be read like a per channel table.
+     */
+    private void selectFromRecordsTable(int id, ValueType valuetype, StringBuilder sb) {
+        sb.append("SELECT time,");
+        switch (valuetype) {
+        case STRING:
+        case BYTE_ARRAY:
+            sb.append("value_text");
+            break;
+        case BOOLEAN:
+            sb.append("value_double <> 0");
+            break;
+        default:
+            sb.append("value_double");
+            break;
+        }
+        sb.append(" AS \"VALUE\" FROM ").append(RECORDS_TABLE).append(" WHERE channel = ").append(id);
+    }
+
+    /**
+     * Byte arrays are stored as hex text in the narrow layout. They are read as strings and decoded afterwards.
+     */
+    private List<Record> queryNarrowRecords(StringBuilder sb, ValueType valuetype) {
+        if (valuetype != ValueType.BYTE_ARRAY) {
+            return dbAccess.queryRecords(sb, valuetype);
+        }
+        List<Record> records = dbAccess.queryRecords(sb, ValueType.STRING);
+        List<Record> decodedRecords = new ArrayList<>(records.size());
+        for (Record record : records) {
+            decodedRecords.add(decodeHex(record));
+        }
+        return decodedRecords;
+    }
+
+    private static Record decodeHex(Record record) {
+        byte[] bytes = SqlValues.hexToBytes(record.getValue().asString());
+        return new Record(new ByteArrayValue(bytes), record.getTimestamp(), record.getFlag());
+    }
+
     /**
      * Builds Select query using the parameters
      *
@@ -36,15 +36,43 @@ public class SqlWriter {
 
     private static final Logger logger = LoggerFactory.getLogger(SqlWriter.class);
     private final DbAccess dbAccess;
+    private final WriteMode writeMode;
     private final List<StringBuilder> tableListChannel;
 
+    /**
+     * How the records are written to the database.
+     */
+    public enum WriteMode {
+        /**
+         * One INSERT statement per record.
+         */
+        STATEMENT,
+        /**
+         * Cached prepared statements per channel table, executed as batches in one transaction.
+         */
+        BATCH,
+        /**
+         * The PostgreSQL COPY command in one transaction. Other databases use {@link #BATCH}.
+         */
+        COPY
+    }
+
     public SqlWriter(DbAccess dbAccess) {
+        this(dbAccess, WriteMode.STATEMENT);
+    }
+
+    public SqlWriter(DbAccess dbAccess, WriteMode writeMode) {
         this.dbAccess = dbAccess;
+        this.writeMode = writeMode;
         tableListChannel = new ArrayList<>();
 
     }
 
     public void writeEventBasedContainerToDb(List<LoggingRecord> containers) {
+        if (writeMode != WriteMode.STATEMENT) {
+            writeAsBatch(containers, null);
+            return;
+        }
         synchronized (tableListChannel) {
             writeAsTableList(containers);
             tableListChannel.clear();
@@ -76,6 +104,10 @@ public class SqlWriter {
 
     public void writeRecordContainerToDb(List<LoggingRecord> containers, long timestamp) {
         Timestamp sqlTimestamp = new Timestamp(timestamp);
+        if (writeMode != WriteMode.STATEMENT) {
+            writeAsBatch(containers, sqlTimestamp);
+            return;
+        }
         // createTableList();
 
         for (LoggingRecord logRecordContainer : containers) {
@@ -91,6 +123,15 @@ public class SqlWriter {
 
     }
 
+    private void writeAsBatch(List<LoggingRecord> containers, Timestamp sqlTimestamp) {
+        if (writeMode == WriteMode.COPY) {
+            dbAccess.executeCopy(containers, sqlTimestamp);
+        }
+        else {
+            dbAccess.executeInsertBatch(containers, sqlTimestamp);
+        }
+    }
+
     /**
      * Continues building the insert query and calls {@link #addValue(Record, StringBuilder, Integer)} using the
      * appropriate parameters for the records' value type
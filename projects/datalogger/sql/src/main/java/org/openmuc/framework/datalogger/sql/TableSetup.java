@@ -27,6 +27,7 @@ import static org.openmuc.framework.datalogger.sql.utils.SqlValues.POSTGRESQL;
 import static org.openmuc.framework.datalogger.sql.utils.TabelNames.DOUBLE_VALUE;
 
 import java.sql.JDBCType;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.util.Collections;
@@ -199,9 +200,9 @@ public class TableSetup {
      */
     private void activateTimescaleDbHypertable(String name) {
         if (url.contains(POSTGRESQL) && dbAccess.timeScaleIsActive()) {
-            try {
-                dbAccess.executeQuery(
-                        new StringBuilder("SELECT create_hypertable('" + name + "', 'time', if_not_exists => TRUE);"));
+            try (ResultSet resultSet = dbAccess.executeQuery(
+                    new StringBuilder("SELECT create_hypertable('" + name + "', 'time', if_not_exists => TRUE);"))) {
+                // the result is not needed
             } catch (SQLException e) {
                 logger.error(MessageFormat.format("{0}test", e.getMessage()));
             }
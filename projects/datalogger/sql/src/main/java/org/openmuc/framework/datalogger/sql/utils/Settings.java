@@ -34,6 +34,14 @@ public class Settings extends GenericSettings {
     public static String TCP_KEEP_ALIVE = "tcp_keep_alive";
     public static String PSQL_PASS = "psql_pass";
     public static String TIMEZONE = "timezone";
+    public static String WRITE_MODE = "write_mode";
+    public static String READ_POOL_SIZE = "read_pool_size";
+    public static String POOL_TIMEOUT = "pool_timeout";
+    public static String STATEMENT_TIMEOUT = "statement_timeout";
+    public static String LEAK_DETECTION_THRESHOLD = "leak_detection_threshold";
+    public static String SCHEMA = "schema";
+    public static String MIGRATE_TABLES = "migrate_tables";
+    public static String FETCH_SIZE = "fetch_size";
 
     public Settings() {
         super();
@@ -47,5 +55,22 @@ public class Settings extends GenericSettings {
         properties.put(TCP_KEEP_ALIVE, new ServiceProperty(TCP_KEEP_ALIVE, "keep tcp connection alive", "true", false));
         properties.put(PSQL_PASS, new ServiceProperty(PSQL_PASS, "password for postgresql", "postgres", true));
         properties.put(TIMEZONE, new ServiceProperty(TIMEZONE, "local time zone", "Europe/Berlin", false));
+        properties.put(WRITE_MODE, new ServiceProperty(WRITE_MODE,
+                "how records are written: batch, copy (PostgreSQL only) or statement", "batch", false));
+        properties.put(READ_POOL_SIZE,
+                new ServiceProperty(READ_POOL_SIZE, "number of connections for parallel queries", "4", false));
+        properties.put(POOL_TIMEOUT,
+                new ServiceProperty(POOL_TIMEOUT, "seconds to wait for a free connection", "10", false));
+        properties.put(STATEMENT_TIMEOUT, new ServiceProperty(STATEMENT_TIMEOUT,
+                "seconds after a statement is cancelled, 0 to disable", "60", false));
+        properties.put(LEAK_DETECTION_THRESHOLD, new ServiceProperty(LEAK_DETECTION_THRESHOLD,
+                "seconds after a borrowed connection is reported as possible leak, 0 to disable", "60", false));
+        properties.put(SCHEMA, new ServiceProperty(SCHEMA,
+                "table layout: per_channel (one table per channel) or narrow (one table for all channels)",
+                "per_channel", false));
+        properties.put(MIGRATE_TABLES, new ServiceProperty(MIGRATE_TABLES,
+                "copy the records of the per channel tables into the narrow table on start", "false", false));
+        properties.put(FETCH_SIZE, new ServiceProperty(FETCH_SIZE,
+                "number of rows fetched at once when streaming records from the database", "1000", false));
     }
 }
@@ -105,13 +105,34 @@ public class SqlValues {
     }
 
     private static void byteArrayToHexString(StringBuilder sb, byte[] byteArray) {
+        sb.append('\'');
+        appendHex(byteArray, sb);
+        sb.append('\'');
+    }
+
+    /**
+     * Appends the bytes as upper case hex digits without quotes or prefix.
+     */
+    public static void appendHex(byte[] byteArray, StringBuilder sb) {
         char[] hexChars = new char[byteArray.length * 2];
         for (int j = 0; j < byteArray.length; j++) {
             int v = byteArray[j] & 0xFF;
             hexChars[j * 2] = hexArray[v >>> 4];
             hexChars[j * 2 + 1] = hexArray[v & 0x0F];
         }
-        sb.append('\'').append(hexChars).append('\'');
+        sb.append(hexChars);
+    }
+
+    /**
+     * Decodes a string of hex digits as written by {@link #appendHex(byte[], StringBuilder)}.
+     */
+    public static byte[] hexToBytes(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((Character.digit(hex.charAt(i * 2), 16) << 4)
+                    | Character.digit(hex.charAt(i * 2 + 1), 16));
+        }
+        return bytes;
     }
 
 }
@@ -31,4 +31,6 @@ public class TabelNames {
     public static final String FLOAT_VALUE = "FloatValue";
     public static final String BYTE_ARRAY_VALUE = "ByteArrayValue";
     public static final String BOOLEAN_VALUE = "BooleanValue";
+    public static final String CHANNELS_TABLE = "openmuc_channels";
+    public static final String RECORDS_TABLE = "openmuc_records";
 }
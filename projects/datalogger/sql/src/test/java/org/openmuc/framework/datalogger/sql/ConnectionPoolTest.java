@@ -0,0 +1,198 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.datalogger.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionPoolTest {
+
+    private List<FakeConnection> physicalConnections;
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setup() {
+        physicalConnections = new ArrayList<>();
+        dataSource = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { DataSource.class }, (proxy, method, args) -> {
+                    if ("getConnection".equals(method.getName())) {
+                        FakeConnection connection = new FakeConnection();
+                        physicalConnections.add(connection);
+                        return connection.proxy;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    @Test
+    void returnedConnectionIsReused() throws SQLException {
+        ConnectionPool pool = new ConnectionPool("test", dataSource, 2, 100, 0, 0);
+
+        Connection first = pool.getConnection();
+        Connection firstPhysical = first.unwrap(Connection.class);
+        first.close();
+        Connection second = pool.getConnection();
+
+        assertSame(firstPhysical, second.unwrap(Connection.class));
+        assertEquals(1, physicalConnections.size());
+        assertEquals(1, pool.getActiveCount());
+    }
+
+    @Test
+    void borrowTimesOutIfAllConnectionsAreInUse() throws SQLException {
+        ConnectionPool pool = new ConnectionPool("test", dataSource, 1, 50, 0, 0);
+        Connection connection = pool.getConnection();
+
+        assertThrows(SQLException.class, pool::getConnection);
+
+        connection.close();
+        pool.getConnection();
+    }
+
+    @Test
+    void statementsGetTheQueryTimeout() throws SQLException {
+        ConnectionPool pool = new ConnectionPool("test", dataSource, 1, 100, 7, 0);
+
+        try (Connection connection = pool.getConnection()) {
+            connection.createStatement();
+        }
+
+        assertEquals(7, physicalConnections.get(0).queryTimeout);
+    }
+
+    @Test
+    void openTransactionIsRolledBackOnReturn() throws SQLException {
+        ConnectionPool pool = new ConnectionPool("test", dataSource, 1, 100, 0, 0);
+
+        Connection connection = pool.getConnection();
+        connection.setAutoCommit(false);
+        connection.close();
+
+        FakeConnection physical = physicalConnections.get(0);
+        assertTrue(physical.rolledBack);
+        assertTrue(physical.autoCommit);
+    }
+
+    @Test
+    void closedConnectionIsReplaced() throws SQLException {
+        ConnectionPool pool = new ConnectionPool("test", dataSource, 1, 100, 0, 0);
+
+        Connection connection = pool.getConnection();
+        physicalConnections.get(0).closed = true;
+        connection.close();
+        pool.getConnection();
+
+        assertEquals(2, physicalConnections.size());
+    }
+
+    @Test
+    void returnedConnectionCanNotBeUsed() throws SQLException {
+        ConnectionPool pool = new ConnectionPool("test", dataSource, 1, 100, 0, 0);
+
+        Connection connection = pool.getConnection();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertFalse(physicalConnections.get(0).closed);
+        assertThrows(SQLException.class, connection::createStatement);
+    }
+
+    @Test
+    void closingThePoolClosesIdleConnections() throws SQLException {
+        ConnectionPool pool = new ConnectionPool("test", dataSource, 2, 100, 0, 0);
+
+        Connection idle = pool.getConnection();
+        Connection borrowed = pool.getConnection();
+        idle.close();
+        pool.close();
+
+        assertTrue(physicalConnections.get(0).closed);
+        assertFalse(physicalConnections.get(1).closed);
+        borrowed.close();
+        assertTrue(physicalConnections.get(1).closed);
+        assertThrows(SQLException.class, pool::getConnection);
+    }
+
+    private static class FakeConnection {
+
+        final Connection proxy;
+        boolean closed;
+        boolean autoCommit = true;
+        boolean rolledBack;
+        int queryTimeout;
+
+        FakeConnection() {
+            proxy = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { Connection.class }, (connectionProxy, method, args) -> {
+                        switch (method.getName()) {
+                        case "close":
+                            closed = true;
+                            return null;
+                        case "isClosed":
+                            return closed;
+                        case "isValid":
+                            return !closed;
+                        case "getAutoCommit":
+                            return autoCommit;
+                        case "setAutoCommit":
+                            autoCommit = (Boolean) args[0];
+                            return null;
+                        case "rollback":
+                            rolledBack = true;
+                            return null;
+                        case "unwrap":
+                            return connectionProxy;
+                        case "createStatement":
+                            return createStatement();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        private Statement createStatement() {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Statement.class },
+                    (statementProxy, method, args) -> {
+                        if ("setQueryTimeout".equals(method.getName())) {
+                            queryTimeout = (Integer) args[0];
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+}
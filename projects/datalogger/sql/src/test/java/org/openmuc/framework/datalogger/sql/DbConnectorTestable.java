@@ -21,9 +21,10 @@
 
 package org.openmuc.framework.datalogger.sql;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.Statement;
 
 public class DbConnectorTestable extends DbConnector {
 
@@ -44,8 +45,34 @@ public class DbConnectorTestable extends DbConnector {
     }
 
     @Override
-    public Statement createStatementWithConnection() throws SQLException {
-        return testableConnection.createStatement();
+    public Connection getWriteConnection() {
+        return borrowTestableConnection();
+    }
+
+    @Override
+    public Connection getReadConnection() {
+        return borrowTestableConnection();
+    }
+
+    /**
+     * @return the connection to the in-memory database, which is lost when this connection is closed
+     */
+    public Connection getConnection() {
+        return testableConnection;
+    }
+
+    private Connection borrowTestableConnection() { // closing it must not close the in-memory database
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName())) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(testableConnection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
     }
 
     @Override
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.datalogger.sql;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LogChannel;
+import org.openmuc.framework.datalogger.sql.utils.PropertyHandlerProvider;
+import org.openmuc.framework.datalogger.sql.utils.Settings;
+import org.openmuc.framework.lib.osgi.config.PropertyHandler;
+
+class NarrowTableSetupTest {
+
+    private static final String URL = "jdbc:h2:mem:";
+
+    private DbConnectorTestable connector;
+    private Connection connection;
+    private DbAccess dbAccess;
+    private NarrowTableSetup tableSetup;
+    private ChannelDictionary dictionary;
+
+    @BeforeEach
+    void setup() throws SQLException {
+        PropertyHandler propertyHandler = mock(PropertyHandler.class);
+        when(propertyHandler.getString(Settings.URL)).thenReturn(URL);
+        PropertyHandlerProvider.getInstance().setPropertyHandler(propertyHandler);
+
+        connector = new DbConnectorTestable(URL);
+        connection = connector.getConnection();
+        dbAccess = DbAccess.getTestInstance(connector);
+        tableSetup = new NarrowTableSetup(dbAccess);
+        dictionary = new ChannelDictionary(dbAccess);
+
+        createChannelTable("power", "DOUBLE", "1.5", "2.5");
+        createChannelTable("text", "VARCHAR(100)", "'a'", "'b'");
+        createChannelTable("switch", "BOOLEAN", "FALSE", "TRUE");
+        createChannelTable("bytes", "VARBINARY(10)", "X'01AB'", "X'FF'");
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void migratesRecordsOfAllValueTypes() throws SQLException {
+        List<LogChannel> channels = channels("power", ValueType.DOUBLE, "text", ValueType.STRING, "switch",
+                ValueType.BOOLEAN, "bytes", ValueType.BYTE_ARRAY);
+        migrate(channels);
+
+        assertEquals(8, countRecords());
+        dbAccess.setChannelDictionary(dictionary);
+        SqlReader reader = new SqlReader(dbAccess);
+        assertEquals(2.5, readLatest(reader, "power", ValueType.DOUBLE).getValue().asDouble());
+        assertEquals("b", readLatest(reader, "text", ValueType.STRING).getValue().asString());
+        List<Record> switchRecords = reader.readRecordListFromDb("switch", ValueType.BOOLEAN, 1599569019000L,
+                1599569020000L);
+        assertFalse(switchRecords.get(0).getValue().asBoolean());
+        assertTrue(switchRecords.get(1).getValue().asBoolean());
+        List<Record> byteRecords = reader.readRecordListFromDb("bytes", ValueType.BYTE_ARRAY, 1599569019000L,
+                1599569020000L);
+        assertArrayEquals(new byte[] { 0x01, (byte) 0xab }, byteRecords.get(0).getValue().asByteArray());
+        assertArrayEquals(new byte[] { (byte) 0xff }, byteRecords.get(1).getValue().asByteArray());
+        assertEquals(1599569019000L, byteRecords.get(0).getTimestamp().longValue());
+        assertEquals(Flag.VALID, byteRecords.get(0).getFlag());
+    }
+
+    @Test
+    void repeatedMigrationOnlyAddsChannelsNotMigratedYet() throws SQLException {
+        migrate(channels("power", ValueType.DOUBLE, "text", ValueType.STRING));
+        assertEquals(4, countRecords());
+
+        // the repeated run skips the migrated channels and picks up the new one
+        migrate(channels("power", ValueType.DOUBLE, "text", ValueType.STRING, "switch", ValueType.BOOLEAN));
+        assertEquals(6, countRecords());
+
+        migrate(channels("power", ValueType.DOUBLE, "text", ValueType.STRING, "switch", ValueType.BOOLEAN));
+        assertEquals(6, countRecords());
+    }
+
+    @Test
+    void channelsWithoutTableAreSkipped() throws SQLException {
+        migrate(channels("power", ValueType.DOUBLE, "missing", ValueType.DOUBLE));
+        assertEquals(2, countRecords());
+    }
+
+    private void migrate(List<LogChannel> channels) {
+        tableSetup.createTables();
+        dictionary.register(channels);
+        tableSetup.migrateChannelTables(channels, dictionary);
+    }
+
+    private static Record readLatest(SqlReader reader, String channelId, ValueType valueType) {
+        return reader.readLatestRecordFromDb(channelId, valueType);
+    }
+
+    private void createChannelTable(String channelId, String valueType, String firstValue, String secondValue)
+            throws SQLException {
+        TestConnectionHelper.executeSQL(connection, "CREATE TABLE " + channelId + " (time TIMESTAMP NOT NULL, "
+                + "flag SMALLINT NOT NULL, \"VALUE\" " + valueType + ", PRIMARY KEY (time))");
+        TestConnectionHelper.executeSQL(connection, "INSERT INTO " + channelId + " (time,flag,\"VALUE\") VALUES ('"
+                + new Timestamp(1599569019000L) + "',1," + firstValue + "),('"
+                + new Timestamp(1599569020000L) + "',1," + secondValue + ")");
+    }
+
+    private int countRecords() throws SQLException {
+        try (ResultSet resultSet = TestConnectionHelper.executeQuery(connection,
+                "SELECT COUNT(*) FROM openmuc_records")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    private static List<LogChannel> channels(Object... idsAndTypes) {
+        List<LogChannel> channels = new ArrayList<>();
+        for (int i = 0; i < idsAndTypes.length; i += 2) {
+            LogChannel channel = mock(LogChannel.class);
+            when(channel.getId()).thenReturn((String) idsAndTypes[i]);
+            when(channel.getValueType()).thenReturn((ValueType) idsAndTypes[i + 1]);
+            channels.add(channel);
+        }
+        return channels;
+    }
+
+}
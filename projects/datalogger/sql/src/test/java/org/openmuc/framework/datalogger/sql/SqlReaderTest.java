@@ -21,14 +21,20 @@
 
 package org.openmuc.framework.datalogger.sql;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -71,6 +77,20 @@ public class SqlReaderTest {
         connection.close();
     }
 
+    @Test
+    void streamRecordsFromDb() throws SQLException {
+        writeTestRecords();
+        when(dbConnectorMock.getReadConnection()).thenReturn(connection);
+
+        List<Double> values = new ArrayList<>();
+        sqlReader.streamRecordsFromDb(channelId, valueType, Timestamp.valueOf("2020-01-01 00:00:00").getTime(),
+                Timestamp.valueOf("2022-01-01 00:00:00").getTime(), 2,
+                record -> values.add(record.getValue().asDouble()));
+
+        // streamed records are ordered by time
+        assertEquals(Arrays.asList(3.0, 1.0, 2.0), values);
+    }
+
     void writeTestRecords() throws SQLException {
         TestConnectionHelper.executeSQL(connection,
                 String.format("CREATE TABLE %s (time TIMESTAMP NOT NULL, " + "\"VALUE\" DOUBLE)", channelId));
@@ -21,24 +21,46 @@
 
 package org.openmuc.framework.datalogger.sql;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.io.BufferedReader;
+import java.io.Reader;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.ByteArrayValue;
 import org.openmuc.framework.data.DoubleValue;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.Value;
+import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.datalogger.spi.LogChannel;
 import org.openmuc.framework.datalogger.spi.LoggingRecord;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
 class SqlWriterTest {
 
@@ -75,6 +97,218 @@ class SqlWriterTest {
         connection.close();
     }
 
+    @Test
+    void writeRecordContainerToDbInBatches() throws SQLException {
+        DbConnectorTestable connector = new DbConnectorTestable(TestConnectionHelper.DB_CONNECTION);
+        createTable(connector.getConnection(), "testChannel");
+        SqlWriter batchWriter = new SqlWriter(DbAccess.getTestInstance(connector), SqlWriter.WriteMode.BATCH);
+
+        batchWriter.writeRecordContainerToDb(buildLoggingRecordList(5), 1599569019000L);
+        batchWriter.writeRecordContainerToDb(buildLoggingRecordList(5), 1599569020000L);
+
+        assertEquals(10, countRows(connector.getConnection(), "testChannel"));
+        connector.getConnection().close();
+    }
+
+    @Test
+    void batchOfMissingTableDoesNotDiscardOtherTables() throws SQLException {
+        DbConnectorTestable connector = new DbConnectorTestable(TestConnectionHelper.DB_CONNECTION);
+        createTable(connector.getConnection(), "testChannel");
+        SqlWriter batchWriter = new SqlWriter(DbAccess.getTestInstance(connector), SqlWriter.WriteMode.BATCH);
+
+        List<LoggingRecord> recordList = new ArrayList<>(buildLoggingRecordList(3));
+        recordList.add(new LoggingRecord("missingChannel", recordList.get(0).getRecord()));
+        batchWriter.writeEventBasedContainerToDb(recordList);
+
+        assertEquals(3, countRows(connector.getConnection(), "testChannel"));
+        connector.getConnection().close();
+    }
+
+    @Test
+    void writeAndReadNarrowLayout() throws SQLException {
+        DbConnectorTestable connector = new DbConnectorTestable(TestConnectionHelper.DB_CONNECTION);
+        createNarrowTables(connector.getConnection(), 255);
+        DbAccess dbAccess = narrowDbAccess(connector, "testChannel");
+
+        SqlWriter batchWriter = new SqlWriter(dbAccess, SqlWriter.WriteMode.BATCH);
+        batchWriter.writeRecordContainerToDb(buildLoggingRecordList(1), 1599569019000L);
+        batchWriter.writeRecordContainerToDb(buildLoggingRecordList(1), 1599569020000L);
+
+        SqlReader reader = new SqlReader(dbAccess);
+        List<Record> records = reader.readRecordListFromDb("testChannel", ValueType.DOUBLE, 1599569019000L,
+                1599569020000L);
+        assertEquals(2, records.size());
+        assertEquals(5, records.get(0).getValue().asDouble());
+        assertEquals(1599569020000L, reader.readLatestRecordFromDb("testChannel", ValueType.DOUBLE)
+                .getTimestamp()
+                .longValue());
+        connector.getConnection().close();
+    }
+
+    @Test
+    void narrowLayoutStoresTextBooleanAndByteArrayValues() throws SQLException {
+        DbConnectorTestable connector = new DbConnectorTestable(TestConnectionHelper.DB_CONNECTION);
+        createNarrowTables(connector.getConnection(), 255);
+        DbAccess dbAccess = narrowDbAccess(connector, "text", "switch", "bytes");
+
+        long timestamp = 1599569019000L;
+        List<LoggingRecord> records = new ArrayList<>();
+        records.add(new LoggingRecord("text", new Record(new StringValue("a, \"b\""), timestamp, Flag.VALID)));
+        records.add(new LoggingRecord("switch", new Record(new BooleanValue(true), timestamp, Flag.VALID)));
+        records.add(new LoggingRecord("bytes",
+                new Record(new ByteArrayValue(new byte[] { 0x01, (byte) 0xab }), timestamp, Flag.VALID)));
+        new SqlWriter(dbAccess, SqlWriter.WriteMode.BATCH).writeRecordContainerToDb(records, timestamp);
+
+        SqlReader reader = new SqlReader(dbAccess);
+        assertEquals("a, \"b\"", reader.readLatestRecordFromDb("text", ValueType.STRING).getValue().asString());
+        assertTrue(reader.readLatestRecordFromDb("switch", ValueType.BOOLEAN).getValue().asBoolean());
+        assertArrayEquals(new byte[] { 0x01, (byte) 0xab },
+                reader.readLatestRecordFromDb("bytes", ValueType.BYTE_ARRAY).getValue().asByteArray());
+        connector.getConnection().close();
+    }
+
+    @Test
+    void narrowDuplicateIsIgnoredWithoutDiscardingOtherChannels() throws SQLException {
+        // the test database runs in MySQL mode, a MySQL URL selects INSERT IGNORE which keeps the stored record
+        assertDuplicateDoesNotDiscardOtherChannels("jdbc:mysql://localhost:3306/openmuc", 5);
+    }
+
+    @Test
+    void narrowDuplicateIsMergedWithoutDiscardingOtherChannels() throws SQLException {
+        assertDuplicateDoesNotDiscardOtherChannels("jdbc:h2:mem:", 6);
+    }
+
+    private void assertDuplicateDoesNotDiscardOtherChannels(String url, double expectedValue) throws SQLException {
+        DbConnectorTestable connector = new DbConnectorTestable(url);
+        createNarrowTables(connector.getConnection(), 255);
+        DbAccess dbAccess = narrowDbAccess(connector, "first", "second");
+        SqlWriter batchWriter = new SqlWriter(dbAccess, SqlWriter.WriteMode.BATCH);
+
+        long timestamp = 1599569019000L;
+        Record record = new Record(new DoubleValue(5), timestamp, Flag.VALID);
+        Record duplicate = new Record(new DoubleValue(6), timestamp, Flag.VALID);
+        batchWriter.writeRecordContainerToDb(Collections.singletonList(new LoggingRecord("first", record)), timestamp);
+        batchWriter.writeRecordContainerToDb(
+                Arrays.asList(new LoggingRecord("first", duplicate), new LoggingRecord("second", record)), timestamp);
+
+        assertEquals(2, countRows(connector.getConnection(), "openmuc_records"));
+        SqlReader reader = new SqlReader(dbAccess);
+        assertEquals(expectedValue, reader.readLatestRecordFromDb("first", ValueType.DOUBLE).getValue().asDouble());
+        assertNotNull(reader.readLatestRecordFromDb("second", ValueType.DOUBLE));
+        connector.getConnection().close();
+    }
+
+    @Test
+    void channelsWithoutDictionaryEntryAreNotLogged() throws SQLException {
+        DbConnectorTestable connector = new DbConnectorTestable(TestConnectionHelper.DB_CONNECTION);
+        // the id of the long channel ID can not be stored
+        createNarrowTables(connector.getConnection(), 8);
+        DbAccess dbAccess = narrowDbAccess(connector, "short", "aVeryLongChannelId");
+        ChannelDictionary dictionary = dbAccess.getChannelDictionary();
+        assertNotNull(dictionary.getId("short"));
+        assertNull(dictionary.getId("aVeryLongChannelId"));
+
+        long timestamp = 1599569019000L;
+        Record record = new Record(new DoubleValue(5), timestamp, Flag.VALID);
+        new SqlWriter(dbAccess, SqlWriter.WriteMode.BATCH).writeRecordContainerToDb(
+                Arrays.asList(new LoggingRecord("short", record), new LoggingRecord("aVeryLongChannelId", record)),
+                timestamp);
+
+        assertEquals(1, countRows(connector.getConnection(), "openmuc_records"));
+        assertFalse(hasRowWithoutDictionaryEntry(connector.getConnection()));
+        connector.getConnection().close();
+    }
+
+    @Test
+    void narrowCopyWritesOneCsvLinePerRecord() throws Exception {
+        List<String> copies = new ArrayList<>();
+        CopyManager copyManager = mock(CopyManager.class);
+        when(copyManager.copyIn(anyString(), any(Reader.class))).thenAnswer(invocation -> {
+            copies.add(invocation.getArgument(0));
+            copies.add(new BufferedReader(invocation.<Reader> getArgument(1)).lines()
+                    .collect(Collectors.joining("\n", "", "\n")));
+            return 0L;
+        });
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        Connection pgJdbcConnection = mock(Connection.class);
+        when(pgJdbcConnection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        DbConnector connector = mock(DbConnector.class);
+        when(connector.getUrlFromProperties()).thenReturn("jdbc:postgresql://localhost:5432/openmuc");
+        when(connector.isConnected()).thenReturn(true);
+        when(connector.getWriteConnection()).thenReturn(pgJdbcConnection);
+        DbAccess dbAccess = DbAccess.getTestInstance(connector);
+        ChannelDictionary dictionary = mock(ChannelDictionary.class);
+        when(dictionary.getId("power")).thenReturn(1);
+        when(dictionary.getId("text")).thenReturn(2);
+        when(dictionary.getId("switch")).thenReturn(3);
+        when(dictionary.getId("bytes")).thenReturn(4);
+        dbAccess.setChannelDictionary(dictionary);
+
+        long timestamp = 1599569019000L;
+        List<LoggingRecord> records = new ArrayList<>();
+        records.add(new LoggingRecord("power", new Record(new DoubleValue(2.5), timestamp, Flag.VALID)));
+        records.add(new LoggingRecord("text", new Record(new StringValue("a, \"b\""), timestamp, Flag.VALID)));
+        records.add(new LoggingRecord("switch", new Record(new BooleanValue(false), timestamp, Flag.VALID)));
+        records.add(new LoggingRecord("bytes",
+                new Record(new ByteArrayValue(new byte[] { 0x01, (byte) 0xab }), timestamp, Flag.VALID)));
+        new SqlWriter(dbAccess, SqlWriter.WriteMode.COPY).writeRecordContainerToDb(records, timestamp);
+
+        String time = new Timestamp(timestamp).toString();
+        int flag = Flag.VALID.getCode();
+        assertEquals(2, copies.size());
+        assertEquals("COPY openmuc_records (channel,time,flag,value_double,value_text) FROM STDIN WITH (FORMAT csv)",
+                copies.get(0));
+        assertEquals("1," + time + "," + flag + ",2.5,\n" //
+                + "2," + time + "," + flag + ",,\"a, \"\"b\"\"\"\n" //
+                + "3," + time + "," + flag + ",0,\n" //
+                + "4," + time + "," + flag + ",,01AB\n", copies.get(1));
+        verify(pgJdbcConnection).commit();
+    }
+
+    private void createNarrowTables(Connection connection, int channelIdLength) throws SQLException {
+        TestConnectionHelper.executeSQL(connection, "CREATE TABLE openmuc_channels (id INTEGER NOT NULL PRIMARY KEY, "
+                + "channelid VARCHAR(" + channelIdLength + ") NOT NULL)");
+        TestConnectionHelper.executeSQL(connection,
+                "CREATE TABLE openmuc_records (channel INTEGER NOT NULL, time TIMESTAMP NOT NULL, "
+                        + "flag SMALLINT NOT NULL, value_double DOUBLE, value_text VARCHAR, "
+                        + "PRIMARY KEY (channel,time))");
+    }
+
+    private DbAccess narrowDbAccess(DbConnector connector, String... channelIds) {
+        DbAccess dbAccess = DbAccess.getTestInstance(connector);
+        List<LogChannel> channels = new ArrayList<>();
+        for (String channelId : channelIds) {
+            LogChannel channel = mock(LogChannel.class);
+            when(channel.getId()).thenReturn(channelId);
+            channels.add(channel);
+        }
+        ChannelDictionary dictionary = new ChannelDictionary(dbAccess);
+        dictionary.register(channels);
+        dbAccess.setChannelDictionary(dictionary);
+        return dbAccess;
+    }
+
+    private boolean hasRowWithoutDictionaryEntry(Connection connection) throws SQLException {
+        try (ResultSet resultSet = TestConnectionHelper.executeQuery(connection, "SELECT COUNT(*) FROM openmuc_records "
+                + "WHERE channel NOT IN (SELECT id FROM openmuc_channels)")) {
+            resultSet.next();
+            return resultSet.getInt(1) > 0;
+        }
+    }
+
+    private void createTable(Connection connection, String channelId) throws SQLException {
+        TestConnectionHelper.executeSQL(connection, String.format(
+                "CREATE TABLE %s (time TIMESTAMP NOT NULL, " + "flag SMALLINT NOT NULL, \"VALUE\" DOUBLE)", channelId));
+    }
+
+    private int countRows(Connection connection, String channelId) throws SQLException {
+        try (ResultSet resultSet = TestConnectionHelper.executeQuery(connection, "SELECT COUNT(*) FROM " + channelId)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
     private List<LoggingRecord> buildLoggingRecordList(int numOfElements) {
         String channelId = "testChannel";
         Value value = new DoubleValue(5);
@@ -27,13 +27,14 @@ public class DeviceSettings {
     private String authentication = null;
     private byte[] tSelLocal = new byte[] { 0, 0 };
     private byte[] tSelRemote = new byte[] { 0, 1 };
+    private long integrityPeriod = 0;
 
     public DeviceSettings(String settings) throws ArgumentSyntaxException {
         if (!settings.isEmpty()) {
             String[] args = settings.split("\\s+", 0);
-            if (args.length > 6 || args.length < 4) {
+            if (args.length > 8 || args.length < 4) {
                 throw new ArgumentSyntaxException(
-                        "Less than 4 or more than 6 arguments in the settings are not allowed.");
+                        "Less than 4 or more than 8 arguments in the settings are not allowed.");
             }
             for (int i = 0; i < args.length; i += 2) {
                 if (args[i].equals("-a")) {
@@ -65,6 +66,19 @@ public class DeviceSettings {
                         }
                     }
                 }
+                else if (args[i].equals("-ip")) {
+                    if (i == (args.length - 1)) {
+                        throw new ArgumentSyntaxException("No integrity period was specified after the -ip parameter");
+                    }
+                    try {
+                        integrityPeriod = Long.parseLong(args[i + 1]);
+                    } catch (NumberFormatException e) {
+                        throw new ArgumentSyntaxException("The specified integrity period is not a number");
+                    }
+                    if (integrityPeriod < 0) {
+                        throw new ArgumentSyntaxException("The integrity period must not be negative");
+                    }
+                }
                 else {
                     throw new ArgumentSyntaxException("Unexpected argument: " + args[i]);
                 }
@@ -83,4 +97,12 @@ public class DeviceSettings {
     public byte[] getTSelRemote() {
         return tSelRemote;
     }
+
+    /**
+     * @return integrity period in ms of the report control blocks used for listening, 0 if no integrity reports are
+     *         requested
+     */
+    public long getIntegrityPeriod() {
+        return integrityPeriod;
+    }
 }
@@ -24,7 +24,10 @@ import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openmuc.framework.config.ChannelScanInfo;
 import org.openmuc.framework.data.BooleanValue;
@@ -37,6 +40,7 @@ import org.openmuc.framework.data.LongValue;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.StringValue;
 import org.openmuc.framework.data.ValueType;
+import org.openmuc.framework.driver.iec61850.Iec61850Listener.ReportTarget;
 import org.openmuc.framework.driver.spi.ChannelRecordContainer;
 import org.openmuc.framework.driver.spi.ChannelValueContainer;
 import org.openmuc.framework.driver.spi.Connection;
@@ -70,10 +74,13 @@ import com.beanit.iec61850bean.BdaTimestamp;
 import com.beanit.iec61850bean.BdaTriggerConditions;
 import com.beanit.iec61850bean.BdaUnicodeString;
 import com.beanit.iec61850bean.BdaVisibleString;
+import com.beanit.iec61850bean.Brcb;
 import com.beanit.iec61850bean.ClientAssociation;
+import com.beanit.iec61850bean.DataSet;
 import com.beanit.iec61850bean.Fc;
 import com.beanit.iec61850bean.FcModelNode;
 import com.beanit.iec61850bean.ModelNode;
+import com.beanit.iec61850bean.Rcb;
 import com.beanit.iec61850bean.ServerModel;
 import com.beanit.iec61850bean.ServiceError;
 
@@ -85,10 +92,32 @@ public final class Iec61850Connection implements Connection {
 
     private final ClientAssociation clientAssociation;
     private final ServerModel serverModel;
+    private final Iec61850Listener reportListener;
+    private final long integrityPeriod;
+
+    private final List<Rcb> enabledRcbs = new ArrayList<>();
 
     public Iec61850Connection(ClientAssociation clientAssociation, ServerModel serverModel) {
+        this(clientAssociation, serverModel, new Iec61850Listener(), 0);
+    }
+
+    /**
+     * @param clientAssociation
+     *            the association, created with the given report listener
+     * @param serverModel
+     *            the server model of the IED
+     * @param reportListener
+     *            the listener receiving the reports of the association
+     * @param integrityPeriod
+     *            integrity period in ms of the report control blocks enabled by {@link #startListening}, 0 to disable
+     *            integrity reports
+     */
+    Iec61850Connection(ClientAssociation clientAssociation, ServerModel serverModel,
+            Iec61850Listener reportListener, long integrityPeriod) {
         this.clientAssociation = clientAssociation;
         this.serverModel = serverModel;
+        this.reportListener = reportListener;
+        this.integrityPeriod = integrityPeriod;
     }
 
     @Override
@@ -364,10 +393,205 @@ public final class Iec61850Connection implements Connection {
         }
     }
 
+    /**
+     * Listens to the channels through report control blocks. For every channel a data set is searched whose member is
+     * the basic data attribute of the channel or contains it. A free buffered report control block of the data set is
+     * preferred over an unbuffered one. Data sets that already have an enabled report control block are preferred so
+     * that every channel is reported only once. Channels that are not part of any data set with a free report control
+     * block get an error record.
+     */
     @Override
-    public void startListening(List<ChannelRecordContainer> containers, RecordsReceivedListener listener)
-            throws UnsupportedOperationException {
-        throw new UnsupportedOperationException();
+    public synchronized void startListening(List<ChannelRecordContainer> containers, RecordsReceivedListener listener)
+            throws ConnectionException {
+
+        reportListener.unregisterOpenMucListener();
+        disableReportControlBlocks();
+
+        Map<String, List<DataSet>> dataSetsByMember = new HashMap<>();
+        for (DataSet dataSet : serverModel.getDataSets()) {
+            for (FcModelNode member : dataSet.getMembers()) {
+                dataSetsByMember.computeIfAbsent(memberKey(member), key -> new ArrayList<>()).add(dataSet);
+            }
+        }
+
+        Map<String, List<Rcb>> rcbsByDataSet = readReportControlBlocks();
+        Map<DataSet, Rcb> rcbOfDataSet = new HashMap<>();
+        Map<String, List<ReportTarget>> targetsByMemberReference = new HashMap<>();
+        List<ChannelRecordContainer> notReportedContainers = new ArrayList<>();
+
+        for (ChannelRecordContainer container : containers) {
+            setChannelHandleWithFcModelNode(container);
+            Object channelHandle = container.getChannelHandle();
+
+            if (!(channelHandle instanceof BasicDataAttribute)) {
+                if (channelHandle != null) {
+                    logger.debug("Channel {} can not be reported because it is not a Basic Data Attribute.",
+                            container.getChannelAddress());
+                    container.setRecord(new Record(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE));
+                }
+                notReportedContainers.add(container);
+            }
+            else if (!addReportTarget(container, (BasicDataAttribute) channelHandle, dataSetsByMember, rcbsByDataSet,
+                    rcbOfDataSet, targetsByMemberReference)) {
+                logger.warn("Channel {} is not part of a data set with a free report control block.",
+                        container.getChannelAddress());
+                container.setRecord(new Record(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE));
+                notReportedContainers.add(container);
+            }
+        }
+
+        reportListener.registerOpenMucListener(targetsByMemberReference, listener, this);
+
+        for (Rcb rcb : enabledRcbs) {
+            try {
+                clientAssociation.startGi(rcb);
+            } catch (ServiceError e) {
+                logger.debug("General interrogation of report control block {} failed: {}", rcb.getReference(), e);
+            } catch (IOException e) {
+                throw new ConnectionException(e);
+            }
+        }
+
+        if (!notReportedContainers.isEmpty()) {
+            listener.newRecords(notReportedContainers);
+        }
+    }
+
+    private boolean addReportTarget(ChannelRecordContainer container, BasicDataAttribute bda,
+            Map<String, List<DataSet>> dataSetsByMember, Map<String, List<Rcb>> rcbsByDataSet,
+            Map<DataSet, Rcb> rcbOfDataSet, Map<String, List<ReportTarget>> targetsByMemberReference)
+            throws ConnectionException {
+
+        // first try the data sets that are reported already, then enable a new report control block
+        for (boolean enable : new boolean[] { false, true }) {
+            for (ModelNode node = bda; node instanceof FcModelNode; node = node.getParent()) {
+                FcModelNode member = (FcModelNode) node;
+                List<DataSet> dataSets = dataSetsByMember.get(memberKey(member));
+                if (dataSets == null) {
+                    continue;
+                }
+                for (DataSet dataSet : dataSets) {
+                    Rcb rcb = rcbOfDataSet.get(dataSet);
+                    if (rcb == null && enable && !rcbOfDataSet.containsKey(dataSet)) {
+                        rcb = enableReportControlBlock(dataSet, rcbsByDataSet.get(dataSet.getReferenceStr()));
+                        rcbOfDataSet.put(dataSet, rcb);
+                    }
+                    if (rcb != null) {
+                        targetsByMemberReference.computeIfAbsent(member.getReference().toString(),
+                                key -> new ArrayList<>()).add(new ReportTarget(container, member, bda));
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String memberKey(FcModelNode member) {
+        return member.getReference() + ":" + member.getFc();
+    }
+
+    /**
+     * Reads the values of all report control blocks of the server and groups them by the reference of their data set,
+     * buffered report control blocks first.
+     */
+    private Map<String, List<Rcb>> readReportControlBlocks() throws ConnectionException {
+        List<Rcb> rcbs = new ArrayList<>(serverModel.getBrcbs());
+        rcbs.addAll(serverModel.getUrcbs());
+
+        Map<String, List<Rcb>> rcbsByDataSet = new HashMap<>();
+        for (Rcb rcb : rcbs) {
+            try {
+                clientAssociation.getRcbValues(rcb);
+            } catch (ServiceError e) {
+                logger.debug("Error reading report control block {}: {}", rcb.getReference(), e);
+                continue;
+            } catch (IOException e) {
+                throw new ConnectionException(e);
+            }
+            String dataSetReference = rcb.getDatSet().getStringValue().replace('$', '.');
+            rcbsByDataSet.computeIfAbsent(dataSetReference, key -> new ArrayList<>()).add(rcb);
+        }
+        return rcbsByDataSet;
+    }
+
+    /**
+     * Configures and enables the first free report control block of the given candidates.
+     *
+     * @return the enabled report control block or null if none of the candidates could be enabled
+     */
+    private Rcb enableReportControlBlock(DataSet dataSet, Collection<Rcb> candidates) throws ConnectionException {
+        if (candidates == null) {
+            logger.debug("Data set {} has no report control block.", dataSet.getReferenceStr());
+            return null;
+        }
+
+        for (Rcb rcb : candidates) {
+            if (rcb.getRptEna().getValue()) {
+                logger.debug("Report control block {} is already enabled by another client.", rcb.getReference());
+                continue;
+            }
+
+            BdaOptFlds optFlds = rcb.getOptFlds();
+            optFlds.setDataSetName(true);
+            optFlds.setReasonForInclusion(true);
+            optFlds.setSequenceNumber(true);
+            optFlds.setReportTimestamp(true);
+            optFlds.setEntryId(rcb instanceof Brcb);
+
+            BdaTriggerConditions trgOps = rcb.getTrgOps();
+            trgOps.setDataChange(true);
+            trgOps.setQualityChange(true);
+            trgOps.setGeneralInterrogation(true);
+            trgOps.setIntegrity(integrityPeriod > 0);
+            if (integrityPeriod > 0) {
+                rcb.getIntgPd().setValue(integrityPeriod);
+            }
+
+            try {
+                List<ServiceError> serviceErrors = clientAssociation.setRcbValues(rcb, false, false, true, false,
+                        true, integrityPeriod > 0, false, false);
+                if (containsError(serviceErrors)) {
+                    logger.debug("Unable to configure report control block {}: {}", rcb.getReference(),
+                            serviceErrors);
+                    continue;
+                }
+                clientAssociation.enableReporting(rcb);
+            } catch (ServiceError e) {
+                logger.debug("Unable to enable report control block {}: {}", rcb.getReference(), e);
+                continue;
+            } catch (IOException e) {
+                throw new ConnectionException(e);
+            }
+
+            logger.info("Enabled report control block {} for data set {}.", rcb.getReference(),
+                    dataSet.getReferenceStr());
+            enabledRcbs.add(rcb);
+            return rcb;
+        }
+        return null;
+    }
+
+    private static boolean containsError(List<ServiceError> serviceErrors) {
+        for (ServiceError serviceError : serviceErrors) {
+            if (serviceError != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void disableReportControlBlocks() throws ConnectionException {
+        for (Rcb rcb : enabledRcbs) {
+            try {
+                clientAssociation.disableReporting(rcb);
+            } catch (ServiceError e) {
+                logger.debug("Unable to disable report control block {}: {}", rcb.getReference(), e);
+            } catch (IOException e) {
+                throw new ConnectionException(e);
+            }
+        }
+        enabledRcbs.clear();
     }
 
     void fillRequestedNodes(List<FcModelNode> fcNodesToBeRequested, List<FcModelNode> remainingFcModelNodes,
@@ -1100,8 +1324,12 @@ public final class Iec61850Connection implements Connection {
     }
 
     private void setRecord(ChannelRecordContainer container, BasicDataAttribute bda, long receiveTime) {
+        container.setRecord(createRecord(bda, receiveTime));
+    }
+
+    static Record createRecord(BasicDataAttribute bda, long receiveTime) {
         try {
-            container.setRecord(BdaTypes.valueOf(bda.getBasicType().toString()).setRecord(bda, receiveTime));
+            return BdaTypes.valueOf(bda.getBasicType().toString()).setRecord(bda, receiveTime);
         } catch (IllegalArgumentException e) {
             throw new IllegalStateException("unknown BasicType received: " + bda.getBasicType());
         }
@@ -1129,6 +1357,9 @@ public final class Iec61850Connection implements Connection {
 
     @Override
     public void disconnect() {
+        // report control blocks are not disabled: the server disables unbuffered ones when the association is closed
+        // and keeps buffering the reports of buffered ones until the next connection
+        reportListener.unregisterOpenMucListener();
         clientAssociation.disconnect();
     }
 
@@ -51,7 +51,8 @@ public final class Iec61850Driver implements DriverService {
             // device address
             "Synopsis: <host>[:<port>]\nThe default port is 102.",
             // parameters
-            "Synopsis: [-a <authentication_parameter>] [-lt <local_t-selector>] [-rt <remote_t-selector>]",
+            "Synopsis: [-a <authentication_parameter>] [-lt <local_t-selector>] [-rt <remote_t-selector>]"
+                    + " [-ip <integrity_period_ms>]",
             // channel address
             "Synopsis: <bda_reference>:<fc>",
             // device scan settings
@@ -85,10 +86,11 @@ public final class Iec61850Driver implements DriverService {
         clientSap.setTSelLocal(deviceSettings.getTSelLocal());
         clientSap.setTSelLocal(deviceSettings.getTSelRemote());
 
+        Iec61850Listener reportListener = new Iec61850Listener();
         ClientAssociation clientAssociation;
         try {
             clientAssociation = clientSap.associate(deviceAdress.getAdress(), deviceAdress.getRemotePort(),
-                    deviceSettings.getAuthentication(), null);
+                    deviceSettings.getAuthentication(), reportListener);
         } catch (IOException e) {
             throw new ConnectionException(e);
         }
@@ -103,6 +105,7 @@ public final class Iec61850Driver implements DriverService {
             throw new ConnectionException("IOException retrieving server model: " + e.getMessage(), e);
         }
 
-        return new Iec61850Connection(clientAssociation, serverModel);
+        return new Iec61850Connection(clientAssociation, serverModel, reportListener,
+                deviceSettings.getIntegrityPeriod());
     }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.driver.iec61850;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.openmuc.framework.driver.spi.ChannelRecordContainer;
+import org.openmuc.framework.driver.spi.Connection;
+import org.openmuc.framework.driver.spi.RecordsReceivedListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.beanit.iec61850bean.BasicDataAttribute;
+import com.beanit.iec61850bean.ClientEventListener;
+import com.beanit.iec61850bean.Fc;
+import com.beanit.iec61850bean.FcModelNode;
+import com.beanit.iec61850bean.ModelNode;
+import com.beanit.iec61850bean.Report;
+
+/**
+ * Receives the reports of the report control blocks enabled by {@link Iec61850Connection#startListening} and passes
+ * the values of the reported data set members to the channels.
+ * <p>
+ * The members are mapped to the containers through an index that is calculated once when listening is started. It
+ * maps the reference of every data set member to the containers whose basic data attribute is the member itself or
+ * part of it, together with the path from the member down to the attribute.
+ */
+final class Iec61850Listener implements ClientEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(Iec61850Listener.class);
+
+    private volatile Map<String, List<ReportTarget>> targetsByMemberReference = Collections.emptyMap();
+    private volatile RecordsReceivedListener listener;
+    private volatile Connection connection;
+
+    synchronized void registerOpenMucListener(Map<String, List<ReportTarget>> targetsByMemberReference,
+            RecordsReceivedListener listener, Connection connection) {
+        this.targetsByMemberReference = targetsByMemberReference;
+        this.listener = listener;
+        this.connection = connection;
+    }
+
+    synchronized void unregisterOpenMucListener() {
+        listener = null;
+        targetsByMemberReference = Collections.emptyMap();
+    }
+
+    @Override
+    public void newReport(Report report) {
+        RecordsReceivedListener listener = this.listener;
+        if (listener == null) {
+            logger.debug("Received report {} although no channel is listening.", report.getRptId());
+            return;
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace(report.toString());
+        }
+
+        Map<String, List<ReportTarget>> targetsByMemberReference = this.targetsByMemberReference;
+        long receiveTime = System.currentTimeMillis();
+        List<ChannelRecordContainer> containers = new ArrayList<>();
+
+        for (FcModelNode member : report.getValues()) {
+            List<ReportTarget> targets = targetsByMemberReference.get(member.getReference().toString());
+            if (targets == null) {
+                continue;
+            }
+            for (ReportTarget target : targets) {
+                if (target.fc != member.getFc()) {
+                    continue;
+                }
+                BasicDataAttribute bda = target.find(member);
+                if (bda == null) {
+                    logger.debug("Report {} does not contain the attribute of channel {}.", report.getRptId(),
+                            target.container.getChannelAddress());
+                    continue;
+                }
+                target.container.setRecord(Iec61850Connection.createRecord(bda, receiveTime));
+                containers.add(target.container);
+            }
+        }
+
+        if (!containers.isEmpty()) {
+            listener.newRecords(containers);
+        }
+    }
+
+    @Override
+    public void associationClosed(IOException e) {
+        RecordsReceivedListener listener = this.listener;
+        if (listener != null) {
+            logger.info("Association was closed by server: {}", e.getMessage());
+            listener.connectionInterrupted("iec61850", connection);
+        }
+    }
+
+    /**
+     * A channel that receives its values from a data set member.
+     */
+    static final class ReportTarget {
+
+        private final ChannelRecordContainer container;
+        private final Fc fc;
+        private final String[] path;
+
+        /**
+         * @param container
+         *            container of the channel
+         * @param member
+         *            the data set member
+         * @param bda
+         *            the attribute of the channel, the member itself or one of its descendants
+         */
+        ReportTarget(ChannelRecordContainer container, FcModelNode member, BasicDataAttribute bda) {
+            this.container = container;
+            this.fc = member.getFc();
+
+            List<String> names = new ArrayList<>();
+            for (ModelNode node = bda; node != member; node = node.getParent()) {
+                names.add(0, node.getName());
+            }
+            this.path = names.toArray(new String[names.size()]);
+        }
+
+        private BasicDataAttribute find(FcModelNode member) {
+            ModelNode node = member;
+            for (String name : path) {
+                node = node.getChild(name);
+                if (node == null) {
+                    return null;
+                }
+            }
+            return node instanceof BasicDataAttribute ? (BasicDataAttribute) node : null;
+        }
+    }
+
+}
@@ -105,6 +105,16 @@ public class Iec61850DriverTest extends Thread implements ServerEventListener {
         testIec61850Connection.disconnect();
     }
 
+    @Test
+    public void testConnectValidSettings3() throws Exception {
+        String testDeviceAdress = host + ":" + port;
+        String testSettings = "-a 12 -lt 1 -rt 1 -ip 5000";
+        Iec61850Driver testIec61850Driver = new Iec61850Driver();
+        Connection testIec61850Connection = testIec61850Driver.connect(testDeviceAdress, testSettings);
+        Assert.assertThat(testIec61850Connection, instanceOf(Connection.class));
+        testIec61850Connection.disconnect();
+    }
+
     @Test
     public void testConnectInvalidSettings1() throws Exception {
         // Test 1
@@ -133,6 +143,14 @@ public class Iec61850DriverTest extends Thread implements ServerEventListener {
         expectExeption(testDeviceAdress, testSettings, exceptionMsg, new ArgumentSyntaxException());
     }
 
+    @Test
+    public void testConnectInvalidSettings4() throws Exception {
+        String testDeviceAdress = host + ":" + port;
+        String testSettings = "-a 12 -lt 1 -ip foo";
+        String exceptionMsg = "The specified integrity period is not a number";
+        expectExeption(testDeviceAdress, testSettings, exceptionMsg, new ArgumentSyntaxException());
+    }
+
     @Test
     public void testConnectInvalidAddress1() throws Exception {
         // Test 1
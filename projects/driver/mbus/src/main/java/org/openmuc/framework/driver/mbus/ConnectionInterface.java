@@ -21,7 +21,9 @@
 package org.openmuc.framework.driver.mbus;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import org.openmuc.framework.driver.spi.SerialBusScheduler;
 import org.openmuc.jmbus.MBusConnection;
 
 /**
@@ -37,6 +39,7 @@ class ConnectionInterface {
     private final String connectionName;
     private int delay = 0;
     private Map<String, ConnectionInterface> interfaces;
+    private SerialBusScheduler scheduler;
 
     public ConnectionInterface(MBusConnection mBusConnection, String serialPortName, int delay,
             Map<String, ConnectionInterface> interfaces) {
@@ -55,6 +58,8 @@ class ConnectionInterface {
         this.mBusConnection = mBusConnection;
         this.interfaces = interfaces;
         this.delay = delay;
+        this.scheduler = SerialBusScheduler.forPort(connectionName);
+        scheduler.requireInterFrameGap(delay, TimeUnit.MILLISECONDS);
         interfaces.put(connectionName, this);
     }
 
@@ -62,6 +67,13 @@ class ConnectionInterface {
         return mBusConnection;
     }
 
+    /**
+     * Returns the scheduler which orders the transactions of all devices connected through this interface.
+     */
+    public SerialBusScheduler getScheduler() {
+        return scheduler;
+    }
+
     public int getDelay() {
         return delay;
     }
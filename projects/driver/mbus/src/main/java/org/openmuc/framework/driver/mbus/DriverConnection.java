@@ -25,6 +25,7 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.openmuc.framework.config.ChannelScanInfo;
 import org.openmuc.framework.data.DoubleValue;
@@ -38,6 +39,7 @@ import org.openmuc.framework.driver.spi.ChannelValueContainer;
 import org.openmuc.framework.driver.spi.Connection;
 import org.openmuc.framework.driver.spi.ConnectionException;
 import org.openmuc.framework.driver.spi.RecordsReceivedListener;
+import org.openmuc.framework.driver.spi.SerialBusScheduler;
 import org.openmuc.jmbus.Bcd;
 import org.openmuc.jmbus.DataRecord;
 import org.openmuc.jmbus.DataRecord.DataValueType;
@@ -67,11 +69,30 @@ public class DriverConnection implements Connection {
         this.secondaryAddress = secondaryAddress;
         this.mBusAddress = mBusAddress;
         this.delay = delay;
+        connectionInterface.getScheduler().requireInterFrameGap(delay, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public List<ChannelScanInfo> scanForChannels(String settings)
             throws UnsupportedOperationException, ConnectionException {
+
+        // a scan has no sampling deadline but still waits for its turn so the inter-frame gap to reads is kept
+        SerialBusScheduler scheduler = connectionInterface.getScheduler();
+        try {
+            scheduler.acquire(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("Interrupted while waiting for the bus " + scheduler, e);
+        }
+
+        try {
+            return scanBus();
+        } finally {
+            scheduler.release();
+        }
+    }
+
+    private List<ChannelScanInfo> scanBus() throws ConnectionException {
         int scanDelay = 50 + this.delay;
 
         synchronized (connectionInterface) {
@@ -241,6 +262,36 @@ public class DriverConnection implements Connection {
     @Override
     public Object read(List<ChannelRecordContainer> containers, Object containerListHandle, String samplingGroup)
             throws ConnectionException {
+
+        // devices on the same bus are read one after the other, ordered by the deadlines of their sampling tasks
+        SerialBusScheduler scheduler = connectionInterface.getScheduler();
+        try {
+            if (!scheduler.acquire(SerialBusScheduler.deadlineOf(containers))) {
+                logger.debug("Skipped reading device {}, the sampling deadline passed while waiting for the bus. {}",
+                        mBusAddress, scheduler);
+                setRecordsWithFlag(containers, Flag.DRIVER_ERROR_TIMEOUT);
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            setRecordsWithFlag(containers, Flag.DRIVER_ERROR_TIMEOUT);
+            return null;
+        }
+
+        try {
+            return readFromBus(containers);
+        } finally {
+            scheduler.release();
+        }
+    }
+
+    private static void setRecordsWithFlag(List<ChannelRecordContainer> containers, Flag flag) {
+        for (ChannelRecordContainer container : containers) {
+            container.setRecord(new Record(flag));
+        }
+    }
+
+    private Object readFromBus(List<ChannelRecordContainer> containers) throws ConnectionException {
         synchronized (connectionInterface) {
             List<DataRecord> dataRecords = new ArrayList<>();
 
@@ -275,10 +326,14 @@ public class DriverConnection implements Connection {
                         sleep(delay);
                     }
                 }
+                // no delay after the last frame, the bus scheduler keeps the gap to the next transaction
+                boolean selectForReadoutFollows = containsSelectForReadoutChannel(containers);
                 VariableDataStructure variableDataStructure = null;
                 do {
                     variableDataStructure = mBusConnection.read(mBusAddress);
-                    sleep(delay);
+                    if (variableDataStructure.moreRecordsFollow() || selectForReadoutFollows) {
+                        sleep(delay);
+                    }
                     dataRecords.addAll(variableDataStructure.getDataRecords());
                 } while (variableDataStructure.moreRecordsFollow());
 
@@ -302,11 +357,10 @@ public class DriverConnection implements Connection {
             if (selectForReadoutSet) {
                 try {
                     mBusConnection.resetReadout(mBusAddress);
-                    sleep(delay);
                 } catch (IOException e) {
                     try {
-                        mBusConnection.linkReset(mBusAddress);
                         sleep(delay);
+                        mBusConnection.linkReset(mBusAddress);
                     } catch (IOException e1) {
                         for (ChannelRecordContainer container : containers) {
                             container.setRecord(new Record(Flag.CONNECTION_EXCEPTION));
@@ -322,6 +376,15 @@ public class DriverConnection implements Connection {
 
     }
 
+    private static boolean containsSelectForReadoutChannel(List<ChannelRecordContainer> containers) {
+        for (ChannelRecordContainer container : containers) {
+            if (container.getChannelAddress().startsWith("X")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void setDibVibs(List<DataRecord> dataRecords, String[] dibvibs) {
         int i = 0;
         for (DataRecord dataRecord : dataRecords) {
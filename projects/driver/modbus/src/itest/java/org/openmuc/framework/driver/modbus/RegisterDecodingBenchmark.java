@@ -0,0 +1,167 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.driver.modbus;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
+import org.openmuc.framework.driver.spi.ChannelRecordContainer;
+
+import com.ghgande.j2mod.modbus.procimg.InputRegister;
+import com.ghgande.j2mod.modbus.procimg.SimpleRegister;
+
+/**
+ * Measures the time and the heap allocation of decoding the registers of a response for every datatype, once with
+ * the byte array conversion and once directly from the registers. The last case measures
+ * {@link ModbusChannelGroup#setChannelValues(InputRegister[], List)} for a group of channels. Allocation is measured
+ * with the per thread allocation counter of the HotSpot JVM.
+ * <p>
+ * Usage: {@code RegisterDecodingBenchmark [iterations]}
+ */
+public class RegisterDecodingBenchmark {
+
+    private static final int WARM_UP_ITERATIONS = 2000000;
+
+    private static final InputRegister[] REGISTERS = { new SimpleRegister(0x4045), new SimpleRegister(0x1234),
+            new SimpleRegister(0x5678), new SimpleRegister(0x9ABC) };
+
+    private static Object blackhole;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+
+        System.out.println("case;ns/op;bytes/op");
+        for (EDatatype datatype : EDatatype.values()) {
+            if (datatype == EDatatype.BOOLEAN) {
+                // coils are decoded from a bit vector
+                continue;
+            }
+            int count = datatype.getRegisterSize() > 0 ? datatype.getRegisterSize() : REGISTERS.length;
+
+            run(datatype + ", byte array", iterations,
+                    () -> ModbusDriverUtil.getValueFromByteArray(toBytes(count), datatype));
+            run(datatype + ", registers", iterations,
+                    () -> ModbusDriverUtil.getRegistersValue(REGISTERS, 0, count, datatype));
+        }
+
+        ArrayList<ModbusChannel> channels = new ArrayList<>();
+        List<ChannelRecordContainer> containers = new ArrayList<>();
+        for (String address : new String[] { "1:HOLDING_REGISTERS:0:INT16", "1:HOLDING_REGISTERS:1:UINT16",
+                "1:HOLDING_REGISTERS:2:FLOAT" }) {
+            channels.add(new ModbusChannel(address, EAccess.READ));
+            containers.add(0, new Container(address));
+        }
+        ModbusChannelGroup group = new ModbusChannelGroup("group", channels);
+        run("group of 3 channels", iterations, () -> {
+            group.setChannelValues(REGISTERS, containers);
+            return containers.get(0).getRecord();
+        });
+    }
+
+    private static void run(String name, int iterations, Operation operation) {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            blackhole = operation.run();
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            blackhole = operation.run();
+        }
+        long duration = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        System.out.printf("%s;%.1f;%.1f%n", name, (double) duration / iterations, (double) allocated / iterations);
+    }
+
+    /**
+     * The copy of the registers made by the byte array conversion.
+     */
+    private static byte[] toBytes(int count) {
+        byte[] bytes = new byte[count * 2];
+        for (int i = 0; i < count; i++) {
+            bytes[i * 2] = (byte) (REGISTERS[i].getValue() >> 8);
+            bytes[i * 2 + 1] = (byte) REGISTERS[i].getValue();
+        }
+        return bytes;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private interface Operation {
+        Object run();
+    }
+
+    private static class Container implements ChannelRecordContainer {
+
+        private final String channelAddress;
+        private Record record;
+
+        private Container(String channelAddress) {
+            this.channelAddress = channelAddress;
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public Channel getChannel() {
+            return null;
+        }
+
+        @Override
+        public String getChannelAddress() {
+            return channelAddress;
+        }
+
+        @Override
+        public Object getChannelHandle() {
+            return null;
+        }
+
+        @Override
+        public void setChannelHandle(Object handle) {
+        }
+
+        @Override
+        public void setRecord(Record record) {
+            this.record = record;
+        }
+
+        @Override
+        public ChannelRecordContainer copy() {
+            Container copy = new Container(channelAddress);
+            copy.record = record;
+            return copy;
+        }
+    }
+
+}
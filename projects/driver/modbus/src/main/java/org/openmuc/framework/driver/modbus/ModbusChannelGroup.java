@@ -22,9 +22,12 @@
 package org.openmuc.framework.driver.modbus;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openmuc.framework.data.BooleanValue;
+import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.driver.spi.ChannelRecordContainer;
@@ -56,6 +59,9 @@ public class ModbusChannelGroup {
     private EFunctionCode functionCode;
     private final String samplingGroup;
 
+    /** Indexes of the containers of every channel in the container list of the last read */
+    private volatile int[][] containerIndexes;
+
     public ModbusChannelGroup(String samplingGroup, ArrayList<ModbusChannel> channels) {
         this.samplingGroup = samplingGroup;
         this.channels = channels;
@@ -175,51 +181,121 @@ public class ModbusChannelGroup {
 
     public void setChannelValues(InputRegister[] inputRegisters, List<ChannelRecordContainer> containers) {
 
-        for (ModbusChannel channel : channels) {
+        int[][] indexes = getContainerIndexes(containers);
+        long receiveTime = System.currentTimeMillis();
+
+        for (int i = 0; i < channels.size(); i++) {
+            ModbusChannel channel = channels.get(i);
             // determine start index of the registers which contain the values of the channel
             int registerIndex = channel.getStartAddress() - getStartAddress();
-            // create a temporary register array
-            InputRegister[] registers = new InputRegister[channel.getCount()];
-            // copy relevant registers for the channel
-            System.arraycopy(inputRegisters, registerIndex, registers, 0, channel.getCount());
-
-            // now we have a register array which contains the value of the channel
-            ChannelRecordContainer container = searchContainer(channel.getChannelAddress(), containers);
-
-            long receiveTime = System.currentTimeMillis();
 
-            Value value = ModbusDriverUtil.getRegistersValue(registers, channel.getDatatype());
+            Value value = ModbusDriverUtil.getRegistersValue(inputRegisters, registerIndex, channel.getCount(),
+                    channel.getDatatype());
 
             if (logger.isTraceEnabled()) {
                 logger.trace("response value channel " + channel.getChannelAddress() + ": " + value.toString());
             }
 
-            container.setRecord(new Record(value, receiveTime));
+            setRecords(indexes[i], value, receiveTime, containers);
         }
     }
 
     public void setChannelValues(BitVector bitVector, List<ChannelRecordContainer> containers) {
 
-        for (ModbusChannel channel : channels) {
-
-            long receiveTime = System.currentTimeMillis();
+        int[][] indexes = getContainerIndexes(containers);
+        long receiveTime = System.currentTimeMillis();
 
+        for (int i = 0; i < channels.size(); i++) {
             // determine start index of the registers which contain the values of the channel
-            int index = channel.getStartAddress() - getStartAddress();
+            int index = channels.get(i).getStartAddress() - getStartAddress();
 
             BooleanValue value = new BooleanValue(bitVector.getBit(index));
-            ChannelRecordContainer container = searchContainer(channel.getChannelAddress(), containers);
-            container.setRecord(new Record(value, receiveTime));
+            setRecords(indexes[i], value, receiveTime, containers);
+        }
+    }
+
+    private static void setRecords(int[] indexes, Value value, long receiveTime,
+            List<ChannelRecordContainer> containers) {
+        for (int index : indexes) {
+            containers.get(index).setRecord(new Record(value, receiveTime));
+        }
+    }
+
+    /**
+     * Sets a record with the given error flag for all channels of the group.
+     */
+    public void setChannelsWithErrorFlag(Flag flag, List<ChannelRecordContainer> containers) {
+        for (int[] indexes : getContainerIndexes(containers)) {
+            for (int index : indexes) {
+                containers.get(index).setRecord(new Record(flag));
+            }
+        }
+    }
+
+    /**
+     * Returns the indexes of the containers of every channel. Several containers may have the address of the same
+     * channel, e.g. channels with different scaling factors. The data manager passes the containers of a sampling task
+     * in the same order with every read, so the indexes are calculated once and only verified afterwards.
+     */
+    private int[][] getContainerIndexes(List<ChannelRecordContainer> containers) {
+        int[][] indexes = containerIndexes;
+        if (indexes == null || !matches(indexes, containers)) {
+            indexes = calculateContainerIndexes(containers);
+            containerIndexes = indexes;
+        }
+        return indexes;
+    }
+
+    private boolean matches(int[][] indexes, List<ChannelRecordContainer> containers) {
+        for (int i = 0; i < indexes.length; i++) {
+            for (int index : indexes[i]) {
+                if (index >= containers.size()) {
+                    return false;
+                }
+                String containerAddress = containers.get(index).getChannelAddress();
+                if (!containerAddress.equalsIgnoreCase(channels.get(i).getChannelAddress())) {
+                    return false;
+                }
+            }
         }
+        return true;
     }
 
-    private ChannelRecordContainer searchContainer(String channelAddress, List<ChannelRecordContainer> containers) {
-        for (ChannelRecordContainer container : containers) {
-            if (container.getChannelAddress().equalsIgnoreCase(channelAddress)) {
-                return container;
+    private int[][] calculateContainerIndexes(List<ChannelRecordContainer> containers) {
+        Map<String, List<Integer>> indexesByAddress = new HashMap<>();
+        for (int i = 0; i < containers.size(); i++) {
+            indexesByAddress.computeIfAbsent(containers.get(i).getChannelAddress(), k -> new ArrayList<>()).add(i);
+        }
+
+        int[][] indexes = new int[channels.size()][];
+        for (int i = 0; i < indexes.length; i++) {
+            String channelAddress = channels.get(i).getChannelAddress();
+            List<Integer> channelIndexes = indexesByAddress.get(channelAddress);
+            indexes[i] = channelIndexes != null ? toArray(channelIndexes)
+                    : searchContainers(channelAddress, containers);
+        }
+        return indexes;
+    }
+
+    private int[] searchContainers(String channelAddress, List<ChannelRecordContainer> containers) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < containers.size(); i++) {
+            if (containers.get(i).getChannelAddress().equalsIgnoreCase(channelAddress)) {
+                indexes.add(i);
             }
         }
-        throw new RuntimeException("No ChannelRecordContainer found for channelAddress " + channelAddress);
+        if (indexes.isEmpty()) {
+            throw new RuntimeException("No ChannelRecordContainer found for channelAddress " + channelAddress);
+        }
+        return toArray(indexes);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
     }
 
     public boolean isEmpty() {
@@ -28,6 +28,8 @@ import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
 import org.openmuc.framework.data.Value;
 import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
+import org.openmuc.framework.driver.modbus.tcp.ModbusTCPPipeline;
+import org.openmuc.framework.driver.modbus.tcp.ModbusTCPPipeline.PendingResponse;
 import org.openmuc.framework.driver.spi.ChannelRecordContainer;
 import org.openmuc.framework.driver.spi.Connection;
 import org.openmuc.framework.driver.spi.ConnectionException;
@@ -64,10 +66,15 @@ public abstract class ModbusConnection implements Connection {
     private static final Logger logger = LoggerFactory.getLogger(ModbusConnection.class);
 
     private ModbusTransaction transaction;
+    private ModbusTCPPipeline pipeline;
     // List do manage Channel Objects to avoid to check the syntax of each channel address for every read or write
     private final Hashtable<String, ModbusChannel> modbusChannels;
 
     private int requestTransactionId;
+    private int gapTolerance = 0;
+    // plans of reads without container list handle, the data manager does not pass the handle back yet
+    private final List<CachedPlan> cachedPlans = new ArrayList<>();
+    private static final int MAX_CACHED_PLANS = 8;
     private final int MAX_RETRIES_FOR_JAMOD = 0;
     private final int MAX_RETRIES_FOR_DRIVER = 3;
 
@@ -94,6 +101,13 @@ public abstract class ModbusConnection implements Connection {
         this.transaction.setRetries(MAX_RETRIES_FOR_JAMOD);
     }
 
+    /**
+     * Sets the pipeline used instead of the transaction to execute requests. Null switches back to the transaction.
+     */
+    public synchronized void setPipeline(ModbusTCPPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
     public Value readChannel(ModbusChannel channel) throws ModbusException {
 
         if (logger.isDebugEnabled()) {
@@ -122,6 +136,153 @@ public abstract class ModbusConnection implements Connection {
         return value;
     }
 
+    /**
+     * Sets the maximum number of unused registers or coils which may be read to merge two channels into one request.
+     * A negative value disables merging.
+     */
+    public void setGapTolerance(int gapTolerance) {
+        this.gapTolerance = gapTolerance;
+        synchronized (cachedPlans) {
+            cachedPlans.clear();
+        }
+    }
+
+    /**
+     * Reads channels which are not part of a sampling group. Neighbouring channels are read with as few requests as
+     * possible, see {@link ModbusRequestPlan}. The data manager passes no container list handle, so the last plans
+     * are also kept by their channel addresses. Reads of the same containers reuse the plan, including requests split
+     * because the device rejected them.
+     *
+     * @param containers
+     *            the channels to read
+     * @param containerListHandle
+     *            the plan returned by the previous call for the same containers or null
+     * @return the plan to be passed as container list handle with the next call
+     * @throws ConnectionException
+     *             if the connection to the device is broken
+     */
+    public Object readPlanned(List<ChannelRecordContainer> containers, Object containerListHandle)
+            throws ConnectionException {
+
+        ModbusRequestPlan plan;
+        if (containerListHandle instanceof ModbusRequestPlan) {
+            plan = (ModbusRequestPlan) containerListHandle;
+        }
+        else {
+            plan = getCachedPlan(containers);
+            if (plan == null) {
+                List<ModbusChannel> channels = new ArrayList<>(containers.size());
+                for (ChannelRecordContainer container : containers) {
+                    channels.add(getModbusChannel(container.getChannelAddress(), EAccess.READ));
+                }
+                plan = ModbusRequestPlan.create(channels, gapTolerance);
+                cachePlan(containers, plan);
+                logger.debug("Reading {} channels with {}", containers.size(), plan);
+            }
+            else {
+                // a write in between may have switched the access of the channels
+                for (ChannelRecordContainer container : containers) {
+                    getModbusChannel(container.getChannelAddress(), EAccess.READ);
+                }
+            }
+        }
+
+        if (pipeline != null) {
+            readPipelined(plan, containers);
+        }
+        else {
+            for (ModbusChannelGroup channelGroup : plan.getGroups()) {
+                readPlannedGroup(plan, channelGroup, containers);
+            }
+        }
+        return plan;
+    }
+
+    private ModbusRequestPlan getCachedPlan(List<ChannelRecordContainer> containers) {
+        synchronized (cachedPlans) {
+            for (CachedPlan cachedPlan : cachedPlans) {
+                if (cachedPlan.matches(containers)) {
+                    return cachedPlan.plan;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void cachePlan(List<ChannelRecordContainer> containers, ModbusRequestPlan plan) {
+        synchronized (cachedPlans) {
+            if (cachedPlans.size() == MAX_CACHED_PLANS) {
+                cachedPlans.remove(0);
+            }
+            cachedPlans.add(new CachedPlan(containers, plan));
+        }
+    }
+
+    /**
+     * Sends the requests of all groups before waiting for the first response.
+     */
+    private synchronized void readPipelined(ModbusRequestPlan plan, List<ChannelRecordContainer> containers)
+            throws ConnectionException {
+
+        List<ModbusChannelGroup> channelGroups = plan.getGroups();
+        List<PendingResponse> responses = new ArrayList<>(channelGroups.size());
+        try {
+            for (ModbusChannelGroup channelGroup : channelGroups) {
+                responses.add(pipeline.send(createReadRequest(channelGroup)));
+            }
+        } catch (ModbusIOException e) {
+            logger.error("ModbusIOException while sending pipelined read requests", e);
+            disconnect();
+            throw new ConnectionException("Try to solve issue with reconnect.");
+        }
+
+        for (int i = 0; i < channelGroups.size(); i++) {
+            ModbusChannelGroup channelGroup = channelGroups.get(i);
+            try {
+                setChannelValues(channelGroup, responses.get(i).get(), containers);
+            } catch (ModbusException e) {
+                handleReadException(plan, channelGroup, containers, e);
+            } catch (Exception e) {
+                logger.error("Exception while reading " + channelGroup.getInfo(), e);
+                channelGroup.setChannelsWithErrorFlag(Flag.UNKNOWN_ERROR, containers);
+            }
+        }
+    }
+
+    private void readPlannedGroup(ModbusRequestPlan plan, ModbusChannelGroup channelGroup,
+            List<ChannelRecordContainer> containers) throws ConnectionException {
+        try {
+            readChannelGroup(channelGroup, containers);
+        } catch (ModbusException e) {
+            handleReadException(plan, channelGroup, containers, e);
+        } catch (Exception e) {
+            // catch all possible exceptions and provide info about the channels
+            logger.error("Exception while reading " + channelGroup.getInfo(), e);
+            channelGroup.setChannelsWithErrorFlag(Flag.UNKNOWN_ERROR, containers);
+        }
+    }
+
+    private void handleReadException(ModbusRequestPlan plan, ModbusChannelGroup channelGroup,
+            List<ChannelRecordContainer> containers, ModbusException e) throws ConnectionException {
+        if (e instanceof ModbusIOException) {
+            logger.error("ModbusIOException while reading " + channelGroup.getInfo(), e);
+            disconnect();
+            throw new ConnectionException("Try to solve issue with reconnect.");
+        }
+        else if (channelGroup.getChannels().size() > 1) {
+            // e.g. a device which refuses to read unused registers between the channels
+            logger.warn("Unable to read merged request, reading the channels separately from now on. {}",
+                    channelGroup.getInfo());
+            for (ModbusChannelGroup singleGroup : plan.split(channelGroup)) {
+                readPlannedGroup(plan, singleGroup, containers);
+            }
+        }
+        else {
+            logger.error("ModbusException while reading " + channelGroup.getInfo(), e);
+            channelGroup.setChannelsWithErrorFlag(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE, containers);
+        }
+    }
+
     public Object readChannelGroupHighLevel(List<ChannelRecordContainer> containers, Object containerListHandle,
             String samplingGroup) throws ConnectionException {
 
@@ -140,7 +301,11 @@ public abstract class ModbusConnection implements Connection {
         if (channelGroup == null) {
             ArrayList<ModbusChannel> channelList = new ArrayList<>();
             for (ChannelRecordContainer container : containers) {
-                channelList.add(getModbusChannel(container.getChannelAddress(), EAccess.READ));
+                ModbusChannel channel = getModbusChannel(container.getChannelAddress(), EAccess.READ);
+                // containers with the same address are all set from one read of the channel
+                if (!channelList.contains(channel)) {
+                    channelList.add(channel);
+                }
             }
             channelGroup = new ModbusChannelGroup(samplingGroup, channelList);
         }
@@ -188,6 +353,59 @@ public abstract class ModbusConnection implements Connection {
         }
     }
 
+    private ModbusRequest createReadRequest(ModbusChannelGroup channelGroup) {
+
+        int startAddress = channelGroup.getStartAddress();
+        int count = channelGroup.getCount();
+        ModbusRequest request;
+
+        switch (channelGroup.getFunctionCode()) {
+        case FC_01_READ_COILS:
+            request = new ReadCoilsRequest(startAddress, count);
+            break;
+        case FC_02_READ_DISCRETE_INPUTS:
+            request = new ReadInputDiscretesRequest(startAddress, count);
+            break;
+        case FC_03_READ_HOLDING_REGISTERS:
+            request = new ReadMultipleRegistersRequest(startAddress, count);
+            break;
+        case FC_04_READ_INPUT_REGISTERS:
+            request = new ReadInputRegistersRequest(startAddress, count);
+            break;
+        default:
+            throw new RuntimeException("FunctionCode " + channelGroup.getFunctionCode() + " not supported yet");
+        }
+        request.setUnitID(channelGroup.getUnitId());
+        return request;
+    }
+
+    private void setChannelValues(ModbusChannelGroup channelGroup, ModbusResponse response,
+            List<ChannelRecordContainer> containers) {
+
+        printResponseTraceMsg(response);
+
+        switch (channelGroup.getFunctionCode()) {
+        case FC_01_READ_COILS:
+            BitVector coils = ((ReadCoilsResponse) response).getCoils();
+            coils.forceSize(channelGroup.getCount());
+            channelGroup.setChannelValues(coils, containers);
+            break;
+        case FC_02_READ_DISCRETE_INPUTS:
+            BitVector discretInput = ((ReadInputDiscretesResponse) response).getDiscretes();
+            discretInput.forceSize(channelGroup.getCount());
+            channelGroup.setChannelValues(discretInput, containers);
+            break;
+        case FC_03_READ_HOLDING_REGISTERS:
+            channelGroup.setChannelValues(((ReadMultipleRegistersResponse) response).getRegisters(), containers);
+            break;
+        case FC_04_READ_INPUT_REGISTERS:
+            channelGroup.setChannelValues(((ReadInputRegistersResponse) response).getRegisters(), containers);
+            break;
+        default:
+            throw new RuntimeException("FunctionCode " + channelGroup.getFunctionCode() + " not supported yet");
+        }
+    }
+
     public void writeChannel(ModbusChannel channel, Value value) throws ModbusException, RuntimeException {
 
         if (logger.isDebugEnabled()) {
@@ -244,6 +462,16 @@ public abstract class ModbusConnection implements Connection {
 
     // TODO refactoring - to evaluate the transaction id the execution should be part of the modbus tcp connection and
     // not part of the common modbusConnection since RTU has no transaction id
+    private ModbusResponse executeRead(ModbusRequest request) throws ModbusException {
+        if (pipeline != null) {
+            ModbusResponse response = pipeline.send(request).get();
+            printResponseTraceMsg(response);
+            return response;
+        }
+        transaction.setRequest(request);
+        return executeReadTransaction();
+    }
+
     private ModbusResponse executeReadTransaction() throws ModbusException {
 
         ModbusResponse response = null;
@@ -341,6 +569,15 @@ public abstract class ModbusConnection implements Connection {
         return isMatching;
     }
 
+    private void executeWrite(ModbusRequest request) throws ModbusException {
+        if (pipeline != null) {
+            printResponseTraceMsg(pipeline.send(request).get());
+            return;
+        }
+        transaction.setRequest(request);
+        executeWriteTransaction();
+    }
+
     private void executeWriteTransaction() throws ModbusException {
         printRequestTraceMsg();
         transaction.execute();
@@ -359,8 +596,7 @@ public abstract class ModbusConnection implements Connection {
             readCoilsRequest.setHeadless();
         }
 
-        transaction.setRequest(readCoilsRequest);
-        ModbusResponse response = executeReadTransaction();
+        ModbusResponse response = executeRead(readCoilsRequest);
         BitVector bitvector = ((ReadCoilsResponse) response).getCoils();
         bitvector.forceSize(count);
         return bitvector;
@@ -384,8 +620,7 @@ public abstract class ModbusConnection implements Connection {
             readInputDiscretesRequest.setHeadless();
         }
 
-        transaction.setRequest(readInputDiscretesRequest);
-        ModbusResponse response = executeReadTransaction();
+        ModbusResponse response = executeRead(readInputDiscretesRequest);
         BitVector bitvector = ((ReadInputDiscretesResponse) response).getDiscretes();
         bitvector.forceSize(count);
         return bitvector;
@@ -410,8 +645,7 @@ public abstract class ModbusConnection implements Connection {
             readHoldingRegisterRequest.setHeadless();
         }
 
-        transaction.setRequest(readHoldingRegisterRequest);
-        ModbusResponse response = executeReadTransaction();
+        ModbusResponse response = executeRead(readHoldingRegisterRequest);
         return ((ReadMultipleRegistersResponse) response).getRegisters();
     }
 
@@ -438,8 +672,7 @@ public abstract class ModbusConnection implements Connection {
             readInputRegistersRequest.setHeadless();
         }
 
-        transaction.setRequest(readInputRegistersRequest);
-        ModbusResponse response = executeReadTransaction();
+        ModbusResponse response = executeRead(readInputRegistersRequest);
         return ((ReadInputRegistersResponse) response).getRegisters();
     }
 
@@ -474,8 +707,7 @@ public abstract class ModbusConnection implements Connection {
         writeCoilRequest.setReference(channel.getStartAddress());
         writeCoilRequest.setCoil(state);
         writeCoilRequest.setUnitID(channel.getUnitId());
-        transaction.setRequest(writeCoilRequest);
-        executeWriteTransaction();
+        executeWrite(writeCoilRequest);
     }
 
     public synchronized void writeMultipleCoils(ModbusChannel channel, BitVector coils) throws ModbusException {
@@ -483,8 +715,7 @@ public abstract class ModbusConnection implements Connection {
         writeMultipleCoilsRequest.setReference(channel.getStartAddress());
         writeMultipleCoilsRequest.setCoils(coils);
         writeMultipleCoilsRequest.setUnitID(channel.getUnitId());
-        transaction.setRequest(writeMultipleCoilsRequest);
-        executeWriteTransaction();
+        executeWrite(writeMultipleCoilsRequest);
     }
 
     public synchronized void writeSingleRegister(ModbusChannel channel, Register register) throws ModbusException {
@@ -492,8 +723,7 @@ public abstract class ModbusConnection implements Connection {
         writeSingleRegisterRequest.setReference(channel.getStartAddress());
         writeSingleRegisterRequest.setRegister(register);
         writeSingleRegisterRequest.setUnitID(channel.getUnitId());
-        transaction.setRequest(writeSingleRegisterRequest);
-        executeWriteTransaction();
+        executeWrite(writeSingleRegisterRequest);
     }
 
     public synchronized void writeMultipleRegisters(ModbusChannel channel, Register[] registers)
@@ -502,8 +732,7 @@ public abstract class ModbusConnection implements Connection {
         writeMultipleRegistersRequest.setReference(channel.getStartAddress());
         writeMultipleRegistersRequest.setRegisters(registers);
         writeMultipleRegistersRequest.setUnitID(channel.getUnitId());
-        transaction.setRequest(writeMultipleRegistersRequest);
-        executeWriteTransaction();
+        executeWrite(writeMultipleRegistersRequest);
     }
 
     // FIXME transaction ID unsupported by RTU since it is headless... create own debug for RTU
@@ -578,8 +807,10 @@ public abstract class ModbusConnection implements Connection {
             sb.append("- unit ID       : " + response.getUnitID() + "\n");
             sb.append("- function code : " + response.getFunctionCode() + "\n");
             sb.append("- length        : " + response.getDataLength() + "\n");
-            sb.append("- is headless   : " + response.isHeadless() + "\n");
-            sb.append("- max retries   : " + transaction.getRetries());
+            sb.append("- is headless   : " + response.isHeadless());
+            if (transaction != null) {
+                sb.append("\n- max retries   : " + transaction.getRetries());
+            }
 
             traceMsg = sb.toString();
         } catch (Exception e) {
@@ -589,4 +820,30 @@ public abstract class ModbusConnection implements Connection {
         return traceMsg;
     }
 
+    private static class CachedPlan {
+
+        private final String[] channelAddresses;
+        private final ModbusRequestPlan plan;
+
+        private CachedPlan(List<ChannelRecordContainer> containers, ModbusRequestPlan plan) {
+            channelAddresses = new String[containers.size()];
+            for (int i = 0; i < channelAddresses.length; i++) {
+                channelAddresses[i] = containers.get(i).getChannelAddress();
+            }
+            this.plan = plan;
+        }
+
+        private boolean matches(List<ChannelRecordContainer> containers) {
+            if (containers.size() != channelAddresses.length) {
+                return false;
+            }
+            for (int i = 0; i < channelAddresses.length; i++) {
+                if (!channelAddresses[i].equals(containers.get(i).getChannelAddress())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
 }
@@ -45,6 +45,8 @@ public final class ModbusDriver implements DriverService {
 
     private static final Logger logger = LoggerFactory.getLogger(ModbusDriver.class);
     private static final int DEFAULT_TIMEOUT_MS = 3000;
+    private static final int DEFAULT_GAP_TOLERANCE = 0;
+    private static final int DEFAULT_PIPELINE_DEPTH = 1;
 
     @Override
     public DriverInfo getInfo() {
@@ -67,11 +69,15 @@ public final class ModbusDriver implements DriverService {
         // TCP: m_Socket.setSoTimeout(m_Timeout);
         // RTU: m_SerialPort.enableReceiveTimeout(ms);
 
-        final String TCP_SETTINGS = "  TCP[:timeout=<timoutInMs>] (e.g. TCP or TCP:timeout=3000)";
-        final String RTUTCP_SETTINGS = "  RTUTCP[:timeout=<timoutInMs>] ";
-        final String RTU_SETTINGS = "  RTU:<ENCODING>:<BAUDRATE>:<DATABITS>:<PARITY>:<STOPBITS>:<ECHO>:<FLOWCONTROL_IN>:<FLOWCONTEOL_OUT>[:timeout=<timoutInMs>]";
+        final String TCP_SETTINGS = "  TCP[:timeout=<timoutInMs>][:gapTolerance=<registers>][:pipeline=<requests>] "
+                + "(e.g. TCP or TCP:timeout=3000)";
+        final String RTUTCP_SETTINGS = "  RTUTCP[:timeout=<timoutInMs>][:gapTolerance=<registers>] ";
+        final String RTU_SETTINGS = "  RTU:<ENCODING>:<BAUDRATE>:<DATABITS>:<PARITY>:<STOPBITS>:<ECHO>:<FLOWCONTROL_IN>:<FLOWCONTEOL_OUT>[:timeout=<timoutInMs>][:gapTolerance=<registers>]";
+        final String GAP_TOLERANCE = "  gapTolerance: unused registers/coils read to merge channels into one request, "
+                + "-1 disables merging (default 0)";
+        final String PIPELINE = "  pipeline: TCP requests sent without waiting for their responses (default 1)";
         final String DEVICE_SETTINGS = "Device settings depend on selected type: \n" + TCP_SETTINGS + "\n"
-                + RTUTCP_SETTINGS + "\n" + RTU_SETTINGS;
+                + RTUTCP_SETTINGS + "\n" + RTU_SETTINGS + "\n" + GAP_TOLERANCE + "\n" + PIPELINE;
 
         final String CHANNEL_ADDRESS = "<UnitId>:<PrimaryTable>:<Address>:<Datatyp>";
 
@@ -107,8 +113,8 @@ public final class ModbusDriver implements DriverService {
                 }
             }
             else if (mode.equalsIgnoreCase("TCP")) {
-
-                connection = new ModbusTCPConnection(deviceAddress, timeoutMs);
+                connection = new ModbusTCPConnection(deviceAddress, timeoutMs,
+                        getPipelineDepthFromSettings(settingsArray));
             }
             else if (mode.equalsIgnoreCase("RTUTCP")) {
                 connection = new ModbusRTUTCPConnection(deviceAddress, timeoutMs);
@@ -116,6 +122,7 @@ public final class ModbusDriver implements DriverService {
             else {
                 throw new ConnectionException("Unknown Mode. Use RTU, TCP or RTUTCP.");
             }
+            connection.setGapTolerance(getGapToleranceFromSettings(settingsArray));
         }
         return connection;
 
@@ -146,6 +153,46 @@ public final class ModbusDriver implements DriverService {
         return timeoutMs;
     }
 
+    private int getGapToleranceFromSettings(String[] settingsArray) {
+
+        int gapTolerance = DEFAULT_GAP_TOLERANCE;
+
+        try {
+            for (String setting : settingsArray) {
+                if (setting.startsWith("gapTolerance")) {
+                    gapTolerance = Integer.parseInt(setting.split("=")[1].trim());
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to parse gapTolerance from settings. Using default gap tolerance of "
+                    + DEFAULT_GAP_TOLERANCE + ".");
+        }
+
+        return gapTolerance;
+    }
+
+    private int getPipelineDepthFromSettings(String[] settingsArray) {
+
+        int pipelineDepth = DEFAULT_PIPELINE_DEPTH;
+
+        try {
+            for (String setting : settingsArray) {
+                if (setting.startsWith("pipeline")) {
+                    pipelineDepth = Integer.parseInt(setting.split("=")[1].trim());
+                }
+            }
+            if (pipelineDepth < 1) {
+                throw new IllegalArgumentException("Invalid pipeline depth is smaller than 1.");
+            }
+        } catch (Exception e) {
+            logger.warn("Unable to parse pipeline from settings. Using default pipeline depth of "
+                    + DEFAULT_PIPELINE_DEPTH + ".");
+            pipelineDepth = DEFAULT_PIPELINE_DEPTH;
+        }
+
+        return pipelineDepth;
+    }
+
     private int validateTimeout(String[] timeoutParam) {
 
         int timeoutMs = Integer.valueOf(timeoutParam[1]).intValue();
@@ -72,8 +72,74 @@ public class ModbusDriverUtil {
      */
 
     public static Value getRegistersValue(InputRegister[] registers, EDatatype datatype) {
-        byte[] registerAsByteArray = inputRegisterToByteArray(registers);
-        return getValueFromByteArray(registerAsByteArray, datatype);
+        return getRegistersValue(registers, 0, registers.length, datatype);
+    }
+
+    /**
+     * Converts registers of a response into the datatype of a channel. The value is decoded directly from the
+     * registers without copying them, so only the value object itself is allocated (and the byte array of byte array
+     * values).
+     * 
+     * @param registers
+     *            the registers of the response
+     * @param offset
+     *            index of the first register of the channel
+     * @param count
+     *            number of registers of the channel
+     * @param datatype
+     *            datatype of the channel
+     * @return the corresponding Value Object
+     */
+    public static Value getRegistersValue(InputRegister[] registers, int offset, int count, EDatatype datatype) {
+
+        switch (datatype) {
+        case SHORT:
+        case INT16:
+            return new ShortValue((short) registers[offset].getValue());
+        case INT32:
+            return new IntValue(registersToInt(registers, offset));
+        case UINT16:
+            return new IntValue(registers[offset].getValue());
+        case UINT32:
+            return new LongValue(registersToInt(registers, offset) & 0xFFFFFFFFL);
+        case FLOAT:
+            return new FloatValue(Float.intBitsToFloat(registersToInt(registers, offset)));
+        case DOUBLE:
+            return new DoubleValue(Double.longBitsToDouble(registersToLong(registers, offset)));
+        case LONG:
+            return new LongValue(registersToLong(registers, offset));
+        case BYTEARRAY:
+            byte[] bytes = new byte[count * 2];
+            for (int i = 0; i < count; i++) {
+                int register = registers[offset + i].getValue();
+                bytes[i * 2] = (byte) (register >> 8);
+                bytes[i * 2 + 1] = (byte) register;
+            }
+            return new ByteArrayValue(bytes);
+        case BYTEARRAYLONG:
+            if (count < 1 || count > 4) {
+                throw new IllegalArgumentException("Unable to convert bytes due to wrong number of bytes. "
+                        + "Minimum 1 byte, maximum 8 bytes needed for conversion.");
+            }
+            // the bytes of the registers in little endian order
+            long value = 0;
+            for (int i = 0; i < count; i++) {
+                int register = registers[offset + i].getValue();
+                value |= (long) (register >> 8) << (i * 16);
+                value |= (long) (register & 0xFF) << (i * 16 + 8);
+            }
+            return new LongValue(value);
+        default:
+            throw new RuntimeException("Datatype " + datatype.toString() + " not supported yet");
+        }
+    }
+
+    private static int registersToInt(InputRegister[] registers, int offset) {
+        return registers[offset].getValue() << 16 | registers[offset + 1].getValue();
+    }
+
+    private static long registersToLong(InputRegister[] registers, int offset) {
+        return (long) registersToInt(registers, offset) << 32 | registersToInt(registers, offset + 2) & 0xFFFFFFFFL;
     }
 
     public static Value getValueFromByteArray(byte[] registerAsByteArray, EDatatype datatype) {
@@ -188,23 +254,6 @@ public class ModbusDriverUtil {
         return registers;
     }
 
-    /**
-     * Converts an array of input registers into a byte array
-     * 
-     * @param inputRegister
-     *            inputRegister array
-     * @return the InputRegister[] as byte[]
-     */
-    private static byte[] inputRegisterToByteArray(InputRegister[] inputRegister) {
-        byte[] registerAsBytes = new byte[inputRegister.length * 2]; // one register = 2 bytes
-        byte inputRegisterByteLength = 2;
-        for (int i = 0; i < inputRegister.length; i++) {
-            System.arraycopy(inputRegister[i].toBytes(), 0, registerAsBytes, i * inputRegisterByteLength,
-                    inputRegisterByteLength);
-        }
-        return registerAsBytes;
-    }
-
     // TODO check byte order e.g. is an Integer!
     // TODO only works for even byteArray.length!
     private static Register[] byteArrayToRegister(byte[] byteArray) throws RuntimeException {
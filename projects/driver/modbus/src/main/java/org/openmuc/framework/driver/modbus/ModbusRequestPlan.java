@@ -0,0 +1,156 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.driver.modbus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plan of the read requests needed to read a list of channels of one device. Channels with the same unit ID and
+ * function code are merged into one request if their addresses are contiguous or the gap between them is at most
+ * <code>gapTolerance</code> registers (or coils). A request never exceeds the protocol limit of 125 registers or
+ * 2000 coils. A negative gap tolerance disables merging, every channel is read with its own request.
+ * <p>
+ * The plan is created once per channel list and reused by {@link ModbusConnection#readPlanned(List, Object)}.
+ */
+public class ModbusRequestPlan {
+
+    /** Maximum number of registers of a single read request (FC 3 and FC 4) */
+    public static final int MAX_REGISTERS_PER_REQUEST = 125;
+
+    /** Maximum number of coils or discrete inputs of a single read request (FC 1 and FC 2) */
+    public static final int MAX_BITS_PER_REQUEST = 2000;
+
+    private final List<ModbusChannelGroup> groups;
+
+    private ModbusRequestPlan(List<ModbusChannelGroup> groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * Creates the plan for the given channels.
+     *
+     * @param channels
+     *            channels to read, all with read access. A channel address listed more than once is read once.
+     * @param gapTolerance
+     *            maximum number of unused registers or coils read between two channels of one request
+     * @return the plan
+     */
+    public static ModbusRequestPlan create(List<ModbusChannel> channels, int gapTolerance) {
+        Map<String, List<ModbusChannel>> buckets = new LinkedHashMap<>();
+        Set<String> channelAddresses = new HashSet<>();
+        for (ModbusChannel channel : channels) {
+            if (!channelAddresses.add(channel.getChannelAddress())) {
+                // containers with the same address are all set from one read of the channel
+                continue;
+            }
+            String key = channel.getUnitId() + ":" + channel.getFunctionCode();
+            buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(channel);
+        }
+
+        List<ModbusChannelGroup> groups = new ArrayList<>();
+        for (List<ModbusChannel> bucket : buckets.values()) {
+            bucket.sort(Comparator.comparingInt(ModbusChannel::getStartAddress));
+            int limit = isBitAccess(bucket.get(0).getFunctionCode()) ? MAX_BITS_PER_REQUEST
+                    : MAX_REGISTERS_PER_REQUEST;
+
+            ArrayList<ModbusChannel> current = new ArrayList<>();
+            int start = 0;
+            int end = 0;
+            for (ModbusChannel channel : bucket) {
+                int channelEnd = channel.getStartAddress() + channel.getCount();
+                if (!current.isEmpty() && gapTolerance >= 0 && channel.getStartAddress() - end <= gapTolerance
+                        && Math.max(end, channelEnd) - start <= limit) {
+                    current.add(channel);
+                    end = Math.max(end, channelEnd);
+                    continue;
+                }
+                if (!current.isEmpty()) {
+                    groups.add(new ModbusChannelGroup("", current));
+                }
+                current = new ArrayList<>();
+                current.add(channel);
+                start = channel.getStartAddress();
+                end = channelEnd;
+            }
+            groups.add(new ModbusChannelGroup("", current));
+        }
+        return new ModbusRequestPlan(groups);
+    }
+
+    private static boolean isBitAccess(EFunctionCode functionCode) {
+        return functionCode == EFunctionCode.FC_01_READ_COILS
+                || functionCode == EFunctionCode.FC_02_READ_DISCRETE_INPUTS;
+    }
+
+    /**
+     * Replaces a group by one request per channel, e.g. because the device refused to read the registers between the
+     * channels.
+     *
+     * @param group
+     *            group of this plan
+     * @return the new groups replacing the given one
+     */
+    public synchronized List<ModbusChannelGroup> split(ModbusChannelGroup group) {
+        List<ModbusChannelGroup> singleGroups = new ArrayList<>();
+        for (ModbusChannel channel : group.getChannels()) {
+            ArrayList<ModbusChannel> single = new ArrayList<>(1);
+            single.add(channel);
+            singleGroups.add(new ModbusChannelGroup("", single));
+        }
+        int index = groups.indexOf(group);
+        if (index >= 0) {
+            groups.remove(index);
+            groups.addAll(index, singleGroups);
+        }
+        return singleGroups;
+    }
+
+    /**
+     * @return a snapshot of the requests of this plan
+     */
+    public synchronized List<ModbusChannelGroup> getGroups() {
+        return Collections.unmodifiableList(new ArrayList<>(groups));
+    }
+
+    public synchronized int getRequestCount() {
+        return groups.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(groups.size()).append(" requests:");
+        for (ModbusChannelGroup group : groups) {
+            sb.append(' ').append(group.getFunctionCode()).append('@').append(group.getStartAddress()).append('+')
+                    .append(group.getCount());
+        }
+        return sb.toString();
+    }
+
+}
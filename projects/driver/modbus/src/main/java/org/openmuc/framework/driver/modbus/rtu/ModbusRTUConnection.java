@@ -20,15 +20,16 @@
  */
 package org.openmuc.framework.driver.modbus.rtu;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.openmuc.framework.config.ArgumentSyntaxException;
 import org.openmuc.framework.config.ChannelScanInfo;
 import org.openmuc.framework.config.ScanException;
 import org.openmuc.framework.data.Flag;
 import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.Value;
-import org.openmuc.framework.driver.modbus.EDatatype;
 import org.openmuc.framework.driver.modbus.ModbusChannel;
 import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
 import org.openmuc.framework.driver.modbus.ModbusConnection;
@@ -36,6 +37,7 @@ import org.openmuc.framework.driver.spi.ChannelRecordContainer;
 import org.openmuc.framework.driver.spi.ChannelValueContainer;
 import org.openmuc.framework.driver.spi.ConnectionException;
 import org.openmuc.framework.driver.spi.RecordsReceivedListener;
+import org.openmuc.framework.driver.spi.SerialBusScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,16 +73,32 @@ public class ModbusRTUConnection extends ModbusConnection {
     private static final String ECHO_TRUE = "ECHO_TRUE";
     private static final String ECHO_FALSE = "ECHO_FALSE";
 
-    private final SerialConnection connection;
+    // character times of silence between two frames, see Modbus over serial line specification 2.5.1.1
+    private static final double INTER_FRAME_CHARACTERS = 3.5;
+    private static final int BITS_PER_CHARACTER = 11;
+    private static final long MIN_INTER_FRAME_GAP_MICROS = 1750;
+
+    // devices on the same serial port share one port handle
+    private static final Map<String, SharedPort> sharedPorts = new HashMap<>();
+
+    private final String portName;
+    private final SerialParameters params;
+    private final SerialBusScheduler scheduler;
+    private final int timeoutMs;
+    private SerialConnection connection;
     private ModbusSerialTransaction transaction;
+    private boolean attached = false;
 
     public ModbusRTUConnection(String deviceAddress, String[] settings, int timoutMs)
             throws ModbusConfigurationException {
 
         super();
 
-        SerialParameters params = setParameters(deviceAddress, settings);
-        connection = new SerialConnection(params);
+        this.portName = deviceAddress;
+        this.timeoutMs = timoutMs;
+        params = setParameters(deviceAddress, settings);
+        scheduler = SerialBusScheduler.forPort(deviceAddress);
+        scheduler.requireInterFrameGap(interFrameGapMicros(params.getBaudRate()), TimeUnit.MICROSECONDS);
 
         try {
             connect();
@@ -91,29 +109,89 @@ public class ModbusRTUConnection extends ModbusConnection {
 
         } catch (Exception e) {
             logger.error("Unable to connect to device " + deviceAddress, e);
+            disconnect();
             throw new ModbusConfigurationException("Wrong Modbus RTU configuration. Check configuration file");
         }
         logger.info("Modbus Device: " + deviceAddress + " connected");
     }
 
+    private static long interFrameGapMicros(int baudrate) {
+        if (baudrate <= 0) {
+            return MIN_INTER_FRAME_GAP_MICROS;
+        }
+        long gapMicros = (long) (INTER_FRAME_CHARACTERS * BITS_PER_CHARACTER * TimeUnit.SECONDS.toMicros(1) / baudrate);
+        // fixed value for baud rates above 19200
+        return Math.max(gapMicros, MIN_INTER_FRAME_GAP_MICROS);
+    }
+
     @Override
     public void connect() throws ConnectionException {
-        if (!connection.isOpen()) {
-            try {
-                connection.open();
-            } catch (Exception e) {
-                throw new ConnectionException(e);
+        synchronized (sharedPorts) {
+            if (!attached) {
+                SharedPort sharedPort = sharedPorts.get(portName);
+                if (sharedPort == null) {
+                    sharedPort = new SharedPort(new SerialConnection(params), params);
+                    sharedPorts.put(portName, sharedPort);
+                }
+                else if (!haveSameSettings(sharedPort.params, params)) {
+                    throw new ConnectionException("Serial port " + portName + " is already open with the settings "
+                            + describe(sharedPort.params) + ", not " + describe(params));
+                }
+                else {
+                    logger.debug("Sharing serial port {} with {} other device(s)", portName, sharedPort.users);
+                }
+                connection = sharedPort.connection;
+                sharedPort.users++;
+                attached = true;
+            }
+            if (!connection.isOpen()) {
+                try {
+                    connection.open();
+                } catch (Exception e) {
+                    throw new ConnectionException(e);
+                }
             }
         }
     }
 
     @Override
     public void disconnect() {
-        if (connection.isOpen()) {
-            connection.close();
+        synchronized (sharedPorts) {
+            if (!attached) {
+                return;
+            }
+            attached = false;
+            SharedPort sharedPort = sharedPorts.get(portName);
+            if (sharedPort != null && sharedPort.connection == connection) {
+                if (--sharedPort.users > 0) {
+                    return;
+                }
+                sharedPorts.remove(portName);
+            }
+            if (connection.isOpen()) {
+                connection.close();
+            }
         }
     }
 
+    /*
+     * All devices on a port share its handle, so they can only differ in their slave address.
+     */
+    private static boolean haveSameSettings(SerialParameters shared, SerialParameters own) {
+        return shared.getEncoding().equals(own.getEncoding()) && shared.getBaudRate() == own.getBaudRate()
+                && shared.getDatabits() == own.getDatabits() && shared.getParity() == own.getParity()
+                && shared.getStopbits() == own.getStopbits() && shared.isEcho() == own.isEcho()
+                && shared.getFlowControlIn() == own.getFlowControlIn()
+                && shared.getFlowControlOut() == own.getFlowControlOut();
+    }
+
+    private static String describe(SerialParameters params) {
+        return String.format("[%s, %s baud, %s data bits, parity %s, %s stop bits, echo %b, flow control %s/%s]",
+                params.getEncoding(), params.getBaudRateString(), params.getDatabitsString(),
+                params.getParityString(), params.getStopbitsString(), params.isEcho(),
+                params.getFlowControlInString(), params.getFlowControlOutString());
+    }
+
     private SerialParameters setParameters(String address, String[] settings) throws ModbusConfigurationException {
 
         SerialParameters params = new SerialParameters();
@@ -255,37 +333,38 @@ public class ModbusRTUConnection extends ModbusConnection {
     public Object read(List<ChannelRecordContainer> containers, Object containerListHandle, String samplingGroup)
             throws UnsupportedOperationException, ConnectionException {
 
-        if (samplingGroup.isEmpty()) {
+        // devices on the same bus are read one after the other, ordered by the deadlines of their sampling tasks
+        if (!acquireBus(SerialBusScheduler.deadlineOf(containers))) {
             for (ChannelRecordContainer container : containers) {
+                container.setRecord(new Record(Flag.DRIVER_ERROR_TIMEOUT));
+            }
+            return null;
+        }
+        try {
+            return readFromBus(containers, containerListHandle, samplingGroup);
+        } finally {
+            scheduler.release();
+        }
+    }
 
-                long receiveTime = System.currentTimeMillis();
-                ModbusChannel channel = getModbusChannel(container.getChannelAddress(), EAccess.READ);
-                Value value;
-
-                try {
-                    value = readChannel(channel);
-
-                    if (logger.isTraceEnabled()) {
-                        printResponseValue(channel, value);
-                    }
-
-                    container.setRecord(new Record(value, receiveTime));
-
-                } catch (ModbusIOException e) {
-                    logger.error("ModbusIOException while reading channel:" + channel.getChannelAddress(), e);
-                    disconnect();
-                    throw new ConnectionException("ModbusIOException");
+    private boolean acquireBus(long deadline) {
+        try {
+            if (scheduler.acquire(deadline)) {
+                return true;
+            }
+            logger.debug("Deadline passed while waiting for the bus. {}", scheduler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
 
-                } catch (ModbusException e) {
-                    logger.error("ModbusException while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE));
+    private Object readFromBus(List<ChannelRecordContainer> containers, Object containerListHandle,
+            String samplingGroup) throws ConnectionException {
 
-                } catch (Exception e) {
-                    // catch all possible exceptions and provide info about the channel
-                    logger.error("Exception while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.UNKNOWN_ERROR));
-                }
-            }
+        // reads channels with as few requests as possible
+        if (samplingGroup.isEmpty()) {
+            return readPlanned(containers, containerListHandle);
         }
         // reads whole samplingGroup at once
         else {
@@ -295,22 +374,25 @@ public class ModbusRTUConnection extends ModbusConnection {
         return null;
     }
 
-    private void printResponseValue(ModbusChannel channel, Value value) {
-        if (channel.getDatatype().equals(EDatatype.BYTEARRAY)) {
-            final StringBuilder sb = new StringBuilder();
-            for (byte b : value.asByteArray()) {
-                sb.append(String.format("%02x ", b));
+    @Override
+    public Object write(List<ChannelValueContainer> containers, Object containerListHandle)
+            throws UnsupportedOperationException, ConnectionException {
+
+        if (!acquireBus(System.currentTimeMillis() + timeoutMs)) {
+            for (ChannelValueContainer container : containers) {
+                container.setFlag(Flag.DRIVER_ERROR_TIMEOUT);
             }
-            logger.trace("Value of response: " + sb.toString());
+            return null;
         }
-        else {
-            logger.trace("Value of response: " + value.toString());
+        try {
+            writeToBus(containers);
+        } finally {
+            scheduler.release();
         }
+        return null;
     }
 
-    @Override
-    public Object write(List<ChannelValueContainer> containers, Object containerListHandle)
-            throws UnsupportedOperationException, ConnectionException {
+    private void writeToBus(List<ChannelValueContainer> containers) throws ConnectionException {
 
         for (ChannelValueContainer container : containers) {
 
@@ -335,9 +417,18 @@ public class ModbusRTUConnection extends ModbusConnection {
             }
 
         }
+    }
 
-        return null;
+    private static class SharedPort {
+
+        private final SerialConnection connection;
+        private final SerialParameters params;
+        private int users = 0;
 
+        private SharedPort(SerialConnection connection, SerialParameters params) {
+            this.connection = connection;
+            this.params = params;
+        }
     }
 
     @Override
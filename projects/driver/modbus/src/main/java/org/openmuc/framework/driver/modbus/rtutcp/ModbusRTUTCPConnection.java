@@ -28,8 +28,6 @@ import org.openmuc.framework.config.ArgumentSyntaxException;
 import org.openmuc.framework.config.ChannelScanInfo;
 import org.openmuc.framework.config.ScanException;
 import org.openmuc.framework.data.Flag;
-import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.Value;
 import org.openmuc.framework.driver.modbus.ModbusChannel;
 import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
 import org.openmuc.framework.driver.modbus.ModbusConnection;
@@ -102,40 +100,13 @@ public class ModbusRTUTCPConnection extends ModbusConnection {
     public Object read(List<ChannelRecordContainer> containers, Object containerListHandle, String samplingGroup)
             throws UnsupportedOperationException, ConnectionException {
 
-        // reads channels one by one
+        // reads channels with as few requests as possible
         if (samplingGroup.isEmpty()) {
-            for (ChannelRecordContainer container : containers) {
-                long receiveTime = System.currentTimeMillis();
-                ModbusChannel channel = getModbusChannel(container.getChannelAddress(), EAccess.READ);
-                Value value;
-
-                try {
-                    value = readChannel(channel);
-
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("Value of response: " + value.toString());
-                    }
-
-                    container.setRecord(new Record(value, receiveTime));
-
-                } catch (ModbusIOException e) {
-                    logger.error("ModbusIOException while reading channel:" + channel.getChannelAddress(), e);
-                    disconnect();
-                    throw new ConnectionException("Try to solve issue with reconnect.");
-
-                } catch (ModbusException e) {
-                    logger.error("ModbusException while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE));
-
-                } catch (Exception e) {
-                    // catch all possible exceptions and provide info about the channel
-                    logger.error("Exception while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.UNKNOWN_ERROR));
-                }
-                if (!connection.isConnected()) {
-                    throw new ConnectionException("Lost connection.");
-                }
+            Object plan = readPlanned(containers, containerListHandle);
+            if (!connection.isConnected()) {
+                throw new ConnectionException("Lost connection.");
             }
+            return plan;
         }
         // reads whole samplingGroup at once
         else {
@@ -21,14 +21,13 @@
 package org.openmuc.framework.driver.modbus.tcp;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.List;
 
 import org.openmuc.framework.config.ArgumentSyntaxException;
 import org.openmuc.framework.config.ChannelScanInfo;
 import org.openmuc.framework.config.ScanException;
 import org.openmuc.framework.data.Flag;
-import org.openmuc.framework.data.Record;
-import org.openmuc.framework.data.Value;
 import org.openmuc.framework.driver.modbus.ModbusChannel;
 import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
 import org.openmuc.framework.driver.modbus.ModbusConnection;
@@ -53,12 +52,30 @@ public class ModbusTCPConnection extends ModbusConnection {
 
     private TCPMasterConnection connection;
     private ModbusTCPTransaction transaction;
+    private ModbusTCPPipeline pipeline;
     private final int timeoutMs;
+    private final int maxOutstanding;
 
     public ModbusTCPConnection(String deviceAddress, int timeoutMs) throws ConnectionException {
+        this(deviceAddress, timeoutMs, 1);
+    }
+
+    /**
+     * @param deviceAddress
+     *            ip and port of the device
+     * @param timeoutMs
+     *            timeout of a single request in milliseconds
+     * @param maxOutstanding
+     *            maximum number of requests sent without waiting for their responses. With more than one request the
+     *            requests are sent through a {@link ModbusTCPPipeline}.
+     * @throws ConnectionException
+     *             if the connection could not be established
+     */
+    public ModbusTCPConnection(String deviceAddress, int timeoutMs, int maxOutstanding) throws ConnectionException {
 
         super();
         this.timeoutMs = timeoutMs;
+        this.maxOutstanding = maxOutstanding;
 
         ModbusTCPDeviceAddress address = new ModbusTCPDeviceAddress(deviceAddress);
         try {
@@ -75,7 +92,10 @@ public class ModbusTCPConnection extends ModbusConnection {
     @Override
     public void connect() throws ConnectionException {
 
-        if (connection != null && !connection.isConnected()) {
+        if (maxOutstanding > 1) {
+            connectPipeline();
+        }
+        else if (connection != null && !connection.isConnected()) {
             try {
                 connection.connect();
             } catch (Exception e) {
@@ -90,10 +110,32 @@ public class ModbusTCPConnection extends ModbusConnection {
         }
     }
 
+    private void connectPipeline() throws ConnectionException {
+        if (pipeline == null || !pipeline.isConnected()) {
+            try {
+                pipeline = new ModbusTCPPipeline(new InetSocketAddress(connection.getAddress(), connection.getPort()),
+                        timeoutMs, maxOutstanding);
+            } catch (Exception e) {
+                throw new ConnectionException(e);
+            }
+            setPipeline(pipeline);
+        }
+    }
+
+    private boolean isConnected() {
+        if (maxOutstanding > 1) {
+            return pipeline != null && pipeline.isConnected();
+        }
+        return connection.isConnected();
+    }
+
     @Override
     public void disconnect() {
         try {
             logger.info("Disconnect Modbus TCP device");
+            if (pipeline != null) {
+                pipeline.close();
+            }
             if (connection != null && connection.isConnected()) {
                 connection.close();
                 transaction = null;
@@ -108,51 +150,18 @@ public class ModbusTCPConnection extends ModbusConnection {
     public Object read(List<ChannelRecordContainer> containers, Object containerListHandle, String samplingGroup)
             throws UnsupportedOperationException, ConnectionException {
 
-        // reads channels one by one
+        // reads channels with as few requests as possible
         if (samplingGroup.isEmpty()) {
-            for (ChannelRecordContainer container : containers) {
-
-                // TODO consider retries in sampling timeout (e.g. one time 12000 ms or three times 4000 ms)
-                // FIXME quite inconvenient/complex to get the timeout from config, since the driver doesn't know the
-                // device id!
-
-                long receiveTime = System.currentTimeMillis();
-                ModbusChannel channel = getModbusChannel(container.getChannelAddress(), EAccess.READ);
-                Value value;
-
-                try {
-                    value = readChannel(channel);
-
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("Value of response: {}", value.toString());
-                    }
-
-                    container.setRecord(new Record(value, receiveTime));
-
-                } catch (ModbusIOException e) {
-                    logger.error("ModbusIOException while reading channel:" + channel.getChannelAddress()
-                            + " used timeout: " + timeoutMs + " ms", e);
-                    disconnect();
-                    throw new ConnectionException("Try to solve issue with reconnect.");
-
-                } catch (ModbusException e) {
-                    logger.error("ModbusException while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE));
-                } catch (Exception e) {
-                    // catch all possible exceptions and provide info about the channel
-                    logger.error("Exception while reading channel: " + channel.getChannelAddress(), e);
-                    container.setRecord(new Record(Flag.UNKNOWN_ERROR));
-                }
-                if (!connection.isConnected()) {
-                    throw new ConnectionException("Lost connection.");
-                }
-
+            Object plan = readPlanned(containers, containerListHandle);
+            if (!isConnected()) {
+                throw new ConnectionException("Lost connection.");
             }
+            return plan;
         }
         // reads whole samplingGroup at once
         else {
             readChannelGroupHighLevel(containers, containerListHandle, samplingGroup);
-            if (!connection.isConnected()) {
+            if (!isConnected()) {
                 throw new ConnectionException("Lost connection.");
             }
         }
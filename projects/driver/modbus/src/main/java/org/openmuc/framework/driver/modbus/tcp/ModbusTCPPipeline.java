@@ -0,0 +1,317 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.modbus.tcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ghgande.j2mod.modbus.ModbusException;
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.msg.ExceptionResponse;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+
+/**
+ * Modbus TCP transport which keeps up to a configured number of requests in flight on a single connection. Every
+ * request gets its own transaction ID in the MBAP header and the responses are matched by this ID, so the device may
+ * answer the requests in any order.
+ * <p>
+ * Each request has its own timeout measured from the moment it was sent. A response that arrives after its request
+ * timed out is dropped. An I/O error closes the pipeline and fails all outstanding requests.
+ */
+public class ModbusTCPPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModbusTCPPipeline.class);
+
+    private static final int MBAP_HEADER_LENGTH = 6;
+    private static final int MODBUS_PROTOCOL_ID = 0;
+    private static final int MAX_FRAME_LENGTH = 256;
+
+    private final String name;
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final int timeoutMs;
+    private final Semaphore window;
+    private final Map<Integer, PendingResponse> pending = new ConcurrentHashMap<>();
+
+    private int nextTransactionId = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * Connects to the device and starts the thread receiving the responses.
+     *
+     * @param address
+     *            address of the device
+     * @param timeoutMs
+     *            timeout of a single request and of the connection attempt in milliseconds
+     * @param maxOutstanding
+     *            maximum number of requests sent without having received their response
+     * @throws IOException
+     *             if the connection could not be established
+     */
+    public ModbusTCPPipeline(InetSocketAddress address, int timeoutMs, int maxOutstanding) throws IOException {
+        if (maxOutstanding < 1) {
+            throw new IllegalArgumentException("maxOutstanding must be at least 1");
+        }
+        this.name = "Modbus TCP pipeline " + address;
+        this.timeoutMs = timeoutMs;
+        this.window = new Semaphore(maxOutstanding);
+
+        socket = new Socket();
+        try {
+            socket.connect(address, timeoutMs);
+            socket.setTcpNoDelay(true);
+            out = new DataOutputStream(socket.getOutputStream());
+            in = new DataInputStream(socket.getInputStream());
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+
+        Thread receiver = new Thread(this::receive, name);
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * Sends the request without waiting for its response. Blocks while the maximum number of requests is outstanding.
+     *
+     * @param request
+     *            the request to send. Its transaction ID is overwritten.
+     * @return the handle to wait for the response
+     * @throws ModbusIOException
+     *             if the pipeline is closed, the request could not be sent or no request slot became free in time
+     */
+    public PendingResponse send(ModbusRequest request) throws ModbusIOException {
+        try {
+            if (!window.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new ModbusIOException("Timeout while waiting for a free request slot");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModbusIOException("Interrupted while waiting for a free request slot");
+        }
+
+        PendingResponse response;
+        synchronized (out) {
+            if (closed) {
+                window.release();
+                throw new ModbusIOException("Pipeline is closed");
+            }
+            int transactionId = nextTransactionId();
+            response = new PendingResponse(transactionId);
+            pending.put(transactionId, response);
+            request.setTransactionID(transactionId);
+            try {
+                writeFrame(transactionId, request);
+            } catch (IOException e) {
+                logger.debug("{}: unable to send request {}", name, transactionId, e);
+                close();
+                throw new ModbusIOException("Unable to send request: " + e.getMessage());
+            }
+        }
+        return response;
+    }
+
+    private int nextTransactionId() {
+        // skips IDs of responses still outstanding after the 16 bit counter wrapped around
+        do {
+            nextTransactionId = (nextTransactionId + 1) & 0xFFFF;
+        } while (pending.containsKey(nextTransactionId));
+        return nextTransactionId;
+    }
+
+    private void writeFrame(int transactionId, ModbusRequest request) throws IOException {
+        ByteArrayOutputStream pdu = new ByteArrayOutputStream(MAX_FRAME_LENGTH);
+        request.setHeadless();
+        request.writeTo(new DataOutputStream(pdu));
+
+        // many devices expect the whole frame within one TCP segment
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(MBAP_HEADER_LENGTH + pdu.size());
+        DataOutputStream frameOut = new DataOutputStream(frame);
+        frameOut.writeShort(transactionId);
+        frameOut.writeShort(MODBUS_PROTOCOL_ID);
+        frameOut.writeShort(pdu.size());
+        pdu.writeTo(frameOut);
+        frame.writeTo(out);
+        out.flush();
+    }
+
+    private void receive() {
+        byte[] frame = new byte[MAX_FRAME_LENGTH];
+        try {
+            while (!closed) {
+                int transactionId = in.readUnsignedShort();
+                in.readUnsignedShort();
+                int length = in.readUnsignedShort();
+                if (length < 2 || length > MAX_FRAME_LENGTH) {
+                    throw new IOException("Invalid MBAP length " + length);
+                }
+                in.readFully(frame, 0, length);
+
+                PendingResponse response = pending.get(transactionId);
+                if (response == null) {
+                    logger.debug("{}: dropping response with unknown or timed out transaction ID {}", name,
+                            transactionId);
+                    continue;
+                }
+                response.complete(decode(transactionId, frame, length));
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                logger.debug("{}: connection lost", name, e);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private static ModbusResponse decode(int transactionId, byte[] frame, int length) throws IOException {
+        int unitId = frame[0] & 0xFF;
+        int functionCode = frame[1] & 0xFF;
+        ModbusResponse response = ModbusResponse.createModbusResponse(functionCode);
+        response.setHeadless();
+        response.readData(new DataInputStream(new ByteArrayInputStream(frame, 2, length - 2)));
+        response.setHeadless(false);
+        response.setTransactionID(transactionId);
+        response.setUnitID(unitId);
+        return response;
+    }
+
+    /**
+     * Closes the connection. Outstanding requests fail with a {@link ModbusIOException}.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("{}: unable to close socket", name, e);
+        }
+        for (PendingResponse response : pending.values()) {
+            response.fail(new ModbusIOException("Connection closed"));
+        }
+    }
+
+    public boolean isConnected() {
+        return !closed;
+    }
+
+    public int getOutstandingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Handle of a request which has been sent.
+     */
+    public final class PendingResponse {
+
+        private final int transactionId;
+        private final long deadline;
+        private final CompletableFuture<ModbusResponse> future = new CompletableFuture<>();
+
+        private PendingResponse(int transactionId) {
+            this.transactionId = transactionId;
+            this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        }
+
+        private void complete(ModbusResponse response) {
+            if (remove()) {
+                future.complete(response);
+            }
+        }
+
+        private void fail(ModbusException e) {
+            if (remove()) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * Removes the request from the outstanding requests. Only the first caller succeeds, so the request slot is
+         * released exactly once.
+         */
+        private boolean remove() {
+            if (pending.remove(transactionId, this)) {
+                window.release();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Waits for the response until the timeout of the request has elapsed.
+         *
+         * @return the response
+         * @throws ModbusSlaveException
+         *             if the device answered with an exception response
+         * @throws ModbusIOException
+         *             if the request timed out or the connection was lost
+         */
+        public ModbusResponse get() throws ModbusException {
+            ModbusResponse response;
+            try {
+                response = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                fail(new ModbusIOException("Timeout"));
+                if (!future.isDone() || future.isCompletedExceptionally()) {
+                    throw new ModbusIOException(
+                            "No response for transaction " + transactionId + " within " + timeoutMs + " ms");
+                }
+                response = future.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ModbusIOException("Interrupted while waiting for transaction " + transactionId);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ModbusException) {
+                    throw (ModbusException) e.getCause();
+                }
+                throw new ModbusIOException(String.valueOf(e.getCause()));
+            }
+
+            if (response instanceof ExceptionResponse) {
+                throw new ModbusSlaveException(((ExceptionResponse) response).getExceptionCode());
+            }
+            return response;
+        }
+    }
+
+}
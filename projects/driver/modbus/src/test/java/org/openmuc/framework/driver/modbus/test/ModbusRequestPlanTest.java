@@ -0,0 +1,329 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.modbus.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.driver.modbus.ModbusChannel;
+import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
+import org.openmuc.framework.driver.modbus.ModbusChannelGroup;
+import org.openmuc.framework.driver.modbus.ModbusRequestPlan;
+import org.openmuc.framework.driver.modbus.tcp.ModbusTCPConnection;
+import org.openmuc.framework.driver.spi.ChannelRecordContainer;
+
+import com.ghgande.j2mod.modbus.ModbusCoupler;
+import com.ghgande.j2mod.modbus.net.ModbusTCPListener;
+import com.ghgande.j2mod.modbus.procimg.DigitalOut;
+import com.ghgande.j2mod.modbus.procimg.IllegalAddressException;
+import com.ghgande.j2mod.modbus.procimg.Register;
+import com.ghgande.j2mod.modbus.procimg.SimpleDigitalOut;
+import com.ghgande.j2mod.modbus.procimg.SimpleProcessImage;
+import com.ghgande.j2mod.modbus.procimg.SimpleRegister;
+
+public class ModbusRequestPlanTest {
+
+    private ModbusTCPListener listener;
+    private ModbusTCPConnection connection;
+
+    @AfterEach
+    public void tearDown() {
+        if (connection != null) {
+            connection.disconnect();
+        }
+        if (listener != null) {
+            listener.stop();
+        }
+    }
+
+    private static List<ModbusChannel> channels(String... addresses) {
+        List<ModbusChannel> channels = new ArrayList<>();
+        for (String address : addresses) {
+            channels.add(new ModbusChannel(address, EAccess.READ));
+        }
+        return channels;
+    }
+
+    @Test
+    public void mergesContiguousChannels() {
+        List<ModbusChannel> channels = channels("1:HOLDING_REGISTERS:3:INT16", "1:HOLDING_REGISTERS:0:INT16",
+                "1:HOLDING_REGISTERS:1:FLOAT", "1:HOLDING_REGISTERS:10:INT16");
+
+        ModbusRequestPlan plan = ModbusRequestPlan.create(channels, 0);
+        assertEquals(2, plan.getRequestCount());
+        assertEquals(0, plan.getGroups().get(0).getStartAddress());
+        assertEquals(4, plan.getGroups().get(0).getCount());
+        assertEquals(10, plan.getGroups().get(1).getStartAddress());
+
+        plan = ModbusRequestPlan.create(channels, 6);
+        assertEquals(1, plan.getRequestCount());
+        assertEquals(11, plan.getGroups().get(0).getCount());
+
+        plan = ModbusRequestPlan.create(channels, -1);
+        assertEquals(4, plan.getRequestCount());
+    }
+
+    @Test
+    public void separatesUnitIdsAndFunctionCodes() {
+        List<ModbusChannel> channels = channels("1:HOLDING_REGISTERS:0:INT16", "2:HOLDING_REGISTERS:1:INT16",
+                "1:INPUT_REGISTERS:1:INT16", "1:COILS:0:BOOLEAN", "1:DISCRETE_INPUTS:1:BOOLEAN");
+
+        assertEquals(5, ModbusRequestPlan.create(channels, 10).getRequestCount());
+    }
+
+    @Test
+    public void readsChannelAddressesOnce() {
+        List<ModbusChannel> channels = channels("1:HOLDING_REGISTERS:0:INT16", "1:HOLDING_REGISTERS:0:INT16",
+                "1:HOLDING_REGISTERS:1:INT16");
+
+        List<ModbusChannelGroup> groups = ModbusRequestPlan.create(channels, -1).getGroups();
+        assertEquals(2, groups.size());
+        assertEquals(1, groups.get(0).getChannels().size());
+    }
+
+    @Test
+    public void setsAllContainersOfTheSameAddress() throws Exception {
+        CountingProcessImage processImage = new CountingProcessImage();
+        for (int i = 0; i < 3; i++) {
+            processImage.addRegister(new SimpleRegister(i + 1));
+        }
+        int port = startSlave(processImage);
+
+        // e.g. channels with different scaling factors
+        List<ChannelRecordContainer> containers = new ArrayList<>();
+        containers.add(new Container("1:HOLDING_REGISTERS:0:INT16"));
+        containers.add(new Container("1:HOLDING_REGISTERS:2:INT16"));
+        containers.add(new Container("1:HOLDING_REGISTERS:0:INT16"));
+
+        connection = new ModbusTCPConnection("127.0.0.1:" + port, 3000);
+        connection.setGapTolerance(1);
+        connection.read(containers, null, "");
+        assertEquals(1, processImage.requests.get());
+        assertAndClearRecords(containers, 1, 3, 1);
+
+        connection.read(containers, null, "group");
+        assertEquals(2, processImage.requests.get());
+        assertAndClearRecords(containers, 1, 3, 1);
+    }
+
+    private static void assertAndClearRecords(List<ChannelRecordContainer> containers, int... values) {
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], containers.get(i).getRecord().getValue().asInt());
+            containers.get(i).setRecord(null);
+        }
+    }
+
+    @Test
+    public void respectsProtocolLimits() {
+        List<ModbusChannel> channels = new ArrayList<>();
+        for (int i = 0; i < 130; i++) {
+            channels.add(new ModbusChannel("1:INPUT_REGISTERS:" + i + ":INT16", EAccess.READ));
+        }
+        for (int i = 0; i < 2100; i++) {
+            channels.add(new ModbusChannel("1:COILS:" + i + ":BOOLEAN", EAccess.READ));
+        }
+
+        List<ModbusChannelGroup> groups = ModbusRequestPlan.create(channels, 0).getGroups();
+        assertEquals(4, groups.size());
+        assertEquals(ModbusRequestPlan.MAX_REGISTERS_PER_REQUEST, groups.get(0).getCount());
+        assertEquals(5, groups.get(1).getCount());
+        assertEquals(ModbusRequestPlan.MAX_BITS_PER_REQUEST, groups.get(2).getCount());
+        assertEquals(100, groups.get(3).getCount());
+    }
+
+    @Test
+    public void readsFromLocalSlaveWithFewerRoundTrips() throws Exception {
+        CountingProcessImage processImage = new CountingProcessImage();
+        for (int i = 0; i < 40; i++) {
+            processImage.addRegister(new SimpleRegister(i * 10));
+            processImage.addDigitalOut(new SimpleDigitalOut(i % 2 == 0));
+        }
+        int port = startSlave(processImage);
+
+        List<ChannelRecordContainer> containers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            containers.add(new Container("1:HOLDING_REGISTERS:" + i + ":INT16"));
+        }
+        // gap of one register
+        containers.add(new Container("1:HOLDING_REGISTERS:21:INT16"));
+        for (int i = 0; i < 10; i++) {
+            containers.add(new Container("1:COILS:" + i + ":BOOLEAN"));
+        }
+
+        connection = new ModbusTCPConnection("127.0.0.1:" + port, 3000);
+        connection.setGapTolerance(1);
+        Object handle = connection.read(containers, null, "");
+
+        assertEquals(2, processImage.requests.get());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i * 10, containers.get(i).getRecord().getValue().asInt());
+        }
+        assertEquals(210, containers.get(20).getRecord().getValue().asInt());
+        assertEquals(true, containers.get(21).getRecord().getValue().asBoolean());
+        assertEquals(false, containers.get(22).getRecord().getValue().asBoolean());
+
+        // the data manager passes no container list handle, the plan of the same containers is reused anyway
+        assertSame(handle, connection.read(containers, null, ""));
+        assertEquals(4, processImage.requests.get());
+
+        // one request per channel without merging
+        processImage.requests.set(0);
+        connection.setGapTolerance(-1);
+        connection.read(containers, null, "");
+        assertEquals(containers.size(), processImage.requests.get());
+        assertEquals(Flag.VALID, containers.get(0).getRecord().getFlag());
+    }
+
+    @Test
+    public void splitsRejectedRequestOnlyOnce() throws Exception {
+        CountingProcessImage processImage = new CountingProcessImage();
+        processImage.maxRegisters = 1;
+        for (int i = 0; i < 3; i++) {
+            processImage.addRegister(new SimpleRegister(i + 1));
+        }
+        int port = startSlave(processImage);
+
+        List<ChannelRecordContainer> containers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            containers.add(new Container("1:HOLDING_REGISTERS:" + i + ":INT16"));
+        }
+
+        connection = new ModbusTCPConnection("127.0.0.1:" + port, 3000);
+        connection.read(containers, null, "");
+
+        // the rejected merged request and one request per channel
+        assertEquals(4, processImage.requests.get());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, containers.get(i).getRecord().getValue().asInt());
+        }
+
+        processImage.requests.set(0);
+        connection.read(containers, null, "");
+        assertEquals(3, processImage.requests.get());
+        assertEquals(Flag.VALID, containers.get(2).getRecord().getFlag());
+    }
+
+    private int startSlave(SimpleProcessImage processImage) throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        ModbusCoupler.getReference().setProcessImage(processImage);
+        ModbusCoupler.getReference().setMaster(false);
+        ModbusCoupler.getReference().setUnitID(1);
+        listener = new ModbusTCPListener(1);
+        listener.setPort(port);
+        listener.listen();
+        // isListening() may be true before the server socket is bound
+        while (!accepts(port)) {
+            Thread.sleep(10);
+        }
+        return port;
+    }
+
+    private static boolean accepts(int port) {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static class CountingProcessImage extends SimpleProcessImage {
+
+        private final AtomicInteger requests = new AtomicInteger();
+        private int maxRegisters = ModbusRequestPlan.MAX_REGISTERS_PER_REQUEST;
+
+        @Override
+        public Register[] getRegisterRange(int offset, int count) {
+            requests.incrementAndGet();
+            if (count > maxRegisters) {
+                throw new IllegalAddressException();
+            }
+            return super.getRegisterRange(offset, count);
+        }
+
+        @Override
+        public DigitalOut[] getDigitalOutRange(int offset, int count) {
+            requests.incrementAndGet();
+            return super.getDigitalOutRange(offset, count);
+        }
+    }
+
+    private static class Container implements ChannelRecordContainer {
+
+        private final String channelAddress;
+        private Record record;
+
+        private Container(String channelAddress) {
+            this.channelAddress = channelAddress;
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public Channel getChannel() {
+            return null;
+        }
+
+        @Override
+        public String getChannelAddress() {
+            return channelAddress;
+        }
+
+        @Override
+        public Object getChannelHandle() {
+            return null;
+        }
+
+        @Override
+        public void setChannelHandle(Object handle) {
+        }
+
+        @Override
+        public void setRecord(Record record) {
+            this.record = record;
+        }
+
+        @Override
+        public ChannelRecordContainer copy() {
+            Container copy = new Container(channelAddress);
+            copy.record = record;
+            return copy;
+        }
+    }
+
+}
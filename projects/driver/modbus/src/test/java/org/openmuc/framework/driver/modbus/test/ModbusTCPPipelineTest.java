@@ -0,0 +1,344 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.modbus.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntToLongFunction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.driver.modbus.tcp.ModbusTCPConnection;
+import org.openmuc.framework.driver.spi.ChannelRecordContainer;
+import org.openmuc.framework.driver.spi.ConnectionException;
+
+public class ModbusTCPPipelineTest {
+
+    private static final int CHANNELS = 8;
+    private static final long SLAVE_DELAY_MS = 50;
+
+    private TestSlave slave;
+    private ModbusTCPConnection connection;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        slave = new TestSlave();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (connection != null) {
+            connection.disconnect();
+        }
+        slave.close();
+    }
+
+    /**
+     * Channels far enough apart to be read with one request each.
+     */
+    private static List<ChannelRecordContainer> containers() {
+        List<ChannelRecordContainer> containers = new ArrayList<>();
+        for (int i = 0; i < CHANNELS; i++) {
+            containers.add(new Container("1:HOLDING_REGISTERS:" + i * 200 + ":INT16"));
+        }
+        return containers;
+    }
+
+    private static void assertValues(List<ChannelRecordContainer> containers) {
+        for (int i = 0; i < CHANNELS; i++) {
+            Record record = containers.get(i).getRecord();
+            assertEquals(Flag.VALID, record.getFlag());
+            assertEquals(i * 200, record.getValue().asInt());
+        }
+    }
+
+    private long timedRead(List<ChannelRecordContainer> containers) throws ConnectionException {
+        long start = System.nanoTime();
+        connection.read(containers, null, "");
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    @Test
+    public void pipelinedReadIsFasterThanSequentialRead() throws Exception {
+        slave.delay = address -> SLAVE_DELAY_MS;
+
+        List<ChannelRecordContainer> containers = containers();
+        connection = new ModbusTCPConnection("127.0.0.1:" + slave.getPort(), 3000);
+        long sequentialMs = timedRead(containers);
+        assertValues(containers);
+        assertEquals(1, slave.maxActive.get());
+        connection.disconnect();
+
+        slave.maxActive.set(0);
+        containers = containers();
+        connection = new ModbusTCPConnection("127.0.0.1:" + slave.getPort(), 3000, CHANNELS);
+        long pipelinedMs = timedRead(containers);
+        assertValues(containers);
+        assertTrue(slave.maxActive.get() > 1);
+
+        assertTrue(sequentialMs >= CHANNELS * SLAVE_DELAY_MS);
+        assertTrue(pipelinedMs < sequentialMs / 2, "pipelined: " + pipelinedMs + " ms, sequential: " + sequentialMs);
+    }
+
+    @Test
+    public void responsesAreMatchedByTransactionId() throws Exception {
+        // the first request is answered last
+        slave.delay = address -> 20 + (CHANNELS * 200 - address) / 10;
+
+        List<ChannelRecordContainer> containers = containers();
+        connection = new ModbusTCPConnection("127.0.0.1:" + slave.getPort(), 3000, CHANNELS);
+        connection.read(containers, null, "");
+
+        assertValues(containers);
+        List<Integer> requestOrder = new ArrayList<>(slave.responseOrder);
+        Collections.sort(requestOrder);
+        assertNotEquals(requestOrder, slave.responseOrder);
+    }
+
+    @Test
+    public void outstandingRequestsAreLimited() throws Exception {
+        slave.delay = address -> SLAVE_DELAY_MS;
+
+        List<ChannelRecordContainer> containers = containers();
+        connection = new ModbusTCPConnection("127.0.0.1:" + slave.getPort(), 3000, 2);
+        connection.read(containers, null, "");
+
+        assertValues(containers);
+        assertEquals(2, slave.maxActive.get());
+    }
+
+    @Test
+    public void exceptionResponseOnlyFailsItsChannel() throws Exception {
+        slave.delay = address -> 0;
+        slave.illegalAddresses.add(400);
+
+        List<ChannelRecordContainer> containers = containers();
+        connection = new ModbusTCPConnection("127.0.0.1:" + slave.getPort(), 3000, CHANNELS);
+        connection.read(containers, null, "");
+
+        assertEquals(Flag.DRIVER_ERROR_CHANNEL_NOT_ACCESSIBLE, containers.get(2).getRecord().getFlag());
+        assertEquals(Flag.VALID, containers.get(3).getRecord().getFlag());
+        assertEquals(600, containers.get(3).getRecord().getValue().asInt());
+    }
+
+    @Test
+    public void unansweredRequestTimesOut() throws Exception {
+        slave.delay = address -> 0;
+        slave.unansweredAddresses.add(400);
+
+        List<ChannelRecordContainer> containers = containers();
+        connection = new ModbusTCPConnection("127.0.0.1:" + slave.getPort(), 300, CHANNELS);
+
+        long start = System.nanoTime();
+        assertThrows(ConnectionException.class, () -> connection.read(containers, null, ""));
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(durationMs >= 300 && durationMs < 3000, "timeout after " + durationMs + " ms");
+        assertEquals(Flag.VALID, containers.get(1).getRecord().getFlag());
+    }
+
+    /**
+     * Modbus TCP slave serving holding registers with the value of their address. Requests are processed concurrently
+     * by a thread pool, so responses are sent in the order their processing finishes.
+     */
+    private static class TestSlave {
+
+        private static final int ILLEGAL_DATA_ADDRESS = 2;
+
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final ExecutorService workers = Executors.newFixedThreadPool(CHANNELS * 2);
+        private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger maxActive = new AtomicInteger();
+        private final List<Integer> responseOrder = Collections.synchronizedList(new ArrayList<>());
+        private final Set<Integer> illegalAddresses = ConcurrentHashMap.newKeySet();
+        private final Set<Integer> unansweredAddresses = ConcurrentHashMap.newKeySet();
+        private volatile IntToLongFunction delay = address -> 0;
+
+        private TestSlave() throws IOException {
+            Thread acceptor = new Thread(this::accept, "Modbus test slave");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void accept() {
+            try {
+                while (true) {
+                    Socket socket = serverSocket.accept();
+                    sockets.add(socket);
+                    Thread reader = new Thread(() -> serve(socket), "Modbus test slave connection");
+                    reader.setDaemon(true);
+                    reader.start();
+                }
+            } catch (IOException e) {
+                // closed
+            }
+        }
+
+        private void serve(Socket socket) {
+            try {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                while (true) {
+                    int transactionId = in.readUnsignedShort();
+                    in.readUnsignedShort();
+                    byte[] pdu = new byte[in.readUnsignedShort()];
+                    in.readFully(pdu);
+                    workers.execute(() -> respond(out, transactionId, pdu));
+                }
+            } catch (IOException e) {
+                // connection closed by the master
+            }
+        }
+
+        private void respond(DataOutputStream out, int transactionId, byte[] pdu) {
+            int unitId = pdu[0] & 0xFF;
+            int functionCode = pdu[1] & 0xFF;
+            int address = ((pdu[2] & 0xFF) << 8) | (pdu[3] & 0xFF);
+            int count = ((pdu[4] & 0xFF) << 8) | (pdu[5] & 0xFF);
+
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(delay.applyAsLong(address));
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                active.decrementAndGet();
+            }
+
+            if (unansweredAddresses.contains(address)) {
+                return;
+            }
+            // j2mod expects a response within a single TCP segment
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            DataOutputStream frameOut = new DataOutputStream(frame);
+            try {
+                frameOut.writeShort(transactionId);
+                frameOut.writeShort(0);
+                if (illegalAddresses.contains(address)) {
+                    frameOut.writeShort(3);
+                    frameOut.writeByte(unitId);
+                    frameOut.writeByte(functionCode | 0x80);
+                    frameOut.writeByte(ILLEGAL_DATA_ADDRESS);
+                }
+                else {
+                    frameOut.writeShort(3 + count * 2);
+                    frameOut.writeByte(unitId);
+                    frameOut.writeByte(functionCode);
+                    frameOut.writeByte(count * 2);
+                    for (int i = 0; i < count; i++) {
+                        frameOut.writeShort(address + i);
+                    }
+                }
+                synchronized (out) {
+                    frame.writeTo(out);
+                    out.flush();
+                    responseOrder.add(address);
+                }
+            } catch (IOException e) {
+                // connection closed by the master
+            }
+        }
+
+        private void close() throws IOException {
+            workers.shutdownNow();
+            serverSocket.close();
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    private static class Container implements ChannelRecordContainer {
+
+        private final String channelAddress;
+        private Record record;
+
+        private Container(String channelAddress) {
+            this.channelAddress = channelAddress;
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public Channel getChannel() {
+            return null;
+        }
+
+        @Override
+        public String getChannelAddress() {
+            return channelAddress;
+        }
+
+        @Override
+        public Object getChannelHandle() {
+            return null;
+        }
+
+        @Override
+        public void setChannelHandle(Object handle) {
+        }
+
+        @Override
+        public void setRecord(Record record) {
+            this.record = record;
+        }
+
+        @Override
+        public ChannelRecordContainer copy() {
+            Container copy = new Container(channelAddress);
+            copy.record = record;
+            return copy;
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.openmuc.framework.driver.modbus.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openmuc.framework.data.Flag;
+import org.openmuc.framework.data.Record;
+import org.openmuc.framework.data.Value;
+import org.openmuc.framework.dataaccess.Channel;
+import org.openmuc.framework.driver.modbus.EDatatype;
+import org.openmuc.framework.driver.modbus.ModbusChannel;
+import org.openmuc.framework.driver.modbus.ModbusChannel.EAccess;
+import org.openmuc.framework.driver.modbus.ModbusChannelGroup;
+import org.openmuc.framework.driver.modbus.ModbusDriverUtil;
+import org.openmuc.framework.driver.spi.ChannelRecordContainer;
+
+import com.ghgande.j2mod.modbus.procimg.InputRegister;
+import com.ghgande.j2mod.modbus.procimg.SimpleRegister;
+
+public class RegisterDecodingTest {
+
+    private static final EDatatype[] REGISTER_DATATYPES = { EDatatype.SHORT, EDatatype.INT16, EDatatype.INT32,
+            EDatatype.UINT16, EDatatype.UINT32, EDatatype.FLOAT, EDatatype.DOUBLE, EDatatype.LONG };
+
+    @Test
+    public void decodesLikeByteArrayConversion() {
+        Random random = new Random(42);
+        InputRegister[] registers = new InputRegister[8];
+
+        for (int run = 0; run < 1000; run++) {
+            for (int i = 0; i < registers.length; i++) {
+                registers[i] = new SimpleRegister(random.nextInt(0x10000));
+            }
+            int offset = random.nextInt(4);
+
+            for (EDatatype datatype : REGISTER_DATATYPES) {
+                int count = datatype.getRegisterSize();
+                Value expected = ModbusDriverUtil.getValueFromByteArray(toBytes(registers, offset, count), datatype);
+                Value actual = ModbusDriverUtil.getRegistersValue(registers, offset, count, datatype);
+
+                assertEquals(expected.getClass(), actual.getClass(), datatype.toString());
+                assertEquals(expected.asLong(), actual.asLong(), datatype.toString());
+                assertEquals(Double.doubleToLongBits(expected.asDouble()), Double.doubleToLongBits(actual.asDouble()),
+                        datatype.toString());
+            }
+
+            for (int count = 1; count <= 4; count++) {
+                assertArrayEquals(
+                        ModbusDriverUtil.getValueFromByteArray(toBytes(registers, offset, count), EDatatype.BYTEARRAY)
+                                .asByteArray(),
+                        ModbusDriverUtil.getRegistersValue(registers, offset, count, EDatatype.BYTEARRAY)
+                                .asByteArray());
+                assertEquals(
+                        ModbusDriverUtil.getValueFromByteArray(toBytes(registers, offset, count),
+                                EDatatype.BYTEARRAYLONG).asLong(),
+                        ModbusDriverUtil.getRegistersValue(registers, offset, count, EDatatype.BYTEARRAYLONG)
+                                .asLong());
+            }
+        }
+    }
+
+    @Test
+    public void setsValuesOfContainersInAnyOrder() {
+        ArrayList<ModbusChannel> channels = new ArrayList<>();
+        channels.add(new ModbusChannel("1:HOLDING_REGISTERS:0:INT16", EAccess.READ));
+        channels.add(new ModbusChannel("1:HOLDING_REGISTERS:1:INT32", EAccess.READ));
+        channels.add(new ModbusChannel("1:HOLDING_REGISTERS:3:UINT16", EAccess.READ));
+        ModbusChannelGroup group = new ModbusChannelGroup("group", channels);
+
+        InputRegister[] registers = { new SimpleRegister(0xFFFF), new SimpleRegister(0x0001),
+                new SimpleRegister(0x0002), new SimpleRegister(0xFFFE) };
+
+        List<ChannelRecordContainer> containers = Arrays.asList(new Container("1:HOLDING_REGISTERS:3:UINT16"),
+                new Container("1:HOLDING_REGISTERS:0:INT16"), new Container("1:HOLDING_REGISTERS:1:INT32"));
+        group.setChannelValues(registers, containers);
+
+        assertEquals(0xFFFE, containers.get(0).getRecord().getValue().asInt());
+        assertEquals(-1, containers.get(1).getRecord().getValue().asInt());
+        assertEquals(0x00010002, containers.get(2).getRecord().getValue().asInt());
+
+        // same containers in a different order, e.g. after a configuration change
+        List<ChannelRecordContainer> reordered = Arrays.asList(new Container("1:HOLDING_REGISTERS:1:INT32"),
+                new Container("unrelated"), new Container("1:HOLDING_REGISTERS:0:INT16"),
+                new Container("1:HOLDING_REGISTERS:3:UINT16"));
+        group.setChannelValues(registers, reordered);
+
+        assertEquals(0x00010002, reordered.get(0).getRecord().getValue().asInt());
+        assertNull(reordered.get(1).getRecord());
+        assertEquals(-1, reordered.get(2).getRecord().getValue().asInt());
+        assertEquals(0xFFFE, reordered.get(3).getRecord().getValue().asInt());
+
+        group.setChannelsWithErrorFlag(Flag.DRIVER_ERROR_TIMEOUT, reordered);
+
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, reordered.get(0).getRecord().getFlag());
+        assertNull(reordered.get(1).getRecord());
+        assertEquals(Flag.DRIVER_ERROR_TIMEOUT, reordered.get(3).getRecord().getFlag());
+    }
+
+    private static byte[] toBytes(InputRegister[] registers, int offset, int count) {
+        byte[] bytes = new byte[count * 2];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(registers[offset + i].toBytes(), 0, bytes, i * 2, 2);
+        }
+        return bytes;
+    }
+
+    private static class Container implements ChannelRecordContainer {
+
+        private final String channelAddress;
+        private Record record;
+
+        private Container(String channelAddress) {
+            this.channelAddress = channelAddress;
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public Channel getChannel() {
+            return null;
+        }
+
+        @Override
+        public String getChannelAddress() {
+            return channelAddress;
+        }
+
+        @Override
+        public Object getChannelHandle() {
+            return null;
+        }
+
+        @Override
+        public void setChannelHandle(Object handle) {
+        }
+
+        @Override
+        public void setRecord(Record record) {
+            this.record = record;
+        }
+
+        @Override
+        public ChannelRecordContainer copy() {
+            Container copy = new Container(channelAddress);
+            copy.record = record;
+            return copy;
+        }
+    }
+
+}
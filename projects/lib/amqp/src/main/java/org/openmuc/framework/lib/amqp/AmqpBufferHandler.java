@@ -22,96 +22,150 @@ package org.openmuc.framework.lib.amqp;
 
 import java.io.IOException;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
-
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openmuc.framework.lib.filePersistence.BoundedMessageBuffer;
 import org.openmuc.framework.lib.filePersistence.FilePersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Buffer handler with lock free RAM buffer and managed {@link FilePersistence}. Messages of a full RAM buffer are
+ * written to the file buffer by a background thread.
+ */
 public class AmqpBufferHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(AmqpBufferHandler.class);
 
-    private final Queue<AmqpMessageTuple> buffer = new LinkedList<>();
+    private static final int MAX_PENDING_SPILLS = 4;
+
+    private final BoundedMessageBuffer<AmqpMessageTuple> buffer;
     private final long maxBufferSizeBytes;
     private final int maxFileCount;
     private final FilePersistence filePersistence;
-
-    private long currentBufferSize = 0L;
+    private final ThreadPoolExecutor spillExecutor;
+    private final AtomicLong spilledCount = new AtomicLong();
 
     public AmqpBufferHandler(long maxBufferSize, int maxFileCount, long maxFileSize, String persistenceDir) {
         maxBufferSizeBytes = maxBufferSize * 1024;
         this.maxFileCount = maxFileCount;
+        buffer = new BoundedMessageBuffer<>(maxBufferSizeBytes, messageTuple -> messageTuple.getMessage().length);
         if (isFileBufferEnabled()) {
             filePersistence = new FilePersistence(persistenceDir, maxFileCount, maxFileSize);
+            spillExecutor = newSpillExecutor();
         }
         else {
             filePersistence = null;
+            spillExecutor = null;
         }
     }
 
+    private static ThreadPoolExecutor newSpillExecutor() {
+        // blocks the caller instead of reordering batches if the disk is too slow
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_SPILLS), runnable -> {
+                    Thread thread = new Thread(runnable, "OpenMUC AMQP file buffer writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, rejectingExecutor) -> {
+                    try {
+                        rejectingExecutor.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private boolean isFileBufferEnabled() {
         return maxFileCount > 0 && maxBufferSizeBytes > 0;
     }
 
     public void add(String routingKey, byte[] message) {
-        if (isBufferTooFull(message)) {
-            handleFull(routingKey, message);
-        }
-        else {
-            synchronized (buffer) {
-                buffer.add(new AmqpMessageTuple(routingKey, message));
-                currentBufferSize += message.length;
-            }
-
+        AmqpMessageTuple messageTuple = new AmqpMessageTuple(routingKey, message);
+        if (buffer.offer(messageTuple)) {
             if (logger.isTraceEnabled()) {
                 logger.trace("maxBufferSize = {} B, currentBufferSize = {} B, messageSize = {} B", maxBufferSizeBytes,
-                        currentBufferSize, message.length);
+                        buffer.getSizeBytes(), message.length);
             }
         }
+        else {
+            handleFull(messageTuple);
+        }
     }
 
-    private boolean isBufferTooFull(byte[] message) {
-        return currentBufferSize + message.length > maxBufferSizeBytes;
-    }
-
-    private void handleFull(String routingKey, byte[] message) {
+    private void handleFull(AmqpMessageTuple messageTuple) {
         if (isFileBufferEnabled()) {
-            addToFilePersistence();
-            add(routingKey, message);
+            List<AmqpMessageTuple> batch = buffer.drain();
+            if (!buffer.offer(messageTuple)) {
+                // bigger than the RAM buffer
+                batch.add(messageTuple);
+            }
+            addToFilePersistence(batch);
         }
-        else if (message.length <= maxBufferSizeBytes) {
-            removeNextMessage();
-            add(routingKey, message);
+        else if (messageTuple.getMessage().length <= maxBufferSizeBytes) {
+            while (!buffer.offer(messageTuple)) {
+                if (buffer.dropOldest() == null) {
+                    buffer.countDropped();
+                    break;
+                }
+            }
+        }
+        else {
+            buffer.countDropped();
         }
     }
 
+    /**
+     * @return the oldest message of the RAM buffer or null if it is empty
+     */
     public AmqpMessageTuple removeNextMessage() {
-        AmqpMessageTuple removedMessage;
-        synchronized (buffer) {
-            removedMessage = buffer.remove();
-            currentBufferSize -= removedMessage.getMessage().length;
-        }
-        return removedMessage;
+        return buffer.poll();
+    }
+
+    private void addToFilePersistence(List<AmqpMessageTuple> batch) {
+        logger.debug("moving {} buffered messages from RAM to file", batch.size());
+        spillExecutor.execute(() -> writeBufferToFile(batch));
     }
 
-    private void addToFilePersistence() {
-        logger.debug("moving buffered messages from RAM to file");
-        while (!isEmpty()) {
-            AmqpMessageTuple messageTuple = removeNextMessage();
-            writeBufferToFile(messageTuple);
+    private void writeBufferToFile(List<AmqpMessageTuple> batch) {
+        synchronized (filePersistence) {
+            for (AmqpMessageTuple messageTuple : batch) {
+                try {
+                    filePersistence.writeBufferToFile(messageTuple.getRoutingKey(), messageTuple.getMessage());
+                    spilledCount.incrementAndGet();
+                } catch (IOException e) {
+                    logger.error(e.getMessage());
+                }
+            }
+            try {
+                filePersistence.sync();
+            } catch (IOException e) {
+                logger.error("Buffer file sync error: {}", e.getMessage());
+            }
         }
-        currentBufferSize = 0;
     }
 
-    private void writeBufferToFile(AmqpMessageTuple messageTuple) {
+    /**
+     * Waits until all messages handed over to the background thread are written to the file buffer.
+     */
+    private void awaitFilePersistence() {
+        if (spillExecutor == null) {
+            return;
+        }
         try {
-            synchronized (filePersistence) {
-                filePersistence.writeBufferToFile(messageTuple.getRoutingKey(), messageTuple.getMessage());
-            }
-        } catch (IOException e) {
-            logger.error(e.getMessage());
+            spillExecutor.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Waiting for the file buffer failed: {}", e.getMessage());
         }
     }
 
@@ -119,9 +173,24 @@ public class AmqpBufferHandler {
         return buffer.isEmpty();
     }
 
+    /**
+     * @return the RAM buffer, e.g. to read its occupancy and drop counters
+     */
+    public BoundedMessageBuffer<AmqpMessageTuple> getRamBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the number of messages moved from the RAM buffer to the file buffer
+     */
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
     public String[] getBuffers() {
         String[] buffers;
         if (isFileBufferEnabled()) {
+            awaitFilePersistence();
             buffers = filePersistence.getBuffers();
         }
         else {
@@ -136,13 +205,22 @@ public class AmqpBufferHandler {
 
     public void persist() {
         if (isFileBufferEnabled()) {
+            awaitFilePersistence();
             try {
-                filePersistence.restructure();
-                addToFilePersistence();
+                synchronized (filePersistence) {
+                    filePersistence.restructure();
+                    writeBufferToFile(buffer.drain());
+                    filePersistence.close();
+                }
             } catch (IOException e) {
                 logger.error("Buffer file restructuring error: {}", e.getMessage());
                 e.printStackTrace();
             }
         }
     }
+
+    @Override
+    public String toString() {
+        return "RAM buffer: " + buffer + ", moved to file: " + getSpilledCount();
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.amqp;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * Pool of channels used for publishing. A RabbitMQ channel must not be used by several threads at once, so every
+ * publishing thread borrows its own channel and returns it afterwards. Channels are created on demand, at most
+ * <code>size</code> idle channels are kept open.
+ */
+class AmqpChannelPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmqpChannelPool.class);
+
+    private final Connection connection;
+    private final boolean publisherConfirms;
+    private final int size;
+    private final ConcurrentLinkedQueue<Channel> idleChannels = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * @param connection
+     *            connection the channels are created on
+     * @param publisherConfirms
+     *            whether the channels are put into confirm mode
+     * @param size
+     *            maximum number of idle channels kept open
+     */
+    AmqpChannelPool(Connection connection, boolean publisherConfirms, int size) {
+        this.connection = connection;
+        this.publisherConfirms = publisherConfirms;
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * Borrows an open channel. It has to be returned with {@link #release(Channel)}.
+     *
+     * @return an open channel, in confirm mode if publisher confirms are enabled
+     * @throws IOException
+     *             if no channel could be opened
+     */
+    Channel acquire() throws IOException {
+        Channel channel;
+        while ((channel = idleChannels.poll()) != null) {
+            idleCount.decrementAndGet();
+            if (channel.isOpen()) {
+                return channel;
+            }
+        }
+        if (closed) {
+            throw new IOException("Channel pool is closed");
+        }
+
+        channel = connection.createChannel();
+        if (channel == null) {
+            throw new IOException("No channel available, channel limit of the connection reached");
+        }
+        if (publisherConfirms) {
+            channel.confirmSelect();
+        }
+        return channel;
+    }
+
+    /**
+     * Returns a borrowed channel to the pool. Closed channels are dropped, channels exceeding the pool size are
+     * closed.
+     */
+    void release(Channel channel) {
+        if (!channel.isOpen()) {
+            return;
+        }
+        if (!closed && idleCount.incrementAndGet() <= size) {
+            idleChannels.add(channel);
+            return;
+        }
+        idleCount.decrementAndGet();
+        closeQuietly(channel);
+    }
+
+    boolean isPublisherConfirms() {
+        return publisherConfirms;
+    }
+
+    /**
+     * Closes all idle channels. Channels released afterwards are closed as well.
+     */
+    void close() {
+        closed = true;
+        Channel channel;
+        while ((channel = idleChannels.poll()) != null) {
+            idleCount.decrementAndGet();
+            closeQuietly(channel);
+        }
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            if (channel.isOpen()) {
+                channel.close();
+            }
+        } catch (IOException | TimeoutException | ShutdownSignalException e) {
+            logger.debug("Failed to close channel: {}", e.getMessage());
+        }
+    }
+}
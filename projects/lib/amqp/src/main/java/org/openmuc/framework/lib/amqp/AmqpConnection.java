@@ -24,6 +24,8 @@ package org.openmuc.framework.lib.amqp;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 
 import org.openmuc.framework.security.SslManagerInterface;
@@ -43,14 +45,16 @@ import com.rabbitmq.client.ShutdownSignalException;
 public class AmqpConnection {
 
     private static final Logger logger = LoggerFactory.getLogger(AmqpConnection.class);
-    private static final List<String> DECLARED_QUEUES = new ArrayList<>();
 
+    private final Set<String> declaredQueues = ConcurrentHashMap.newKeySet();
+    private final Object declareLock = new Object();
     private final List<RecoveryListener> recoveryListeners = new ArrayList<>();
     private final List<AmqpReader> readers = new ArrayList<>();
     private final AmqpSettings settings;
     private String exchange;
     private Connection connection;
-    private Channel channel;
+    private volatile Channel channel;
+    private volatile AmqpChannelPool publishChannels;
     private SslManagerInterface sslManager;
     private boolean connected = false;
 
@@ -79,6 +83,14 @@ public class AmqpConnection {
         }
     }
 
+    /**
+     * Connects with a connection of the given factory, e.g. a factory of mocked connections in tests.
+     */
+    AmqpConnection(AmqpSettings settings, ConnectionFactory factory) throws IOException {
+        this.settings = settings;
+        connect(settings, factory);
+    }
+
     private ConnectionFactory getConnectionFactoryForSsl(AmqpSettings settings) {
         ConnectionFactory factory = new ConnectionFactory();
         if (settings.isSsl()) {
@@ -110,6 +122,8 @@ public class AmqpConnection {
             @Override
             public void handleRecovery(Recoverable recoverable) {
                 logger.debug("Connection recovery completed");
+                // queues may have been deleted while the connection was down
+                declaredQueues.clear();
                 connected = true;
             }
 
@@ -117,12 +131,16 @@ public class AmqpConnection {
             public void handleRecoveryStarted(Recoverable recoverable) {
                 logger.debug("Connection recovery started");
                 connected = false;
+                declaredQueues.clear();
             }
         });
 
+        declaredQueues.clear();
         channel = connection.createChannel();
         exchange = settings.getExchange();
         channel.exchangeDeclare(exchange, "topic", true);
+        publishChannels = new AmqpChannelPool(connection, settings.isPublisherConfirms(),
+                settings.getChannelPoolSize());
 
         if (logger.isTraceEnabled()) {
             logger.trace("Connected to {}:{} on virtualHost {} as user {}", settings.getHost(), settings.getPort(),
@@ -169,6 +187,9 @@ public class AmqpConnection {
             return;
         }
         try {
+            if (publishChannels != null) {
+                publishChannels.close();
+            }
             channel.close();
             connection.close();
             if (logger.isTraceEnabled()) {
@@ -180,7 +201,8 @@ public class AmqpConnection {
     }
 
     /**
-     * Declares the passed queue as a durable queue
+     * Declares the passed queue as a durable queue and binds it to the exchange. Declared queues are cached until the
+     * connection is recovered, so only the first call for a queue contacts the broker.
      *
      * @param queue
      *            the queue that should be declared
@@ -188,11 +210,17 @@ public class AmqpConnection {
      *             if an I/O problem is encountered
      */
     public void declareQueue(String queue) throws IOException {
-        if (!DECLARED_QUEUES.contains(queue)) {
+        if (declaredQueues.contains(queue)) {
+            return;
+        }
+        synchronized (declareLock) {
+            if (declaredQueues.contains(queue)) {
+                return;
+            }
             try {
                 channel.queueDeclarePassive(queue);
                 channel.queueBind(queue, exchange, queue);
-                DECLARED_QUEUES.add(queue);
+                declaredQueues.add(queue);
                 if (logger.isTraceEnabled()) {
                     logger.trace("Queue {} declared", queue);
                 }
@@ -220,6 +248,7 @@ public class AmqpConnection {
             logger.error("declaring queue stopped, because connection to broker is null");
             return;
         }
+        // the failed passive declaration closed the channel
         try {
             channel = connection.createChannel();
         } catch (Exception e) {
@@ -228,6 +257,8 @@ public class AmqpConnection {
         }
         channel.exchangeDeclare(exchange, "topic", true);
         channel.queueDeclare(queue, true, false, false, null);
+        channel.queueBind(queue, exchange, queue);
+        declaredQueues.add(queue);
     }
 
     public String getExchange() {
@@ -238,6 +269,28 @@ public class AmqpConnection {
         return channel;
     }
 
+    /**
+     * Borrows a channel for publishing, which has to be returned with {@link #releasePublishChannel(Channel)}.
+     *
+     * @return an open channel used by the calling thread only
+     * @throws IOException
+     *             if not connected or no channel could be opened
+     */
+    Channel acquirePublishChannel() throws IOException {
+        AmqpChannelPool pool = publishChannels;
+        if (pool == null) {
+            throw new IOException("Not connected to broker");
+        }
+        return pool.acquire();
+    }
+
+    void releasePublishChannel(Channel publishChannel) {
+        AmqpChannelPool pool = publishChannels;
+        if (pool != null) {
+            pool.release(publishChannel);
+        }
+    }
+
     AmqpSettings getSettings() {
         return settings;
     }
@@ -24,7 +24,7 @@ public class AmqpMessageTuple {
     private final String routingKey;
     private final byte[] message;
 
-    AmqpMessageTuple(String routingKey, byte[] message) {
+    public AmqpMessageTuple(String routingKey, byte[] message) {
         this.routingKey = routingKey;
         this.message = message;
     }
@@ -37,6 +37,9 @@ public class AmqpSettings {
     private final long maxFileSize;
     private final long maxBufferSize;
     private final int connectionAliveInterval;
+    private final boolean publisherConfirms;
+    private final long confirmTimeout;
+    private final int channelPoolSize;
 
     /**
      * @param host
@@ -67,6 +70,45 @@ public class AmqpSettings {
     public AmqpSettings(String host, int port, String virtualHost, String username, String password, boolean ssl,
             String exchange, String persistenceDirectory, int maxFileCount, long maxFileSize, long maxBufferSize,
             int connectionAliveInterval) {
+        this(host, port, virtualHost, username, password, ssl, exchange, persistenceDirectory, maxFileCount,
+                maxFileSize, maxBufferSize, connectionAliveInterval, false, 5000, 4);
+    }
+
+    /**
+     * @param host
+     *            the host, i.e. broker.domain.tld
+     * @param port
+     *            the port, i.e. 5672
+     * @param virtualHost
+     *            the virtualHost to use, i.e. /
+     * @param username
+     *            the username, i.e. guest
+     * @param password
+     *            the password, i.e. guest
+     * @param ssl
+     *            whether connecting with ssl
+     * @param exchange
+     *            the exchange to publish to
+     * @param persistenceDirectory
+     *            directory being used by FilePersistence
+     * @param maxFileCount
+     *            maximum file count per buffer created by FilePersistence
+     * @param maxFileSize
+     *            maximum file size per FilePersistence buffer file
+     * @param maxBufferSize
+     *            maximum RAM buffer size
+     * @param connectionAliveInterval
+     *            checks every given seconds if connection is alive
+     * @param publisherConfirms
+     *            whether the broker has to confirm published messages
+     * @param confirmTimeout
+     *            time in ms to wait for the confirmation of a batch of messages
+     * @param channelPoolSize
+     *            maximum number of idle channels kept open for publishing
+     */
+    public AmqpSettings(String host, int port, String virtualHost, String username, String password, boolean ssl,
+            String exchange, String persistenceDirectory, int maxFileCount, long maxFileSize, long maxBufferSize,
+            int connectionAliveInterval, boolean publisherConfirms, long confirmTimeout, int channelPoolSize) {
         this.host = host;
         this.port = port;
         this.virtualHost = virtualHost;
@@ -79,6 +121,9 @@ public class AmqpSettings {
         this.maxFileSize = maxFileSize;
         this.maxBufferSize = maxBufferSize;
         this.connectionAliveInterval = connectionAliveInterval;
+        this.publisherConfirms = publisherConfirms;
+        this.confirmTimeout = confirmTimeout;
+        this.channelPoolSize = channelPoolSize;
     }
 
     public AmqpSettings(String host, int port, String virtualHost, String username, String password, boolean ssl,
@@ -95,6 +140,9 @@ public class AmqpSettings {
         this.maxFileSize = 0;
         this.maxBufferSize = 0;
         this.connectionAliveInterval = 0;
+        this.publisherConfirms = false;
+        this.confirmTimeout = 5000;
+        this.channelPoolSize = 4;
     }
 
     public String getHost() {
@@ -145,6 +193,18 @@ public class AmqpSettings {
         return connectionAliveInterval;
     }
 
+    public boolean isPublisherConfirms() {
+        return publisherConfirms;
+    }
+
+    public long getConfirmTimeout() {
+        return confirmTimeout;
+    }
+
+    public int getChannelPoolSize() {
+        return channelPoolSize;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
@@ -160,6 +220,9 @@ public class AmqpSettings {
         sb.append("maxFileSize = " + maxFileSize + "\n");
         sb.append("maxBufferSize = " + maxBufferSize + "\n");
         sb.append("connectionAliveInterval = " + connectionAliveInterval + "\n");
+        sb.append("publisherConfirms = " + publisherConfirms + "\n");
+        sb.append("confirmTimeout = " + confirmTimeout + "\n");
+        sb.append("channelPoolSize = " + channelPoolSize + "\n");
 
         return sb.toString();
     }
@@ -21,19 +21,28 @@
 
 package org.openmuc.framework.lib.amqp;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Recoverable;
 import com.rabbitmq.client.RecoveryListener;
 
 /**
- * Sends (writes) messages to an AmqpConnection
+ * Sends (writes) messages to an AmqpConnection. Every write borrows its own channel from the connection, so several
+ * threads can write at the same time. If publisher confirms are enabled, a write returns after the broker confirmed
+ * all of its messages.
  */
 public class AmqpWriter {
     private static final Logger logger = LoggerFactory.getLogger(AmqpWriter.class);
+    private static final int REPLAY_BATCH_SIZE = 100;
 
     private final AmqpBufferHandler bufferHandler;
     private final AmqpConnection connection;
@@ -77,6 +86,7 @@ public class AmqpWriter {
         if (buffers.length == 0) {
             logger.debug("[{}] File buffer already empty.", pid);
         }
+        List<AmqpMessageTuple> batch = new ArrayList<>(REPLAY_BATCH_SIZE);
         for (String buffer : buffers) {
             Iterator<AmqpMessageTuple> iterator = bufferHandler.getMessageIterator(buffer);
             while (iterator.hasNext()) {
@@ -84,9 +94,14 @@ public class AmqpWriter {
                 if (logger.isTraceEnabled()) {
                     logger.trace("[{}] Resend from file: {}", pid, new String(messageTuple.getMessage()));
                 }
-                write(messageTuple.getRoutingKey(), messageTuple.getMessage());
+                batch.add(messageTuple);
+                if (batch.size() == REPLAY_BATCH_SIZE) {
+                    write(batch);
+                    batch.clear();
+                }
             }
         }
+        write(batch);
         logger.debug("[{}] File buffer cleared.", pid);
     }
 
@@ -95,13 +110,23 @@ public class AmqpWriter {
         if (bufferHandler.isEmpty()) {
             logger.debug("[{}] RAM buffer already empty.", pid);
         }
+        List<AmqpMessageTuple> batch = new ArrayList<>(REPLAY_BATCH_SIZE);
         while (!bufferHandler.isEmpty()) {
             AmqpMessageTuple messageTuple = bufferHandler.removeNextMessage();
+            if (messageTuple == null) {
+                // moved to the file buffer in the meantime
+                break;
+            }
             if (logger.isTraceEnabled()) {
                 logger.trace("[{}] Resend from memory: {}", pid, new String(messageTuple.getMessage()));
             }
-            write(messageTuple.getRoutingKey(), messageTuple.getMessage());
+            batch.add(messageTuple);
+            if (batch.size() == REPLAY_BATCH_SIZE) {
+                write(batch);
+                batch.clear();
+            }
         }
+        write(batch);
         logger.debug("[{}] RAM buffer cleared.", pid);
     }
 
@@ -114,24 +139,60 @@ public class AmqpWriter {
      *            byte array containing the message to be published
      */
     public void write(String routingKey, byte[] message) {
-        if (!publish(routingKey, message)) {
-            bufferHandler.add(routingKey, message);
-        }
+        write(Collections.singletonList(new AmqpMessageTuple(routingKey, message)));
     }
 
-    private boolean publish(String routingKey, byte[] message) {
+    /**
+     * Publish several messages on one channel. With publisher confirms the broker confirms the whole batch at once.
+     * Messages which could not be published, or whose confirmation failed, are buffered and republished on recovery.
+     *
+     * @param messages
+     *            the messages with their routing keys, published in the given order
+     */
+    public void write(List<AmqpMessageTuple> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        int published = 0;
+        Channel channel = null;
         try {
-            connection.declareQueue(routingKey);
-            connection.getRabbitMqChannel().basicPublish(connection.getExchange(), routingKey, false, null, message);
-        } catch (Exception e) {
+            channel = connection.acquirePublishChannel();
+            String exchange = connection.getExchange();
+            for (AmqpMessageTuple messageTuple : messages) {
+                String routingKey = messageTuple.getRoutingKey();
+                connection.declareQueue(routingKey);
+                channel.basicPublish(exchange, routingKey, false, null, messageTuple.getMessage());
+                published++;
+                if (logger.isTraceEnabled()) {
+                    logger.trace("[{}] published with routingKey {}, payload: {}", pid, routingKey,
+                            new String(messageTuple.getMessage()));
+                }
+            }
+            AmqpSettings settings = connection.getSettings();
+            if (settings.isPublisherConfirms()) {
+                channel.waitForConfirmsOrDie(settings.getConfirmTimeout());
+            }
+        } catch (IOException | TimeoutException | RuntimeException e) {
             logger.error("[{}] Could not publish message: {}", pid, e.getMessage());
-            return false;
+            bufferUnconfirmed(messages, published);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            bufferUnconfirmed(messages, published);
+        } finally {
+            if (channel != null) {
+                connection.releasePublishChannel(channel);
+            }
         }
+    }
 
-        if (logger.isTraceEnabled()) {
-            logger.trace("[{}] published with routingKey {}, payload: {}", pid, routingKey, new String(message));
+    private void bufferUnconfirmed(List<AmqpMessageTuple> messages, int published) {
+        // with publisher confirms it is unknown which of the published messages reached the broker, so they are
+        // published again (at least once)
+        int first = connection.getSettings().isPublisherConfirms() ? 0 : published;
+        for (int i = first; i < messages.size(); i++) {
+            AmqpMessageTuple messageTuple = messages.get(i);
+            bufferHandler.add(messageTuple.getRoutingKey(), messageTuple.getMessage());
         }
-        return true;
     }
 
     public void shutdown() {
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.amqp;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+
+public class AmqpChannelPoolTest {
+
+    private Connection connection;
+
+    @BeforeEach
+    void setup() throws IOException {
+        connection = mock(Connection.class);
+        when(connection.createChannel()).thenAnswer(invocation -> openChannel());
+    }
+
+    private static Channel openChannel() {
+        Channel channel = mock(Channel.class);
+        when(channel.isOpen()).thenReturn(true);
+        return channel;
+    }
+
+    @Test
+    void keepsAtMostSizeIdleChannels() throws IOException, TimeoutException {
+        AmqpChannelPool pool = new AmqpChannelPool(connection, false, 2);
+        Channel first = pool.acquire();
+        Channel second = pool.acquire();
+        Channel third = pool.acquire();
+
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        verify(first, never()).close();
+        verify(second, never()).close();
+        verify(third).close();
+
+        assertSame(first, pool.acquire());
+        assertSame(second, pool.acquire());
+        pool.acquire();
+        verify(connection, times(4)).createChannel();
+    }
+
+    @Test
+    void dropsClosedChannels() throws IOException {
+        AmqpChannelPool pool = new AmqpChannelPool(connection, false, 2);
+        Channel closedWhileBorrowed = pool.acquire();
+        when(closedWhileBorrowed.isOpen()).thenReturn(false);
+        pool.release(closedWhileBorrowed);
+
+        Channel closedWhileIdle = pool.acquire();
+        assertNotSame(closedWhileBorrowed, closedWhileIdle);
+        pool.release(closedWhileIdle);
+        when(closedWhileIdle.isOpen()).thenReturn(false);
+
+        Channel channel = pool.acquire();
+        assertNotSame(closedWhileIdle, channel);
+        pool.release(channel);
+        assertSame(channel, pool.acquire());
+        verify(connection, times(3)).createChannel();
+    }
+
+    @Test
+    void putsNewChannelsIntoConfirmMode() throws IOException {
+        AmqpChannelPool pool = new AmqpChannelPool(connection, true, 1);
+        Channel channel = pool.acquire();
+        pool.release(channel);
+        assertSame(channel, pool.acquire());
+
+        verify(channel, times(1)).confirmSelect();
+    }
+
+    @Test
+    void closesReleasedChannelsAfterClose() throws IOException, TimeoutException {
+        AmqpChannelPool pool = new AmqpChannelPool(connection, false, 2);
+        Channel idle = pool.acquire();
+        Channel borrowed = pool.acquire();
+        pool.release(idle);
+
+        pool.close();
+        verify(idle).close();
+        pool.release(borrowed);
+        verify(borrowed).close();
+        assertThrows(IOException.class, pool::acquire);
+    }
+
+    @Test
+    void failsIfTheConnectionHasNoChannelLeft() throws IOException {
+        when(connection.createChannel()).thenReturn(null);
+        assertThrows(IOException.class, new AmqpChannelPool(connection, false, 1)::acquire);
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.amqp;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.RecoverableConnection;
+import com.rabbitmq.client.RecoveryListener;
+
+public class AmqpConnectionTest {
+
+    private static final String EXCHANGE = "exchange";
+
+    private RecoverableConnection rabbitConnection;
+    private Channel channel;
+    private AmqpConnection connection;
+
+    @BeforeEach
+    void setup() throws IOException, TimeoutException {
+        rabbitConnection = mock(RecoverableConnection.class);
+        channel = mock(Channel.class);
+        when(rabbitConnection.createChannel()).thenReturn(channel);
+        ConnectionFactory factory = mock(ConnectionFactory.class);
+        when(factory.newConnection()).thenReturn(rabbitConnection);
+
+        AmqpSettings settings = new AmqpSettings("localhost", 5672, "/", "guest", "guest", false, EXCHANGE, null, 0, 0,
+                1024, 60);
+        connection = new AmqpConnection(settings, factory);
+    }
+
+    private RecoveryListener recoveryListener() {
+        ArgumentCaptor<RecoveryListener> listener = ArgumentCaptor.forClass(RecoveryListener.class);
+        verify(rabbitConnection).addRecoveryListener(listener.capture());
+        return listener.getValue();
+    }
+
+    @Test
+    void declaresQueueOnlyOnce() throws IOException {
+        connection.declareQueue("a");
+        connection.declareQueue("a");
+        connection.declareQueue("b");
+
+        verify(channel, times(1)).queueDeclarePassive("a");
+        verify(channel, times(1)).queueBind("a", EXCHANGE, "a");
+        verify(channel, times(1)).queueDeclarePassive("b");
+    }
+
+    @Test
+    void createsMissingQueueOnce() throws IOException {
+        when(channel.queueDeclarePassive(anyString())).thenThrow(new IOException("NOT_FOUND"));
+
+        connection.declareQueue("a");
+        connection.declareQueue("a");
+
+        verify(channel, times(1)).queueDeclarePassive("a");
+        verify(channel, times(1)).queueDeclare("a", true, false, false, null);
+        verify(channel, times(1)).queueBind("a", EXCHANGE, "a");
+    }
+
+    @Test
+    void declaresQueuesAgainAfterRecovery() throws IOException {
+        RecoveryListener listener = recoveryListener();
+
+        connection.declareQueue("a");
+        listener.handleRecoveryStarted(rabbitConnection);
+        assertFalse(connection.isConnected());
+        connection.declareQueue("a");
+        listener.handleRecovery(rabbitConnection);
+        assertTrue(connection.isConnected());
+        connection.declareQueue("a");
+        connection.declareQueue("a");
+
+        verify(channel, times(3)).queueDeclarePassive("a");
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.amqp;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoveryListener;
+
+public class AmqpWriterTest {
+
+    private static final String EXCHANGE = "exchange";
+
+    private AmqpConnection connection;
+    private Channel channel;
+
+    @BeforeEach
+    void setup() throws IOException {
+        connection = mock(AmqpConnection.class);
+        channel = mock(Channel.class);
+        when(connection.acquirePublishChannel()).thenReturn(channel);
+        when(connection.getExchange()).thenReturn(EXCHANGE);
+    }
+
+    private AmqpWriter newWriter(boolean publisherConfirms) {
+        when(connection.getSettings()).thenReturn(new AmqpSettings("localhost", 5672, "/", "guest", "guest", false,
+                EXCHANGE, null, 0, 0, 1024, 60, publisherConfirms, 5000, 4));
+        return new AmqpWriter(connection, "test");
+    }
+
+    private RecoveryListener recoveryListener() {
+        ArgumentCaptor<RecoveryListener> listener = ArgumentCaptor.forClass(RecoveryListener.class);
+        verify(connection).addRecoveryListener(listener.capture());
+        return listener.getValue();
+    }
+
+    private static List<AmqpMessageTuple> messages(String... payloads) {
+        List<AmqpMessageTuple> messages = new ArrayList<>();
+        for (String payload : payloads) {
+            messages.add(new AmqpMessageTuple("queue", payload.getBytes()));
+        }
+        return messages;
+    }
+
+    private void verifyPublished(String payload, int times) throws IOException {
+        verify(channel, times(times)).basicPublish(eq(EXCHANGE), eq("queue"), eq(false), any(),
+                eq(payload.getBytes()));
+    }
+
+    @Test
+    void publishesBatchOnOneChannel() throws Exception {
+        AmqpWriter writer = newWriter(true);
+
+        writer.write(messages("1", "2", "3"));
+
+        verifyPublished("1", 1);
+        verifyPublished("2", 1);
+        verifyPublished("3", 1);
+        verify(connection, times(1)).acquirePublishChannel();
+        verify(connection, times(1)).releasePublishChannel(channel);
+        verify(channel, times(1)).waitForConfirmsOrDie(5000);
+    }
+
+    @Test
+    void doesNotWaitForConfirmsWithoutPublisherConfirms() throws Exception {
+        AmqpWriter writer = newWriter(false);
+
+        writer.write(messages("1", "2"));
+
+        verify(channel, never()).waitForConfirmsOrDie(anyLong());
+        verify(connection, times(1)).releasePublishChannel(channel);
+    }
+
+    @Test
+    void buffersWholeBatchIfPublishingFailsWithPublisherConfirms() throws Exception {
+        AmqpWriter writer = newWriter(true);
+        failOnPublishOf("3");
+
+        writer.write(messages("1", "2", "3", "4"));
+        verify(connection, times(1)).releasePublishChannel(channel);
+
+        // it is unknown which of the published messages reached the broker
+        publishNormally();
+        recoveryListener().handleRecovery(mock(Recoverable.class));
+        verifyPublished("1", 2);
+        verifyPublished("2", 2);
+        verifyPublished("3", 2);
+        verifyPublished("4", 1);
+    }
+
+    @Test
+    void buffersWholeBatchIfConfirmationFails() throws Exception {
+        AmqpWriter writer = newWriter(true);
+        doThrow(new TimeoutException()).doNothing().when(channel).waitForConfirmsOrDie(anyLong());
+
+        writer.write(messages("1", "2"));
+
+        recoveryListener().handleRecovery(mock(Recoverable.class));
+        verifyPublished("1", 2);
+        verifyPublished("2", 2);
+    }
+
+    @Test
+    void buffersOnlyUnpublishedMessagesWithoutPublisherConfirms() throws Exception {
+        AmqpWriter writer = newWriter(false);
+        failOnPublishOf("3");
+
+        writer.write(messages("1", "2", "3", "4"));
+
+        publishNormally();
+        recoveryListener().handleRecovery(mock(Recoverable.class));
+        verifyPublished("1", 1);
+        verifyPublished("2", 1);
+        verifyPublished("3", 2);
+        verifyPublished("4", 1);
+    }
+
+    @Test
+    void buffersBatchIfNoChannelIsAvailable() throws Exception {
+        AmqpWriter writer = newWriter(false);
+        when(connection.acquirePublishChannel()).thenThrow(new IOException("Not connected to broker"))
+                .thenReturn(channel);
+
+        writer.write(messages("1", "2"));
+        verify(connection, never()).releasePublishChannel(any());
+
+        recoveryListener().handleRecovery(mock(Recoverable.class));
+        verifyPublished("1", 1);
+        verifyPublished("2", 1);
+    }
+
+    private void failOnPublishOf(String payload) throws IOException {
+        doThrow(new IOException("connection reset")).when(channel)
+                .basicPublish(anyString(), anyString(), anyBoolean(), any(),
+                        eq(payload.getBytes()));
+    }
+
+    private void publishNormally() throws IOException {
+        doNothing().when(channel)
+                .basicPublish(anyString(), anyString(), anyBoolean(), any(), any(byte[].class));
+    }
+
+}
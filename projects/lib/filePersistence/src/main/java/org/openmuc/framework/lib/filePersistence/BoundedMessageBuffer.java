@@ -0,0 +1,252 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.filePersistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToIntFunction;
+
+/**
+ * Lock free FIFO buffer for messages which is bounded by the sum of the message sizes in bytes. Any number of threads
+ * may add and remove messages concurrently without blocking each other.
+ * <p>
+ * The messages are stored in a ring of slots. The number of slots is derived from the maximum size assuming an average
+ * message size of at least 16 bytes, so the buffer is also considered full if all slots
+ * are taken.
+ *
+ * @param <T>
+ *            type of the messages
+ */
+public class BoundedMessageBuffer<T> {
+
+    private static final int MIN_AVERAGE_MESSAGE_SIZE = 16;
+    private static final int MIN_SLOTS = 16;
+    private static final int MAX_SLOTS = 1 << 16;
+
+    private final long maxSizeBytes;
+    private final ToIntFunction<T> sizeOf;
+    private final int mask;
+    private final AtomicReferenceArray<T> messages;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong sizeBytes = new AtomicLong();
+    private final AtomicLong peakSizeBytes = new AtomicLong();
+    private final AtomicLong addedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * @param maxSizeBytes
+     *            maximum sum of the message sizes in bytes
+     * @param sizeOf
+     *            returns the size of a message in bytes
+     */
+    public BoundedMessageBuffer(long maxSizeBytes, ToIntFunction<T> sizeOf) {
+        this.maxSizeBytes = maxSizeBytes;
+        this.sizeOf = sizeOf;
+        int slots = MIN_SLOTS;
+        while (slots < MAX_SLOTS && (long) slots * MIN_AVERAGE_MESSAGE_SIZE < maxSizeBytes) {
+            slots <<= 1;
+        }
+        mask = slots - 1;
+        messages = new AtomicReferenceArray<>(slots);
+        sequences = new AtomicLongArray(slots);
+        for (int i = 0; i < slots; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds the message to the end of the buffer if there is enough space.
+     *
+     * @param message
+     *            the message to add
+     * @return false if the buffer is too full to take the message
+     */
+    public boolean offer(T message) {
+        int size = sizeOf.applyAsInt(message);
+        if (!reserve(size)) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    messages.set(index, message);
+                    sequences.set(index, position + 1);
+                    addedCount.incrementAndGet();
+                    return true;
+                }
+            }
+            else if (difference < 0) {
+                // all slots taken
+                sizeBytes.addAndGet(-size);
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+        }
+    }
+
+    private boolean reserve(int size) {
+        while (true) {
+            long current = sizeBytes.get();
+            long updated = current + size;
+            if (updated > maxSizeBytes) {
+                return false;
+            }
+            if (sizeBytes.compareAndSet(current, updated)) {
+                updatePeak(updated);
+                return true;
+            }
+        }
+    }
+
+    private void updatePeak(long size) {
+        long peak = peakSizeBytes.get();
+        while (size > peak && !peakSizeBytes.compareAndSet(peak, size)) {
+            peak = peakSizeBytes.get();
+        }
+    }
+
+    /**
+     * Removes the oldest message.
+     *
+     * @return the oldest message or null if the buffer is empty
+     */
+    public T poll() {
+        while (true) {
+            long position = head.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T message = messages.getAndSet(index, null);
+                    sequences.set(index, position + mask + 1);
+                    sizeBytes.addAndGet(-sizeOf.applyAsInt(message));
+                    return message;
+                }
+            }
+            else if (difference < 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest message to make space for newer ones. The message is counted as dropped.
+     *
+     * @return the dropped message or null if the buffer is empty
+     */
+    public T dropOldest() {
+        T message = poll();
+        if (message != null) {
+            droppedCount.incrementAndGet();
+        }
+        return message;
+    }
+
+    /**
+     * Counts a message as dropped which could not be added at all.
+     */
+    public void countDropped() {
+        droppedCount.incrementAndGet();
+    }
+
+    /**
+     * Removes all messages currently in the buffer.
+     *
+     * @return the removed messages, oldest first
+     */
+    public List<T> drain() {
+        List<T> drained = new ArrayList<>();
+        T message;
+        while ((message = poll()) != null) {
+            drained.add(message);
+        }
+        return drained;
+    }
+
+    public boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    /**
+     * @return the number of messages in the buffer
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * @return the sum of the sizes of the messages in the buffer in bytes
+     */
+    public long getSizeBytes() {
+        return sizeBytes.get();
+    }
+
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    /**
+     * @return the highest sum of message sizes the buffer held so far in bytes
+     */
+    public long getPeakSizeBytes() {
+        return peakSizeBytes.get();
+    }
+
+    /**
+     * @return the number of messages added successfully
+     */
+    public long getAddedCount() {
+        return addedCount.get();
+    }
+
+    /**
+     * @return the number of times a message did not fit into the buffer
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return the number of messages lost because the buffer was full
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("messages: %d, size: %d/%d B, peak: %d B, added: %d, rejected: %d, dropped: %d", size(),
+                getSizeBytes(), maxSizeBytes, getPeakSizeBytes(), getAddedCount(), getRejectedCount(),
+                getDroppedCount());
+    }
+}
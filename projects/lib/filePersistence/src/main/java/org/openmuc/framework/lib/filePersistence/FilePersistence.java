@@ -22,34 +22,61 @@
 package org.openmuc.framework.lib.filePersistence;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.DirectoryNotEmptyException;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Provides configurable RAM friendly file persistence functionality
+ * <p>
+ * Every buffer is stored as a journal of up to <code>maxFileCount</code> segment files. Messages are stored as length
+ * prefixed and CRC checked records, so payloads may contain any bytes and an incomplete record left by a crash is
+ * detected and cut off. Files written by older versions with one message per line are converted when they are
+ * opened. The files being written and read are kept open until they are full, completely read or {@link #close()} is
+ * called.
  */
 public class FilePersistence {
     private static final Logger logger = LoggerFactory.getLogger(FilePersistence.class);
+
+    /**
+     * Defines when written messages are forced to the storage device.
+     */
+    public enum SyncPolicy {
+        /** Leave writing to the storage device to the operating system. */
+        NEVER,
+        /**
+         * Force after every {@value FilePersistence#SYNC_BATCH_SIZE} messages, when a file is full and on
+         * {@link FilePersistence#sync()} and {@link FilePersistence#close()}.
+         */
+        BATCH,
+        /** Force after every message. */
+        ALWAYS
+    }
+
+    public static final int SYNC_BATCH_SIZE = 64;
+
     private final Path DIRECTORY;
     private int maxFileCount;
     private final long MAX_FILE_SIZE_BYTES;
+    private final SyncPolicy syncPolicy;
     private final Map<String, Integer> nextFile = new HashMap<>();
     private final Map<String, Long> readBytes = new HashMap<>();
+    private final Map<Path, Segment> openSegments = new ConcurrentHashMap<>();
+    private final Map<String, Path> readPaths = new HashMap<>();
     private static final List<String> BUFFERS = new ArrayList<>();
     public static final String DEFAULT_FILENAME = "buffer.0.log";
     public static final String DEFAULT_FILE_PREFIX = "buffer";
@@ -61,12 +88,29 @@ public class FilePersistence {
      * @param maxFileCount
      *            the maximum number of files created. Must be greater than 0
      * @param maxFileSizeKb
-     *            the maximum file size in kB when fileSize is reached a new file is created or the oldest overwritten
+     *            the maximum size of the payloads in a file in kB when fileSize is reached a new file is created or the
+     *            oldest overwritten. Every message needs 8 additional bytes on disk.
      */
     public FilePersistence(String directory, int maxFileCount, long maxFileSizeKb) {
+        this(directory, maxFileCount, maxFileSizeKb, SyncPolicy.BATCH);
+    }
+
+    /**
+     * @param directory
+     *            the directory in which files are stored
+     * @param maxFileCount
+     *            the maximum number of files created. Must be greater than 0
+     * @param maxFileSizeKb
+     *            the maximum size of the payloads in a file in kB when fileSize is reached a new file is created or the
+     *            oldest overwritten. Every message needs 8 additional bytes on disk.
+     * @param syncPolicy
+     *            when written messages are forced to the storage device
+     */
+    public FilePersistence(String directory, int maxFileCount, long maxFileSizeKb, SyncPolicy syncPolicy) {
         DIRECTORY = FileSystems.getDefault().getPath(directory);
         // convert to byte since bytes are used internally to compare with payload
         MAX_FILE_SIZE_BYTES = maxFileSizeKb * 1024;
+        this.syncPolicy = syncPolicy;
         setMaxFileCount(maxFileCount);
         createDirectory();
     }
@@ -100,13 +144,14 @@ public class FilePersistence {
 
         checkPayLoadSize(payload.length);
         registerBuffer(buffer);
-        Path filePath = Paths.get(DIRECTORY.toString(), buffer, DEFAULT_FILENAME);
-        File file = createFileIfNotExist(filePath);
-        if (isFileFull(file.length(), payload.length)) {
-            handleFullFile(buffer, payload, file);
+        Segment segment = getWriteSegment(buffer);
+        if (isFileFull(segment.getPayloadBytes(), payload.length)) {
+            segment = handleFullFile(buffer);
         }
-        else {
-            appendToFile(file, payload);
+        segment.append(payload);
+        if (syncPolicy == SyncPolicy.ALWAYS
+                || syncPolicy == SyncPolicy.BATCH && segment.getUnsyncedRecords() >= SYNC_BATCH_SIZE) {
+            segment.sync();
         }
     }
 
@@ -149,39 +194,64 @@ public class FilePersistence {
         return BUFFERS.toArray(new String[0]);
     }
 
-    private File createFileIfNotExist(Path filePath) throws IOException {
-        File file = filePath.toFile();
-        if (!file.exists()) {
-            logger.info("create new file: {}", file.getAbsolutePath());
-            Path storagePath = Paths.get(file.getAbsolutePath());
-            Files.createDirectories(storagePath.getParent());
-            Files.createFile(storagePath);
+    private Path getFilePath(String buffer, String fileName) {
+        return Paths.get(DIRECTORY.toString(), buffer, fileName);
+    }
+
+    private Segment getWriteSegment(String buffer) throws IOException {
+        Path filePath = getFilePath(buffer, DEFAULT_FILENAME);
+        if (!openSegments.containsKey(filePath) && !filePath.toFile().exists()) {
+            logger.info("create new file: {}", filePath.toAbsolutePath());
+            Files.createDirectories(filePath.toAbsolutePath().getParent());
         }
-        return file;
+        return getSegment(filePath);
     }
 
-    private void appendToFile(File file, byte[] payload) throws IOException {
-        FileOutputStream fileStream = new FileOutputStream(file, true);
-        fileStream.write(payload);
-        fileStream.write("\n".getBytes());
-        fileStream.close();
+    private Segment getSegment(Path filePath) throws IOException {
+        Segment segment = openSegments.get(filePath);
+        if (segment == null) {
+            // the newest file may be appended to, so it is checked for an incomplete record at the end
+            segment = Segment.open(filePath, filePath.endsWith(DEFAULT_FILENAME));
+            Long position = readBytes.remove(filePath.toString());
+            if (position != null) {
+                segment.setReadPosition(position);
+            }
+            openSegments.put(filePath, segment);
+        }
+        return segment;
     }
 
-    private void handleFullFile(String filePath, byte[] payload, File file) throws IOException {
-        if (maxFileCount > 1) {
-            handleMultipleFiles(filePath, payload, file);
+    private void closeSegment(Path filePath) throws IOException {
+        Segment segment = openSegments.remove(filePath);
+        if (segment == null) {
+            return;
+        }
+        if (segment.getReadPosition() > Segment.FILE_HEADER_SIZE) {
+            readBytes.put(filePath.toString(), segment.getReadPosition());
+        }
+        try {
+            if (syncPolicy != SyncPolicy.NEVER) {
+                segment.sync();
+            }
+        } finally {
+            segment.close();
+        }
+    }
 
+    private Segment handleFullFile(String buffer) throws IOException {
+        if (maxFileCount > 1) {
+            return handleMultipleFiles(buffer);
         }
         else {
-            handleSingleFile(filePath, payload, file);
+            return handleSingleFile(buffer);
         }
     }
 
-    private void handleSingleFile(String filePath, byte[] payload, File file) {
+    private Segment handleSingleFile(String buffer) {
         throw new UnsupportedOperationException("right now only maxFileCount >= 2 supported");
     }
 
-    private void handleMultipleFiles(String buffer, byte[] payload, File file) throws IOException {
+    private Segment handleMultipleFiles(String buffer) throws IOException {
 
         int nextFile = this.nextFile.getOrDefault(buffer, 1);
         String newFileName = DEFAULT_FILE_PREFIX + '.' + nextFile + '.' + DEFAULT_FILE_SUFFIX;
@@ -189,18 +259,33 @@ public class FilePersistence {
             nextFile = 1;
         }
         this.nextFile.put(buffer, nextFile);
-        Path path = Paths.get(DIRECTORY.toString(), buffer, DEFAULT_FILENAME);
-        Path newPath = Paths.get(DIRECTORY.toString(), buffer, newFileName);
+        Path path = getFilePath(buffer, DEFAULT_FILENAME);
+        Path newPath = getFilePath(buffer, newFileName);
+
+        // the messages of an overwritten file are lost, so is its read position
+        closeSegment(newPath);
+        readBytes.remove(newPath.toString());
+        if (newPath.equals(readPaths.get(buffer))) {
+            readPaths.remove(buffer);
+        }
+
+        closeSegment(path);
+        Long position = readBytes.remove(path.toString());
+        if (position != null) {
+            readBytes.put(newPath.toString(), position);
+        }
+        if (path.equals(readPaths.get(buffer))) {
+            readPaths.put(buffer, newPath);
+        }
         Files.move(path, newPath, StandardCopyOption.REPLACE_EXISTING);
 
         logger.info("move file from: {} to {}", path, newPath);
 
-        Files.createFile(path);
-        appendToFile(path.toFile(), payload);
+        return getSegment(path);
     }
 
-    private boolean isFileFull(long fileLength, int payloadLength) {
-        return fileLength + payloadLength + 1 > MAX_FILE_SIZE_BYTES;
+    private boolean isFileFull(long payloadBytes, int payloadLength) {
+        return payloadBytes + payloadLength > MAX_FILE_SIZE_BYTES;
     }
 
     private void checkPayLoadSize(int payloadLength) throws IOException {
@@ -216,70 +301,64 @@ public class FilePersistence {
      * @return if a file buffer exists
      */
     public boolean fileExistsFor(String buffer) {
-        String fileName = DEFAULT_FILE_PREFIX + ".0." + DEFAULT_FILE_SUFFIX;
-        return Paths.get(DIRECTORY.toString(), buffer, fileName).toFile().exists();
+        Path filePath = getFilePath(buffer, DEFAULT_FILENAME);
+        return openSegments.containsKey(filePath) || filePath.toFile().exists();
     }
 
+    /**
+     * Removes the oldest message from the buffer. Files are deleted as soon as all their messages have been read.
+     *
+     * @param buffer
+     *            the name of the buffer (e.g. the topic or queue name)
+     * @return the oldest message or an empty array if the buffer contains no further valid message
+     */
     public byte[] getMessage(String buffer) {
-        Path filePath = getOldestFilePath(buffer);
-        Long position = getFilePosition(filePath.toString());
-        String message = "";
         try {
-            message = readLine(buffer, filePath.toFile(), position);
+            while (fileExistsFor(buffer)) {
+                Path filePath = getReadPath(buffer);
+                Segment segment = getSegment(filePath);
+                byte[] message = segment.next();
+                if (!segment.hasNext()) {
+                    deleteFile(buffer, filePath);
+                }
+                if (message != null) {
+                    return message;
+                }
+            }
         } catch (IOException e) {
             logger.error("An error occurred while reading the buffer {}. Error message: {}", buffer, e.getMessage());
         }
-
-        return message.getBytes();
+        return new byte[0];
     }
 
-    private String readLine(String buffer, File file, Long position) throws IOException {
-        FileInputStream fileStream = new FileInputStream(file);
-        StringBuilder lineBuilder = new StringBuilder();
-        fileStream.skip(position);
-
-        int nextChar = fileStream.read();
-        position++;
-        while (nextChar != -1 && nextChar != '\n') {
-            lineBuilder.appendCodePoint(nextChar);
-            nextChar = fileStream.read();
-            position++;
+    private Path getReadPath(String buffer) {
+        Path filePath = readPaths.get(buffer);
+        if (filePath == null) {
+            filePath = getOldestFilePath(buffer);
+            readPaths.put(buffer, filePath);
         }
-        fileStream.close();
-
-        setFilePosition(file.toString(), position);
-        deleteIfEmpty(file, position);
-        removeBufferIfEmpty(buffer);
-
-        return lineBuilder.toString();
+        return filePath;
     }
 
-    private void deleteIfEmpty(File file, Long position) throws IOException {
-        FileInputStream fileStream = new FileInputStream(file);
-        fileStream.skip(position);
-        int nextChar = fileStream.read();
-        fileStream.close();
-        if (nextChar == -1) {
-            boolean deleted = file.delete();
-            if (!deleted) {
-                throw new IOException("Empty file could not be deleted!");
-            }
-            else {
-                setFilePosition(file.toString(), 0L);
-            }
+    private void deleteFile(String buffer, Path filePath) throws IOException {
+        Segment segment = openSegments.remove(filePath);
+        if (segment != null) {
+            segment.close();
         }
+        readPaths.remove(buffer);
+        readBytes.remove(filePath.toString());
+        if (!filePath.toFile().delete()) {
+            throw new IOException("Empty file could not be deleted!");
+        }
+        removeBufferIfEmpty(buffer);
     }
 
-    private void setFilePosition(String filePathString, Long position) {
-        readBytes.put(filePathString, position);
-    }
-
-    private Long getFilePosition(String filePathString) {
-        Long position = readBytes.get(filePathString);
-        if (position == null) {
-            position = 0L;
+    private long getFilePosition(Path filePath) {
+        Segment segment = openSegments.get(filePath);
+        if (segment != null) {
+            return segment.getReadPosition();
         }
-        return position;
+        return readBytes.getOrDefault(filePath.toString(), (long) Segment.FILE_HEADER_SIZE);
     }
 
     private Path getOldestFilePath(String buffer) {
@@ -308,33 +387,73 @@ public class FilePersistence {
         return oldestFile;
     }
 
+    /**
+     * Removes the already read messages from the files, so the remaining messages are read first after a restart.
+     *
+     * @throws IOException
+     *             if a file could not be rewritten
+     */
     public void restructure() throws IOException {
         for (String buffer : getBuffers()) {
-            Path bufferPath = getOldestFilePath(buffer);
-            Long position = getFilePosition(bufferPath.toString());
-            if (position.equals(0L)) {
+            if (!fileExistsFor(buffer)) {
                 continue;
             }
-            Path temp = bufferPath.getParent();
-            temp = Paths.get(temp.toString(), "temp");
-            try {
-                Files.move(bufferPath, temp, StandardCopyOption.REPLACE_EXISTING);
-            } catch (DirectoryNotEmptyException e) {
-                logger.error(bufferPath.toString() + " -> " + temp.toString());
+            Path bufferPath = getReadPath(buffer);
+            long position = getFilePosition(bufferPath);
+            if (position <= Segment.FILE_HEADER_SIZE) {
+                continue;
             }
-            Files.createFile(bufferPath);
-            FileInputStream inputStream = new FileInputStream(temp.toFile());
-            inputStream.skip(position);
-            FileOutputStream outputStream = new FileOutputStream(bufferPath.toFile(), true);
-            int nextChar = inputStream.read();
-            while (nextChar != -1) {
-                outputStream.write(nextChar);
-                nextChar = inputStream.read();
+            closeSegment(bufferPath);
+            Path temp = Paths.get(bufferPath.getParent().toString(), "temp");
+            try (FileChannel source = FileChannel.open(bufferPath, StandardOpenOption.READ);
+                    FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING)) {
+                Segment.writeFileHeader(target);
+                target.position(Segment.FILE_HEADER_SIZE);
+                long count = source.size() - position;
+                long transferred = 0;
+                while (transferred < count) {
+                    transferred += source.transferTo(position + transferred, count - transferred, target);
+                }
+                if (syncPolicy != SyncPolicy.NEVER) {
+                    target.force(false);
+                }
             }
-            inputStream.close();
-            outputStream.close();
-            temp.toFile().delete();
-            setFilePosition(bufferPath.toString(), 0L);
+            Files.move(temp, bufferPath, StandardCopyOption.REPLACE_EXISTING);
+            readBytes.remove(bufferPath.toString());
+        }
+    }
+
+    /**
+     * Forces all written messages to the storage device.
+     *
+     * @throws IOException
+     *             if writing to the storage device fails
+     */
+    public void sync() throws IOException {
+        for (Segment segment : openSegments.values()) {
+            segment.sync();
+        }
+    }
+
+    /**
+     * Closes all open files. Written messages are forced to the storage device unless the sync policy is
+     * {@link SyncPolicy#NEVER}. The files are opened again when the buffers are accessed next time.
+     *
+     * @throws IOException
+     *             if a file could not be closed
+     */
+    public void close() throws IOException {
+        IOException exception = null;
+        for (Path filePath : new ArrayList<>(openSegments.keySet())) {
+            try {
+                closeSegment(filePath);
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
         }
     }
 }
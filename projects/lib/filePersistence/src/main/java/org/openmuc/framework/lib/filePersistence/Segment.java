@@ -0,0 +1,347 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.filePersistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One file of the journal of a buffer. The file starts with a magic number and a format version, both as 4 byte big
+ * endian integers. Every record consists of a header with the length of the payload and the CRC32 of the payload, both
+ * as 4 byte big endian integers, followed by the payload itself. Payloads may therefore contain any bytes. The file is
+ * kept open for appending and reading until the segment is closed. Records are read through a read ahead buffer, so
+ * reading many small records needs only few system calls.
+ * <p>
+ * Files without the magic number were written by older versions as one newline terminated message per line. They are
+ * converted to the record format once when they are opened.
+ */
+final class Segment implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Segment.class);
+
+    static final int HEADER_SIZE = 8;
+    static final int FILE_HEADER_SIZE = 8;
+
+    private static final int MAGIC = 0x894F4D42;
+    private static final int VERSION = 1;
+
+    private static final int READ_AHEAD_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    private ByteBuffer readAhead;
+    private long readAheadStart;
+    private int readAheadLength;
+
+    private long size;
+    private long payloadBytes;
+    private long readPosition;
+    private boolean invalid;
+    private int unsyncedRecords;
+
+    private Segment(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the segment and creates the file if it does not exist.
+     *
+     * @param path
+     *            path of the segment file
+     * @param recover
+     *            if true, all records are checked and an incomplete or corrupt end of the file, e.g. left by a crash
+     *            while writing, is cut off. Needed before records are appended.
+     * @return the opened segment
+     * @throws IOException
+     *             if the file could not be opened
+     */
+    static Segment open(Path path, boolean recover) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Segment segment = new Segment(path, channel);
+        try {
+            segment.size = channel.size();
+            if (!segment.readFileHeader()) {
+                channel.close();
+                migrateLineFile(path);
+                return open(path, recover);
+            }
+            segment.readPosition = FILE_HEADER_SIZE;
+            if (recover) {
+                segment.recover();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return segment;
+    }
+
+    /**
+     * Checks the file header and writes it to a new file.
+     *
+     * @return false if the file has been written in the line based format
+     */
+    private boolean readFileHeader() throws IOException {
+        ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        fileHeader.limit((int) Math.min(size, FILE_HEADER_SIZE));
+        readFully(fileHeader, 0);
+        fileHeader.flip();
+        ByteBuffer expected = newFileHeader();
+        if (fileHeader.remaining() < FILE_HEADER_SIZE) {
+            // empty or left by a crash while the header was written
+            expected.limit(fileHeader.remaining());
+            if (!fileHeader.equals(expected)) {
+                return false;
+            }
+            writeFileHeader(channel);
+            size = FILE_HEADER_SIZE;
+            return true;
+        }
+        if (fileHeader.getInt(0) != MAGIC) {
+            return false;
+        }
+        if (fileHeader.getInt(4) != VERSION) {
+            throw new IOException("Unsupported format version " + fileHeader.getInt(4) + " of " + path);
+        }
+        return true;
+    }
+
+    private static ByteBuffer newFileHeader() {
+        ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        fileHeader.putInt(MAGIC).putInt(VERSION);
+        fileHeader.flip();
+        return fileHeader;
+    }
+
+    /**
+     * Writes the file header to the beginning of an empty file.
+     *
+     * @param channel
+     *            the file to write to
+     * @throws IOException
+     *             if writing fails
+     */
+    static void writeFileHeader(FileChannel channel) throws IOException {
+        ByteBuffer fileHeader = newFileHeader();
+        while (fileHeader.hasRemaining()) {
+            channel.write(fileHeader, fileHeader.position());
+        }
+    }
+
+    /*
+     * Every line of the old format is a message, the last one may lack its newline. The file is replaced only after
+     * all messages have been written to the new file, so a crash leaves either the old or the new file.
+     */
+    private static void migrateLineFile(Path path) throws IOException {
+        logger.info("Converting {} from the line based format", path);
+        Path temp = path.resolveSibling(path.getFileName() + ".migrate");
+        Files.deleteIfExists(temp);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path));
+                Segment target = open(temp, false)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int next;
+            while ((next = in.read()) != -1) {
+                if (next == '\n') {
+                    target.append(line.toByteArray());
+                    line.reset();
+                }
+                else {
+                    line.write(next);
+                }
+            }
+            if (line.size() > 0) {
+                target.append(line.toByteArray());
+            }
+            target.sync();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void recover() throws IOException {
+        byte[] payload;
+        while ((payload = next()) != null) {
+            payloadBytes += payload.length;
+        }
+        if (readPosition < size) {
+            logger.warn("Truncating {} to {} bytes, the rest of the file contains no valid records", path,
+                    readPosition);
+            channel.truncate(readPosition);
+            size = readPosition;
+        }
+        readPosition = FILE_HEADER_SIZE;
+        readAheadLength = 0;
+        invalid = false;
+    }
+
+    void append(byte[] payload) throws IOException {
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        header.clear();
+        header.putInt(payload.length).putInt((int) crc.getValue());
+        header.flip();
+
+        ByteBuffer body = ByteBuffer.wrap(payload);
+        ByteBuffer[] buffers = { header, body };
+        channel.position(size);
+        while (header.hasRemaining() || body.hasRemaining()) {
+            channel.write(buffers);
+        }
+        size += HEADER_SIZE + payload.length;
+        payloadBytes += payload.length;
+        unsyncedRecords++;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the payload of the record or null if there is no further valid record
+     * @throws IOException
+     *             if reading the file fails
+     */
+    byte[] next() throws IOException {
+        if (invalid || readPosition >= size) {
+            return null;
+        }
+        if (size - readPosition < HEADER_SIZE) {
+            return invalidRecord("incomplete header");
+        }
+        fillReadAhead(readPosition, HEADER_SIZE);
+        int index = (int) (readPosition - readAheadStart);
+        int length = readAhead.getInt(index);
+        int checksum = readAhead.getInt(index + 4);
+
+        long payloadPosition = readPosition + HEADER_SIZE;
+        if (length < 0 || length > size - payloadPosition) {
+            return invalidRecord("invalid length " + length);
+        }
+        byte[] payload = new byte[length];
+        if (length <= READ_AHEAD_SIZE) {
+            fillReadAhead(payloadPosition, length);
+            System.arraycopy(readAhead.array(), (int) (payloadPosition - readAheadStart), payload, 0, length);
+        }
+        else {
+            readFully(ByteBuffer.wrap(payload), payloadPosition);
+        }
+
+        crc.reset();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            return invalidRecord("checksum mismatch");
+        }
+        readPosition = payloadPosition + length;
+        return payload;
+    }
+
+    private byte[] invalidRecord(String reason) {
+        logger.warn("Invalid record in {} at position {} ({}), skipping the rest of the file", path, readPosition,
+                reason);
+        invalid = true;
+        return null;
+    }
+
+    private void fillReadAhead(long position, int length) throws IOException {
+        if (readAhead == null) {
+            readAhead = ByteBuffer.allocate(READ_AHEAD_SIZE);
+        }
+        if (position >= readAheadStart && position + length <= readAheadStart + readAheadLength) {
+            return;
+        }
+        readAheadLength = (int) Math.min(READ_AHEAD_SIZE, size - position);
+        readAhead.clear();
+        readAhead.limit(readAheadLength);
+        readAheadStart = position;
+        try {
+            readFully(readAhead, position);
+        } catch (IOException e) {
+            readAheadLength = 0;
+            throw e;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file " + path);
+            }
+        }
+    }
+
+    /**
+     * @return true if there are unread records. A segment with an invalid record has no further records.
+     */
+    boolean hasNext() {
+        return !invalid && readPosition < size;
+    }
+
+    long getReadPosition() {
+        return readPosition;
+    }
+
+    void setReadPosition(long readPosition) {
+        this.readPosition = readPosition;
+    }
+
+    /**
+     * @return the sum of the payload lengths of all records
+     */
+    long getPayloadBytes() {
+        return payloadBytes;
+    }
+
+    int getUnsyncedRecords() {
+        return unsyncedRecords;
+    }
+
+    /**
+     * Forces all appended records to the storage device.
+     */
+    void sync() throws IOException {
+        if (unsyncedRecords > 0) {
+            channel.force(false);
+            unsyncedRecords = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.filePersistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BoundedMessageBufferTest {
+
+    private static BoundedMessageBuffer<byte[]> newBuffer(long maxSizeBytes) {
+        return new BoundedMessageBuffer<>(maxSizeBytes, message -> message.length);
+    }
+
+    @Test
+    void boundedBySize() {
+        BoundedMessageBuffer<byte[]> buffer = newBuffer(100);
+        Assertions.assertTrue(buffer.offer(new byte[60]));
+        Assertions.assertTrue(buffer.offer(new byte[40]));
+        Assertions.assertFalse(buffer.offer(new byte[1]));
+        Assertions.assertEquals(100, buffer.getSizeBytes());
+        Assertions.assertEquals(1, buffer.getRejectedCount());
+
+        Assertions.assertEquals(60, buffer.poll().length);
+        Assertions.assertTrue(buffer.offer(new byte[50]));
+        Assertions.assertEquals(90, buffer.getSizeBytes());
+        Assertions.assertEquals(100, buffer.getPeakSizeBytes());
+    }
+
+    @Test
+    void firstInFirstOut() {
+        BoundedMessageBuffer<byte[]> buffer = newBuffer(1024);
+        for (int i = 0; i < 50; i++) {
+            buffer.offer(new byte[] { (byte) i });
+        }
+        Assertions.assertEquals(50, buffer.size());
+        List<byte[]> drained = buffer.drain();
+        Assertions.assertEquals(50, drained.size());
+        for (int i = 0; i < 50; i++) {
+            Assertions.assertEquals(i, drained.get(i)[0]);
+        }
+        Assertions.assertTrue(buffer.isEmpty());
+        Assertions.assertNull(buffer.poll());
+        Assertions.assertEquals(0, buffer.getSizeBytes());
+    }
+
+    @Test
+    void boundedBySlots() {
+        // 16 slots at least, small messages fill the slots before the size limit is reached
+        BoundedMessageBuffer<byte[]> buffer = newBuffer(16);
+        int added = 0;
+        while (buffer.offer(new byte[0])) {
+            added++;
+        }
+        Assertions.assertEquals(16, added);
+        Assertions.assertEquals(0, buffer.getSizeBytes());
+    }
+
+    @Test
+    void dropOldest() {
+        BoundedMessageBuffer<byte[]> buffer = newBuffer(10);
+        buffer.offer(new byte[] { 1, 1, 1, 1, 1 });
+        buffer.offer(new byte[] { 2, 2, 2, 2, 2 });
+        Assertions.assertEquals(1, buffer.dropOldest()[0]);
+        Assertions.assertEquals(1, buffer.getDroppedCount());
+        Assertions.assertEquals(2, buffer.poll()[0]);
+        Assertions.assertNull(buffer.dropOldest());
+        Assertions.assertEquals(1, buffer.getDroppedCount());
+    }
+
+    @Test
+    void concurrentProducersAndConsumers() throws InterruptedException {
+        int producers = 4;
+        int messagesPerProducer = 10000;
+        BoundedMessageBuffer<byte[]> buffer = newBuffer(256);
+        ConcurrentLinkedQueue<byte[]> received = new ConcurrentLinkedQueue<>();
+        AtomicInteger receivedCount = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers + 2);
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < messagesPerProducer; i++) {
+                    byte[] message = { (byte) producer, (byte) (i >> 16), (byte) (i >> 8), (byte) i };
+                    while (!buffer.offer(message)) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        for (int c = 0; c < 2; c++) {
+            new Thread(() -> {
+                while (receivedCount.get() < producers * messagesPerProducer) {
+                    byte[] message = buffer.poll();
+                    if (message == null) {
+                        Thread.yield();
+                    }
+                    else {
+                        received.add(message);
+                        receivedCount.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+
+        Assertions.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assertions.assertEquals(producers * messagesPerProducer, received.size());
+        Assertions.assertEquals(0, buffer.getSizeBytes());
+        Assertions.assertTrue(buffer.getPeakSizeBytes() <= 256);
+
+        List<Integer> counts = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            counts.add(0);
+        }
+        for (byte[] message : received) {
+            counts.set(message[0], counts.get(message[0]) + 1);
+        }
+        for (int count : counts) {
+            Assertions.assertEquals(messagesPerProducer, count);
+        }
+    }
+}
@@ -24,6 +24,9 @@ package org.openmuc.framework.lib.filePersistence;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -170,4 +173,97 @@ class FilePersistenceTest {
         Assertions.assertEquals('7', filePersistence.getMessage(buffer)[510]);
         Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
     }
+
+    @Test
+    void binaryPayloadWithNewlines() throws IOException {
+        FilePersistence filePersistence = getFilePersistence();
+        String buffer = "test";
+        byte[] payload = { '\n', 0, -1, '\n', '\r', 42 };
+        filePersistence.writeBufferToFile(buffer, payload);
+        filePersistence.writeBufferToFile(buffer, new byte[0]);
+        filePersistence.writeBufferToFile(buffer, payload);
+
+        Assertions.assertArrayEquals(payload, filePersistence.getMessage(buffer));
+        Assertions.assertArrayEquals(new byte[0], filePersistence.getMessage(buffer));
+        Assertions.assertArrayEquals(payload, filePersistence.getMessage(buffer));
+        Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
+    }
+
+    @Test
+    void emptyPayloadAsLastRecordSurvivesReopen() throws IOException {
+        FilePersistence filePersistence = getFilePersistence();
+        String buffer = "test";
+        byte[] payload = { 1, 2, 3 };
+        filePersistence.writeBufferToFile(buffer, payload);
+        filePersistence.writeBufferToFile(buffer, new byte[0]);
+        filePersistence.close();
+
+        FilePersistence reopened = getFilePersistence();
+        reopened.writeBufferToFile(buffer, payload);
+
+        Assertions.assertArrayEquals(payload, reopened.getMessage(buffer));
+        Assertions.assertArrayEquals(new byte[0], reopened.getMessage(buffer));
+        // the empty message has been read, not the end of the buffer
+        Assertions.assertTrue(reopened.fileExistsFor(buffer));
+        Assertions.assertArrayEquals(payload, reopened.getMessage(buffer));
+        Assertions.assertFalse(reopened.fileExistsFor(buffer));
+    }
+
+    @Test
+    void lineBasedFilesAreConverted() throws IOException {
+        String buffer = "test";
+        Path directory = FileSystems.getDefault().getPath(DIRECTORY, buffer);
+        Files.createDirectories(directory);
+        // files of older versions with one message per line, the last one cut off by a crash
+        Files.write(directory.resolve("buffer.1.log"), "first\nsecond\n".getBytes());
+        Files.write(directory.resolve(FilePersistence.DEFAULT_FILENAME), "third\nfour".getBytes());
+
+        FilePersistence filePersistence = getFilePersistence();
+        filePersistence.writeBufferToFile(buffer, "fifth".getBytes());
+
+        Assertions.assertEquals("first", new String(filePersistence.getMessage(buffer)));
+        Assertions.assertEquals("second", new String(filePersistence.getMessage(buffer)));
+        Assertions.assertEquals("third", new String(filePersistence.getMessage(buffer)));
+        Assertions.assertEquals("four", new String(filePersistence.getMessage(buffer)));
+        Assertions.assertEquals("fifth", new String(filePersistence.getMessage(buffer)));
+        Assertions.assertFalse(filePersistence.fileExistsFor(buffer));
+        // no converted or temporary files are left
+        Assertions.assertEquals(0, directory.toFile().list().length);
+    }
+
+    @Test
+    void incompleteRecordIsCutOff() throws IOException {
+        FilePersistence filePersistence = getFilePersistence();
+        String buffer = "test";
+        write512ByteUnique(filePersistence, buffer, 1);
+        write512ByteUnique(filePersistence, buffer, 2);
+        filePersistence.close();
+
+        // simulate a crash while writing the third message
+        Path path = FileSystems.getDefault().getPath(DIRECTORY, buffer, FilePersistence.DEFAULT_FILENAME);
+        Files.write(path, new byte[] { 0, 0, 1, 0, 1, 2 }, StandardOpenOption.APPEND);
+
+        FilePersistence reopened = getFilePersistence();
+        write512ByteUnique(reopened, buffer, 3); // would not fit without cutting off the incomplete record
+
+        Assertions.assertEquals('1', reopened.getMessage(buffer)[510]);
+        Assertions.assertEquals('2', reopened.getMessage(buffer)[510]);
+        Assertions.assertEquals('3', reopened.getMessage(buffer)[510]);
+        Assertions.assertFalse(reopened.fileExistsFor(buffer));
+    }
+
+    @Test
+    void restructureRemovesReadMessages() throws IOException {
+        FilePersistence filePersistence = getFilePersistence();
+        String buffer = "test";
+        write512ByteUnique(filePersistence, buffer, 1);
+        write512ByteUnique(filePersistence, buffer, 2);
+        Assertions.assertEquals('1', filePersistence.getMessage(buffer)[510]);
+        filePersistence.restructure();
+        filePersistence.close();
+
+        FilePersistence reopened = getFilePersistence();
+        Assertions.assertEquals('2', reopened.getMessage(buffer)[510]);
+        Assertions.assertFalse(reopened.fileExistsFor(buffer));
+    }
 }
@@ -23,25 +23,37 @@ package org.openmuc.framework.lib.mqtt;
 
 import java.io.IOException;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.openmuc.framework.lib.filePersistence.BoundedMessageBuffer;
 import org.openmuc.framework.lib.filePersistence.FilePersistence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Buffer handler with RAM buffer and managed {@link FilePersistence}
+ * <p>
+ * The RAM buffer is lock free. When it is full, its messages are handed over to a background thread which writes them
+ * to the file buffer, so adding a message does not wait for the disk unless {@value #MAX_PENDING_SPILLS} batches are
+ * still waiting to be written.
  */
 public class MqttBufferHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(MqttBufferHandler.class);
 
-    private final Queue<MessageTuple> buffer = new LinkedList<>();
+    private static final int MAX_PENDING_SPILLS = 4;
+
+    private final BoundedMessageBuffer<MessageTuple> buffer;
     private final long maxBufferSizeBytes;
-    private long currentBufferSize = 0L;
     private final int maxFileCount;
     private final FilePersistence filePersistence;
+    private final ThreadPoolExecutor spillExecutor;
+    private final AtomicLong spilledCount = new AtomicLong();
 
     /**
      * Initializes buffers with specified properties.
@@ -127,69 +139,112 @@ public class MqttBufferHandler {
     public MqttBufferHandler(long maxBufferSizeKb, int maxFileCount, long maxFileSizeKb, String persistenceDirectory) {
         maxBufferSizeBytes = maxBufferSizeKb * 1024;
         this.maxFileCount = maxFileCount;
+        buffer = new BoundedMessageBuffer<>(maxBufferSizeBytes, messageTuple -> messageTuple.message.length);
 
         if (isFileBufferEnabled()) {
             filePersistence = new FilePersistence(persistenceDirectory, maxFileCount, maxFileSizeKb);
+            spillExecutor = newSpillExecutor();
         }
         else {
             filePersistence = null;
+            spillExecutor = null;
         }
     }
 
+    private static ThreadPoolExecutor newSpillExecutor() {
+        // blocks the caller instead of reordering batches if the disk is too slow
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_SPILLS), runnable -> {
+                    Thread thread = new Thread(runnable, "OpenMUC MQTT file buffer writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (task, rejectingExecutor) -> {
+                    try {
+                        rejectingExecutor.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private boolean isFileBufferEnabled() {
         return maxFileCount > 0 && maxBufferSizeBytes > 0;
     }
 
     public void add(String topic, byte[] message) {
-
-        if (isBufferTooFull(message)) {
-            handleFull(topic, message);
-        }
-        else {
-            synchronized (buffer) {
-                buffer.add(new MessageTuple(topic, message));
-                currentBufferSize += message.length;
-            }
-
+        MessageTuple messageTuple = new MessageTuple(topic, message);
+        if (buffer.offer(messageTuple)) {
             if (logger.isTraceEnabled()) {
                 logger.trace("maxBufferSize = {}, currentBufferSize = {}, messageSize = {}", maxBufferSizeBytes,
-                        currentBufferSize, message.length);
+                        buffer.getSizeBytes(), message.length);
             }
         }
-
-    }
-
-    private boolean isBufferTooFull(byte[] message) {
-        return currentBufferSize + message.length > maxBufferSizeBytes;
+        else {
+            handleFull(messageTuple);
+        }
     }
 
-    private void handleFull(String topic, byte[] message) {
+    private void handleFull(MessageTuple messageTuple) {
         if (isFileBufferEnabled()) {
-            addToFilePersistence();
-            add(topic, message);
+            List<MessageTuple> batch = buffer.drain();
+            if (!buffer.offer(messageTuple)) {
+                // bigger than the RAM buffer
+                batch.add(messageTuple);
+            }
+            addToFilePersistence(batch);
+        }
+        else if (messageTuple.message.length <= maxBufferSizeBytes) {
+            while (!buffer.offer(messageTuple)) {
+                if (buffer.dropOldest() == null) {
+                    buffer.countDropped();
+                    break;
+                }
+            }
         }
-        else if (message.length <= maxBufferSizeBytes) {
-            removeNextMessage();
-            add(topic, message);
+        else {
+            buffer.countDropped();
         }
     }
 
-    private void addToFilePersistence() {
-        logger.debug("move buffered messages from RAM to file");
-        while (!buffer.isEmpty()) {
-            MessageTuple messageTuple = removeNextMessage();
-            writeBufferToFile(messageTuple);
+    private void addToFilePersistence(List<MessageTuple> batch) {
+        logger.debug("move {} buffered messages from RAM to file", batch.size());
+        spillExecutor.execute(() -> writeBufferToFile(batch));
+    }
+
+    private void writeBufferToFile(List<MessageTuple> batch) {
+        synchronized (filePersistence) {
+            for (MessageTuple messageTuple : batch) {
+                try {
+                    filePersistence.writeBufferToFile(messageTuple.topic, messageTuple.message);
+                    spilledCount.incrementAndGet();
+                } catch (IOException e) {
+                    logger.error(e.getMessage());
+                }
+            }
+            try {
+                filePersistence.sync();
+            } catch (IOException e) {
+                logger.error("Buffer file sync error: {}", e.getMessage());
+            }
         }
-        currentBufferSize = 0;
     }
 
-    private void writeBufferToFile(MessageTuple messageTuple) {
+    /**
+     * Waits until all messages handed over to the background thread are written to the file buffer.
+     */
+    private void awaitFilePersistence() {
+        if (spillExecutor == null) {
+            return;
+        }
         try {
-            synchronized (filePersistence) {
-                filePersistence.writeBufferToFile(messageTuple.topic, messageTuple.message);
-            }
-        } catch (IOException e) {
-            logger.error(e.getMessage());
+            spillExecutor.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Waiting for the file buffer failed: {}", e.getMessage());
         }
     }
 
@@ -197,18 +252,31 @@ public class MqttBufferHandler {
         return buffer.isEmpty();
     }
 
+    /**
+     * @return the oldest message of the RAM buffer or null if it is empty
+     */
     public MessageTuple removeNextMessage() {
-        MessageTuple removedMessage;
-        synchronized (buffer) {
-            removedMessage = buffer.remove();
-            currentBufferSize -= removedMessage.message.length;
-        }
-        return removedMessage;
+        return buffer.poll();
+    }
+
+    /**
+     * @return the RAM buffer, e.g. to read its occupancy and drop counters
+     */
+    public BoundedMessageBuffer<MessageTuple> getRamBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the number of messages moved from the RAM buffer to the file buffer
+     */
+    public long getSpilledCount() {
+        return spilledCount.get();
     }
 
     public String[] getBuffers() {
         String[] buffers;
         if (isFileBufferEnabled()) {
+            awaitFilePersistence();
             buffers = filePersistence.getBuffers();
         }
         else {
@@ -223,13 +291,22 @@ public class MqttBufferHandler {
 
     public void persist() {
         if (isFileBufferEnabled()) {
+            awaitFilePersistence();
             try {
-                filePersistence.restructure();
-                addToFilePersistence();
+                synchronized (filePersistence) {
+                    filePersistence.restructure();
+                    writeBufferToFile(buffer.drain());
+                    filePersistence.close();
+                }
             } catch (IOException e) {
                 logger.error("Buffer file restructuring error: {}", e.getMessage());
                 e.printStackTrace();
             }
         }
     }
+
+    @Override
+    public String toString() {
+        return "RAM buffer: " + buffer + ", moved to file: " + getSpilledCount();
+    }
 }
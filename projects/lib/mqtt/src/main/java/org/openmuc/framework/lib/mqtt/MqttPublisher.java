@@ -0,0 +1,413 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.mqtt;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishing pipeline of the {@link MqttWriter}. A single sender thread publishes the live messages and, after a
+ * reconnect, replays the buffered messages in the order they were buffered. At most <code>maxInFlight</code>
+ * publishes are unacknowledged at any time. With QoS 1 a publish counts as in flight until the broker acknowledged it,
+ * with QoS 0 until it is written to the connection.
+ * <p>
+ * While both are pending, <code>replayRatio</code> buffered messages are sent per live message, so fresh values are
+ * not delayed until a long backlog is replayed. Messages which can not be published are passed to the failure
+ * handler, which adds them to the buffer. If more than {@value #LIVE_QUEUE_FACTOR} times <code>maxInFlight</code> live
+ * messages are waiting, further ones are buffered as well and replayed as soon as the live queue is empty.
+ */
+public final class MqttPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttPublisher.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int LIVE_QUEUE_FACTOR = 10;
+
+    /**
+     * Sends a message to the broker.
+     */
+    interface Transport {
+        CompletableFuture<?> publish(String topic, byte[] message);
+    }
+
+    /**
+     * Source of the buffered messages to replay.
+     */
+    interface Backlog {
+        /**
+         * @return the next buffered message or null if all messages have been replayed
+         */
+        MessageTuple next();
+    }
+
+    private final String pid;
+    private final Transport transport;
+    private final Consumer<MessageTuple> failureHandler;
+    private final Supplier<Backlog> backlogSupplier;
+    private final int maxInFlight;
+    private final int maxQueuedLiveMessages;
+    private final int replayRatio;
+    private final int recoveryChunkSize;
+    private final int recoveryDelay;
+
+    private final Semaphore window;
+    private final ConcurrentLinkedQueue<MessageTuple> liveQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger liveQueueSize = new AtomicInteger();
+    private volatile boolean connected;
+    private volatile boolean running;
+    private volatile Backlog backlog;
+    private volatile boolean replayPending;
+    private volatile Thread sender;
+
+    // only accessed by the sender thread
+    private int replayedSinceLive;
+    private int replayedInChunk;
+    private long backlogPausedUntil;
+    private long replayStart;
+    private long replayCount;
+
+    private final long startTime = System.nanoTime();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong replayedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong latencySumNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    /**
+     * @param pid
+     *            ID used in log messages
+     * @param settings
+     *            the window, replay ratio and recovery limits are taken from the settings
+     * @param transport
+     *            sends the messages
+     * @param failureHandler
+     *            buffers messages which could not be sent
+     * @param backlogSupplier
+     *            creates a backlog of all currently buffered messages
+     */
+    MqttPublisher(String pid, MqttSettings settings, Transport transport, Consumer<MessageTuple> failureHandler,
+            Supplier<Backlog> backlogSupplier) {
+        this.pid = pid;
+        this.transport = transport;
+        this.failureHandler = failureHandler;
+        this.backlogSupplier = backlogSupplier;
+        this.maxInFlight = Math.max(1, settings.getMaxInFlight());
+        this.maxQueuedLiveMessages = maxInFlight * LIVE_QUEUE_FACTOR;
+        this.replayRatio = Math.max(0, settings.getReplayRatio());
+        this.recoveryChunkSize = settings.isRecoveryLimitSet() ? settings.getRecoveryChunkSize() : 0;
+        this.recoveryDelay = settings.getRecoveryDelay();
+        this.window = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Queues a live message for publishing. If the live queue is full, the message is passed to the failure handler
+     * and replayed later.
+     */
+    void submit(String topic, byte[] message) {
+        MessageTuple messageTuple = new MessageTuple(topic, message);
+        if (liveQueueSize.incrementAndGet() > maxQueuedLiveMessages) {
+            liveQueueSize.decrementAndGet();
+            failureHandler.accept(messageTuple);
+            replayPending = true;
+            return;
+        }
+        liveQueue.add(messageTuple);
+        wakeUp();
+    }
+
+    /**
+     * Starts the sender thread if necessary and starts publishing. All buffered messages are replayed.
+     */
+    synchronized void connected() {
+        backlog = backlogSupplier.get();
+        replayPending = false;
+        connected = true;
+        if (sender == null) {
+            running = true;
+            Thread thread = new Thread(this::run, "MqttPublisher-" + pid);
+            thread.setDaemon(true);
+            sender = thread;
+            thread.start();
+        }
+        wakeUp();
+    }
+
+    /**
+     * Stops publishing. Waiting live messages are passed to the failure handler.
+     */
+    void disconnected() {
+        connected = false;
+        backlog = null;
+        wakeUp();
+    }
+
+    /**
+     * Stops the sender thread. Waiting live messages are passed to the failure handler.
+     */
+    void shutdown() {
+        Thread thread;
+        synchronized (this) {
+            connected = false;
+            running = false;
+            thread = sender;
+            sender = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        moveLiveMessagesToBuffer();
+    }
+
+    private void wakeUp() {
+        Thread thread = sender;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            if (!connected) {
+                moveLiveMessagesToBuffer();
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            MessageTuple messageTuple = next();
+            if (messageTuple == null) {
+                window.release();
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            else {
+                send(messageTuple);
+            }
+        }
+    }
+
+    private MessageTuple next() {
+        Backlog currentBacklog = backlog;
+        if (currentBacklog == null && replayPending && liveQueue.isEmpty()) {
+            replayPending = false;
+            currentBacklog = backlogSupplier.get();
+            backlog = currentBacklog;
+        }
+        boolean replaying = currentBacklog != null && !isBacklogPaused();
+        if (replaying && (replayedSinceLive < replayRatio || liveQueue.isEmpty())) {
+            MessageTuple messageTuple = currentBacklog.next();
+            if (messageTuple != null) {
+                countReplayed();
+                return messageTuple;
+            }
+            finishReplay(currentBacklog);
+        }
+
+        MessageTuple messageTuple = liveQueue.poll();
+        if (messageTuple != null) {
+            liveQueueSize.decrementAndGet();
+            replayedSinceLive = 0;
+        }
+        return messageTuple;
+    }
+
+    private boolean isBacklogPaused() {
+        if (backlogPausedUntil != 0 && System.nanoTime() - backlogPausedUntil < 0) {
+            return true;
+        }
+        backlogPausedUntil = 0;
+        return false;
+    }
+
+    private void countReplayed() {
+        if (replayCount == 0) {
+            replayStart = System.nanoTime();
+        }
+        replayCount++;
+        replayedSinceLive++;
+        replayedCount.incrementAndGet();
+        if (recoveryChunkSize > 0 && ++replayedInChunk == recoveryChunkSize) {
+            replayedInChunk = 0;
+            // 0 means not paused
+            backlogPausedUntil = (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(recoveryDelay)) | 1;
+        }
+    }
+
+    private void finishReplay(Backlog finishedBacklog) {
+        synchronized (this) {
+            if (backlog == finishedBacklog) {
+                backlog = null;
+            }
+        }
+        if (replayCount > 0) {
+            logger.info("[{}] Replayed {} buffered messages in {} ms", pid, replayCount,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - replayStart));
+        }
+        replayCount = 0;
+        replayedInChunk = 0;
+    }
+
+    private void send(MessageTuple messageTuple) {
+        long start = System.nanoTime();
+        updatePeakInFlight(inFlight.incrementAndGet());
+        CompletableFuture<?> future;
+        try {
+            future = transport.publish(messageTuple.topic, messageTuple.message);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((result, exception) -> {
+            inFlight.decrementAndGet();
+            window.release();
+            if (exception != null) {
+                failedCount.incrementAndGet();
+                failureHandler.accept(messageTuple);
+            }
+            else {
+                long latency = System.nanoTime() - start;
+                publishedCount.incrementAndGet();
+                latencySumNanos.addAndGet(latency);
+                updateMaxLatency(latency);
+            }
+        });
+    }
+
+    private void updatePeakInFlight(int current) {
+        int peak = peakInFlight.get();
+        while (current > peak && !peakInFlight.compareAndSet(peak, current)) {
+            peak = peakInFlight.get();
+        }
+    }
+
+    private void updateMaxLatency(long latency) {
+        long max = maxLatencyNanos.get();
+        while (latency > max && !maxLatencyNanos.compareAndSet(max, latency)) {
+            max = maxLatencyNanos.get();
+        }
+    }
+
+    private void moveLiveMessagesToBuffer() {
+        MessageTuple messageTuple;
+        while ((messageTuple = liveQueue.poll()) != null) {
+            liveQueueSize.decrementAndGet();
+            failureHandler.accept(messageTuple);
+        }
+    }
+
+    /**
+     * @return true while buffered messages are replayed
+     */
+    public boolean isReplaying() {
+        return backlog != null;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return the number of publishes which are not completed yet
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the highest number of publishes which were in flight at the same time
+     */
+    public int getPeakInFlightCount() {
+        return peakInFlight.get();
+    }
+
+    /**
+     * @return the number of successfully published messages, including replayed ones
+     */
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    /**
+     * @return the number of buffered messages taken for replay
+     */
+    public long getReplayedCount() {
+        return replayedCount.get();
+    }
+
+    /**
+     * @return the number of publishes which failed and were buffered again
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * @return the average time from sending a message until its publish completed in milliseconds
+     */
+    public double getAverageLatencyMillis() {
+        long count = publishedCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return latencySumNanos.get() / (count * 1e6);
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    /**
+     * @return successfully published messages per second since the publisher was created
+     */
+    public double getThroughput() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return seconds > 0 ? publishedCount.get() / seconds : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "published: %d, replayed: %d, failed: %d, in flight: %d/%d (peak %d), latency avg: %.1f ms, "
+                        + "max: %.1f ms, throughput: %.1f msg/s",
+                getPublishedCount(), getReplayedCount(), getFailedCount(), getInFlightCount(), maxInFlight,
+                getPeakInFlightCount(), getAverageLatencyMillis(), getMaxLatencyMillis(), getThroughput());
+    }
+}
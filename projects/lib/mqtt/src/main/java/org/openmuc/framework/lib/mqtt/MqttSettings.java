@@ -41,6 +41,9 @@ public class MqttSettings {
     private final int recoveryChunkSize;
     private final int recoveryDelay;
     private final boolean webSocket;
+    private final int maxInFlight;
+    private final int qos;
+    private final int replayRatio;
 
     public MqttSettings(String host, int port, String username, String password, boolean ssl, long maxBufferSize,
             long maxFileSize, int maxFileCount, int connectionRetryInterval, int connectionAliveInterval,
@@ -70,6 +73,16 @@ public class MqttSettings {
             String persistenceDirectory, String lastWillTopic, byte[] lastWillPayload, boolean lastWillAlways,
             String firstWillTopic, byte[] firstWillPayload, int recoveryChunkSize, int recoveryDelay,
             boolean webSocket) {
+        this(host, port, username, password, ssl, maxBufferSize, maxFileSize, maxFileCount, connectionRetryInterval,
+                connectionAliveInterval, persistenceDirectory, lastWillTopic, lastWillPayload, lastWillAlways,
+                firstWillTopic, firstWillPayload, recoveryChunkSize, recoveryDelay, webSocket, 100, 0, 1);
+    }
+
+    public MqttSettings(String host, int port, String username, String password, boolean ssl, long maxBufferSize,
+            long maxFileSize, int maxFileCount, int connectionRetryInterval, int connectionAliveInterval,
+            String persistenceDirectory, String lastWillTopic, byte[] lastWillPayload, boolean lastWillAlways,
+            String firstWillTopic, byte[] firstWillPayload, int recoveryChunkSize, int recoveryDelay,
+            boolean webSocket, int maxInFlight, int qos, int replayRatio) {
         this.host = host;
         this.port = port;
         this.username = username;
@@ -89,6 +102,9 @@ public class MqttSettings {
         this.firstWillPayload = firstWillPayload;
         this.recoveryChunkSize = recoveryChunkSize;
         this.recoveryDelay = recoveryDelay;
+        this.maxInFlight = maxInFlight;
+        this.qos = qos;
+        this.replayRatio = replayRatio;
     }
 
     public String getHost() {
@@ -185,6 +201,27 @@ public class MqttSettings {
         return webSocket;
     }
 
+    /**
+     * @return maximum number of publishes which are not completed yet
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return quality of service level of published messages, 0 (at most once) or 1 (at least once)
+     */
+    public int getQos() {
+        return qos;
+    }
+
+    /**
+     * @return number of buffered messages replayed per live message while both are pending, 0 = live messages first
+     */
+    public int getReplayRatio() {
+        return replayRatio;
+    }
+
     /**
      * Returns a string of all settings, always uses '*****' as password string.
      */
@@ -210,6 +247,9 @@ public class MqttSettings {
         sb.append("firstWillPayload=").append(new String(getFirstWillPayload()));
         sb.append("recoveryChunkSize=").append(getRecoveryChunkSize()).append("\n");
         sb.append("recoveryDelay=").append(getRecoveryDelay()).append("\n");
+        sb.append("maxInFlight=").append(getMaxInFlight()).append("\n");
+        sb.append("qos=").append(getQos()).append("\n");
+        sb.append("replayRatio=").append(getReplayRatio()).append("\n");
         return sb.toString();
     }
 }
@@ -25,7 +25,10 @@ import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.TimeZone;
@@ -36,6 +39,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.MessageFormatter;
 
+import com.hivemq.client.mqtt.datatypes.MqttQos;
 import com.hivemq.client.mqtt.mqtt3.message.publish.Mqtt3Publish;
 
 public class MqttWriter {
@@ -49,6 +53,7 @@ public class MqttWriter {
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private final MqttBufferHandler buffer;
     private final String pid;
+    private final MqttPublisher publisher;
 
     public MqttWriter(MqttConnection connection, String pid) {
         this.connection = connection;
@@ -58,6 +63,7 @@ public class MqttWriter {
         buffer = new MqttBufferHandler(s.getMaxBufferSize(), s.getMaxFileCount(), s.getMaxFileSize(),
                 s.getPersistenceDirectory());
         this.pid = pid;
+        publisher = new MqttPublisher(pid, s, this::publish, this::handleFailedPublish, BufferBacklog::new);
     }
 
     private void addConnectedListener() {
@@ -80,80 +86,40 @@ public class MqttWriter {
                 write(settings.getFirstWillTopic(), settings.getFirstWillPayload());
             }
 
-            Thread recovery = new Thread(this::emptyBuffer, "MqttRecovery");
-            recovery.start();
+            publisher.connected();
 
         });
     }
 
-    private void emptyFileBuffer() {
-
-        log("Clearing file buffer.");
-        String[] buffers = buffer.getBuffers();
-        if (buffers.length == 0) {
-            log("File buffer already empty.");
-        }
-        int messageCount = 0;
-        int chunkSize = connection.getSettings().getRecoveryChunkSize();
-        int delay = connection.getSettings().getRecoveryDelay();
-        for (String buffer : buffers) {
-            Iterator<MessageTuple> iterator = this.buffer.getMessageIterator(buffer);
-            while (iterator.hasNext()) {
-                if (!connected) {
-                    warn("Recovery from file buffer interrupted by connection loss.");
-                    return;
-                }
-                MessageTuple messageTuple = iterator.next();
-                if (logger.isTraceEnabled()) {
-                    trace("Resend from file: {}", new String(messageTuple.message));
-                }
-                write(messageTuple.topic, messageTuple.message);
-                messageCount++;
-                if (connection.getSettings().isRecoveryLimitSet() && messageCount == chunkSize) {
-                    messageCount = 0;
-                    try {
-                        Thread.sleep(delay);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
+    /**
+     * Replays the file buffers, which hold the oldest messages, and then the RAM buffer.
+     */
+    private class BufferBacklog implements MqttPublisher.Backlog {
+
+        private final Deque<String> fileBuffers = new ArrayDeque<>();
+        private Iterator<MessageTuple> fileIterator;
+        private boolean started;
+
+        @Override
+        public MessageTuple next() {
+            if (!started) {
+                started = true;
+                log("Replaying file and memory (RAM) buffer.");
+                fileBuffers.addAll(Arrays.asList(buffer.getBuffers()));
             }
-        }
-
-        log("Empty file buffer done.");
-    }
-
-    private void emptyBuffer() {
-        log("Clearing memory (RAM) buffer.");
-        if (buffer.isEmpty()) {
-            log("Memory buffer already empty.");
-        }
-        int messageCount = 0;
-        int chunkSize = connection.getSettings().getRecoveryChunkSize();
-        int delay = connection.getSettings().getRecoveryDelay();
-        while (!buffer.isEmpty()) {
-            if (!connected) {
-                warn("Recovery from memory buffer interrupted by connection loss.");
-                return;
+            while (fileIterator == null || !fileIterator.hasNext()) {
+                String fileBuffer = fileBuffers.poll();
+                if (fileBuffer == null) {
+                    return buffer.removeNextMessage();
+                }
+                fileIterator = buffer.getMessageIterator(fileBuffer);
             }
-            MessageTuple messageTuple = buffer.removeNextMessage();
+            MessageTuple messageTuple = fileIterator.next();
             if (logger.isTraceEnabled()) {
-                trace("Resend from memory: {}", new String(messageTuple.message));
-            }
-            write(messageTuple.topic, messageTuple.message);
-            messageCount++;
-            if (connection.getSettings().isRecoveryLimitSet() && messageCount == chunkSize) {
-                messageCount = 0;
-                try {
-                    Thread.sleep(delay);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+                trace("Resend from buffer: {}", new String(messageTuple.message));
             }
-
+            return messageTuple;
         }
-        log("Empty memory buffer done.");
-        emptyFileBuffer();
     }
 
     private void addDisconnectedListener() {
@@ -193,6 +159,7 @@ public class MqttWriter {
     private void handleDisconnect(String serverHost, String cause) {
         timeOfConnectionLoss = LocalDateTime.now();
         connected = false;
+        publisher.disconnected();
         warn("Connection lost: broker '{}'. Cause: '{}'", serverHost, cause);
     }
 
@@ -215,20 +182,30 @@ public class MqttWriter {
     }
 
     private void startPublishing(String topic, byte[] message) {
-        publish(topic, message).whenComplete((publish, exception) -> {
-            if (exception != null) {
-                warn("Connection issue: {} message could not be sent. Adding message to buffer",
-                        exception.getMessage());
-                buffer.add(topic, message);
-            }
-            else if (logger.isTraceEnabled()) {
-                trace("Message successfully delivered on topic {}", topic);
-            }
-        });
+        publisher.submit(topic, message);
+    }
+
+    private void handleFailedPublish(MessageTuple messageTuple) {
+        if (connected) {
+            warn("Connection issue: message could not be sent. Adding message to buffer");
+        }
+        buffer.add(messageTuple.topic, messageTuple.message);
     }
 
     CompletableFuture<Mqtt3Publish> publish(String topic, byte[] message) {
-        return connection.getClient().publishWith().topic(topic).payload(message).send();
+        MqttQos qos = connection.getSettings().getQos() == 1 ? MqttQos.AT_LEAST_ONCE : MqttQos.AT_MOST_ONCE;
+        return connection.getClient().publishWith().topic(topic).qos(qos).payload(message).send();
+    }
+
+    /**
+     * @return the publishing pipeline, e.g. to read its throughput and latency metrics
+     */
+    public MqttPublisher getPublisher() {
+        return publisher;
+    }
+
+    MqttBufferHandler getBufferHandler() {
+        return buffer;
     }
 
     public MqttConnection getConnection() {
@@ -267,7 +244,8 @@ public class MqttWriter {
     public void shutdown() {
         connected = false;
         cancelReconnect.set(true);
-        log("Saving buffers.");
+        publisher.shutdown();
+        log("Saving buffers. Publisher statistics: {}", publisher);
         buffer.persist();
     }
 }
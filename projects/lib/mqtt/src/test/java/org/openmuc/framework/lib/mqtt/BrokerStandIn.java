@@ -0,0 +1,89 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.mqtt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for an MQTT broker which records the published messages. Publishes are acknowledged immediately or, if
+ * acknowledgements are held back, on {@link #acknowledgeAll()} like a QoS 1 PUBACK.
+ */
+class BrokerStandIn implements MqttPublisher.Transport {
+
+    private final List<String> received = new ArrayList<>();
+    private final ConcurrentLinkedQueue<CompletableFuture<Void>> pendingAcks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger unacknowledged = new AtomicInteger();
+    private final AtomicInteger peakUnacknowledged = new AtomicInteger();
+    private volatile boolean holdAcks;
+    private volatile boolean reject;
+
+    @Override
+    public CompletableFuture<?> publish(String topic, byte[] message) {
+        CompletableFuture<Void> ack = new CompletableFuture<>();
+        if (reject) {
+            ack.completeExceptionally(new IllegalStateException("rejected by broker"));
+            return ack;
+        }
+        synchronized (received) {
+            received.add(new String(message));
+        }
+        peakUnacknowledged.accumulateAndGet(unacknowledged.incrementAndGet(), Math::max);
+        if (holdAcks) {
+            pendingAcks.add(ack);
+        }
+        else {
+            unacknowledged.decrementAndGet();
+            ack.complete(null);
+        }
+        return ack;
+    }
+
+    void holdAcks(boolean holdAcks) {
+        this.holdAcks = holdAcks;
+    }
+
+    void reject(boolean reject) {
+        this.reject = reject;
+    }
+
+    void acknowledgeAll() {
+        CompletableFuture<Void> ack;
+        while ((ack = pendingAcks.poll()) != null) {
+            unacknowledged.decrementAndGet();
+            ack.complete(null);
+        }
+    }
+
+    List<String> getReceived() {
+        synchronized (received) {
+            return new ArrayList<>(received);
+        }
+    }
+
+    int getPeakUnacknowledged() {
+        return peakUnacknowledged.get();
+    }
+}
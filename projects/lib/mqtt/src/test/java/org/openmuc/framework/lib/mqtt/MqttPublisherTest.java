@@ -0,0 +1,166 @@
+/*
+ * Copyright 2011-2022 Fraunhofer ISE
+ *
+ * This file is part of OpenMUC.
+ * For more information visit http://www.openmuc.org
+ *
+ * OpenMUC is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenMUC is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenMUC.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package org.openmuc.framework.lib.mqtt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class MqttPublisherTest {
+
+    private final BrokerStandIn broker = new BrokerStandIn();
+    private final List<MessageTuple> failed = Collections.synchronizedList(new ArrayList<>());
+    private MqttPublisher publisher;
+    private MqttPublisher.Backlog backlog = () -> null;
+
+    private MqttPublisher createPublisher(int maxInFlight, int replayRatio) {
+        MqttSettings settings = new MqttSettings("localhost", 1883, null, null, false, 1, 1, 2, 5000, 10, "", "",
+                new byte[0], false, "", new byte[0], 0, 0, false, maxInFlight, 1, replayRatio);
+        publisher = new MqttPublisher("test", settings, broker, failed::add, () -> backlog);
+        return publisher;
+    }
+
+    @AfterEach
+    void shutdown() {
+        publisher.shutdown();
+    }
+
+    private void setBacklog(String... messages) {
+        Iterator<String> iterator = Arrays.asList(messages).iterator();
+        backlog = () -> iterator.hasNext() ? new MessageTuple("backlog", iterator.next().getBytes()) : null;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < end, "timeout");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void publishesLiveMessagesInOrder() throws InterruptedException {
+        createPublisher(10, 1);
+        publisher.connected();
+        for (int i = 0; i < 100; i++) {
+            publisher.submit("live", ("l" + i).getBytes());
+        }
+        await(() -> publisher.getPublishedCount() == 100);
+
+        List<String> received = broker.getReceived();
+        for (int i = 0; i < 100; i++) {
+            assertEquals("l" + i, received.get(i));
+        }
+        assertTrue(failed.isEmpty());
+        assertEquals(100, publisher.getPublishedCount());
+    }
+
+    @Test
+    void inFlightWindowWaitsForAcknowledgements() throws InterruptedException {
+        createPublisher(3, 1);
+        broker.holdAcks(true);
+        setBacklog("b0", "b1", "b2", "b3", "b4", "b5", "b6");
+        publisher.connected();
+
+        await(() -> broker.getReceived().size() == 3);
+        Thread.sleep(100);
+        // no further publish before the broker acknowledged
+        assertEquals(3, broker.getReceived().size());
+        assertEquals(3, publisher.getInFlightCount());
+
+        while (broker.getReceived().size() < 7) {
+            broker.acknowledgeAll();
+            Thread.sleep(5);
+        }
+        broker.acknowledgeAll();
+        await(() -> publisher.getPublishedCount() == 7);
+
+        assertEquals(Arrays.asList("b0", "b1", "b2", "b3", "b4", "b5", "b6"), broker.getReceived());
+        assertEquals(3, broker.getPeakUnacknowledged());
+        assertEquals(3, publisher.getPeakInFlightCount());
+        assertEquals(0, publisher.getInFlightCount());
+    }
+
+    @Test
+    void replayInterleavesBacklogAndLiveMessages() throws InterruptedException {
+        createPublisher(10, 2);
+        for (int i = 0; i < 3; i++) {
+            publisher.submit("live", ("l" + i).getBytes());
+        }
+        setBacklog("b0", "b1", "b2", "b3", "b4", "b5", "b6", "b7");
+        publisher.connected();
+        await(() -> publisher.getPublishedCount() == 11);
+
+        assertEquals(Arrays.asList("b0", "b1", "l0", "b2", "b3", "l1", "b4", "b5", "l2", "b6", "b7"),
+                broker.getReceived());
+        assertEquals(8, publisher.getReplayedCount());
+        // the sender notices the end of the backlog on its next poll
+        await(() -> !publisher.isReplaying());
+    }
+
+    @Test
+    void failedAndWaitingMessagesAreHandedBack() throws InterruptedException {
+        createPublisher(10, 1);
+        broker.reject(true);
+        publisher.connected();
+        publisher.submit("live", "l0".getBytes());
+        await(() -> failed.size() == 1);
+        assertEquals(1, publisher.getFailedCount());
+
+        publisher.disconnected();
+        publisher.submit("live", "l1".getBytes());
+        await(() -> failed.size() == 2);
+        assertEquals("l1", new String(failed.get(1).message));
+        assertEquals(0, publisher.getPublishedCount());
+    }
+
+    @Test
+    void overflowingLiveMessagesAreReplayed() throws InterruptedException {
+        createPublisher(1, 1);
+        broker.holdAcks(true);
+        publisher.connected();
+        for (int i = 0; i < 12; i++) {
+            publisher.submit("live", ("l" + i).getBytes());
+        }
+        // at most 10 live messages are queued, the rest is buffered
+        await(() -> failed.size() >= 1);
+        setBacklog("buffered");
+
+        int expected = 12 - failed.size() + 1;
+        await(() -> {
+            broker.acknowledgeAll();
+            return publisher.getPublishedCount() == expected;
+        });
+        assertTrue(broker.getReceived().contains("buffered"));
+        assertEquals(1, publisher.getReplayedCount());
+        assertEquals(1, broker.getPeakUnacknowledged());
+    }
+}
@@ -127,13 +127,15 @@ public class MqttWriterTest {
         // buffer limit not yet reached
         // assertFalse(file.exists() || file1.exists());
         mqttWriter.write(topic, message300bytes.getBytes()); // 1200 > 1024 write to file => 0
-        // buffer limit reached, first file written
+        // buffer limit reached, first file written by the background thread
+        mqttWriter.getBufferHandler().getBuffers();
         assertTrue(file.exists() && !file1.exists());
         mqttWriter.write(topic, message300bytes.getBytes()); // 300
         mqttWriter.write(topic, message300bytes.getBytes()); // 600
         mqttWriter.write(topic, message300bytes.getBytes()); // 900
         mqttWriter.write(topic, message300bytes.getBytes()); // 1200 > 1024 write to file
-        // buffer limit reached, second file written
+        // buffer limit reached, second file written by the background thread
+        mqttWriter.getBufferHandler().getBuffers();
         assertTrue(file.exists() && file1.exists());
 
         // simulate connection